@@ -27,5 +27,7 @@ package mlflex;
 public enum Action
 {
     Reset,
-    Process
+    Process,
+    Coordinate,
+    Work
 }
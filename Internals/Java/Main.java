@@ -23,8 +23,11 @@ package mlflex;
 
 import mlflex.core.*;
 import mlflex.helper.*;
+import mlflex.parallelization.RemoteTaskStateStore;
+import mlflex.parallelization.TaskCoordinator;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
 
 /** This is the class that gets invoked when ML-Flex begins to execute.
@@ -102,6 +105,23 @@ public class Main
         Settings.NUM_THREADS = Integer.parseInt(GetArgValue(args, "NUM_THREADS", numAvailableProcessors));
         Settings.THREAD_TIMEOUT_MINUTES = Long.parseLong(GetArgValue(args, "THREAD_TIMEOUT_MINUTES", "60"));
         Settings.PAUSE_SECONDS = Long.parseLong(GetArgValue(args, "PAUSE_SECONDS", "5"));
+        Settings.ANALYSIS_FILE_CACHE_MB = Long.parseLong(GetArgValue(args, "ANALYSIS_FILE_CACHE_MB", "1024"));
+        Settings.RESULT_CACHE_DIR = GetArgValue(args, "RESULT_CACHE_DIRECTORY", Settings.INTERNALS_DIR + "ResultCache/");
+        if (!Settings.RESULT_CACHE_DIR.endsWith("/"))
+            Settings.RESULT_CACHE_DIR += "/";
+        Settings.RESULT_CACHE_MB = Long.parseLong(GetArgValue(args, "RESULT_CACHE_MB", "0"));
+        if (Settings.RESULT_CACHE_MB > 0)
+            Settings.RESULT_CACHE_DIR = FileUtilities.CreateDirectoryIfNotExists(Settings.RESULT_CACHE_DIR);
+        Settings.TASK_STATE_STORE = GetArgValue(args, "TASK_STATE_STORE", "Journal");
+        Settings.NUM_PARALLEL_ITERATIONS = Integer.parseInt(GetArgValue(args, "NUM_PARALLEL_ITERATIONS", "1"));
+        Settings.CHILD_PROCESS_MEMORY_MB = Long.parseLong(GetArgValue(args, "CHILD_PROCESS_MEMORY_MB", "-1"));
+        Settings.MEMORY_ADMISSION = Boolean.parseBoolean(GetArgValue(args, "MEMORY_ADMISSION", "true"));
+        Settings.VIRTUAL_THREADS = Boolean.parseBoolean(GetArgValue(args, "VIRTUAL_THREADS", "false"));
+        Settings.MAX_CHILD_PROCESSES = Integer.parseInt(GetArgValue(args, "MAX_CHILD_PROCESSES", String.valueOf(Settings.NUM_THREADS)));
+        Settings.COORDINATOR_HOST = GetArgValue(args, "COORDINATOR_HOST", "localhost");
+        Settings.COORDINATOR_PORT = Integer.parseInt(GetArgValue(args, "COORDINATOR_PORT", "8765"));
+        Settings.COORDINATOR_BIND_ADDRESS = GetArgValue(args, "COORDINATOR_BIND_ADDRESS", "127.0.0.1");
+        Settings.COORDINATOR_SECRET_FILE = GetArgValue(args, "COORDINATOR_SECRET_FILE", Settings.INTERNALS_DIR + "Coordinator_Secret.txt");
         Settings.EXPORT_DATA = Boolean.parseBoolean(GetArgValue(args, "EXPORT_DATA", "false"));
 
         Settings.LEARNER_TEMPLATES_FILE = GetArgValue(args, "LEARNER_TEMPLATES_FILE", "Config/Learner_Templates.txt");
@@ -137,25 +157,44 @@ public class Main
         Singletons.ProcessorVault = new ProcessorVault();
         Singletons.ProcessorVault.Load();
 
+        // Initialize (and create if needed) the experiment-specific directories
+        Settings.DATA_DIR = InitializeDirectory(Settings.INTERNALS_DIR, "Data/" + Singletons.Experiment.toString(), -1);
+        Settings.OUTPUT_DIR = InitializeDirectory(Settings.MAIN_DIR, "Output/" + Singletons.Experiment.toString(), -1);
+        Settings.TEMP_DATA_DIR = InitializeDirectory(Settings.INTERNALS_DIR, "TempData/" + Singletons.Experiment.toString(), -1);
+        Settings.TEMP_RESULTS_DIR = InitializeDirectory(Settings.INTERNALS_DIR, "TempResults/" + Singletons.Experiment.toString(), -1);
+
+        ArrayList<IterationContext> iterations = new ArrayList<IterationContext>();
+
         for (int i=1; i<(Singletons.Config.GetNumIterations() +1); i++)
         {
-            Singletons.Iteration = i;
-            Singletons.Log.NumExceptionsCaught = 0;
-
-            // Initialize (and create if needed) the experiment-specific directories
-            Settings.DATA_DIR = InitializeDirectory(Settings.INTERNALS_DIR, "Data/" + Singletons.Experiment.toString(), -1);
-            Settings.FEATURE_SELECTION_DIR = InitializeDirectory(Settings.INTERNALS_DIR, "SelectedFeatures/" + Singletons.Experiment.toString(), i);
-            Settings.PREDICTIONS_DIR = InitializeDirectory(Settings.INTERNALS_DIR, "Predictions/" + Singletons.Experiment.toString(), i);
-            Settings.ENSEMBLE_PREDICTIONS_DIR = InitializeDirectory(Settings.INTERNALS_DIR, "EnsemblePredictions/" + Singletons.Experiment.toString(), i);
-            Settings.OUTPUT_DIR = InitializeDirectory(Settings.MAIN_DIR, "Output/" + Singletons.Experiment.toString(), -1);
-            Settings.LOCKS_DIR = InitializeDirectory(Settings.INTERNALS_DIR, "Locks/" + Singletons.Experiment.toString(), i);
-            Settings.STATUS_DIR = InitializeDirectory(Settings.INTERNALS_DIR, "Status/" + Singletons.Experiment.toString(), i);
-            Settings.TEMP_DATA_DIR = InitializeDirectory(Settings.INTERNALS_DIR, "TempData/" + Singletons.Experiment.toString(), -1);
-            Settings.TEMP_RESULTS_DIR = InitializeDirectory(Settings.INTERNALS_DIR, "TempResults/" + Singletons.Experiment.toString(), -1);
-
-            // Execute the experiment
-            Singletons.Experiment.Orchestrate(action);
+            IterationContext iteration = new IterationContext(i);
+
+            // Initialize (and create if needed) the iteration-specific directories
+            iteration.FeatureSelectionDir = InitializeDirectory(Settings.INTERNALS_DIR, "SelectedFeatures/" + Singletons.Experiment.toString(), i);
+            iteration.PredictionsDir = InitializeDirectory(Settings.INTERNALS_DIR, "Predictions/" + Singletons.Experiment.toString(), i);
+            iteration.EnsemblePredictionsDir = InitializeDirectory(Settings.INTERNALS_DIR, "EnsemblePredictions/" + Singletons.Experiment.toString(), i);
+            iteration.LocksDir = InitializeDirectory(Settings.INTERNALS_DIR, "Locks/" + Singletons.Experiment.toString(), i);
+            iteration.StatusDir = InitializeDirectory(Settings.INTERNALS_DIR, "Status/" + Singletons.Experiment.toString(), i);
+
+            iterations.add(iteration);
         }
+
+        // The coordinator hands out tasks to workers, which then report back to it, rather than sharing task states via the file system
+        if (action.equals(Action.Coordinate))
+        {
+            Settings.TASK_STATE_STORE = "Coordinator";
+            TaskCoordinator.Start(Settings.COORDINATOR_BIND_ADDRESS, Settings.COORDINATOR_PORT);
+        }
+        if (action.equals(Action.Work))
+            Settings.TASK_STATE_STORE = "Remote";
+
+        // Execute the experiment
+        Singletons.Experiment.Orchestrate(action.equals(Action.Coordinate) || action.equals(Action.Work) ? Action.Process : action, iterations);
+
+        if (action.equals(Action.Coordinate))
+            TaskCoordinator.AwaitWorkers();
+        if (action.equals(Action.Work))
+            RemoteTaskStateStore.Leave();
     }
 
     /** Formulates a directory path that is specific to a given purpose within an experiment and ensures the directory is created.
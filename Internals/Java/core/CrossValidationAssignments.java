@@ -36,6 +36,10 @@ public class CrossValidationAssignments
     protected HashMap<Integer, ArrayList<String>> Assignments = new HashMap<Integer, ArrayList<String>>();
     /** A mapping of cross-validation assignments for each inner fold */
     private ConcurrentHashMap<Integer, CrossValidationAssignments> _innerAssignments = null;
+    /** Training instance IDs for each fold, which are computed once and then reused */
+    private ConcurrentHashMap<Integer, ArrayList<String>> _trainIDsCache = new ConcurrentHashMap<Integer, ArrayList<String>>();
+    /** Views of the training and test instances for each data processor and fold, which are computed once and then reused */
+    private ConcurrentHashMap<String, DataInstanceCollection> _foldViewCache = new ConcurrentHashMap<String, DataInstanceCollection>();
     /** Number of cross validation folds */
     public int NumFolds;
     /** The dependent variable instances that will be used for assigning to the folds */
@@ -134,7 +138,7 @@ public class CrossValidationAssignments
             }
 
             // Randomly shuffle the instances
-            Collections.shuffle(instanceIDs, new Random(Singletons.RandomSeed));
+            Collections.shuffle(instanceIDs, new Random(IterationContext.Current().RandomSeed));
 
             for (String instanceID : instanceIDs)
             {
@@ -288,7 +292,7 @@ public class CrossValidationAssignments
         {
             int numInstancesToExclude = Singletons.Config.GetNumTrainingInstancesToExcludeRandomly();
             if (numInstancesToExclude > 0)
-                filterIDs = ListUtilities.GetRandomSubset(instanceIDs, numInstancesToExclude, new Random(Singletons.RandomSeed));
+                filterIDs = ListUtilities.GetRandomSubset(instanceIDs, numInstancesToExclude, new Random(IterationContext.Current().RandomSeed));
         }
 
         return filterIDs;
@@ -303,7 +307,7 @@ public class CrossValidationAssignments
      */
     public DataInstanceCollection GetTrainInstances(AbstractDataProcessor processor, int fold) throws Exception
     {
-        return Singletons.InstanceVault.GetInstancesForAnalysis(processor, GetTrainIDs(fold));
+        return GetFoldView(processor, fold, true);
     }
 
     /** Indicates which training instances for a given data processor are assigned to a given cross-validation fold.
@@ -315,7 +319,53 @@ public class CrossValidationAssignments
      */
     public DataInstanceCollection GetTestInstances(AbstractDataProcessor processor, int fold) throws Exception
     {
-        return Singletons.InstanceVault.GetInstancesForAnalysis(processor, GetTestIDs(fold));
+        return GetFoldView(processor, fold, false);
+    }
+
+    /** Retrieves a view of the training or test instances for a given data processor and cross-validation fold. Each view is created only once; callers receive their own lightweight copy of it so that any modifications they make do not affect other tasks.
+     *
+     * @param processor Data processor
+     * @param fold Cross-validation fold
+     * @param train Whether to retrieve training instances (otherwise test instances)
+     * @return Collection of instances
+     * @throws Exception
+     */
+    private DataInstanceCollection GetFoldView(AbstractDataProcessor processor, int fold, boolean train) throws Exception
+    {
+        String key = processor.GetDescription() + "_" + fold + "_" + (train ? "Train" : "Test");
+
+        DataInstanceCollection view = _foldViewCache.get(key);
+
+        if (view == null)
+        {
+            view = Singletons.InstanceVault.GetInstancesForAnalysis(processor, train ? GetCachedTrainIDs(fold) : GetTestIDs(fold));
+
+            if (view == null)
+                return null;
+
+            _foldViewCache.putIfAbsent(key, view);
+        }
+
+        return view.GetView();
+    }
+
+    /** Indicates training instance IDs for a given cross-validation fold. These are computed only once per fold.
+     *
+     * @param fold Number of cross validation fold
+     * @return Data instance IDs assigned to that fold
+     * @throws Exception
+     */
+    private ArrayList<String> GetCachedTrainIDs(int fold) throws Exception
+    {
+        ArrayList<String> trainIDs = _trainIDsCache.get(fold);
+
+        if (trainIDs == null)
+        {
+            trainIDs = GetTrainIDs(fold);
+            _trainIDsCache.putIfAbsent(fold, trainIDs);
+        }
+
+        return trainIDs;
     }
 
     /** Indicates how many test instances are assigned to a given fold for a given data processor. This method is provided to improve performance.
@@ -372,7 +422,7 @@ public class CrossValidationAssignments
             for (int f : GetAllFoldNumbers())
             {
             	HashMap<String, String> instanceMap = new HashMap<String, String>();
-            	for (String instanceID : GetTrainIDs(f))
+            	for (String instanceID : GetCachedTrainIDs(f))
             		instanceMap.put(instanceID, Singletons.InstanceVault.GetDependentVariableValue(instanceID));
             	
                 CrossValidationAssignments assignments = new CrossValidationAssignments(Singletons.Config.GetNumInnerCrossValidationFolds(), instanceMap, true).AssignFolds();
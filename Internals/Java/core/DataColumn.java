@@ -0,0 +1,777 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.core;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/** This class stores the values for a single data point across all rows of a DataInstanceCollection. Numeric values are stored as primitive doubles, and other values are dictionary encoded as integer codes. A bitmap indicates which rows have a value. Values are stored such that the original text representation can be reproduced exactly; when the text of a numeric value differs from the standard representation of the number (for example, "0.10" or "1e-5"), the original text is kept in a separate dictionary.
+ *
+ * A column can also be sparse. In this case, only explicitly specified values are stored (in order of row index), and any row without an explicit value takes on a default value unless it has been marked as missing. This is used for sparse data sets (for example, sparse ARFF files), where most values are zero.
+ * @author Stephen Piccolo
+ */
+public class DataColumn
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Indicates which rows have an explicitly stored (non-missing) value */
+    private BitSet _present;
+    /** Numeric values (used only while the column is numeric), indexed by slot */
+    private double[] _numericValues;
+    /** Indicates which numeric values were specified as integers rather than as decimals, indexed by row */
+    private BitSet _integerValues;
+    /** Dictionary codes (used only after the column has been converted to nominal), indexed by slot */
+    private int[] _codes;
+    private ArrayList<String> _dictionary;
+    private HashMap<String, Integer> _dictionaryIndexMap;
+    /** For numeric values whose text differs from the standard representation of the number, one plus the code of the original text, indexed by slot (zero for values in the standard representation; null until such a value is stored) */
+    private int[] _originalTextCodes = null;
+    private ArrayList<String> _originalTexts = null;
+    private HashMap<String, Integer> _originalTextIndexMap = null;
+
+    /** For sparse columns, the value of any row that has no explicit value and is not missing (null for dense columns) */
+    private String _defaultValue = null;
+    private double _defaultNumericValue = Double.NaN;
+    private int _defaultCode = -1;
+    /** For sparse columns, the row index that corresponds with each slot (sorted) */
+    private int[] _sparseRows = null;
+    private int _sparseCount = 0;
+    /** For sparse columns, indicates which rows are explicitly missing */
+    private BitSet _missing = null;
+
+    /** Default constructor */
+    public DataColumn()
+    {
+        this(INITIAL_CAPACITY);
+    }
+
+    /** Constructor
+     *
+     * @param capacity Initial number of rows for which space is allocated
+     */
+    public DataColumn(int capacity)
+    {
+        _present = new BitSet(capacity);
+        _numericValues = new double[Math.max(capacity, 1)];
+        _integerValues = new BitSet(capacity);
+    }
+
+    /** Creates a sparse column.
+     *
+     * @param defaultValue Value of any row that does not have an explicit value and has not been marked as missing
+     */
+    public DataColumn(String defaultValue)
+    {
+        this(INITIAL_CAPACITY);
+
+        _defaultValue = defaultValue;
+        _sparseRows = new int[INITIAL_CAPACITY];
+        _missing = new BitSet();
+
+        if (IsIntegerText(defaultValue) || IsDoubleText(defaultValue))
+            _defaultNumericValue = Double.parseDouble(defaultValue);
+        else
+            ConvertToNominal();
+    }
+
+    /** Indicates whether all values in this column are stored as primitive numeric values.
+     *
+     * @return Whether the column is numeric
+     */
+    public boolean IsNumeric()
+    {
+        return _codes == null;
+    }
+
+    /** Indicates whether this column only stores values that differ from a default value.
+     *
+     * @return Whether the column is sparse
+     */
+    public boolean IsSparse()
+    {
+        return _defaultValue != null;
+    }
+
+    /** Stores a value for the specified row. If the value cannot be represented as a number, the column is converted to a dictionary-encoded (nominal) column.
+     *
+     * @param row Row index
+     * @param value Data value (must not be missing)
+     */
+    public void Set(int row, String value)
+    {
+        // The slot must be obtained before the array is referenced, because obtaining it may replace the array with a larger one
+        int slot;
+
+        if (IsNumeric())
+        {
+            if (IsIntegerText(value))
+            {
+                slot = GetOrCreateSlot(row);
+                _numericValues[slot] = (double)Long.parseLong(value);
+                _integerValues.set(row);
+                SetOriginalText(slot, null);
+                return;
+            }
+
+            double number = ParseDoubleText(value);
+
+            if (!Double.isNaN(number))
+            {
+                slot = GetOrCreateSlot(row);
+                _numericValues[slot] = number;
+                _integerValues.clear(row);
+                SetOriginalText(slot, String.valueOf(number).equals(value) ? null : value);
+                return;
+            }
+
+            ConvertToNominal();
+        }
+
+        int code = GetCode(value);
+        slot = GetOrCreateSlot(row);
+        _codes[slot] = code;
+    }
+
+    /** Removes any value that has been stored for the specified row. For sparse columns, the row is marked as missing, so it no longer takes on the default value.
+     *
+     * @param row Row index
+     */
+    public void Clear(int row)
+    {
+        if (IsSparse())
+        {
+            if (_present.get(row))
+            {
+                int slot = GetSlot(row);
+                int numToMove = _sparseCount - slot - 1;
+
+                System.arraycopy(_sparseRows, slot + 1, _sparseRows, slot, numToMove);
+                if (IsNumeric())
+                {
+                    System.arraycopy(_numericValues, slot + 1, _numericValues, slot, numToMove);
+                    if (_originalTextCodes != null)
+                        System.arraycopy(_originalTextCodes, slot + 1, _originalTextCodes, slot, numToMove);
+                }
+                else
+                    System.arraycopy(_codes, slot + 1, _codes, slot, numToMove);
+
+                _sparseCount--;
+            }
+
+            _missing.set(row);
+        }
+
+        _present.clear(row);
+    }
+
+    /** Indicates whether a value is missing for the specified row.
+     *
+     * @param row Row index
+     * @return Whether the value is missing
+     */
+    public boolean IsMissing(int row)
+    {
+        if (_present.get(row))
+            return false;
+
+        return !IsSparse() || _missing.get(row);
+    }
+
+    /** Retrieves the value for the specified row, in the same text representation that was used when it was stored.
+     *
+     * @param row Row index
+     * @return Data value (or null if it is missing)
+     */
+    public String Get(int row)
+    {
+        if (!_present.get(row))
+            return IsMissing(row) ? null : _defaultValue;
+
+        int slot = GetSlot(row);
+
+        if (!IsNumeric())
+            return _dictionary.get(_codes[slot]);
+
+        return GetNumericText(row, slot);
+    }
+
+    /** Retrieves the primitive numeric value for the specified row.
+     *
+     * @param row Row index
+     * @return Numeric value (or NaN if the value is missing or the column is not numeric)
+     */
+    public double GetNumeric(int row)
+    {
+        if (IsMissing(row) || !IsNumeric())
+            return Double.NaN;
+
+        if (!_present.get(row))
+            return _defaultNumericValue;
+
+        return _numericValues[GetSlot(row)];
+    }
+
+    /** Retrieves the dictionary code for the specified row. This only applies to nominal columns.
+     *
+     * @param row Row index
+     * @return Dictionary code (or -1 if the value is missing or the column is numeric)
+     */
+    public int GetCode(int row)
+    {
+        if (IsMissing(row) || IsNumeric())
+            return -1;
+
+        if (!_present.get(row))
+            return _defaultCode;
+
+        return _codes[GetSlot(row)];
+    }
+
+    /** For nominal columns, this method provides the text values that correspond with each dictionary code.
+     *
+     * @return Dictionary values, indexed by code
+     */
+    public ArrayList<String> GetDictionary()
+    {
+        return _dictionary == null ? new ArrayList<String>() : new ArrayList<String>(_dictionary);
+    }
+
+    /** Indicates which rows have an explicitly stored value. For sparse columns, rows that take on the default value are not included.
+     *
+     * @return Bitmap of present values (this object should not be modified)
+     */
+    public BitSet GetPresentRows()
+    {
+        return _present;
+    }
+
+    /** Indicates which of the specified rows have a value, including rows that take on the default value in sparse columns.
+     *
+     * @param rows Rows to be considered
+     * @return Bitmap of rows that have a value (a new object)
+     */
+    public BitSet GetPresentRows(BitSet rows)
+    {
+        BitSet present = (BitSet)rows.clone();
+
+        if (IsSparse())
+            present.andNot(_missing);
+        else
+            present.and(_present);
+
+        return present;
+    }
+
+    /** Creates a new column that contains the values for the specified rows. In the new column, the rows are renumbered sequentially in the order specified. A sparse column remains sparse.
+     *
+     * @param rows Row indices
+     * @return New column
+     */
+    public DataColumn Project(int[] rows)
+    {
+        DataColumn column = IsSparse() ? new DataColumn(_defaultValue) : new DataColumn(rows.length);
+
+        if (!IsNumeric())
+        {
+            column._codes = new int[IsSparse() ? INITIAL_CAPACITY : Math.max(rows.length, 1)];
+            column._dictionary = new ArrayList<String>(_dictionary);
+            column._dictionaryIndexMap = new HashMap<String, Integer>(_dictionaryIndexMap);
+            column._defaultCode = _defaultCode;
+            column._numericValues = null;
+            column._integerValues = null;
+        }
+        else if (_originalTextCodes != null)
+        {
+            column._originalTextCodes = new int[column._numericValues.length];
+            column._originalTexts = new ArrayList<String>(_originalTexts);
+            column._originalTextIndexMap = new HashMap<String, Integer>(_originalTextIndexMap);
+        }
+
+        for (int i = 0; i < rows.length; i++)
+        {
+            int row = rows[i];
+
+            if (!_present.get(row))
+            {
+                if (IsSparse() && _missing.get(row))
+                    column._missing.set(i);
+
+                continue;
+            }
+
+            int slot = GetSlot(row);
+            int newSlot = column.GetOrCreateSlot(i);
+
+            if (IsNumeric())
+            {
+                column._numericValues[newSlot] = _numericValues[slot];
+                if (_integerValues.get(row))
+                    column._integerValues.set(i);
+                if (_originalTextCodes != null)
+                    column._originalTextCodes[newSlot] = _originalTextCodes[slot];
+            }
+            else
+                column._codes[newSlot] = _codes[slot];
+        }
+
+        return column;
+    }
+
+    /** Writes the values for rows 0 through numRows - 1 in a binary format that can be read by the Read method.
+     *
+     * @param out Output stream
+     * @param numRows Number of rows to write
+     * @throws IOException
+     */
+    public void Write(DataOutputStream out, int numRows) throws IOException
+    {
+        out.writeBoolean(IsNumeric());
+        out.writeBoolean(IsSparse());
+
+        // For sparse columns, only the explicit values are written
+        int numSlots = numRows;
+
+        if (IsSparse())
+        {
+            WriteString(out, _defaultValue);
+            WriteBitmap(out, _missing, numRows);
+
+            numSlots = 0;
+            while (numSlots < _sparseCount && _sparseRows[numSlots] < numRows)
+                numSlots++;
+
+            out.writeInt(numSlots);
+            for (int slot = 0; slot < numSlots; slot++)
+                out.writeInt(_sparseRows[slot]);
+        }
+        else
+            WriteBitmap(out, _present, numRows);
+
+        if (IsNumeric())
+        {
+            WriteBitmap(out, _integerValues, numRows);
+
+            for (int slot = 0; slot < numSlots; slot++)
+                out.writeDouble(slot < _numericValues.length ? _numericValues[slot] : 0.0);
+
+            out.writeBoolean(_originalTextCodes != null);
+            if (_originalTextCodes != null)
+            {
+                out.writeInt(_originalTexts.size());
+                for (String value : _originalTexts)
+                    WriteString(out, value);
+
+                for (int slot = 0; slot < numSlots; slot++)
+                    out.writeInt(slot < _originalTextCodes.length ? _originalTextCodes[slot] : 0);
+            }
+        }
+        else
+        {
+            out.writeInt(_dictionary.size());
+            for (String value : _dictionary)
+                WriteString(out, value);
+
+            for (int slot = 0; slot < numSlots; slot++)
+                out.writeInt(slot < _codes.length ? _codes[slot] : 0);
+        }
+    }
+
+    /** Reads a column that was written by the Write method.
+     *
+     * @param buffer Buffer positioned at the start of the column
+     * @param numRows Number of rows in the column
+     * @return Column
+     */
+    public static DataColumn Read(ByteBuffer buffer, int numRows)
+    {
+        boolean isNumeric = buffer.get() != 0;
+        boolean isSparse = buffer.get() != 0;
+
+        DataColumn column;
+        int numSlots = numRows;
+
+        if (isSparse)
+        {
+            column = new DataColumn(ReadString(buffer));
+            column._missing = ReadBitmap(buffer, numRows);
+
+            numSlots = buffer.getInt();
+            column._sparseRows = new int[Math.max(numSlots, 1)];
+            buffer.asIntBuffer().get(column._sparseRows, 0, numSlots);
+            buffer.position(buffer.position() + numSlots * 4);
+            column._sparseCount = numSlots;
+
+            for (int slot = 0; slot < numSlots; slot++)
+                column._present.set(column._sparseRows[slot]);
+        }
+        else
+        {
+            column = new DataColumn(numRows);
+            column._present = ReadBitmap(buffer, numRows);
+        }
+
+        if (isNumeric)
+        {
+            column._integerValues = ReadBitmap(buffer, numRows);
+            column._numericValues = new double[Math.max(numSlots, 1)];
+            buffer.asDoubleBuffer().get(column._numericValues, 0, numSlots);
+            buffer.position(buffer.position() + numSlots * 8);
+
+            if (buffer.get() != 0)
+            {
+                int numOriginalTexts = buffer.getInt();
+
+                column._originalTexts = new ArrayList<String>(numOriginalTexts);
+                column._originalTextIndexMap = new HashMap<String, Integer>();
+                for (int code = 0; code < numOriginalTexts; code++)
+                {
+                    String value = ReadString(buffer);
+                    column._originalTexts.add(value);
+                    column._originalTextIndexMap.put(value, code);
+                }
+
+                column._originalTextCodes = new int[Math.max(numSlots, 1)];
+                buffer.asIntBuffer().get(column._originalTextCodes, 0, numSlots);
+                buffer.position(buffer.position() + numSlots * 4);
+            }
+        }
+        else
+        {
+            int dictionarySize = buffer.getInt();
+
+            column._dictionary = new ArrayList<String>(dictionarySize);
+            column._dictionaryIndexMap = new HashMap<String, Integer>();
+            for (int code = 0; code < dictionarySize; code++)
+            {
+                String value = ReadString(buffer);
+                column._dictionary.add(value);
+                column._dictionaryIndexMap.put(value, code);
+            }
+
+            if (isSparse)
+                column._defaultCode = column._dictionaryIndexMap.get(column._defaultValue);
+
+            column._codes = new int[Math.max(numSlots, 1)];
+            buffer.asIntBuffer().get(column._codes, 0, numSlots);
+            buffer.position(buffer.position() + numSlots * 4);
+            column._numericValues = null;
+            column._integerValues = null;
+        }
+
+        return column;
+    }
+
+    /** Writes a String value as a length followed by UTF-8 bytes.
+     *
+     * @param out Output stream
+     * @param value Value to write
+     * @throws IOException
+     */
+    public static void WriteString(DataOutputStream out, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Reads a String value that was written by the WriteString method.
+     *
+     * @param buffer Buffer positioned at the start of the value
+     * @return Value
+     */
+    public static String ReadString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+
+        try
+        {
+            return new String(bytes, "UTF-8");
+        }
+        catch (UnsupportedEncodingException ex)
+        {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static void WriteBitmap(DataOutputStream out, BitSet bitmap, int numRows) throws IOException
+    {
+        byte[] bytes = new byte[(numRows + 7) / 8];
+
+        for (int row = bitmap.nextSetBit(0); row >= 0 && row < numRows; row = bitmap.nextSetBit(row + 1))
+            bytes[row / 8] |= (byte)(1 << (row % 8));
+
+        out.write(bytes);
+    }
+
+    private static BitSet ReadBitmap(ByteBuffer buffer, int numRows)
+    {
+        byte[] bytes = new byte[(numRows + 7) / 8];
+        buffer.get(bytes);
+
+        BitSet bitmap = new BitSet(numRows);
+        for (int row = 0; row < numRows; row++)
+            if ((bytes[row / 8] & (1 << (row % 8))) != 0)
+                bitmap.set(row);
+
+        return bitmap;
+    }
+
+    private int GetCode(String value)
+    {
+        Integer code = _dictionaryIndexMap.get(value);
+
+        if (code == null)
+        {
+            code = _dictionary.size();
+            _dictionary.add(value);
+            _dictionaryIndexMap.put(value, code);
+        }
+
+        return code;
+    }
+
+    /** Indicates where the value for a given row is stored in the value arrays.
+     *
+     * @param row Row index
+     * @return Slot index (negative if a sparse column has no explicit value for the row)
+     */
+    private int GetSlot(int row)
+    {
+        if (!IsSparse())
+            return row;
+
+        return Arrays.binarySearch(_sparseRows, 0, _sparseCount, row);
+    }
+
+    /** Indicates where the value for a given row should be stored, allocating space if necessary. The row is marked as having a value.
+     *
+     * @param row Row index
+     * @return Slot index
+     */
+    private int GetOrCreateSlot(int row)
+    {
+        if (!IsSparse())
+        {
+            EnsureCapacity(row + 1);
+            _present.set(row);
+            return row;
+        }
+
+        _missing.clear(row);
+
+        if (_present.get(row))
+            return GetSlot(row);
+
+        // Values are usually added in order of row index, in which case they are appended
+        int slot = _sparseCount;
+        if (_sparseCount > 0 && _sparseRows[_sparseCount - 1] > row)
+            slot = -(Arrays.binarySearch(_sparseRows, 0, _sparseCount, row) + 1);
+
+        EnsureCapacity(_sparseCount + 1);
+
+        int numToMove = _sparseCount - slot;
+        System.arraycopy(_sparseRows, slot, _sparseRows, slot + 1, numToMove);
+        if (IsNumeric())
+        {
+            System.arraycopy(_numericValues, slot, _numericValues, slot + 1, numToMove);
+            if (_originalTextCodes != null)
+            {
+                System.arraycopy(_originalTextCodes, slot, _originalTextCodes, slot + 1, numToMove);
+                _originalTextCodes[slot] = 0;
+            }
+        }
+        else
+            System.arraycopy(_codes, slot, _codes, slot + 1, numToMove);
+
+        _sparseRows[slot] = row;
+        _sparseCount++;
+        _present.set(row);
+
+        return slot;
+    }
+
+    /** Converts this column from numeric storage to dictionary-encoded storage. This happens the first time a non-numeric value is stored. */
+    private void ConvertToNominal()
+    {
+        _codes = new int[_numericValues.length];
+        _dictionary = new ArrayList<String>();
+        _dictionaryIndexMap = new HashMap<String, Integer>();
+
+        for (int row = _present.nextSetBit(0); row >= 0; row = _present.nextSetBit(row + 1))
+        {
+            int slot = GetSlot(row);
+            _codes[slot] = GetCode(GetNumericText(row, slot));
+        }
+
+        if (IsSparse())
+            _defaultCode = GetCode(_defaultValue);
+
+        _numericValues = null;
+        _integerValues = null;
+        _originalTextCodes = null;
+        _originalTexts = null;
+        _originalTextIndexMap = null;
+    }
+
+    /** Retrieves the text of a numeric value, as it was specified when the value was stored.
+     *
+     * @param row Row index
+     * @param slot Slot index
+     * @return Text value
+     */
+    private String GetNumericText(int row, int slot)
+    {
+        if (_originalTextCodes != null && _originalTextCodes[slot] > 0)
+            return _originalTexts.get(_originalTextCodes[slot] - 1);
+
+        if (_integerValues.get(row))
+            return String.valueOf((long)_numericValues[slot]);
+
+        return String.valueOf(_numericValues[slot]);
+    }
+
+    /** Records the text of a numeric value when it differs from the standard representation of the number.
+     *
+     * @param slot Slot index
+     * @param originalText Original text (null if the value is in the standard representation)
+     */
+    private void SetOriginalText(int slot, String originalText)
+    {
+        if (originalText == null)
+        {
+            if (_originalTextCodes != null)
+                _originalTextCodes[slot] = 0;
+            return;
+        }
+
+        if (_originalTextCodes == null)
+        {
+            _originalTextCodes = new int[_numericValues.length];
+            _originalTexts = new ArrayList<String>();
+            _originalTextIndexMap = new HashMap<String, Integer>();
+        }
+
+        Integer code = _originalTextIndexMap.get(originalText);
+
+        if (code == null)
+        {
+            code = _originalTexts.size();
+            _originalTexts.add(originalText);
+            _originalTextIndexMap.put(originalText, code);
+        }
+
+        _originalTextCodes[slot] = code + 1;
+    }
+
+    /** Makes sure that the value arrays have space for the specified number of slots.
+     *
+     * @param numSlots Number of slots
+     */
+    private void EnsureCapacity(int numSlots)
+    {
+        int capacity = IsNumeric() ? _numericValues.length : _codes.length;
+
+        if (numSlots <= capacity)
+            return;
+
+        int newCapacity = Math.max(numSlots, capacity * 2);
+
+        if (IsNumeric())
+        {
+            _numericValues = Arrays.copyOf(_numericValues, newCapacity);
+            if (_originalTextCodes != null)
+                _originalTextCodes = Arrays.copyOf(_originalTextCodes, newCapacity);
+        }
+        else
+            _codes = Arrays.copyOf(_codes, newCapacity);
+
+        if (IsSparse())
+            _sparseRows = Arrays.copyOf(_sparseRows, newCapacity);
+    }
+
+    /** Indicates whether a text value is an integer that can be stored as a double and converted back to exactly the same text.
+     *
+     * @param value Text value
+     * @return Whether the value is such an integer
+     */
+    private static boolean IsIntegerText(String value)
+    {
+        int length = value.length();
+        int start = value.startsWith("-") ? 1 : 0;
+
+        // Values with leading zeros or with more than 15 digits cannot be reproduced exactly
+        if (length == start || length - start > 15 || (value.charAt(start) == '0' && length - start > 1) || value.equals("-0"))
+            return false;
+
+        for (int i = start; i < length; i++)
+            if (value.charAt(i) < '0' || value.charAt(i) > '9')
+                return false;
+
+        return true;
+    }
+
+    /** Indicates whether a text value is a finite decimal number, in any notation (for example, "0.10", "2.5", or "1e-5").
+     *
+     * @param value Text value
+     * @return Whether the value is such a decimal number
+     */
+    private static boolean IsDoubleText(String value)
+    {
+        return !Double.isNaN(ParseDoubleText(value));
+    }
+
+    /** Parses a text value that represents a finite decimal number. Values such as "NaN", "Infinity", and Java type suffixes (for example, "1d") are not considered numbers.
+     *
+     * @param value Text value
+     * @return Numeric value (NaN if the text is not a finite decimal number)
+     */
+    private static double ParseDoubleText(String value)
+    {
+        if (value.length() == 0)
+            return Double.NaN;
+
+        char first = value.charAt(0);
+        if ((first < '0' || first > '9') && first != '-' && first != '+' && first != '.')
+            return Double.NaN;
+
+        char last = value.charAt(value.length() - 1);
+        if ((last < '0' || last > '9') && last != '.')
+            return Double.NaN;
+
+        try
+        {
+            double number = Double.parseDouble(value);
+            return Double.isInfinite(number) ? Double.NaN : number;
+        }
+        catch (NumberFormatException ex)
+        {
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.core;
+
+import mlflex.helper.DataTypeUtilities;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+
+/** This class stores summary statistics that describe the values of a single data point across the instances in a DataInstanceCollection. Collections cache these objects so that they do not need to be recalculated each time a data file is created for an external learner.
+ * @author Stephen Piccolo
+ */
+public class DataColumnStatistics
+{
+    /** The unique values for the data point (missing values are excluded) */
+    public final ArrayList<String> UniqueValues;
+    /** The general data type of the values */
+    public final GeneralDataType DataType;
+    /** The number of instances that have a value for the data point */
+    public final int NumPresent;
+    /** The number of instances that do not have a value for the data point */
+    public final int NumMissing;
+    /** The minimum numeric value (NaN if there are no values or the values are not numeric) */
+    public final double Min;
+    /** The maximum numeric value (NaN if there are no values or the values are not numeric) */
+    public final double Max;
+
+    /** Constructor
+     *
+     * @param uniqueValues Unique values
+     * @param dataType General data type
+     * @param numPresent Number of instances that have a value
+     * @param numMissing Number of instances that do not have a value
+     * @param min Minimum numeric value
+     * @param max Maximum numeric value
+     */
+    public DataColumnStatistics(ArrayList<String> uniqueValues, GeneralDataType dataType, int numPresent, int numMissing, double min, double max)
+    {
+        UniqueValues = uniqueValues;
+        DataType = dataType;
+        NumPresent = numPresent;
+        NumMissing = numMissing;
+        Min = min;
+        Max = max;
+    }
+
+    /** Calculates statistics for the specified rows of a column.
+     *
+     * @param column Data column
+     * @param present Rows that have a value and belong to the collection
+     * @param numRows Number of instances in the collection
+     * @return Statistics
+     */
+    public static DataColumnStatistics Calculate(DataColumn column, BitSet present, int numRows)
+    {
+        int numPresent = present.cardinality();
+
+        if (!column.IsNumeric())
+        {
+            // For dictionary-encoded columns, only the codes need to be compared
+            BitSet codes = new BitSet();
+            for (int row = present.nextSetBit(0); row >= 0; row = present.nextSetBit(row + 1))
+                codes.set(column.GetCode(row));
+
+            ArrayList<String> dictionary = column.GetDictionary();
+            ArrayList<String> uniqueValues = new ArrayList<String>(codes.cardinality());
+            for (int code = codes.nextSetBit(0); code >= 0; code = codes.nextSetBit(code + 1))
+                uniqueValues.add(dictionary.get(code));
+
+            return new DataColumnStatistics(uniqueValues, DataTypeUtilities.GetGeneralDataType(uniqueValues), numPresent, numRows - numPresent, Double.NaN, Double.NaN);
+        }
+
+        HashSet<String> uniqueValues = new HashSet<String>();
+        double min = Double.NaN, max = Double.NaN;
+        boolean isBinary = true;
+
+        for (int row = present.nextSetBit(0); row >= 0; row = present.nextSetBit(row + 1))
+        {
+            String value = column.Get(row);
+            uniqueValues.add(value);
+
+            double numericValue = column.GetNumeric(row);
+            if (Double.isNaN(min) || numericValue < min)
+                min = numericValue;
+            if (Double.isNaN(max) || numericValue > max)
+                max = numericValue;
+
+            if (isBinary && !DataTypeUtilities.IsBinary(value))
+                isBinary = false;
+        }
+
+        return new DataColumnStatistics(new ArrayList<String>(uniqueValues), isBinary ? GeneralDataType.Binary : GeneralDataType.Continuous, numPresent, numRows - numPresent, min, max);
+    }
+
+    /** Combines statistics that describe the same data point in two collections (for example, training and test instances).
+     *
+     * @param other Statistics for the other collection (may be null)
+     * @return Combined statistics
+     */
+    public DataColumnStatistics Combine(DataColumnStatistics other)
+    {
+        if (other == null)
+            return this;
+
+        HashSet<String> uniqueValues = new HashSet<String>(UniqueValues);
+        uniqueValues.addAll(other.UniqueValues);
+
+        GeneralDataType dataType = GeneralDataType.Continuous;
+        if (DataType.equals(GeneralDataType.Nominal) || other.DataType.equals(GeneralDataType.Nominal))
+            dataType = GeneralDataType.Nominal;
+        else if (DataType.equals(GeneralDataType.Binary) && other.DataType.equals(GeneralDataType.Binary))
+            dataType = GeneralDataType.Binary;
+
+        return new DataColumnStatistics(new ArrayList<String>(uniqueValues), dataType, NumPresent + other.NumPresent, NumMissing + other.NumMissing, CombineMin(Min, other.Min), CombineMax(Max, other.Max));
+    }
+
+    private static double CombineMin(double a, double b)
+    {
+        if (Double.isNaN(a))
+            return b;
+        if (Double.isNaN(b))
+            return a;
+        return Math.min(a, b);
+    }
+
+    private static double CombineMax(double a, double b)
+    {
+        if (Double.isNaN(a))
+            return b;
+        if (Double.isNaN(b))
+            return a;
+        return Math.max(a, b);
+    }
+}
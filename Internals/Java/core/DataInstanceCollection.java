@@ -22,20 +22,17 @@
 package mlflex.core;
 
 import mlflex.helper.*;
-import mlflex.parallelization.MultiThreadedTaskHandler;
 
-import java.io.UnsupportedEncodingException;
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Random;
-import java.util.concurrent.Callable;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
-/** This class is designed to store all data for a set of data instances. It provides methods that make it easier to create, retrieve, update, and delete data values for these instances.
+/** This class is designed to store all data for a set of data instances. It provides methods that make it easier to create, retrieve, update, and delete data values for these instances. Internally, the values are stored in columns (one per data point), and each data instance corresponds with a row index.
  * @author Stephen Piccolo
  */
 public class DataInstanceCollection implements Iterable<String>
@@ -43,21 +40,58 @@ public class DataInstanceCollection implements Iterable<String>
     /** This value is placed at the end of a file that contains a serialized version of this object. It's used to verify that the entire file was stored properly. */
     public static String END_OF_FILE_MARKER = "[EOF]";
     private static String COMMA_REPLACE_STRING = "_comma_";
-    
-    private HashMap<String, CompactHashMap<Integer, String>> _instances;
-    //private HashMap<String, HashMap<Integer, String>> _instances;
-    private CompactHashMap<String, Integer> _valueIndexMap;
-    //private HashMap<String, Integer> _valueIndexMap;
-    private int _intRefCount;
+    /** This value identifies files that contain a binary snapshot of this object. */
+    private static final String SNAPSHOT_MAGIC = "MLFLEX_SNAPSHOT";
+    /** This value must be incremented whenever the snapshot format changes so that older snapshots are ignored. */
+    private static final int SNAPSHOT_VERSION = 3;
+    /** Snapshots are memory mapped as a single region when they are loaded, so larger snapshots are not saved. */
+    private static final long MAX_SNAPSHOT_BYTES = Integer.MAX_VALUE;
+
+    /** Instance ID for each row index (null for rows that have been removed) */
+    private ArrayList<String> _rowInstanceIDs;
+    /** Row index for each instance ID */
+    private HashMap<String, Integer> _instanceRowMap;
+    /** Column of values for each data point name */
+    private HashMap<String, DataColumn> _columns;
+
+    private ArrayList<String> _sortedIDs = null;
+    private ArrayList<String> _sortedDataPointNames = null;
+
+    /** When this collection is a view, this indicates which rows of the shared columns belong to it (null otherwise) */
+    private BitSet _viewRows = null;
+    /** When this collection is not a view, this indicates which rows belong to data instances that have not been removed */
+    private BitSet _liveRows = null;
+    /** Summary statistics for each data point, which are calculated when first needed and discarded when the data point is modified */
+    private ConcurrentHashMap<String, DataColumnStatistics> _statistics;
+    /** Identifies the contents of the collection from which this collection was derived (null if unknown or if this collection has been modified) */
+    private String _sourceKey = null;
 
     /** Default constructor */
     public DataInstanceCollection()
     {
-        _instances = new HashMap<String, CompactHashMap<Integer, String>>();
-        //_instances = new HashMap<String, HashMap<Integer, String>>();
-        _valueIndexMap  = new CompactHashMap<String, Integer>(COMPACT_TRANSLATOR_STR_INT);
-        //_valueIndexMap  = new HashMap<String, Integer>();
-        _intRefCount = Integer.MIN_VALUE;
+        _rowInstanceIDs = new ArrayList<String>();
+        _liveRows = new BitSet();
+        _instanceRowMap = new HashMap<String, Integer>();
+        _columns = new HashMap<String, DataColumn>();
+        _statistics = new ConcurrentHashMap<String, DataColumnStatistics>();
+    }
+
+    /** Creates a view that shares column storage with another collection. The view is read-only until it is modified, at which point it copies the values it needs.
+     *
+     * @param columns Shared columns (this map is not modified by the view)
+     * @param instanceRowMap Row index in the shared columns for each instance ID (this map is not modified by the view)
+     * @param viewRows Row indices that belong to the view
+     * @param sortedIDs Sorted instance IDs (may be null)
+     * @param statistics Cached summary statistics for the same rows (this map is shared with views that contain the same rows)
+     */
+    private DataInstanceCollection(HashMap<String, DataColumn> columns, HashMap<String, Integer> instanceRowMap, BitSet viewRows, ArrayList<String> sortedIDs, ConcurrentHashMap<String, DataColumnStatistics> statistics)
+    {
+        _rowInstanceIDs = null;
+        _instanceRowMap = instanceRowMap;
+        _columns = columns;
+        _viewRows = viewRows;
+        _sortedIDs = sortedIDs;
+        _statistics = statistics;
     }
 
     /** Adds a data value for a given instance to this collection.
@@ -72,16 +106,102 @@ public class DataInstanceCollection implements Iterable<String>
     		return;
     	
     	dataPointName = MiscUtilities.FormatName(dataPointName);
-    	
-    	Integer intDataPointName = GetIntRef(dataPointName);
 
-    	if (!_instances.containsKey(instanceID))
-    		_instances.put(instanceID, new CompactHashMap<Integer, String>(COMPACT_TRANSLATOR_INT_STR));
-			//_instances.put(instanceID, new HashMap<Integer, String>());
+    	DetachFromSharedColumns();
+    	_statistics.remove(dataPointName);
+
+    	DataColumn column = _columns.get(dataPointName);
+
+    	if (column == null)
+    	{
+    		column = new DataColumn();
+    		_columns.put(dataPointName, column);
+    		_sortedDataPointNames = null;
+    	}
 
-    	_instances.get(instanceID).put(intDataPointName, value);
+    	column.Set(GetOrCreateRow(instanceID), value);
     }
     
+    /** Registers data instances so that values can be added for them in bulk via the AddColumn method.
+     *
+     * @param instanceIDs Data instance IDs
+     * @return Row index for each data instance ID (in the same order)
+     */
+    public int[] AddInstanceIDs(ArrayList<String> instanceIDs)
+    {
+        DetachFromSharedColumns();
+
+        int[] rows = new int[instanceIDs.size()];
+        for (int i = 0; i < rows.length; i++)
+            rows[i] = GetOrCreateRow(instanceIDs.get(i));
+
+        return rows;
+    }
+
+    /** Adds values for a data point in bulk. This avoids the overhead of adding values one at a time when an entire column of values has been parsed at once.
+     *
+     * @param dataPointName Data point name
+     * @param column Column of values; row i of this column contains the value for the data instance at row index rows[i]
+     * @param rows Row indices, as returned by the AddInstanceIDs method
+     */
+    public void AddColumn(String dataPointName, DataColumn column, int[] rows)
+    {
+        dataPointName = MiscUtilities.FormatName(dataPointName);
+
+        DetachFromSharedColumns();
+        _statistics.remove(dataPointName);
+
+        DataColumn existing = _columns.get(dataPointName);
+
+        // As with the Add method, missing values are ignored, so a data point without any values is not stored
+        if (existing == null && !column.IsSparse() && column.GetPresentRows().isEmpty())
+            return;
+
+        boolean rowsMatch = existing == null;
+        for (int i = 0; rowsMatch && i < rows.length; i++)
+            rowsMatch = rows[i] == i;
+
+        // In the most common case, the column can be stored as is
+        if (rowsMatch)
+        {
+            _columns.put(dataPointName, column);
+            _sortedDataPointNames = null;
+            return;
+        }
+
+        // Otherwise the values are copied one at a time (values of sparse columns are stored explicitly in this case)
+        if (existing == null)
+        {
+            existing = new DataColumn(rows.length);
+            _columns.put(dataPointName, existing);
+            _sortedDataPointNames = null;
+        }
+
+        for (int i = 0; i < rows.length; i++)
+        {
+            String value = column.Get(i);
+
+            if (value != null)
+                existing.Set(rows[i], value);
+        }
+    }
+
+    /** Removes any data instances that do not have a value for any data point. This may be necessary after values have been added in bulk.
+     */
+    public void RemoveInstancesWithoutValues()
+    {
+        BitSet rowsWithValues = new BitSet();
+        for (DataColumn column : _columns.values())
+            rowsWithValues.or(GetPresentRows(column));
+
+        ArrayList<String> instanceIDsToRemove = new ArrayList<String>();
+        for (String instanceID : _instanceRowMap.keySet())
+            if (!rowsWithValues.get(_instanceRowMap.get(instanceID)))
+                instanceIDsToRemove.add(instanceID);
+
+        RemoveInstances(instanceIDsToRemove);
+    }
+
     /** For a given data point, this method converts values to zero or one, depending on whether they coincide with the specified value.
      *
      * @param dataPointName Data point name
@@ -90,7 +210,7 @@ public class DataInstanceCollection implements Iterable<String>
     public DataInstanceCollection BinarizeDataPoint(String dataPointName, String oneOption)
     {
         for (String instanceID : this)
-        	Add(dataPointName, instanceID, ConvertToBinary(GetDataPointValue(instanceID, GetIntRef(dataPointName)), oneOption));
+        	Add(dataPointName, instanceID, ConvertToBinary(GetDataPointValue(instanceID, dataPointName), oneOption));
         
         return this;
     }
@@ -115,24 +235,127 @@ public class DataInstanceCollection implements Iterable<String>
      */
     public boolean Contains(String instanceID)
     {
-        return _instances.containsKey(instanceID);
+        return _instanceRowMap.containsKey(instanceID);
     }
 
-    /** Gets a collection of data instances that match the specified data instance IDs.
+    /** Gets a collection of data instances that match the specified data instance IDs. The values are not copied; the result is a view over the columns of this collection. The view copies the values it needs only if it is modified, so the view and this collection should be treated as read-only while both are in use.
     *
     * @param ids Query data instance IDs
     * @return Collection of data instances for specified data instance IDs
     */
    public DataInstanceCollection Get(ArrayList<String> instanceIDs)
    {
-       DataInstanceCollection result = new DataInstanceCollection();
-       
-       result._valueIndexMap = _valueIndexMap;
-       
+       HashMap<String, Integer> instanceRowMap = new HashMap<String, Integer>();
+       BitSet viewRows = new BitSet();
+
        for (String instanceID : instanceIDs)
-			result._instances.put(instanceID, _instances.get(instanceID));
+       {
+           Integer row = _instanceRowMap.get(instanceID);
 
-       return result;
+           if (row != null)
+           {
+               instanceRowMap.put(instanceID, row);
+               viewRows.set(row);
+           }
+       }
+
+       DataInstanceCollection view = new DataInstanceCollection(new HashMap<String, DataColumn>(_columns), instanceRowMap, viewRows, null, new ConcurrentHashMap<String, DataColumnStatistics>());
+       view._sourceKey = _sourceKey;
+       return view;
+   }
+
+   /** Gets another view over the same values as this view. This is inexpensive, so a view that is shared across tasks can give each task its own copy to modify.
+    *
+    * @return View containing the same data instances as this collection
+    */
+   public DataInstanceCollection GetView()
+   {
+       if (_viewRows == null)
+           return Get(GetIDs());
+
+       // Data structures that are shared among views are never modified, so they can be passed along as is
+       DataInstanceCollection view = new DataInstanceCollection(_columns, _instanceRowMap, _viewRows, _sortedIDs, _statistics);
+       view._sourceKey = _sourceKey;
+       return view;
+   }
+
+   /** Gets a value that identifies the contents of the collection from which this collection was derived. Together with the instance IDs and data point names, this identifies the values in this collection, so it can be used to reuse files that were created from the same values.
+    *
+    * @return Source key (null if unknown or if this collection has been modified since the key was assigned)
+    */
+   public String GetSourceKey()
+   {
+       return _sourceKey;
+   }
+
+   /** Assigns a value that identifies the contents of this collection. Collections that are derived from this one will inherit the value. The value is cleared if this collection is modified.
+    *
+    * @param sourceKey Source key
+    */
+   public void SetSourceKey(String sourceKey)
+   {
+       _sourceKey = sourceKey;
+   }
+
+   /** Indicates whether this collection is a view over the columns of another collection.
+    *
+    * @return Whether this collection is a view
+    */
+   public boolean IsView()
+   {
+       return _viewRows != null;
+   }
+
+   /** This method is called before this collection is modified. If this collection is a view, it copies the values that belong to it into new columns so that they can be modified without affecting other collections.
+    */
+   private void DetachFromSharedColumns()
+   {
+       // This is called before any modification, after which the source key no longer describes the values
+       _sourceKey = null;
+
+       if (_viewRows == null)
+           return;
+
+       ArrayList<String> instanceIDs = GetIDs();
+
+       int[] rows = new int[instanceIDs.size()];
+       ArrayList<String> rowInstanceIDs = new ArrayList<String>(instanceIDs.size());
+       HashMap<String, Integer> instanceRowMap = new HashMap<String, Integer>();
+
+       for (int i = 0; i < rows.length; i++)
+       {
+           String instanceID = instanceIDs.get(i);
+           rows[i] = _instanceRowMap.get(instanceID);
+           rowInstanceIDs.add(instanceID);
+           instanceRowMap.put(instanceID, i);
+       }
+
+       HashMap<String, DataColumn> columns = new HashMap<String, DataColumn>();
+       for (String dataPointName : _columns.keySet())
+           columns.put(dataPointName, _columns.get(dataPointName).Project(rows));
+
+       _rowInstanceIDs = rowInstanceIDs;
+       _instanceRowMap = instanceRowMap;
+       _columns = columns;
+       _liveRows = new BitSet();
+       _liveRows.set(0, rows.length);
+       _viewRows = null;
+       // The values have not changed, but the statistics must no longer be shared with other views
+       _statistics = new ConcurrentHashMap<String, DataColumnStatistics>(_statistics);
+   }
+
+   /** Indicates which rows of the specified column have values for the data instances in this collection.
+    *
+    * @param column Data column
+    * @return Rows with values
+    */
+   private BitSet GetPresentRows(DataColumn column)
+   {
+       // Values for removed rows are cleared, so dense columns do not need to be filtered unless this is a view
+       if (_viewRows == null && !column.IsSparse())
+           return column.GetPresentRows();
+
+       return column.GetPresentRows(_viewRows == null ? _liveRows : _viewRows);
    }
     
     /** Gets a list of all data point names across all data instances in the collection.
@@ -141,34 +364,49 @@ public class DataInstanceCollection implements Iterable<String>
     */
    public ArrayList<String> GetDataPointNames()
    {
-       return ListUtilities.SortStringList(new ArrayList<String>(_valueIndexMap.keySet()));
+       if (_sortedDataPointNames == null)
+           _sortedDataPointNames = ListUtilities.SortStringList(new ArrayList<String>(_columns.keySet()));
+
+       return new ArrayList<String>(_sortedDataPointNames);
    }
 
    /** Gets the data point value for specified instance and data point.
    *
    * @param instanceID Instance ID
-   * @param name Data point name
+   * @param dataPointName Data point name
    * @return Data point value
    */
-   private String GetDataPointValue(String instanceID, Integer intDataPointName)
+   public String GetDataPointValue(String instanceID, String dataPointName)
    {
-	   CompactHashMap<Integer, String> instance = _instances.get(instanceID);
-	   //HashMap<Integer, String> instance = _instances.get(instanceID);
-	   
-	   if (instance == null)
+	   Integer row = _instanceRowMap.get(instanceID);
+	   DataColumn column = _columns.get(dataPointName);
+
+	   if (row == null || column == null)
 		   return Settings.MISSING_VALUE_STRING;
-	   
-	   String value = instance.get(intDataPointName);
-	   
+
+	   String value = column.Get(row);
+
 	   if (value == null)
 		   return Settings.MISSING_VALUE_STRING;
-	   
+
 	   return value;
    }
-   
-   public String GetDataPointValue(String instanceID, String dataPointName)
+
+   /** Gets the numeric value for specified instance and data point without converting it to text.
+   *
+   * @param instanceID Instance ID
+   * @param dataPointName Data point name
+   * @return Numeric value (NaN if the value is missing or is not numeric)
+   */
+   public double GetNumericDataPointValue(String instanceID, String dataPointName)
    {
-	   return GetDataPointValue(instanceID, GetIntRef(dataPointName));
+	   Integer row = _instanceRowMap.get(instanceID);
+	   DataColumn column = _columns.get(dataPointName);
+
+	   if (row == null || column == null)
+		   return Double.NaN;
+
+	   return column.GetNumeric(row);
    }
 
 	/** Gets the data point values across all data instances for the specified data point.
@@ -180,7 +418,7 @@ public class DataInstanceCollection implements Iterable<String>
 	{
 	    HashMap<String, String> values = new HashMap<String, String>();
 	
-	    for (String instanceID : _instances.keySet())
+	    for (String instanceID : _instanceRowMap.keySet())
 	        values.put(instanceID, GetDataPointValue(instanceID, dataPointName));
 	
 	    return values;
@@ -207,22 +445,65 @@ public class DataInstanceCollection implements Iterable<String>
      */
     public ArrayList<String> GetIDs()
     {
-        return ListUtilities.SortStringList(new ArrayList<String>(_instances.keySet()));
+        if (_sortedIDs == null)
+            _sortedIDs = ListUtilities.SortStringList(new ArrayList<String>(_instanceRowMap.keySet()));
+
+        return new ArrayList<String>(_sortedIDs);
     }
-    
-    private Integer GetIntRef(String key)
+
+    private int GetOrCreateRow(String instanceID)
     {
-    	Integer intKey = _valueIndexMap.get(key);
+    	Integer row = _instanceRowMap.get(instanceID);
 
-    	if (intKey == null)
+    	if (row == null)
     	{
-    		intKey = new Integer(_intRefCount);
-    		_intRefCount++;
-
-    		_valueIndexMap.put(key, intKey);
+    		row = _rowInstanceIDs.size();
+    		_rowInstanceIDs.add(instanceID);
+    		_instanceRowMap.put(instanceID, row);
+    		_liveRows.set(row);
+    		_sortedIDs = null;
     	}
-    	
-    	return intKey;
+
+    	return row;
+    }
+
+    /** Gets the row index within the columns of this collection for each of the specified data instances. Together with GetColumn, this allows values to be read as primitives without converting them to text.
+     *
+     * @param instanceIDs Data instance IDs
+     * @return Row index for each instance (-1 if the instance is not in this collection)
+     */
+    public int[] GetRows(ArrayList<String> instanceIDs)
+    {
+        int[] rows = new int[instanceIDs.size()];
+
+        for (int i = 0; i < rows.length; i++)
+        {
+            Integer row = _instanceRowMap.get(instanceIDs.get(i));
+            rows[i] = row == null ? -1 : row;
+        }
+
+        return rows;
+    }
+
+    /** Gets the column that stores the values for the specified data point. The column may be shared with other collections, so it must not be modified, and only the rows identified by GetRows belong to this collection.
+     *
+     * @param dataPointName Data point name
+     * @return Data column (or null if there are no values for the data point)
+     */
+    public DataColumn GetColumn(String dataPointName)
+    {
+        return _columns.get(dataPointName);
+    }
+
+    /** Indicates whether all values for the specified data point are stored as primitive numeric values.
+     *
+     * @param dataPointName Data point name
+     * @return Whether the data point is numeric
+     */
+    public boolean IsNumeric(String dataPointName)
+    {
+        DataColumn column = _columns.get(dataPointName);
+        return column != null && column.IsNumeric();
     }
 
     /** Indicates the number of data point names across all data instances in this collection.
@@ -231,7 +512,7 @@ public class DataInstanceCollection implements Iterable<String>
      */
     public int GetNumDataPoints()
     {
-        return _valueIndexMap.size();
+        return _columns.size();
     }
 
     /** Indicates the proportion of missing values across all data instances in this collection.
@@ -242,14 +523,9 @@ public class DataInstanceCollection implements Iterable<String>
     {
         double numNotMissing = 0.0;
 
-        for (String instanceID : _instances.keySet())
-        	for (String dataPointName : _valueIndexMap.keySet())
-        	{
-        		String value = GetDataPointValue(instanceID, dataPointName);
-        		
-        		if (!MiscUtilities.IsMissing(value))
-                    numNotMissing++;
-        	}
+        // Removed rows are cleared, so the bitmaps only contain values for current instances
+        for (DataColumn column : _columns.values())
+            numNotMissing += GetPresentRows(column).cardinality();
 
         double proportionMissing = 1 - (numNotMissing / ((double) Size() * (double) GetNumDataPoints()));
         return MathUtilities.Round(proportionMissing, 3);
@@ -262,22 +538,35 @@ public class DataInstanceCollection implements Iterable<String>
      */
     public ArrayList<String> GetUniqueValues(String dataPointName)
     {
-        HashSet<String> values = new HashSet<String>();
+        return new ArrayList<String>(GetColumnStatistics(dataPointName).UniqueValues);
+    }
 
-        for (String instanceID : _instances.keySet())
+    /** Gets summary statistics (unique values, general data type, missing count, and range) for the specified data point. These are calculated the first time they are requested and then cached until the data point is modified. Views that are derived from the same fold share the cached values.
+     *
+     * @param dataPointName Query data point name
+     * @return Summary statistics (the returned object should not be modified)
+     */
+    public DataColumnStatistics GetColumnStatistics(String dataPointName)
+    {
+        DataColumnStatistics statistics = _statistics.get(dataPointName);
+
+        if (statistics == null)
         {
-            String value = GetDataPointValue(instanceID, dataPointName);
+            DataColumn column = _columns.get(dataPointName);
+
+            if (column == null)
+                return new DataColumnStatistics(new ArrayList<String>(), GeneralDataType.Binary, 0, Size(), Double.NaN, Double.NaN);
 
-            if (!MiscUtilities.IsMissing(value))
-            	values.add(value);
+            statistics = DataColumnStatistics.Calculate(column, GetPresentRows(column), Size());
+            _statistics.put(dataPointName, statistics);
         }
 
-        return new ArrayList<String>(values);
+        return statistics;
     }
     
 	public boolean HasDataPoint(String dataPointName)
 	{
-		return _valueIndexMap.containsKey(dataPointName);
+		return _columns.containsKey(dataPointName);
 	}
     
     public boolean HasDataPoint(String instanceID, String dataPointName)
@@ -296,15 +585,11 @@ public class DataInstanceCollection implements Iterable<String>
      */
     public void RemoveDataPointName(String dataPointName)
     {
-    	Integer intDataPointName = GetIntRef(dataPointName);
-    	
-        for (String instanceID : this)
-        {
-        	if (_instances.containsKey(instanceID))
-                _instances.get(instanceID).remove(intDataPointName);
-        }
-        
-        _valueIndexMap.remove(dataPointName);
+        DetachFromSharedColumns();
+        _statistics.remove(dataPointName);
+
+        if (_columns.remove(dataPointName) != null)
+            _sortedDataPointNames = null;
     }
 
     /** Removes data instances that are in the specified list.
@@ -323,7 +608,21 @@ public class DataInstanceCollection implements Iterable<String>
      */
     public void RemoveInstance(String instanceID)
     {
-    	_instances.remove(instanceID);
+    	DetachFromSharedColumns();
+
+    	Integer row = _instanceRowMap.remove(instanceID);
+
+    	if (row == null)
+    		return;
+
+    	// The row index is not reused, but its values are cleared so they are not included in summaries
+    	_rowInstanceIDs.set(row, null);
+    	_liveRows.clear(row);
+    	for (DataColumn column : _columns.values())
+    		column.Clear(row);
+
+    	_sortedIDs = null;
+    	_statistics.clear();
     }
 
     /** Saves this collection to a text file in a tab-delimited format.
@@ -339,13 +638,127 @@ public class DataInstanceCollection implements Iterable<String>
         return creator.CreateTabDelimitedFile().GetTabDelimitedFilePath();
     }
 
+    /** Saves this collection to a binary snapshot file that can be loaded much more quickly than the raw data can be parsed. The file is first written to a temporary location and then renamed, so other processes never see a partially written snapshot. If the snapshot would be too large to load, it is not saved.
+     *
+     * @param filePath Absolute path to the snapshot file
+     * @param sourceKey Value that identifies the source data (for example, a hash of the raw data file); the snapshot will be loaded only when the same key is specified
+     * @throws Exception
+     */
+    public void SaveSnapshot(String filePath, String sourceKey) throws Exception
+    {
+        ArrayList<String> instanceIDs = GetIDs();
+        ArrayList<String> dataPointNames = GetDataPointNames();
+
+        int[] rows = new int[instanceIDs.size()];
+        for (int i = 0; i < rows.length; i++)
+            rows[i] = _instanceRowMap.get(instanceIDs.get(i));
+
+        FileUtilities.CreateFileDirectoryIfNotExists(filePath);
+        String tempFilePath = filePath + "." + MiscUtilities.GetUniqueID();
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFilePath), 1024 * 1024));
+
+        try
+        {
+            DataColumn.WriteString(out, SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            DataColumn.WriteString(out, sourceKey);
+
+            out.writeInt(instanceIDs.size());
+            for (String instanceID : instanceIDs)
+                DataColumn.WriteString(out, instanceID);
+
+            out.writeInt(dataPointNames.size());
+            for (String dataPointName : dataPointNames)
+            {
+                DataColumn.WriteString(out, dataPointName);
+                _columns.get(dataPointName).Project(rows).Write(out, rows.length);
+            }
+
+            DataColumn.WriteString(out, END_OF_FILE_MARKER);
+        }
+        finally
+        {
+            out.close();
+        }
+
+        FileUtilities.DeleteFile(filePath);
+
+        if (new File(tempFilePath).length() > MAX_SNAPSHOT_BYTES)
+        {
+            Singletons.Log.Debug("The snapshot for " + filePath + " was not saved because it is too large to be loaded.");
+            FileUtilities.DeleteFile(tempFilePath);
+            return;
+        }
+
+        FileUtilities.MoveFile(tempFilePath, filePath);
+    }
+
+    /** Loads a collection from a binary snapshot file. The file is memory mapped rather than read through a stream.
+     *
+     * @param filePath Absolute path to the snapshot file
+     * @param sourceKey Value that identifies the source data; if it does not match the value stored in the snapshot, the snapshot is considered out of date
+     * @return Data instances (or null if the snapshot does not exist, is out of date, or is incomplete)
+     * @throws Exception
+     */
+    public static DataInstanceCollection LoadSnapshot(String filePath, String sourceKey) throws Exception
+    {
+        File file = new File(filePath);
+
+        if (!file.exists() || file.length() > MAX_SNAPSHOT_BYTES)
+            return null;
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+
+        try
+        {
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+
+            if (!DataColumn.ReadString(buffer).equals(SNAPSHOT_MAGIC) || buffer.getInt() != SNAPSHOT_VERSION || !DataColumn.ReadString(buffer).equals(sourceKey))
+                return null;
+
+            DataInstanceCollection instances = new DataInstanceCollection();
+
+            int numInstances = buffer.getInt();
+            for (int row = 0; row < numInstances; row++)
+            {
+                String instanceID = DataColumn.ReadString(buffer);
+                instances._rowInstanceIDs.add(instanceID);
+                instances._instanceRowMap.put(instanceID, row);
+                instances._liveRows.set(row);
+            }
+
+            int numDataPoints = buffer.getInt();
+            for (int i = 0; i < numDataPoints; i++)
+            {
+                String dataPointName = DataColumn.ReadString(buffer);
+                instances._columns.put(dataPointName, DataColumn.Read(buffer, numInstances));
+            }
+
+            if (!DataColumn.ReadString(buffer).equals(END_OF_FILE_MARKER))
+                return null;
+
+            return instances;
+        }
+        catch (RuntimeException ex)
+        {
+            // A truncated or corrupted snapshot is not fatal because the raw data can be parsed again
+            Singletons.Log.Debug("The snapshot at " + filePath + " could not be read: " + ex.getMessage());
+            return null;
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+    }
+
     /** Indicates the number of data instances in this collection.
      *
      * @return Number of data instances in this collection
      */
     public int Size()
     {
-        return _instances.size();
+        return _instanceRowMap.size();
     }
 
     public Iterator<String> iterator()
@@ -402,98 +815,4 @@ public class DataInstanceCollection implements Iterable<String>
         str = str.substring(0, str.length()-1);
         return str;
     }
-    
-    // http://www.nayuki.io/res/compact-hash-map-java/CompactHashMapDemo.java
-	private static final CompactMapTranslator<Integer, String> COMPACT_TRANSLATOR_INT_STR = new CompactMapTranslator<Integer, String>() {		
-		public boolean isKeyInstance(Object obj) {
-			return obj instanceof Integer;
-		}
-		
-		public int getHash(Integer key) {
-			return key.hashCode();
-		}
-		
-		public byte[] serialize(Integer key, String value) {
-			try {
-				byte[] packed = value.getBytes("UTF-8");
-				int off = packed.length;
-				packed = Arrays.copyOf(packed, off + 4);
-				int val = key;
-				packed[off + 0] = (byte)(val >>> 24);
-				packed[off + 1] = (byte)(val >>> 16);
-				packed[off + 2] = (byte)(val >>>  8);
-				packed[off + 3] = (byte)(val >>>  0);
-				return packed;
-			} catch (UnsupportedEncodingException e) {
-				throw new AssertionError(e);
-			}
-		}
-
-		public Integer deserializeKey(byte[] packed) {
-			int n = packed.length;
-			return (packed[n - 1] & 0xFF) | (packed[n - 2] & 0xFF) << 8 | (packed[n - 3] & 0xFF) << 16 | packed[n - 4] << 24;
-		}
-		
-		public String deserializeValue(byte[] packed) {
-			try {
-				return new String(packed, 0, packed.length - 4, "UTF-8");
-			} catch (UnsupportedEncodingException e) {
-				throw new AssertionError(e);
-			}
-		}
-	};
-
-	//http://www.nayuki.io/res/compact-hash-map-java/CompactHashMapDemo.java
-	private static final CompactMapTranslator<String,Integer> COMPACT_TRANSLATOR_STR_INT = new CompactMapTranslator<String,Integer>() {
-		
-		public boolean isKeyInstance(Object obj) {
-			return obj instanceof String;
-		}
-		
-		
-		public int getHash(String key) {
-			int state = 0;
-			for (int i = 0; i < key.length(); i++) {
-				state += key.charAt(i);
-				for (int j = 0; j < 4; j++) {
-					state *= 0x7C824F73;
-					state ^= 0x5C12FE83;
-					state = Integer.rotateLeft(state, 5);
-				}
-			}
-			return state;
-		}
-		
-		
-		public byte[] serialize(String key, Integer value) {
-			try {
-				byte[] packed = key.getBytes("UTF-8");
-				int off = packed.length;
-				packed = Arrays.copyOf(packed, off + 4);
-				int val = value;
-				packed[off + 0] = (byte)(val >>> 24);
-				packed[off + 1] = (byte)(val >>> 16);
-				packed[off + 2] = (byte)(val >>>  8);
-				packed[off + 3] = (byte)(val >>>  0);
-				return packed;
-			} catch (UnsupportedEncodingException e) {
-				throw new AssertionError(e);
-			}
-		}
-		
-		
-		public String deserializeKey(byte[] packed) {
-			try {
-				return new String(packed, 0, packed.length - 4, "UTF-8");
-			} catch (UnsupportedEncodingException e) {
-				throw new AssertionError(e);
-			}
-		}
-		
-		
-		public Integer deserializeValue(byte[] packed) {
-			int n = packed.length;
-			return (packed[n - 1] & 0xFF) | (packed[n - 2] & 0xFF) << 8 | (packed[n - 3] & 0xFF) << 16 | packed[n - 4] << 24;
-		}
-	};
 }
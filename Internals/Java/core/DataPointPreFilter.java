@@ -0,0 +1,233 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.core;
+
+import mlflex.dataprocessors.AbstractDataProcessor;
+import mlflex.parallelization.MultiThreadedTaskHandler;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+
+/** This class removes data points that are unlikely to be useful before any feature selection or classification is performed, so they are not passed to every algorithm. Data points can be removed for the following reasons (each can be configured in the experiment file):
+ *
+ * Missing: More values are missing than the proportion that is allowed for the data processor (PRE_FILTER_MAX_PROPORTION_MISSING overrides the data processor's setting)
+ * Constant: All values that are not missing are the same (PRE_FILTER_REMOVE_CONSTANT=true)
+ * FewUniqueValues: There are fewer unique values than the specified number (PRE_FILTER_MIN_UNIQUE_VALUES)
+ * LowVariance: The data point is numeric and its variance is not among the highest, when the number of data points is limited (PRE_FILTER_MAX_DATA_POINTS); data points that are not numeric are not affected
+ *
+ * The values needed to evaluate each data point are calculated in a single pass over the data points, which is executed in parallel. Unique values are counted only until the thresholds are reached, and no statistics are cached, so wide data sets do not use more memory after filtering.
+ * @author Stephen Piccolo
+ */
+public class DataPointPreFilter
+{
+    /** The data points are divided into this many groups per thread, so that threads that finish early can help with the remaining groups */
+    private static final int NUM_GROUPS_PER_THREAD = 4;
+
+    private final double _maxProportionMissing;
+    private final boolean _removeConstant;
+    private final int _minUniqueValues;
+    private final int _maxDataPoints;
+
+    /** Constructor
+     *
+     * @param processor Data processor whose data will be filtered
+     * @throws Exception
+     */
+    public DataPointPreFilter(AbstractDataProcessor processor) throws Exception
+    {
+        _maxProportionMissing = Singletons.Config.GetPreFilterMaxProportionMissing(processor.GetMaxProportionMissingPerDataPoint());
+        _removeConstant = Singletons.Config.GetPreFilterRemoveConstant();
+        _minUniqueValues = Singletons.Config.GetPreFilterMinUniqueValues();
+        _maxDataPoints = Singletons.Config.GetPreFilterMaxDataPoints();
+    }
+
+    /** Removes data points that do not pass the filter.
+     *
+     * @param instances Data instances (these are modified)
+     * @return The reason for removing each data point that was removed
+     * @throws Exception
+     */
+    public LinkedHashMap<String, String> Apply(final DataInstanceCollection instances) throws Exception
+    {
+        final ArrayList<String> dataPointNames = instances.GetDataPointNames();
+        final String[] reasons = new String[dataPointNames.size()];
+        final double[] variances = new double[dataPointNames.size()];
+        final int[] rows = instances.GetRows(instances.GetIDs());
+
+        int groupSize = Math.max(1, (int)Math.ceil((double)dataPointNames.size() / (Settings.NUM_THREADS * NUM_GROUPS_PER_THREAD)));
+        MultiThreadedTaskHandler taskHandler = new MultiThreadedTaskHandler("pre-filtering data points");
+
+        for (int groupStart = 0; groupStart < dataPointNames.size(); groupStart += groupSize)
+        {
+            final int start = groupStart;
+            final int end = Math.min(groupStart + groupSize, dataPointNames.size());
+
+            taskHandler.Add(new Callable<Object>()
+            {
+                public Object call() throws Exception
+                {
+                    for (int i = start; i < end; i++)
+                    {
+                        DataColumn column = instances.GetColumn(dataPointNames.get(i));
+                        reasons[i] = GetReason(column, rows);
+                        variances[i] = GetVariance(column, rows);
+                    }
+
+                    return Boolean.TRUE;
+                }
+            });
+        }
+
+        taskHandler.Execute();
+
+        if (_maxDataPoints > 0)
+            ApplyVarianceLimit(reasons, variances);
+
+        LinkedHashMap<String, String> removed = new LinkedHashMap<String, String>();
+        for (int i = 0; i < dataPointNames.size(); i++)
+            if (reasons[i] != null)
+            {
+                instances.RemoveDataPointName(dataPointNames.get(i));
+                removed.put(dataPointNames.get(i), reasons[i]);
+            }
+
+        return removed;
+    }
+
+    /** Indicates why a data point should be removed, based on how many of its values are missing and how many unique values it has. Numeric values are compared numerically.
+     *
+     * @param column Values for the data point (may be null)
+     * @param rows Row index of each data instance within the column
+     * @return Reason (or null if the data point should not be removed)
+     */
+    private String GetReason(DataColumn column, int[] rows)
+    {
+        // There is no need to count unique values beyond the number that would cause the data point to be kept
+        int maxUniqueValues = Math.max(_removeConstant ? 2 : 0, _minUniqueValues);
+
+        int numMissing = 0;
+        int numUniqueValues = 0;
+        HashSet<Double> numericValues = new HashSet<Double>();
+        BitSet codes = new BitSet();
+
+        for (int row : rows)
+        {
+            if (column == null || column.IsMissing(row))
+            {
+                numMissing++;
+                continue;
+            }
+
+            if (numUniqueValues >= maxUniqueValues)
+                continue;
+
+            if (column.IsNumeric())
+            {
+                if (numericValues.add(column.GetNumeric(row)))
+                    numUniqueValues++;
+            }
+            else
+            {
+                int code = column.GetCode(row);
+
+                if (!codes.get(code))
+                {
+                    codes.set(code);
+                    numUniqueValues++;
+                }
+            }
+        }
+
+        if (rows.length > 0 && (double)numMissing / rows.length > _maxProportionMissing)
+            return "Missing";
+        if (_removeConstant && numUniqueValues <= 1)
+            return "Constant";
+        if (numUniqueValues < _minUniqueValues)
+            return "FewUniqueValues";
+
+        return null;
+    }
+
+    /** Calculates the variance of the values for a numeric data point.
+     *
+     * @param column Values for the data point (may be null)
+     * @param rows Row index of each data instance within the column
+     * @return Variance (NaN if the data point is not numeric or has no values)
+     */
+    private static double GetVariance(DataColumn column, int[] rows)
+    {
+        if (column == null || !column.IsNumeric())
+            return Double.NaN;
+
+        int count = 0;
+        double mean = 0;
+        double sumSquares = 0;
+
+        // Welford's method avoids the loss of precision that can occur when squares are summed directly
+        for (int row : rows)
+        {
+            double value = column.GetNumeric(row);
+            if (Double.isNaN(value))
+                continue;
+
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            sumSquares += delta * (value - mean);
+        }
+
+        return count == 0 ? Double.NaN : sumSquares / count;
+    }
+
+    /** Marks numeric data points for removal if their variance is not among the highest. Data points that have already been marked for removal do not count toward the limit.
+     *
+     * @param reasons Reason for removing each data point (null if it should be kept), which is updated
+     * @param variances Variance of each data point (NaN if not numeric)
+     */
+    private void ApplyVarianceLimit(String[] reasons, final double[] variances)
+    {
+        ArrayList<Integer> candidates = new ArrayList<Integer>();
+        for (int i = 0; i < reasons.length; i++)
+            if (reasons[i] == null && !Double.isNaN(variances[i]))
+                candidates.add(i);
+
+        if (candidates.size() <= _maxDataPoints)
+            return;
+
+        // Data points with the same variance remain in alphabetical order
+        Collections.sort(candidates, new Comparator<Integer>()
+        {
+            public int compare(Integer index1, Integer index2)
+            {
+                return Double.compare(variances[index2], variances[index1]);
+            }
+        });
+
+        for (int i = _maxDataPoints; i < candidates.size(); i++)
+            reasons[candidates.get(i)] = "LowVariance";
+    }
+}
@@ -31,7 +31,7 @@ import java.util.ArrayList;
  */
 public class DescriptionFileSaver
 {
-    /** This method saves various description files to the output. These tasks are quick to execute, so they are grouped together rather than parallelized.
+    /** This method saves various description files to the output. These files are the same for all iterations. These tasks are quick to execute, so they are grouped together rather than parallelized.
      *
      * @throws Exception
      */
@@ -54,7 +54,17 @@ public class DescriptionFileSaver
 
             if (Settings.NeedToSelectFeatures())
                 FileUtilities.CopyFile(Settings.FEATURE_SELECTION_ALGORITHMS_FILE, Settings.GetOutputSettingsDir(false) + new File(Settings.FEATURE_SELECTION_ALGORITHMS_FILE).getName());
+        }
+    }
 
+    /** This method saves description files that are specific to the current iteration, such as cross-validation assignments.
+     *
+     * @throws Exception
+     */
+    public void SaveIterationDescriptionFiles() throws Exception
+    {
+        if (Settings.NeedToClassify())
+        {
             SaveExcludedTrainingIDInfo();
             SaveCrossValidationAssignments();
         }
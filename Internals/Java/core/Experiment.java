@@ -28,12 +28,13 @@ import mlflex.helper.FileUtilities;
 import mlflex.helper.MapUtilities;
 import mlflex.helper.Vacuum;
 import mlflex.parallelization.LockedCallable;
+import mlflex.parallelization.LockedTaskGraph;
 import mlflex.parallelization.MultiThreadedTaskHandler;
 import mlflex.parallelization.TaskGenerator;
 
 import java.util.ArrayList;
 import java.util.Random;
-import java.util.concurrent.Callable;
+import java.util.concurrent.*;
 
 /** This class contains high-level commands for executing tasks within a given experiment. It makes sure steps are performed in the correct order and verifies that all prerequisite steps are performed before moving to the next step.
  *
@@ -53,7 +54,33 @@ public class Experiment
         Name = name;
     }
 
-    /** This method orchestrates the computational tasks that will be performed for an experiment, depending on what is requested by the user. It is also intended to provide a high-level view of the workflow that is followed in an experiment.
+    /** This method orchestrates the computational tasks that will be performed for all iterations of an experiment. Iterations are executed one after another unless NUM_PARALLEL_ITERATIONS has been set to a value larger than one at the command line, in which case that many iterations are executed at the same time (see ProcessIterationsConcurrently).
+     *
+     * @param action The action to be orchestrated
+     * @param iterations Contexts of the iterations to be executed
+     * @throws Exception
+     */
+    public void Orchestrate(Action action, ArrayList<IterationContext> iterations) throws Exception
+    {
+        if (action.equals(Action.Process) && Settings.NUM_PARALLEL_ITERATIONS > 1 && iterations.size() > 1)
+        {
+            if (IsDataSharedAcrossIterations())
+            {
+                ProcessIterationsConcurrently(iterations);
+                return;
+            }
+
+            Singletons.Log.Info("The data in memory differ across iterations, so the iterations will be executed one after another.");
+        }
+
+        for (IterationContext iteration : iterations)
+        {
+            IterationContext.SetDefault(iteration);
+            Orchestrate(action);
+        }
+    }
+
+    /** This method orchestrates the computational tasks that will be performed for the current iteration of an experiment, depending on what is requested by the user. It is also intended to provide a high-level view of the workflow that is followed in an experiment.
      *
      * @param action The action to be orchestrated
      * @throws Exception
@@ -68,7 +95,119 @@ public class Experiment
 
             return;
         }
-        
+
+        PrepareIteration();
+
+        // Short circuit the current iteration of the experiment if it has already been completed
+        if (IsIterationComplete())
+        {
+            PrintIterationCompleteMessage();
+            return;
+        }
+
+        // Save files that describe the settings used for this experiment
+        SaveExperimentDescriptionFiles();
+
+        EvaluateIteration();
+
+        if (Config.IsLastIteration())
+            SaveExperimentSummaries();
+
+        IndicateIterationComplete();
+    }
+
+    /** This method processes multiple iterations of an experiment at the same time. The data are prepared once, in the first iteration, and shared by all iterations; then the iterations are evaluated concurrently, with their tasks sharing the threads that have been specified at the command line. Summaries that span all iterations are saved after every iteration has been evaluated.
+     *
+     * @param iterations Contexts of the iterations to be executed
+     * @throws Exception
+     */
+    private void ProcessIterationsConcurrently(ArrayList<IterationContext> iterations) throws Exception
+    {
+        final IterationContext firstIteration = iterations.get(0);
+        IterationContext lastIteration = iterations.get(iterations.size() - 1);
+
+        IterationContext.SetDefault(firstIteration);
+        PrepareIteration();
+
+        ArrayList<Callable<Object>> callables = new ArrayList<Callable<Object>>();
+
+        for (final IterationContext iteration : iterations)
+            callables.add(IterationContext.Wrap(iteration, new Callable<Object>()
+            {
+                public Object call() throws Exception
+                {
+                    // The data for the first iteration have already been prepared
+                    if (iteration != firstIteration)
+                        PrepareIteration();
+
+                    if (!IsIterationComplete())
+                    {
+                        EvaluateIteration();
+
+                        // The last iteration is not complete until the summaries have been saved
+                        if (!Config.IsLastIteration())
+                            IndicateIterationComplete();
+                    }
+
+                    return null;
+                }
+            }));
+
+        Singletons.Log.Debug("Executing " + iterations.size() + " iterations, " + Settings.NUM_PARALLEL_ITERATIONS + " at a time.");
+
+        ExecutorService service = Executors.newFixedThreadPool(Math.min(Settings.NUM_PARALLEL_ITERATIONS, iterations.size()));
+
+        try
+        {
+            for (Future<Object> future : service.invokeAll(callables))
+            {
+                try
+                {
+                    future.get();
+                }
+                catch (ExecutionException ex)
+                {
+                    throw ex.getCause() instanceof Exception ? (Exception)ex.getCause() : ex;
+                }
+            }
+        }
+        finally
+        {
+            // Very important to shut down the service
+            service.shutdown();
+        }
+
+        IterationContext.SetDefault(lastIteration);
+
+        // These files are the same for all iterations, so they are saved once after the iterations have been evaluated (when all settings that were used have been recorded) rather than by each iteration
+        SaveExperimentDescriptionFiles();
+
+        if (IsIterationComplete())
+        {
+            PrintIterationCompleteMessage();
+            return;
+        }
+
+        SaveExperimentSummaries();
+        IndicateIterationComplete();
+    }
+
+    /** Indicates whether the data that are stored in memory are the same for all iterations, which is necessary for iterations to be executed at the same time. This is not the case if data must be loaded again for each iteration (random or aggregate data processors) or if dependent-variable values are permuted in each iteration.
+     *
+     * @return Whether the data are the same for all iterations
+     * @throws Exception
+     */
+    private boolean IsDataSharedAcrossIterations() throws Exception
+    {
+        return !Singletons.InstanceVault.IsReloadedEachIteration() && !Singletons.Config.GetBooleanValue("PERMUTE_DEPENDENT_VARIABLE_VALUES", "false");
+    }
+
+    /** This method prepares the data that will be used in the current iteration of an experiment.
+     *
+     * @throws Exception
+     */
+    private void PrepareIteration() throws Exception
+    {
         // Set and save random seed so that all nodes use the same random seed for each iteration.
         SetRandomSeed();
 
@@ -81,18 +220,18 @@ public class Experiment
 
         // Load data into memory before performing evaluation steps
         Singletons.InstanceVault.PrepareDataInstances();
-        
-        // Short circuit the current iteration of the experiment if it has already been completed
-        if (IsIterationComplete())
-        {
-            PrintIterationCompleteMessage();
-            return;
-        }
-               
-        if (Singletons.Config.GetBooleanValue("PERMUTE_DEPENDENT_VARIABLE_VALUES", "false")) 
+    }
+
+    /** This method performs feature selection and classification for the current iteration of an experiment and saves the results.
+     *
+     * @throws Exception
+     */
+    private void EvaluateIteration() throws Exception
+    {
+        if (Singletons.Config.GetBooleanValue("PERMUTE_DEPENDENT_VARIABLE_VALUES", "false"))
         { 
             Singletons.Log.Debug("Permuting class labels");
-            Singletons.InstanceVault.DependentVariableInstances = MapUtilities.PermuteIDs(Singletons.InstanceVault.DependentVariableInstances, new Random(Singletons.RandomSeed)); 
+            Singletons.InstanceVault.DependentVariableInstances = MapUtilities.PermuteIDs(Singletons.InstanceVault.DependentVariableInstances, new Random(IterationContext.Current().RandomSeed)); 
         }
         
         // Initialize cross-validation assignments
@@ -107,46 +246,34 @@ public class Experiment
             ExportDataFiles();
         }
 
-        // Save files that describe the settings used for this experiment
-        SaveExperimentDescriptionFiles();
+        // Save files that describe the cross-validation assignments, etc. for this iteration
+        SaveIterationDescriptionFiles();
 
         // Determine the models that need to be generated across all algorithms, cross-validation folds, numbers of features, etc.
         ArrayList<ModelSelector> modelSelectors = ModelSelector.GetAllModelSelectors();
 
-        // Do we need to evaluate inner cross-validation folds?
-        boolean evaluateInner = Settings.NeedToEvaluateInnerFolds();
-
-        // Perform feature selection
-        SelectFeatures(evaluateInner);
-
-        // Perform classification for individual learners
-        MakePredictions(modelSelectors, evaluateInner);
-
-        // Perform classification for ensemble learners
-        MakeEnsemblePredictions(modelSelectors, evaluateInner);
-
-        // Calculate and save results for individual data / algorithm combinations
-        SaveFeatureSelectionResults();
-        SaveClassificationResults(modelSelectors, evaluateInner);
-        SaveEnsembleResults();
+        // Perform feature selection and classification (individual and ensemble learners), then calculate and save results for individual data / algorithm combinations. Each task starts as soon as the tasks it depends on have been completed.
+        ExecuteEvaluationTasks(modelSelectors, Settings.NeedToEvaluateInnerFolds());
+    }
 
+    /** This method saves summaries of results across all iterations and all combinations of algorithms, generates the final report, and cleans up. It is executed in the context of the last iteration.
+     *
+     * @throws Exception
+     */
+    private void SaveExperimentSummaries() throws Exception
+    {
         // Calculate and save multi-iteration results summaries (when there are multiple iterations)
-        if (Singletons.Config.GetNumIterations() > 1 && Config.IsLastIteration())
-            SaveMultiIterationResultsSummaries(evaluateInner);
-
-        if (Config.IsLastIteration())
-        {
-            // Save overall results summaries
-            SaveOverallResultsSummaries();
+        if (Singletons.Config.GetNumIterations() > 1)
+            SaveMultiIterationResultsSummaries(Settings.NeedToEvaluateInnerFolds());
 
-            // Generate final report
-            SaveReport();
+        // Save overall results summaries
+        SaveOverallResultsSummaries();
 
-            // Clean up any temporary files, etc. that are inadvertently left over
-            new Vacuum().Clean();
-        }
+        // Generate final report
+        SaveReport();
 
-        IndicateIterationComplete();
+        // Clean up any temporary files, etc. that are inadvertently left over
+        new Vacuum().Clean();
     }
 
     /** This method deletes any files that might exist from previous runs of this experiment so the current experiment can start from scratch.
@@ -156,6 +283,7 @@ public class Experiment
     private void Reset() throws Exception
     {
         new MultiThreadedTaskHandler("reset").Add(TaskGenerator.GetResetTasks()).Execute();
+        FeatureSelectionEvaluator.ClearSelectedFeaturesCache();
     }
 
     /** This method explains to the user that the current iteration of the experiment has previously been completed. If it is the last (or only) iteration, the user is advised to reset the experiment.
@@ -165,7 +293,7 @@ public class Experiment
     private void PrintIterationCompleteMessage() throws Exception
     {
         String allCompleteMessage = "This experiment was previously completed successfully. To re-run it, you must first run the experiment with ACTION=Reset specified at the command line. This will delete results from the previous execution. Then run the experiment with ACTION=Process specified.";
-        String iterationCompleteMessage = "Iteration " + Singletons.Iteration + " was previously completed successfully.";
+        String iterationCompleteMessage = "Iteration " + IterationContext.Current().Iteration + " was previously completed successfully.";
 
         if (Config.IsLastIteration())
             Singletons.Log.Info(allCompleteMessage);
@@ -186,7 +314,7 @@ public class Experiment
         MultiThreadedTaskHandler.ExecuteLockTasks("Set random seed", TaskGenerator.GetRandomSeedTask(randomSeedFilePath));
 
         // Get the saved seed
-        Singletons.RandomSeed = Long.parseLong(FileUtilities.ReadScalarFromFile(randomSeedFilePath));
+        IterationContext.Current().RandomSeed = Long.parseLong(FileUtilities.ReadScalarFromFile(randomSeedFilePath));
     }
 
 //    /** Parses and filters and saves all raw analysis data into the ML-Flex native format.
@@ -198,7 +326,7 @@ public class Experiment
 //        MultiThreadedTaskHandler.ExecuteLockTasks("Process raw analysis data", TaskGenerator.GetProcessRawAnalysisDataTasks());
 //    }
 
-    /** Saves files that describe the experiment being executed. These files indicate experiment and configuration settings, cross-validation assignments, etc.
+    /** Saves files that describe the experiment being executed. These files indicate experiment and configuration settings, etc. They are the same for all iterations, so when iterations are executed at the same time, they are saved only once, after the iterations have been evaluated.
      *
      * @throws Exception
      */
@@ -207,76 +335,47 @@ public class Experiment
         MultiThreadedTaskHandler.ExecuteLockTasks("Save experiment description files", TaskGenerator.GetSaveExperimentDescriptionFilesTasks());
     }
 
-    /** Saves summary information for each data processor.
+    /** Saves files that describe the current iteration of the experiment, such as cross-validation assignments.
      *
      * @throws Exception
      */
-    private void SaveStatistics() throws Exception
+    private void SaveIterationDescriptionFiles() throws Exception
     {
-        MultiThreadedTaskHandler.ExecuteLockTasks("Save statistics", TaskGenerator.GetSaveStatisticsTasks());
+        MultiThreadedTaskHandler.ExecuteLockTasks("Save iteration description files", TaskGenerator.GetSaveIterationDescriptionFilesTasks());
     }
 
-    /** Performs feature selection across all algorithms and data processors that have been specified.
+    /** Saves summary information for each data processor.
      *
-     * @param evaluateInner Whether feature selection needs to be performed for inner cross-validation folds
      * @throws Exception
      */
-    private void SelectFeatures(boolean evaluateInner) throws Exception
+    private void SaveStatistics() throws Exception
     {
-        MultiThreadedTaskHandler.ExecuteLockTasks("Select features", TaskGenerator.GetSelectFeaturesTasks(evaluateInner));
+        MultiThreadedTaskHandler.ExecuteLockTasks("Save statistics", TaskGenerator.GetSaveStatisticsTasks());
     }
 
-    /** Makes predictions (classifies) for all algorithms and data processors that have been specified.
+    /** Performs feature selection, makes predictions for individual and ensemble learners, and saves the results for all algorithms and data processors that have been specified. Rather than executing these as separate phases, the tasks are executed as a dependency graph so that, for example, predictions for a cross-validation fold can be made as soon as features have been selected for that fold.
      *
      * @param modelSelectors List of model selectors that indicate combinations of algorithms and data processors
-     * @param evaluateInner Whether classification needs to be performed for inner cross-validation folds
+     * @param evaluateInner Whether feature selection and classification need to be performed for inner cross-validation folds
      * @throws Exception
      */
-    private void MakePredictions(ArrayList<ModelSelector> modelSelectors, boolean evaluateInner) throws Exception
+    private void ExecuteEvaluationTasks(ArrayList<ModelSelector> modelSelectors, boolean evaluateInner) throws Exception
     {
-        MultiThreadedTaskHandler.ExecuteLockTasks("Make predictions", TaskGenerator.GetMakePredictionsTasks(modelSelectors, evaluateInner));
-    }
+        LockedTaskGraph taskGraph = new LockedTaskGraph("Select features, make predictions, and save results");
 
-    /** Makes ensemble learner predictions for all ensemble learners that have been specified.
-     *
-     * @param modelSelectors List of model selectors that indicate combinations of algorithms and data processors
-     * @param evaluateInner Whether classification needs to be performed for inner cross-validation folds
-     * @throws Exception
-     */
-    private void MakeEnsemblePredictions(ArrayList<ModelSelector> modelSelectors, boolean evaluateInner) throws Exception
-    {
-        if (Settings.NeedToEnsembleLearn())
-            MultiThreadedTaskHandler.ExecuteLockTasks("Make ensemble predictions", TaskGenerator.GetMakeEnsemblePredictionsTasks(modelSelectors, evaluateInner));
-    }
+        taskGraph.Add(TaskGenerator.GetSelectFeaturesTasks(evaluateInner));
+        taskGraph.Add(TaskGenerator.GetMakePredictionsTasks(modelSelectors, evaluateInner));
 
-    /** Saves feature selection results.
-     *
-     * @throws Exception
-     */
-    private void SaveFeatureSelectionResults() throws Exception
-    {
-        MultiThreadedTaskHandler.ExecuteLockTasks("Save feature selection results", TaskGenerator.GetSaveFeatureSelectionResultsTasks());
-    }
+        if (Settings.NeedToEnsembleLearn())
+            taskGraph.Add(TaskGenerator.GetMakeEnsemblePredictionsTasks(modelSelectors, evaluateInner));
 
-    /** Saves results for individual learners.
-     *
-     * @param modelSelectors List of model selectors that indicate combinations of algorithms and data processors
-     * @param evaluateInner Whether classification needs to be performed for inner cross-validation folds
-     * @throws Exception
-     */
-    private void SaveClassificationResults(ArrayList<ModelSelector> modelSelectors, boolean evaluateInner) throws Exception
-    {
-        MultiThreadedTaskHandler.ExecuteLockTasks("Save classification results", TaskGenerator.GetSaveClassificationResultsTasks(modelSelectors, evaluateInner));
-    }
+        taskGraph.Add(TaskGenerator.GetSaveFeatureSelectionResultsTasks());
+        taskGraph.Add(TaskGenerator.GetSaveClassificationResultsTasks(modelSelectors, evaluateInner));
 
-    /** Saves results for ensemble learners.
-     *
-     * @throws Exception
-     */
-    private void SaveEnsembleResults() throws Exception
-    {
         if (Settings.NeedToEnsembleLearn())
-            MultiThreadedTaskHandler.ExecuteLockTasks("Save ensemble results", TaskGenerator.GetSaveEnsembleResultsTasks());
+            taskGraph.Add(TaskGenerator.GetSaveEnsembleResultsTasks());
+
+        taskGraph.Execute();
     }
 
     /** Saves summary files that provide an overview of results that span all iterations (if more than one was executed).
@@ -25,9 +25,11 @@ import mlflex.dataprocessors.AbstractDataProcessor;
 import mlflex.helper.FileUtilities;
 import mlflex.helper.ListUtilities;
 import mlflex.parallelization.LockedCallable;
+import mlflex.parallelization.TaskCostHistory;
 
 import java.util.ArrayList;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 
 /** This class coordinates the process of selecting/ranking features for each combination of data processor, feature-selection algorithm, and cross-validation fold.
  * @author Stephen Piccolo
@@ -41,7 +43,8 @@ public class FeatureSelectionEvaluator
     /** The cross-validation fold number */
     public final int OuterFold;
 
-    private ArrayList<String> _allFeatures;
+    /** Features that have been selected, in ranked order, for each file in which they are saved. The file path identifies the iteration, data processor, algorithm, and cross-validation fold(s), so this cache is shared by all instances of this class in the process. */
+    private static final ConcurrentHashMap<String, ArrayList<String>> _selectedFeaturesCache = new ConcurrentHashMap<String, ArrayList<String>>();
 
     /** Constructor
      *
@@ -54,13 +57,16 @@ public class FeatureSelectionEvaluator
         Processor = processor;
         SelectionAlgorithm = fsAlgorithm;
         OuterFold = outerFold;
+    }
 
-        _allFeatures = Singletons.InstanceVault.GetDataPointsForAnalysis(Processor);
+    private ArrayList<String> GetAllFeatures() throws Exception
+    {
+        return Singletons.InstanceVault.GetDataPointsForAnalysis(Processor);
     }
 
     private String GetSaveDirectory()
     {
-        return Settings.FEATURE_SELECTION_DIR + Processor + "/" + SelectionAlgorithm + "/OuterFold" + OuterFold + "/";
+        return IterationContext.Current().FeatureSelectionDir + Processor + "/" + SelectionAlgorithm + "/OuterFold" + OuterFold + "/";
     }
 
     private String GetOuterSaveFilePath()
@@ -75,15 +81,24 @@ public class FeatureSelectionEvaluator
 
     private String GetStatusFilePrefix()
     {
-        return GetSaveDirectory().replace(Settings.FEATURE_SELECTION_DIR, "SelectedFeatures/");
+        return GetSaveDirectory().replace(IterationContext.Current().FeatureSelectionDir, "SelectedFeatures/");
     }
 
-    private String GetOuterStatusFilePath()
+    /** Indicates the relative path to the status file for the task that selects features for the outer cross-validation fold. Other tasks can use this path to declare a dependency on that task.
+     *
+     * @return Relative status file path
+     */
+    public String GetOuterStatusFilePath()
     {
         return GetStatusFilePrefix() + GetOuterFoldFileName();
     }
 
-    private String GetInnerStatusFilePath(int innerFold)
+    /** Indicates the relative path to the status file for the task that selects features for a given inner cross-validation fold. Other tasks can use this path to declare a dependency on that task.
+     *
+     * @param innerFold Number of inner cross-validation fold
+     * @return Relative status file path
+     */
+    public String GetInnerStatusFilePath(int innerFold)
     {
         return GetStatusFilePrefix() + GetInnerFoldFileName(innerFold);
     }
@@ -130,10 +145,15 @@ public class FeatureSelectionEvaluator
         // This object will store the parallelizable tasks
         ArrayList<LockedCallable> callables = new ArrayList<LockedCallable>();
 
+        // The same features are available in every fold
+        int numFeatures = GetAllFeatures().size();
+
         if (evaluateInner)
         {
             for (final int innerFold : Singletons.InstanceVault.GetCrossValidationAssignments().GetInnerAssignments(OuterFold).GetFoldsWithTestData(Processor))
             {
+                int numInnerTrainInstances = GetInnerTrainingInstances(innerFold).Size();
+
                 // Add a task for a given inner cross-validation fold
                 callables.add(new LockedCallable(GetInnerStatusFilePath(innerFold), "Select features for " + GetDescription() + ", outerFold=" + OuterFold + ", innerFold=" + innerFold, new Callable<Object>()
                 {
@@ -141,10 +161,12 @@ public class FeatureSelectionEvaluator
                     {
                         return SelectAndSaveFeatures(GetInnerTrainingInstances(innerFold), GetInnerSaveFilePath(innerFold));
                     }
-                }));
+                }).SetCost(GetCostKey(numInnerTrainInstances, numFeatures), (double)numInnerTrainInstances * numFeatures));
             }
         }
 
+        int numOuterTrainInstances = GetOuterTrainingInstances().Size();
+
         // Add a task for the outer cross-validation fold
         callables.add(new LockedCallable(GetOuterStatusFilePath(), "Select features for " + GetDescription() + ", outer fold=" + OuterFold, new Callable<Object>()
         {
@@ -152,11 +174,22 @@ public class FeatureSelectionEvaluator
             {
                 return SelectAndSaveFeatures(GetOuterTrainingInstances(), GetOuterSaveFilePath());
             }
-        }));
+        }).SetCost(GetCostKey(numOuterTrainInstances, numFeatures), (double)numOuterTrainInstances * numFeatures));
 
         return callables;
     }
 
+    /** Describes the work of selecting features so that the duration of the task can be estimated and recorded.
+     *
+     * @param numTrainInstances Number of training instances
+     * @param numFeatures Number of features that are available for selection
+     * @return Cost key
+     */
+    private String GetCostKey(int numTrainInstances, int numFeatures)
+    {
+        return TaskCostHistory.GetCostKey("SelectFeatures", SelectionAlgorithm.LearnerKey, SelectionAlgorithm.Key, Processor.GetDescription(), numFeatures, numTrainInstances);
+    }
+
     /** This method does the actual work of selecting features and saving the results to a file
      *
      * @param trainInstances Data instances used for training
@@ -166,9 +199,24 @@ public class FeatureSelectionEvaluator
      */
     private Boolean SelectAndSaveFeatures(DataInstanceCollection trainInstances, String filePath) throws Exception
     {
-        ArrayList<String> selectedFeatures = SelectionAlgorithm.SelectFeatures(trainInstances);
+        // The task is executed again if its status has been reset, so features that were cached previously may be out of date
+        _selectedFeaturesCache.remove(filePath);
+
+        // The same features may have been selected previously, perhaps by another experiment
+        String cacheKey = ResultCache.GetSelectedFeaturesKey(SelectionAlgorithm, trainInstances);
+        ArrayList<String> selectedFeatures = ResultCache.GetSelectedFeatures(cacheKey);
+
+        if (selectedFeatures == null)
+        {
+            selectedFeatures = SelectionAlgorithm.SelectFeatures(trainInstances);
+            ResultCache.SaveSelectedFeatures(cacheKey, selectedFeatures);
+        }
+        else
+            LockedCallable.SkipWallTime();
+
         FileUtilities.WriteLineToFile(filePath, ListUtilities.Join(selectedFeatures, ","));
 
+        // Reading the file back verifies that it was saved properly and adds the features to the cache
         return selectedFeatures.equals(GetSelectedFeatures(filePath));
     }
 
@@ -193,22 +241,36 @@ public class FeatureSelectionEvaluator
     private ArrayList<String> GetSelectedFeatures(String filePath, int numTop) throws Exception
     {
         if (!FeatureSelectionEvaluator.NeedToSelectFeatures(Processor, SelectionAlgorithm) && !SelectionAlgorithm.IsPriorKnowledge())
-            return new ArrayList<String>(_allFeatures);
+            return GetAllFeatures();
 
         if (SelectionAlgorithm.IsPriorKnowledge())
             return Processor.GetPriorKnowledgeSelectedFeatures();
 
-        if (!FileUtilities.FileExists(filePath))
-            return new ArrayList<String>();
+        ArrayList<String> selectedFeatures = _selectedFeaturesCache.get(filePath);
 
-        ArrayList<String> selectedFeatures = ListUtilities.CreateStringList(FileUtilities.ReadTextFile(filePath).trim().split(","));
+        if (selectedFeatures == null)
+        {
+            if (!FileUtilities.FileExists(filePath))
+                return new ArrayList<String>();
 
+            selectedFeatures = ListUtilities.CreateStringList(FileUtilities.ReadTextFile(filePath).trim().split(","));
+            _selectedFeaturesCache.put(filePath, selectedFeatures);
+        }
+
+        // The cached list is shared, so callers receive a copy
         if (numTop > selectedFeatures.size() || numTop < 1)
-            return selectedFeatures;
+            return new ArrayList<String>(selectedFeatures);
 
         return ListUtilities.Subset(selectedFeatures, 0, numTop);
     }
 
+    /** Removes all selected features that have been cached. This is used when the files in which they are saved are deleted.
+     */
+    public static void ClearSelectedFeaturesCache()
+    {
+        _selectedFeaturesCache.clear();
+    }
+
     /** This method retrieves the features that have already been selected and saved for the outer cross-validation fold. It retrieves only the specified number of top-ranked features.
      *
      * @param numTop Number of top-ranked features to return
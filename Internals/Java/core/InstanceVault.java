@@ -42,12 +42,17 @@ public class InstanceVault
     public ArrayList<String> DependentVariableOptions = null;
 
     private HashMap<AbstractDataProcessor, DataInstanceCollection> _processorInstancesMap;
-    private CrossValidationAssignments _cvAssignments = null;
+    /** These are the data points that were removed by the pre-filter (and why) for each data processor. */
+    private HashMap<AbstractDataProcessor, LinkedHashMap<String, String>> _preFilterRemovedMap;
+    /** These are the data instances that have already been pre-filtered, so they are not filtered again if they have not been reloaded. */
+    private HashMap<AbstractDataProcessor, DataInstanceCollection> _preFilteredInstancesMap;
 
     public InstanceVault()
     {
     	DependentVariableInstances = new HashMap<String, String>();
     	_processorInstancesMap = new HashMap<AbstractDataProcessor, DataInstanceCollection>();
+    	_preFilterRemovedMap = new HashMap<AbstractDataProcessor, LinkedHashMap<String, String>>();
+    	_preFilteredInstancesMap = new HashMap<AbstractDataProcessor, DataInstanceCollection>();
     }
     
     /** This method retrieves data that have been processed and stores it in memory.
@@ -108,7 +113,7 @@ public class InstanceVault
 	
 	            // Look for any data point that contains class information
 	            ExtractDependentVariableValues(_processorInstancesMap.get(processor));
-	
+
 	            // If there is no data to process, indicate that it must be removed
 	            if (_processorInstancesMap.get(processor).Size() == 0 || _processorInstancesMap.get(processor).GetNumDataPoints() == 0)
 	                processorsToRemove.add(processor);
@@ -138,9 +143,76 @@ public class InstanceVault
 	        
 	        for (String instanceID : dependentVariableInstancesWithNoIndependentVariable)
 	            DependentVariableInstances.remove(instanceID);
+
+	        // Remove data points that would not be useful for any algorithm. This is done after reconciliation so that only instances that will be analyzed are considered.
+	        PreFilter();
     	}
     }
 
+	/** Removes data points that do not pass the pre-filter for each data processor. Any data processor that has no data points remaining is removed, along with dependent-variable values for instances that no longer have data.
+	 *
+	 * @throws Exception
+	 */
+	private void PreFilter() throws Exception
+	{
+		ArrayList<AbstractDataProcessor> processorsToRemove = new ArrayList<AbstractDataProcessor>();
+
+		for (AbstractDataProcessor processor : Singletons.ProcessorVault.IndependentVariableDataProcessors)
+		{
+			PreFilter(processor);
+
+			if (_processorInstancesMap.get(processor).GetNumDataPoints() == 0)
+				processorsToRemove.add(processor);
+		}
+
+		if (processorsToRemove.size() == 0)
+			return;
+
+		for (AbstractDataProcessor processor : processorsToRemove)
+		{
+			Singletons.ProcessorVault.IndependentVariableDataProcessors.remove(processor);
+			Singletons.ProcessorVault.AllDataProcessors.remove(processor);
+		}
+
+		HashSet<String> independentVariableDataInstanceIDs = new HashSet<String>();
+		for (AbstractDataProcessor processor : Singletons.ProcessorVault.IndependentVariableDataProcessors)
+			independentVariableDataInstanceIDs.addAll(_processorInstancesMap.get(processor).GetIDs());
+
+		DependentVariableInstances.keySet().retainAll(independentVariableDataInstanceIDs);
+	}
+
+	/** Removes data points that do not pass the pre-filter for a given data processor (see DataPointPreFilter). Data instances that have already been filtered are not filtered again.
+	 *
+	 * @param processor Data processor
+	 * @throws Exception
+	 */
+	private void PreFilter(AbstractDataProcessor processor) throws Exception
+	{
+		DataInstanceCollection instances = _processorInstancesMap.get(processor);
+
+		if (_preFilteredInstancesMap.get(processor) == instances)
+			return;
+
+		LinkedHashMap<String, String> removed = new DataPointPreFilter(processor).Apply(instances);
+		Singletons.Log.Debug(removed.size() + " data points removed by pre-filter for " + processor.GetDescription());
+
+		_preFilterRemovedMap.put(processor, removed);
+		_preFilteredInstancesMap.put(processor, instances);
+	}
+
+	/** Indicates which data points were removed by the pre-filter for a given data processor and why.
+	 *
+	 * @param processor Data processor
+	 * @return Data point names and the reason each was removed (empty if none were removed)
+	 */
+	public LinkedHashMap<String, String> GetDataPointsRemovedByPreFilter(AbstractDataProcessor processor)
+	{
+		if (_preFilterRemovedMap.containsKey(processor))
+			return _preFilterRemovedMap.get(processor);
+
+		return new LinkedHashMap<String, String>();
+	}
+
 	private boolean HasRandomProcessor()
 	{
 		boolean hasRandomProcessor = false;
@@ -169,6 +241,15 @@ public class InstanceVault
 		return hasAggregateProcessor;
 	}
 
+	/** Indicates whether any data instances are loaded again in each iteration. If not, the data that are loaded in the first iteration are shared by all iterations.
+	 *
+	 * @return Whether any data instances are loaded again in each iteration
+	 */
+	public boolean IsReloadedEachIteration()
+	{
+		return HasRandomProcessor() || HasAggregateProcessor();
+	}
+
     /** Retrieves a list of data instances that can be used in machine-learning analyses for a given data processor.
      *
      * @param processor Data processor
@@ -177,7 +258,7 @@ public class InstanceVault
      */
     public DataInstanceCollection GetInstancesForAnalysis(AbstractDataProcessor processor) throws Exception
     {
-        return _processorInstancesMap.get(processor);
+        return AssignSourceKey(processor, _processorInstancesMap.get(processor));
     }
 
     /** Retrieves a list of data instances that can be used in machine-learning analyses for a given data processor.
@@ -193,7 +274,25 @@ public class InstanceVault
         if (!_processorInstancesMap.containsKey(processor))
             return null;
 
-        return _processorInstancesMap.get(processor).Get(instanceIDs);
+        return AssignSourceKey(processor, _processorInstancesMap.get(processor)).Get(instanceIDs);
+    }
+
+    /** Ensures that a collection has a key that identifies its contents, so that files created from the same values can be reused (see AnalysisFileCache). A new key is assigned whenever the collection has been modified since the last key was assigned.
+     *
+     * @param processor Data processor
+     * @param instances Data instances for the processor
+     * @return The same data instances
+     */
+    private DataInstanceCollection AssignSourceKey(AbstractDataProcessor processor, DataInstanceCollection instances)
+    {
+        if (instances != null && instances.GetSourceKey() == null)
+            synchronized (instances)
+            {
+                if (instances.GetSourceKey() == null)
+                    instances.SetSourceKey(processor.GetDescription() + "_" + MiscUtilities.GetUniqueID());
+            }
+
+        return instances;
     }
 
     /** Retrieves a list of data instance IDs that will be used in machine-learning analyses for a given data processor.
@@ -290,7 +389,7 @@ public class InstanceVault
 
     /** This is a convenience method that returns the cross-validation assignments that can be used in machine-learning analyses.
      *
-     * @param reset Whether to initialize (or reinitialize) the cross-validation assignments
+     * @param reset Whether to initialize (or reinitialize) the cross-validation assignments for the current iteration
      * @return Cross-validation assignments
      * @throws Exception
      */
@@ -301,9 +400,9 @@ public class InstanceVault
             Singletons.Log.Debug("Getting cross-validation assignments");
             
             new CrossValidationAssignments(Singletons.Config.GetNumOuterCrossValidationFolds(), DependentVariableInstances, false);
-            _cvAssignments = new CrossValidationAssignments(Singletons.Config.GetNumOuterCrossValidationFolds(), DependentVariableInstances, false).AssignFolds();
+            IterationContext.Current().CrossValidationAssignments = new CrossValidationAssignments(Singletons.Config.GetNumOuterCrossValidationFolds(), DependentVariableInstances, false).AssignFolds();
         }
 
-        return _cvAssignments;
+        return IterationContext.Current().CrossValidationAssignments;
     }
 }
@@ -0,0 +1,129 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.core;
+
+import java.util.concurrent.Callable;
+
+/** This class contains information that is specific to one iteration of an experiment, such as the random seed, the directories where iteration-specific files are stored, and the cross-validation assignments. Because this information is not stored globally, multiple iterations can be executed at the same time within a single process. Each thread uses the context that has been bound to it (see Wrap); otherwise, it uses the context that has been set as the default.
+ */
+public class IterationContext
+{
+    /** The iteration number */
+    public int Iteration;
+    /** The random seed that applies to this iteration */
+    public long RandomSeed;
+    /** Path to the directory where selected features are stored for this iteration */
+    public String FeatureSelectionDir;
+    /** Path to the directory where predictions are stored for this iteration */
+    public String PredictionsDir;
+    /** Path to the directory where ensemble predictions are stored for this iteration */
+    public String EnsemblePredictionsDir;
+    /** Path to the directory where lock files are stored for this iteration */
+    public String LocksDir;
+    /** Path to the directory where status files are stored for this iteration */
+    public String StatusDir;
+    /** Cross-validation assignments that are used in this iteration */
+    public CrossValidationAssignments CrossValidationAssignments;
+
+    private int _numExceptionsCaught = 0;
+
+    private static volatile IterationContext _default = new IterationContext(0);
+    private static final ThreadLocal<IterationContext> _threadContext = new ThreadLocal<IterationContext>();
+
+    /** Constructor
+     *
+     * @param iteration The iteration number
+     */
+    public IterationContext(int iteration)
+    {
+        Iteration = iteration;
+    }
+
+    /** Indicates that a non-fatal exception has occurred in this iteration.
+     *
+     * @return Number of non-fatal exceptions that have occurred in this iteration
+     */
+    public synchronized int IncrementNumExceptionsCaught()
+    {
+        return ++_numExceptionsCaught;
+    }
+
+    /** Retrieves the context of the iteration that the current thread is executing.
+     *
+     * @return Iteration context
+     */
+    public static IterationContext Current()
+    {
+        IterationContext context = _threadContext.get();
+
+        return context == null ? _default : context;
+    }
+
+    /** Sets the context that is used by threads that have not been bound to a specific iteration.
+     *
+     * @param context Iteration context
+     */
+    public static void SetDefault(IterationContext context)
+    {
+        _default = context;
+    }
+
+    /** Creates a task that executes the specified task within the context of the current thread's iteration. This should be used when tasks are handed to other threads.
+     *
+     * @param callable Task to be executed
+     * @return Task that binds the iteration context before executing
+     */
+    public static <T> Callable<T> Wrap(Callable<T> callable)
+    {
+        return Wrap(Current(), callable);
+    }
+
+    /** Creates a task that executes the specified task within the specified iteration context.
+     *
+     * @param context Iteration context
+     * @param callable Task to be executed
+     * @return Task that binds the iteration context before executing
+     */
+    public static <T> Callable<T> Wrap(final IterationContext context, final Callable<T> callable)
+    {
+        return new Callable<T>()
+        {
+            public T call() throws Exception
+            {
+                IterationContext previous = _threadContext.get();
+                _threadContext.set(context);
+
+                try
+                {
+                    return callable.call();
+                }
+                finally
+                {
+                    if (previous == null)
+                        _threadContext.remove();
+                    else
+                        _threadContext.set(previous);
+                }
+            }
+        };
+    }
+}
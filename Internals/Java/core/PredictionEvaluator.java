@@ -24,6 +24,7 @@ package mlflex.core;
 import mlflex.dataprocessors.AbstractDataProcessor;
 import mlflex.parallelization.LockedCallable;
 import mlflex.parallelization.MultiThreadedTaskHandler;
+import mlflex.parallelization.TaskCostHistory;
 import mlflex.helper.FileUtilities;
 import mlflex.helper.ListUtilities;
 
@@ -71,7 +72,7 @@ public class PredictionEvaluator
 
     private String GetSaveDirectory()
     {
-        return Settings.PREDICTIONS_DIR + Processor + "/" + FeatureSelectionAlgorithm + "/" + ClassificationAlgorithm + "/" + NumFeatures + "Features/OuterFold" + OuterFold + "/";
+        return IterationContext.Current().PredictionsDir + Processor + "/" + FeatureSelectionAlgorithm + "/" + ClassificationAlgorithm + "/" + NumFeatures + "Features/OuterFold" + OuterFold + "/";
     }
 
     private String GetOuterSaveFilePath()
@@ -91,7 +92,7 @@ public class PredictionEvaluator
 
     private String GetStatusFilePrefix()
     {
-        return GetSaveDirectory().replace(Settings.PREDICTIONS_DIR, "Predictions/");
+        return GetSaveDirectory().replace(IterationContext.Current().PredictionsDir, "Predictions/");
     }
 
     private String GetOuterStatusFilePath()
@@ -136,10 +137,15 @@ public class PredictionEvaluator
 
         ArrayList<LockedCallable> callables = new ArrayList<LockedCallable>();
 
+        // Each prediction task depends on the corresponding feature-selection task
+        FeatureSelectionEvaluator featureSelectionEvaluator = new FeatureSelectionEvaluator(Processor, FeatureSelectionAlgorithm, OuterFold);
+
         if (evaluateInner)
         {
             for (final int innerFold : Singletons.InstanceVault.GetCrossValidationAssignments().GetInnerAssignments(OuterFold).GetFoldsWithTestData(Processor))
             {
+                int numInnerTrainInstances = Singletons.InstanceVault.GetCrossValidationAssignments().GetInnerAssignments(OuterFold).GetTrainInstances(Processor, innerFold).Size();
+
                 // This creates a new task that can be executed in parallel
                 callables.add(new LockedCallable(GetInnerStatusFilePath(innerFold), "Make predictions for " + GetInnerDescription(innerFold), new Callable<Object>()
                 {
@@ -152,13 +158,15 @@ public class PredictionEvaluator
 
                         return MakeAndSavePredictions(features, trainData, testData, GetInnerSaveFilePath(innerFold), null, GetInnerDescription(innerFold));
                     }
-                }));
+                }).DependsOn(featureSelectionEvaluator.GetInnerStatusFilePath(innerFold)).SetCost(GetCostKey(numInnerTrainInstances), (double)numInnerTrainInstances * NumFeatures));
             }
         }
 
         // When applicable, add a task for the outer cross-validation fold
         if (includeOuter)
         {
+            int numOuterTrainInstances = Singletons.InstanceVault.GetCrossValidationAssignments().GetTrainInstances(Processor, OuterFold).Size();
+
             callables.add(new LockedCallable(GetOuterStatusFilePath(), "Make predictions for " + GetOuterDescription(), new Callable<Object>()
             {
                 public Object call() throws Exception
@@ -175,25 +183,49 @@ public class PredictionEvaluator
                 	Singletons.Log.Debug("Make predictions - make and save predictions");
                     return MakeAndSavePredictions(features, trainData, testData, GetOuterSaveFilePath(), GetAlgorithmOutputFilePath(), GetOuterDescription());
                 }
-            }));
+            }).DependsOn(featureSelectionEvaluator.GetOuterStatusFilePath()).SetCost(GetCostKey(numOuterTrainInstances), (double)numOuterTrainInstances * NumFeatures));
         }
 
         return callables;
     }
 
+    /** Describes the work of making predictions so that the duration of the task can be estimated and recorded.
+     *
+     * @param numTrainInstances Number of training instances
+     * @return Cost key
+     */
+    private String GetCostKey(int numTrainInstances)
+    {
+        return TaskCostHistory.GetCostKey("MakePredictions", ClassificationAlgorithm.LearnerKey, ClassificationAlgorithm.Key, Processor.GetDescription(), NumFeatures, numTrainInstances);
+    }
+
     private Boolean MakeAndSavePredictions(ArrayList<String> features, DataInstanceCollection trainData, DataInstanceCollection testData, String saveFilePath, String modelFilePath, String description) throws Exception
     {
         Singletons.Log.Debug("See if we need to make predictions");
         if (!NeedToMakePredictions(features, trainData, testData, description))
             return Boolean.TRUE;
 
-        Singletons.Log.Debug("Make the predictions");
-        ModelPredictions modelPredictions = ClassificationAlgorithm.TrainTest(trainData, testData, _dependentVariableInstances, features);
+        Singletons.Log.Debug("See if the same predictions have been made before");
+        String cacheKey = ResultCache.GetPredictionsKey(ClassificationAlgorithm, trainData, testData, features);
+        ModelPredictions modelPredictions = ResultCache.GetPredictions(cacheKey);
+
+        boolean reused = modelPredictions != null;
+
+        if (reused)
+            LockedCallable.SkipWallTime();
+        else
+        {
+            Singletons.Log.Debug("Make the predictions");
+            modelPredictions = ClassificationAlgorithm.TrainTest(trainData, testData, _dependentVariableInstances, features);
+        }
 
         Singletons.Log.Debug("Make sure the predictions are valid");
         if (!PredictionsAreValid(testData, modelPredictions, description))
             return Boolean.FALSE;
 
+        if (!reused)
+            ResultCache.SavePredictions(cacheKey, modelPredictions);
+
         Singletons.Log.Debug("Save the predictions to a file");
         modelPredictions.Predictions.SaveToFile(saveFilePath);
 
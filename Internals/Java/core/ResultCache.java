@@ -0,0 +1,342 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.core;
+
+import mlflex.helper.FileUtilities;
+import mlflex.helper.ListUtilities;
+import mlflex.helper.MiscUtilities;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/** This class stores the results of feature selection and classification so they can be reused by any experiment, including experiments with different names and experiments that have been reset. Results are identified by a hash of everything that determines them: the values of the training and test data, the dependent-variable values, the features, the learner template, the algorithm parameters, and the random seed. Results are stored in RESULT_CACHE_DIR, which is shared by all experiments; when the stored results exceed RESULT_CACHE_MB, the least recently used results are deleted. The cache is disabled when RESULT_CACHE_MB is zero.
+ * @author Stephen Piccolo
+ */
+public class ResultCache
+{
+    private static final String PREDICTIONS_SUFFIX = "_Predictions.txt";
+    private static final String MODEL_SUFFIX = "_Model.txt";
+    private static final String FEATURES_SUFFIX = "_Features.txt";
+    /** The number of characters in a key (the hexadecimal representation of an MD5 hash) */
+    private static final int KEY_LENGTH = 32;
+
+    /** The number of bytes stored in the cache directory (-1 until the directory has been examined). Other processes may also store results, so this is an estimate that is corrected whenever results are evicted. */
+    private static long _numCachedBytes = -1;
+
+    /** Indicates whether results should be stored and reused.
+     *
+     * @return Whether the cache is enabled
+     */
+    public static boolean IsEnabled()
+    {
+        return GetMaxBytes() > 0;
+    }
+
+    /** Calculates a key that identifies the results of making predictions.
+     *
+     * @param algorithm Classification algorithm
+     * @param trainData Training data instances
+     * @param testData Test data instances
+     * @param features Features that will be used for classification
+     * @return Key (null if the cache is disabled)
+     * @throws Exception
+     */
+    public static String GetPredictionsKey(ClassificationAlgorithm algorithm, DataInstanceCollection trainData, DataInstanceCollection testData, ArrayList<String> features) throws Exception
+    {
+        if (!IsEnabled())
+            return null;
+
+        MessageDigest digest = CreateDigest("Predictions", algorithm.LearnerKey, algorithm.AlgorithmParameters);
+        UpdateInstances(digest, trainData, features);
+        UpdateInstances(digest, testData, features);
+
+        return GetKey(digest);
+    }
+
+    /** Calculates a key that identifies the results of selecting features.
+     *
+     * @param algorithm Feature-selection algorithm
+     * @param trainData Training data instances (all of their data points are considered)
+     * @return Key (null if the cache is disabled)
+     * @throws Exception
+     */
+    public static String GetSelectedFeaturesKey(FeatureSelectionAlgorithm algorithm, DataInstanceCollection trainData) throws Exception
+    {
+        if (!IsEnabled())
+            return null;
+
+        MessageDigest digest = CreateDigest("SelectedFeatures", algorithm.LearnerKey, algorithm.AlgorithmParameters);
+        UpdateInstances(digest, trainData, trainData.GetDataPointNames());
+
+        return GetKey(digest);
+    }
+
+    /** Retrieves predictions that have been stored previously.
+     *
+     * @param key Key from GetPredictionsKey (may be null)
+     * @return Predictions and model information (null if they have not been stored)
+     * @throws Exception
+     */
+    public static ModelPredictions GetPredictions(String key) throws Exception
+    {
+        if (key == null || !Touch(key, PREDICTIONS_SUFFIX, MODEL_SUFFIX))
+            return null;
+
+        Predictions predictions = Predictions.ReadFromFile(GetFilePath(key, PREDICTIONS_SUFFIX));
+        if (predictions.Size() == 0)
+            return null;
+
+        Singletons.Log.Debug("Reusing cached predictions " + key);
+        return new ModelPredictions(FileUtilities.ReadTextFile(GetFilePath(key, MODEL_SUFFIX)), predictions);
+    }
+
+    /** Stores predictions so they can be reused.
+     *
+     * @param key Key from GetPredictionsKey (may be null)
+     * @param modelPredictions Predictions and model information
+     * @throws Exception
+     */
+    public static void SavePredictions(String key, ModelPredictions modelPredictions) throws Exception
+    {
+        if (key == null || modelPredictions.Predictions.Size() == 0)
+            return;
+
+        // The model is stored first because the predictions file indicates that the results are complete
+        String modelFilePath = GetTempFilePath(key);
+        FileUtilities.WriteTextToFile(modelFilePath, modelPredictions.Model);
+        String predictionsFilePath = GetTempFilePath(key);
+        modelPredictions.Predictions.SaveToFile(predictionsFilePath);
+
+        Store(key, modelFilePath, MODEL_SUFFIX);
+        Store(key, predictionsFilePath, PREDICTIONS_SUFFIX);
+    }
+
+    /** Retrieves selected features that have been stored previously.
+     *
+     * @param key Key from GetSelectedFeaturesKey (may be null)
+     * @return Features in ranked order (null if they have not been stored)
+     * @throws Exception
+     */
+    public static ArrayList<String> GetSelectedFeatures(String key) throws Exception
+    {
+        if (key == null || !Touch(key, FEATURES_SUFFIX))
+            return null;
+
+        String text = FileUtilities.ReadTextFile(GetFilePath(key, FEATURES_SUFFIX)).trim();
+        if (text.length() == 0)
+            return null;
+
+        Singletons.Log.Debug("Reusing cached selected features " + key);
+        return ListUtilities.CreateStringList(text.split(","));
+    }
+
+    /** Stores selected features so they can be reused.
+     *
+     * @param key Key from GetSelectedFeaturesKey (may be null)
+     * @param selectedFeatures Features in ranked order
+     * @throws Exception
+     */
+    public static void SaveSelectedFeatures(String key, ArrayList<String> selectedFeatures) throws Exception
+    {
+        if (key == null || selectedFeatures.size() == 0)
+            return;
+
+        String filePath = GetTempFilePath(key);
+        FileUtilities.WriteLineToFile(filePath, ListUtilities.Join(selectedFeatures, ","));
+
+        Store(key, filePath, FEATURES_SUFFIX);
+    }
+
+    private static long GetMaxBytes()
+    {
+        return Settings.RESULT_CACHE_MB * 1024L * 1024L;
+    }
+
+    private static String GetFilePath(String key, String suffix)
+    {
+        return Settings.RESULT_CACHE_DIR + key + suffix;
+    }
+
+    /** Files are written under a unique name and then renamed, so other threads and processes never see a partially written file. */
+    private static String GetTempFilePath(String key)
+    {
+        return Settings.RESULT_CACHE_DIR + key + "_" + MiscUtilities.GetUniqueID() + ".tmp";
+    }
+
+    /** Indicates whether the specified files exist and, if so, marks them as recently used.
+     *
+     * @param key Key
+     * @param suffixes Suffix of each file that must exist
+     * @return Whether all the files exist
+     */
+    private static boolean Touch(String key, String... suffixes)
+    {
+        long now = System.currentTimeMillis();
+
+        for (String suffix : suffixes)
+        {
+            File file = new File(GetFilePath(key, suffix));
+            if (!file.exists())
+                return false;
+
+            file.setLastModified(now);
+        }
+
+        return true;
+    }
+
+    private static void Store(String key, String tempFilePath, String suffix) throws Exception
+    {
+        long numBytes = new File(tempFilePath).length();
+        FileUtilities.MoveFile(tempFilePath, GetFilePath(key, suffix));
+
+        synchronized (ResultCache.class)
+        {
+            if (_numCachedBytes < 0)
+                _numCachedBytes = GetNumBytes(FileUtilities.GetFilesInDirectory(Settings.RESULT_CACHE_DIR));
+            else
+                _numCachedBytes += numBytes;
+
+            if (_numCachedBytes > GetMaxBytes())
+                EvictLeastRecentlyUsed();
+        }
+    }
+
+    /** Deletes the results that were used least recently until the size of the cache is within the limit. The files for each key are deleted together. */
+    private static void EvictLeastRecentlyUsed() throws Exception
+    {
+        final HashMap<String, ArrayList<File>> keyFiles = new HashMap<String, ArrayList<File>>();
+        final HashMap<String, Long> keyLastUsed = new HashMap<String, Long>();
+
+        for (File file : FileUtilities.GetFilesInDirectory(Settings.RESULT_CACHE_DIR))
+        {
+            // Temporary files are still being written
+            if (file.getName().endsWith(".tmp") || file.getName().length() < KEY_LENGTH)
+                continue;
+
+            String key = file.getName().substring(0, KEY_LENGTH);
+
+            if (!keyFiles.containsKey(key))
+            {
+                keyFiles.put(key, new ArrayList<File>());
+                keyLastUsed.put(key, file.lastModified());
+            }
+
+            keyFiles.get(key).add(file);
+            keyLastUsed.put(key, Math.max(keyLastUsed.get(key), file.lastModified()));
+        }
+
+        ArrayList<String> keys = new ArrayList<String>(keyFiles.keySet());
+        Collections.sort(keys, new Comparator<String>()
+        {
+            public int compare(String key1, String key2)
+            {
+                return keyLastUsed.get(key1).compareTo(keyLastUsed.get(key2));
+            }
+        });
+
+        long numBytes = 0;
+        for (ArrayList<File> files : keyFiles.values())
+            numBytes += GetNumBytes(files);
+
+        for (String key : keys)
+        {
+            if (numBytes <= GetMaxBytes())
+                break;
+
+            numBytes -= GetNumBytes(keyFiles.get(key));
+
+            for (File file : keyFiles.get(key))
+                FileUtilities.DeleteFile(file);
+        }
+
+        Singletons.Log.Debug("Result cache contains " + numBytes + " bytes after evicting least recently used results");
+        _numCachedBytes = numBytes;
+    }
+
+    private static long GetNumBytes(ArrayList<File> files)
+    {
+        long numBytes = 0;
+        for (File file : files)
+            numBytes += file.length();
+
+        return numBytes;
+    }
+
+    private static MessageDigest CreateDigest(String resultType, String learnerKey, ArrayList<String> algorithmParameters) throws Exception
+    {
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+
+        LearnerConfig learnerConfig = Settings.LearnerConfigMap.get(learnerKey);
+
+        Update(digest, resultType);
+        Update(digest, learnerConfig.MachineLearner.getClass().getName());
+        Update(digest, learnerConfig.CommandTemplate);
+        for (String parameter : algorithmParameters)
+            Update(digest, parameter);
+        Update(digest, String.valueOf(IterationContext.Current().RandomSeed));
+
+        for (String option : Singletons.InstanceVault.DependentVariableOptions)
+            Update(digest, option);
+
+        return digest;
+    }
+
+    /** Adds the instance IDs, dependent-variable values, and the values of the specified features to a hash. The features are considered in the order specified because some algorithms are affected by the order. */
+    private static void UpdateInstances(MessageDigest digest, DataInstanceCollection instances, ArrayList<String> features) throws Exception
+    {
+        ArrayList<String> instanceIDs = instances.GetIDs();
+        int[] rows = instances.GetRows(instanceIDs);
+
+        Update(digest, String.valueOf(instanceIDs.size()));
+        for (String instanceID : instanceIDs)
+        {
+            Update(digest, instanceID);
+            Update(digest, Singletons.InstanceVault.GetDependentVariableValue(instanceID));
+        }
+
+        for (String feature : features)
+        {
+            Update(digest, feature);
+
+            DataColumn column = instances.GetColumn(feature);
+            for (int row : rows)
+                Update(digest, column == null || row < 0 ? null : column.Get(row));
+        }
+    }
+
+    private static void Update(MessageDigest digest, String value) throws Exception
+    {
+        digest.update(String.valueOf(value).getBytes("UTF-8"));
+        digest.update((byte)0);
+    }
+
+    private static String GetKey(MessageDigest digest)
+    {
+        return String.format("%032x", new BigInteger(1, digest.digest()));
+    }
+}
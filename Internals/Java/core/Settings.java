@@ -22,6 +22,7 @@
 package mlflex.core;
 
 import mlflex.dataprocessors.AbstractDataProcessor;
+import mlflex.helper.CommandLineClient;
 import mlflex.helper.FileUtilities;
 import mlflex.helper.ListUtilities;
 
@@ -45,18 +46,8 @@ public class Settings
     public static String TEMP_DATA_DIR;
     /** Path to the directory that contains temporary results files */
     public static String TEMP_RESULTS_DIR;
-    /** Path to the directory that contains selected features */
-    public static String FEATURE_SELECTION_DIR;
-    /** Path to the directory that contains predictions resulting from classification */
-    public static String PREDICTIONS_DIR;
-    /** Path to the directory that contains predictions resulting from ensemble classification */
-    public static String ENSEMBLE_PREDICTIONS_DIR;
-    /** Path to the directory that stores "lock" files */
-    public static String LOCKS_DIR;
     /** Path to the directory that stores output files */
     public static String OUTPUT_DIR;
-    /** Path to the directory stores status files */
-    public static String STATUS_DIR;
     /** Path to a file that defines learner interfaces */
     public static String LEARNER_TEMPLATES_FILE;
     /** Path to the file that contains configuration parameters for classification algorithms */
@@ -71,6 +62,32 @@ public class Settings
     public static long THREAD_TIMEOUT_MINUTES;
     /** The length of time that a thread will pause before retrying to execute a task */
     public static long PAUSE_SECONDS;
+    /** The maximum size (in megabytes) of learner input files that will be kept for reuse when they are not in use (zero to disable reuse) */
+    public static long ANALYSIS_FILE_CACHE_MB;
+    /** Path to the directory where results of feature selection and classification are stored so they can be reused across experiments (see ResultCache) */
+    public static String RESULT_CACHE_DIR;
+    /** The maximum size (in megabytes) of results that will be kept in RESULT_CACHE_DIR (zero to disable reuse across experiments) */
+    public static long RESULT_CACHE_MB;
+    /** How the state of each task is stored: "Journal" (a single journal per iteration) or "Files" (a lock file and a status file per task) */
+    public static String TASK_STATE_STORE;
+    /** The maximum number of iterations of an experiment that will be executed at the same time within this process */
+    public static int NUM_PARALLEL_ITERATIONS;
+    /** The maximum amount of memory (in megabytes) that external processes started by tasks may use at the same time (a negative value indicates the physical memory that is not reserved for the heap) */
+    public static long CHILD_PROCESS_MEMORY_MB;
+    /** Whether tasks are delayed when not enough memory is available to execute them (see MemoryAdmission) */
+    public static boolean MEMORY_ADMISSION;
+    /** Whether locked tasks are executed on virtual threads, with separate limits on the number of tasks that compute within this process and the number of external processes (see ExecutionSlots) */
+    public static boolean VIRTUAL_THREADS;
+    /** The maximum number of external processes that run at once when VIRTUAL_THREADS=true */
+    public static int MAX_CHILD_PROCESSES;
+    /** The host name of the coordinator from which workers receive tasks (ACTION=Work) */
+    public static String COORDINATOR_HOST;
+    /** The port on which the coordinator accepts requests from workers (ACTION=Coordinate and ACTION=Work) */
+    public static int COORDINATOR_PORT;
+    /** The address of the network interface on which the coordinator accepts requests from workers (ACTION=Coordinate) */
+    public static String COORDINATOR_BIND_ADDRESS;
+    /** Path to a file that contains the secret that workers must send with each request to the coordinator (ACTION=Coordinate and ACTION=Work) */
+    public static String COORDINATOR_SECRET_FILE;
     /** String that will be used throughout the experiment to indicate a missing value */
     public static String MISSING_VALUE_STRING = "?";
     /** A map of the learners that have been configured by the user */
@@ -105,6 +122,15 @@ public class Settings
             String commandTemplate = (lineItems.size() > 2) ? lineItems.get(2) : "";
 
             LearnerConfigMap.put(description, new LearnerConfig(description, learnerClassName, commandTemplate));
+
+            // Optionally, a command that starts long-lived worker processes (and the number of such processes) may be specified
+            if (lineItems.size() > 3 && lineItems.get(3).trim().length() > 0)
+            {
+                String workerCommand = lineItems.get(3).replace("{Settings.MAIN_DIR}", MAIN_DIR);
+                int numWorkers = (lineItems.size() > 4) ? Integer.parseInt(lineItems.get(4).trim()) : NUM_THREADS;
+
+                CommandLineClient.RegisterWorkerPool(commandTemplate.replace("{Settings.MAIN_DIR}", MAIN_DIR), workerCommand, numWorkers);
+            }
         }
     }
 
@@ -175,7 +201,7 @@ public class Settings
         String dir = Settings.OUTPUT_DIR + "Results/" + subDirectoryPath;
 
         if (Singletons.Config.GetNumIterations() > 1 && appendIterationIfMoreThanOne)
-            dir += "Iteration" + Singletons.Iteration + "/";
+            dir += "Iteration" + IterationContext.Current().Iteration + "/";
 
         return dir;
     }
@@ -191,7 +217,7 @@ public class Settings
         String dirPath = Settings.OUTPUT_DIR + "Settings/";
 
         if (Singletons.Config.GetNumIterations() > 1 && appendIterationIfMoreThanOne)
-            dirPath += "Iteration" + Singletons.Iteration + "/";
+            dirPath += "Iteration" + IterationContext.Current().Iteration + "/";
 
         return FileUtilities.CreateDirectoryIfNotExists(dirPath);
     }
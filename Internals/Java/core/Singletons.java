@@ -34,10 +34,6 @@ public class Singletons
     public static Log Log;
     /** Object used to access configuration settings for the experiment */
     public static Config Config;
-    /** The current iteration */
-    public static int Iteration;
-    /** The random seed that applies to this experiment */
-    public static long RandomSeed;
     /** Object that contains information about data processors used in this experiment */
     public static ProcessorVault ProcessorVault;
     /** Object that provides access to data instances and stores them in memory */
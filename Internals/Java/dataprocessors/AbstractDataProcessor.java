@@ -45,9 +45,29 @@ public abstract class AbstractDataProcessor
      */
     public Boolean ProcessInputData() throws Exception
     {
+        String snapshotKey = GetSnapshotKey();
+
+        if (snapshotKey != null)
+        {
+            DataInstanceCollection snapshotInstances = DataInstanceCollection.LoadSnapshot(GetDataFilePath(), snapshotKey);
+
+            if (snapshotInstances != null)
+            {
+                Singletons.Log.Debug("Loaded input data for " + GetDescription() + " from " + GetDataFilePath());
+                _dataInstances = snapshotInstances;
+                return Boolean.TRUE;
+            }
+        }
+
         Singletons.Log.Debug("Parsing input data for " + GetDescription());
         ParseInputData();
 
+        if (snapshotKey != null)
+        {
+            Singletons.Log.Debug("Saving snapshot of input data for " + GetDescription() + " to " + GetDataFilePath());
+            _dataInstances.SaveSnapshot(GetDataFilePath(), snapshotKey);
+        }
+
         return Boolean.TRUE;
     }
 
@@ -87,6 +107,15 @@ public abstract class AbstractDataProcessor
         return 1.0;
     }
 
+    /** Indicates how much sparsity is allowed per data point (see GetProportionMissingPerDataPointOK). Data points that are missing more values are removed before analysis (see DataPointPreFilter).
+     *
+     * @return Proportion of missing values allowed for a given data point
+     */
+    public double GetMaxProportionMissingPerDataPoint()
+    {
+        return GetProportionMissingPerDataPointOK();
+    }
+
     /** If the "PriorKnowledge" feature-selection approach is used, a hand-selected list of features for each data processor must be specified. In this case, this method should be overridden, and the values should be returned.
      *
      * @return A list of features that are believed (perhaps based on prior studies or a literature search) to be most relevant for classification.
@@ -141,6 +170,39 @@ public abstract class AbstractDataProcessor
 //    {
 //    }
 
+    /** Data processors that parse a single raw data file should override this method and return the path to that file. When a path is specified, a binary snapshot of the parsed data is saved, and the snapshot is used instead of parsing the raw data again (as long as the raw data file has not changed).
+     *
+     * @return Path to the raw data file (or null if the data do not come from a single file)
+     */
+    protected String GetSourceFilePath()
+    {
+        return null;
+    }
+
+    /** Describes any settings that affect how the raw data file is parsed by this processor (for example, the delimiter). Processors whose parsing can be configured should override this method so that a snapshot created with different settings is not reused.
+     *
+     * @return Description of the parse settings
+     */
+    protected String GetParseParameters()
+    {
+        return "";
+    }
+
+    /** Creates a value that identifies the raw data and how they are parsed by this processor. If the raw data file or the parse settings change, the key will change, and any existing snapshot will be ignored.
+     *
+     * @return Snapshot key (or null if snapshots should not be used for this processor)
+     * @throws Exception
+     */
+    private String GetSnapshotKey() throws Exception
+    {
+        String sourceFilePath = GetSourceFilePath();
+
+        if (sourceFilePath == null || !FileUtilities.FileExists(sourceFilePath))
+            return null;
+
+        return this.getClass().getName() + ":" + GetParseParameters() + ":" + Settings.MISSING_VALUE_STRING + ":" + FileUtilities.GetFileContentHash(sourceFilePath);
+    }
+
     /** Returns the absolute file path where ML-Flex stores data for this processor.
      *
      * @return Absolute file path where ML-Flex stores data file
@@ -162,6 +224,38 @@ public abstract class AbstractDataProcessor
         _dataInstances.Add(dataPointName, instanceID, value);
     }
 
+    /** This method can be used by data processors that parse an entire column of values at once. It registers the data instances for which values will be stored via the SaveRawDataColumn method.
+     *
+     * @param instanceIDs The instance IDs for which values will be stored
+     * @return Row index for each instance ID (these must be passed to SaveRawDataColumn)
+     * @throws Exception
+     */
+    protected int[] SaveRawInstanceIDs(ArrayList<String> instanceIDs) throws Exception
+    {
+        return _dataInstances.AddInstanceIDs(instanceIDs);
+    }
+
+    /** This method stores a column of raw data values for a given data point.
+     *
+     * @param dataPointName The name that should be used by ML-Flex to describe the data values
+     * @param column The data values
+     * @param rows Row indices, as returned by SaveRawInstanceIDs
+     * @throws Exception
+     */
+    protected void SaveRawDataColumn(String dataPointName, DataColumn column, int[] rows) throws Exception
+    {
+        _dataInstances.AddColumn(dataPointName, column, rows);
+    }
+
+    /** This method should be called after data columns have been saved so that data instances without any values are not retained.
+     *
+     * @throws Exception
+     */
+    protected void RemoveRawInstancesWithoutValues() throws Exception
+    {
+        _dataInstances.RemoveInstancesWithoutValues();
+    }
+
     /** This method saves basic statistical information about the transformed data used by this processor.
      *
      * @return Whether values were saved to the file system successfully
@@ -180,7 +274,20 @@ public abstract class AbstractDataProcessor
             statistics.add(NameValuePair.Create("Num Variables", dataInstances.GetNumDataPoints()));
             statistics.add(NameValuePair.Create("Proportion Missing Values", dataInstances.GetProportionMissingValues()));
 
+            LinkedHashMap<String, String> removedDataPoints = Singletons.InstanceVault.GetDataPointsRemovedByPreFilter(this);
+            statistics.add(NameValuePair.Create("Num Variables Removed by Pre-Filter", removedDataPoints.size()));
+
             ResultsFileUtilities.AppendMatrixColumn(statistics, GetStatisticsFilePath(), " Summary statistics describing input data.");
+
+            if (removedDataPoints.size() > 0)
+            {
+                ArrayList<ArrayList<String>> rows = new ArrayList<ArrayList<String>>();
+                rows.add(ListUtilities.CreateStringList("Variable", "Reason"));
+                for (Map.Entry<String, String> entry : removedDataPoints.entrySet())
+                    rows.add(ListUtilities.CreateStringList(entry.getKey(), entry.getValue()));
+
+                FileUtilities.WriteLinesToFile(Settings.GetOutputStatisticsDir() + GetDescription() + "_Removed_Variables.txt", rows, " Variables that were removed before analysis and the reason for removing each.");
+            }
         }
 
         return Boolean.TRUE;
@@ -21,12 +21,15 @@
 
 package mlflex.dataprocessors;
 
+import mlflex.core.DataColumn;
+import mlflex.helper.BigFileReader;
 import mlflex.helper.FileUtilities;
 import mlflex.helper.ListUtilities;
+import mlflex.helper.MiscUtilities;
 
 import java.util.ArrayList;
 
-/** This data processor class is designed to parse text files in the ARFF format.
+/** This data processor class is designed to parse text files in the ARFF format. Both dense and sparse data rows are supported; when the data rows are sparse, the values are stored sparsely as well.
  * @author Stephen Piccolo
  */
 public class ArffDataProcessor extends AbstractDataProcessor
@@ -49,6 +52,12 @@ public class ArffDataProcessor extends AbstractDataProcessor
         return _description;
     }
 
+    @Override
+    protected String GetSourceFilePath()
+    {
+        return _filePath;
+    }
+
     @Override
     protected double GetProportionMissingPerInstanceOK()
     {
@@ -64,31 +73,276 @@ public class ArffDataProcessor extends AbstractDataProcessor
     @Override
     protected void ParseInputData() throws Exception
     {
-        int overallInstanceCount = 0;
+        if (!FileUtilities.FileExists(_filePath))
+            throw new Exception("No file exists at " + _filePath);
+
+        ArrayList<String> attributeNames = new ArrayList<String>();
+        // For sparse rows, attributes that are not specified take on these values
+        ArrayList<String> attributeDefaults = new ArrayList<String>();
+        ArrayList<DataColumn> columns = null;
+        ArrayList<String> instanceIDs = new ArrayList<String>();
+        int idIndex = -1;
+        boolean inData = false;
+
+        // The file is read one line at a time, and values are stored directly in columns
+        BigFileReader reader = new BigFileReader(_filePath);
+
+        try
+        {
+            String line;
+            while ((line = reader.ReadLine()) != null)
+            {
+                line = line.trim();
+
+                if (line.equals("") || line.startsWith("%"))
+                    continue;
+
+                if (!inData)
+                {
+                    String lowerLine = line.toLowerCase();
+
+                    if (lowerLine.startsWith("@attribute"))
+                        ParseAttribute(line.substring("@attribute".length()).trim(), attributeNames, attributeDefaults);
 
-        ArrayList<String> fileLines = FileUtilities.ReadLinesFromFile(_filePath, "%");
+                    if (lowerLine.startsWith("@data"))
+                    {
+                        if (attributeNames.size() == 0 || (attributeNames.size() == 1 && attributeNames.get(0).toLowerCase().equals("id")))
+                            throw new Exception("No attributes could be identified in " + _filePath + ".");
 
-        ArrayList<String> metaRows = ListUtilities.GetValuesStartingWith(fileLines, "@");
-        //ArrayList<String> dataRows = ListUtilities.RemoveAll(fileLines, metaRows);
-        ArrayList<String> dataRows = ListUtilities.GetValuesNotStartingWith(fileLines, "@");
-        metaRows = ListUtilities.Replace(metaRows, "\t", " ");
+                        idIndex = ListUtilities.ToLowerCase(attributeNames).indexOf("id");
+                        inData = true;
+                    }
 
-        if (dataRows.size() == 0)
+                    continue;
+                }
+
+                // The first data row indicates whether sparse storage should be used
+                if (columns == null)
+                {
+                    boolean isSparse = line.startsWith("{");
+
+                    columns = new ArrayList<DataColumn>();
+                    for (String attributeDefault : attributeDefaults)
+                        columns.add(isSparse ? new DataColumn(attributeDefault) : new DataColumn());
+                }
+
+                ParseDataRow(line, instanceIDs.size(), columns, attributeDefaults);
+
+                int row = instanceIDs.size();
+                String instanceID = idIndex == -1 ? null : columns.get(idIndex).Get(row);
+                instanceIDs.add(instanceID == null ? "Instance" + (row + 1) : instanceID);
+            }
+        }
+        finally
+        {
+            reader.Close();
+        }
+
+        if (instanceIDs.size() == 0)
             throw new Exception("No data rows could be identified in " + _filePath + ".");
 
-        ArrayList<String> attributeNames = ParseAttributeNames(metaRows, _filePath);
-        int idIndex = ListUtilities.ToLowerCase(attributeNames).indexOf("id");
+        int[] rows = SaveRawInstanceIDs(instanceIDs);
+
+        for (int j = 0; j < attributeNames.size(); j++)
+            if (j != idIndex)
+                SaveRawDataColumn(attributeNames.get(j), columns.get(j), rows);
+
+        RemoveRawInstancesWithoutValues();
+    }
+
+    /** Parses an attribute declaration and records its name and the value that it takes on when it is not specified in a sparse row.
+     *
+     * @param declaration Text that follows "@attribute"
+     * @param attributeNames List of attribute names to which the name will be added
+     * @param attributeDefaults List of default values to which the default value will be added
+     * @throws Exception
+     */
+    private void ParseAttribute(String declaration, ArrayList<String> attributeNames, ArrayList<String> attributeDefaults) throws Exception
+    {
+        int nameEnd;
+
+        if (declaration.startsWith("'") || declaration.startsWith("\""))
+            nameEnd = FindClosingQuote(declaration, 0) + 1;
+        else
+        {
+            nameEnd = 0;
+            while (nameEnd < declaration.length() && !Character.isWhitespace(declaration.charAt(nameEnd)))
+                nameEnd++;
+        }
+
+        String attributeName = Unquote(declaration.substring(0, nameEnd));
+
+        if (attributeName.equals("class"))
+            attributeName = "Class";
 
-        for (int i=0; i<dataRows.size(); i++) {
-            overallInstanceCount++;
+        attributeNames.add(attributeName);
 
-            ArrayList<String> dataRowItems = ListUtilities.CreateStringList(dataRows.get(i).trim().split(","));
-            String instanceID = idIndex == -1 ? "Instance" + overallInstanceCount : dataRowItems.get(idIndex);
+        // In sparse rows, a nominal attribute that is not specified takes on its first value; other types take on zero
+        String type = declaration.substring(nameEnd).trim();
+        String defaultValue = "0";
 
-            for (int j = 0; j < dataRowItems.size(); j++)
-                if (j != idIndex)
-                    SaveRawDataPoint(attributeNames.get(j), instanceID, dataRowItems.get(j));
+        if (type.startsWith("{"))
+        {
+            ArrayList<String> options = SplitOnCommas(type.substring(1, FindClosingBrace(type)));
+            if (options.size() > 0)
+                defaultValue = Unquote(options.get(0));
         }
+
+        attributeDefaults.add(defaultValue);
+    }
+
+    /** Parses a data row (dense or sparse) and stores its values in the specified row of the columns.
+     *
+     * @param line Text of data row
+     * @param row Row index
+     * @param columns Column for each attribute
+     * @param attributeDefaults Default value for each attribute (used only when a sparse row is stored in dense columns; sparse columns supply their own defaults)
+     * @throws Exception
+     */
+    private void ParseDataRow(String line, int row, ArrayList<DataColumn> columns, ArrayList<String> attributeDefaults) throws Exception
+    {
+        if (line.startsWith("{"))
+        {
+            // Any instance weight that follows the closing brace is ignored
+            ArrayList<String> items = SplitOnCommas(line.substring(1, FindClosingBrace(line)));
+
+            // All columns are sparse if the first row was sparse, so only the specified values need to be stored
+            boolean[] specified = columns.get(0).IsSparse() ? null : new boolean[columns.size()];
+
+            for (String item : items)
+            {
+                if (item.equals(""))
+                    continue;
+
+                int separator = 0;
+                while (separator < item.length() && !Character.isWhitespace(item.charAt(separator)))
+                    separator++;
+
+                int index = Integer.parseInt(item.substring(0, separator));
+                if (index < 0 || index >= columns.size())
+                    throw new Exception("Invalid attribute index (" + index + ") in " + _filePath + ".");
+
+                SetValue(columns.get(index), row, Unquote(item.substring(separator).trim()));
+
+                if (specified != null)
+                    specified[index] = true;
+            }
+
+            // A sparse row that follows a dense row is stored in dense columns, so the unspecified values must be filled in
+            if (specified != null)
+                for (int j = 0; j < columns.size(); j++)
+                    if (!specified[j])
+                        SetValue(columns.get(j), row, attributeDefaults.get(j));
+        }
+        else
+        {
+            ArrayList<String> items = SplitOnCommas(line);
+
+            for (int j = 0; j < items.size() && j < columns.size(); j++)
+                SetValue(columns.get(j), row, Unquote(items.get(j)));
+        }
+    }
+
+    private void SetValue(DataColumn column, int row, String value)
+    {
+        if (MiscUtilities.IsMissing(value) || value.equals(""))
+        {
+            if (column.IsSparse())
+                column.Clear(row);
+        }
+        else
+            column.Set(row, value);
+    }
+
+    /** Splits text on commas, except for commas that are within quotes. The items are trimmed, but quotes are not removed.
+     *
+     * @param text Text to be split
+     * @return Items
+     */
+    private ArrayList<String> SplitOnCommas(String text) throws Exception
+    {
+        ArrayList<String> items = new ArrayList<String>();
+
+        int start = 0;
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+
+            if (c == '\'' || c == '"')
+                i = FindClosingQuote(text, i);
+            else if (c == ',')
+            {
+                items.add(text.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        items.add(text.substring(start).trim());
+
+        return items;
+    }
+
+    private int FindClosingQuote(String text, int openIndex) throws Exception
+    {
+        char quote = text.charAt(openIndex);
+
+        for (int i = openIndex + 1; i < text.length(); i++)
+        {
+            if (text.charAt(i) == '\\')
+                i++;
+            else if (text.charAt(i) == quote)
+                return i;
+        }
+
+        throw new Exception("Unmatched quote in " + _filePath + ": " + text);
+    }
+
+    private int FindClosingBrace(String text) throws Exception
+    {
+        for (int i = 1; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+
+            if (c == '\'' || c == '"')
+                i = FindClosingQuote(text, i);
+            else if (c == '}')
+                return i;
+        }
+
+        throw new Exception("Unmatched brace in " + _filePath + ": " + text);
+    }
+
+    /** Removes quotes from a value (if it is quoted) and interprets escaped characters.
+     *
+     * @param value Value that may be quoted
+     * @return Unquoted value
+     */
+    private static String Unquote(String value)
+    {
+        if (value.length() < 2 || (value.charAt(0) != '\'' && value.charAt(0) != '"') || value.charAt(value.length() - 1) != value.charAt(0))
+            return value;
+
+        StringBuilder unquoted = new StringBuilder();
+
+        for (int i = 1; i < value.length() - 1; i++)
+        {
+            char c = value.charAt(i);
+
+            if (c == '\\' && i < value.length() - 2)
+            {
+                c = value.charAt(++i);
+
+                if (c == 'n')
+                    c = '\n';
+                else if (c == 't')
+                    c = '\t';
+                else if (c == 'r')
+                    c = '\r';
+            }
+
+            unquoted.append(c);
+        }
+
+        return unquoted.toString();
     }
 
     /** Parses attribute names from the metadata rows in an ARFF file.
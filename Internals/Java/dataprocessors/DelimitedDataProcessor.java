@@ -21,16 +21,25 @@
 
 package mlflex.dataprocessors;
 
+import mlflex.core.DataColumn;
 import mlflex.core.Settings;
+import mlflex.helper.FileChunkReader;
 import mlflex.helper.FileUtilities;
+import mlflex.helper.MiscUtilities;
+import mlflex.parallelization.MultiThreadedTaskHandler;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
 
 /** This class enables the user to import data directly from delimited (for example, by tabs or commas) text files. This class ignores the final column in the file (which it assumes contains the dependent variable values). The default delimiter is a tab.
  * @author Stephen Piccolo
  */
 public class DelimitedDataProcessor extends AbstractDataProcessor
 {
+    /** Files are split into chunks of at least this many bytes when they are parsed in parallel */
+    private static final long MIN_CHUNK_BYTES = 4 * 1024 * 1024;
+
     private String _filePath;
     private String _delimiter;
     private String _commentChar;
@@ -66,6 +75,18 @@ public class DelimitedDataProcessor extends AbstractDataProcessor
         return _description;
     }
 
+    @Override
+    protected String GetSourceFilePath()
+    {
+        return _filePath;
+    }
+
+    @Override
+    protected String GetParseParameters()
+    {
+        return "delimiter=" + _delimiter + ";comment=" + _commentChar + ";missing=" + _missingValueCharacter;
+    }
+
     @Override
     protected double GetProportionMissingPerInstanceOK()
     {
@@ -81,42 +102,148 @@ public class DelimitedDataProcessor extends AbstractDataProcessor
     @Override
     protected void ParseInputData() throws Exception
     {
-        ArrayList<ArrayList<String>> fileLines = FileUtilities.ParseDelimitedFile(_filePath, _delimiter, _commentChar);
-        ValidateFileContents(fileLines);
+        if (!FileUtilities.FileExists(_filePath))
+            throw new Exception("No file exists at " + _filePath);
+
+        // The header line contains the instance IDs; the first data line is read only to check its length
+        FileChunkReader reader = new FileChunkReader(_filePath, 0, new File(_filePath).length());
+        String headerLine = ReadNextDataLine(reader);
+        long dataStart = reader.GetPosition();
+        String firstDataLine = ReadNextDataLine(reader);
+        reader.Close();
 
-        ArrayList<String> instanceIDs = fileLines.remove(0);
+        if (headerLine == null || firstDataLine == null)
+            throw new Exception("The file located at " + _filePath + " has no data.");
+
+        final ArrayList<String> instanceIDs = Split(headerLine);
 
         // Sometimes files don't include a tab or a column description for the row names
-        if (instanceIDs.size() == fileLines.get(0).size())
+        if (instanceIDs.size() == Split(firstDataLine).size())
             instanceIDs.remove(0);
 
-        for (int i=0; i<fileLines.size(); i++)
+        final int[] rows = SaveRawInstanceIDs(instanceIDs);
+
+        // Each chunk of the file is parsed on a separate thread, and the parsed values are stored directly in columns
+        MultiThreadedTaskHandler taskHandler = new MultiThreadedTaskHandler("parse " + _filePath);
+        for (final long[] chunk : FileChunkReader.GetChunks(_filePath, dataStart, Settings.NUM_THREADS * 4, MIN_CHUNK_BYTES))
+            taskHandler.Add(new Callable<Object>()
+            {
+                public Object call() throws Exception
+                {
+                    return ParseChunk(chunk[0], chunk[1], instanceIDs.size());
+                }
+            });
+
+        // The chunks are stored in file order so that later lines take precedence when a data point appears more than once
+        for (Object result : taskHandler.Execute())
         {
-            ArrayList<String> rowValues = fileLines.get(i);
-            String dataPointName = rowValues.remove(0);
+            ParsedChunk parsedChunk = (ParsedChunk)result;
+
+            for (int i = 0; i < parsedChunk.DataPointNames.size(); i++)
+                SaveRawDataColumn(parsedChunk.DataPointNames.get(i), parsedChunk.Columns.get(i), rows);
+        }
+
+        RemoveRawInstancesWithoutValues();
+    }
+
+    /** Parses the lines that start within a given range of bytes in the file. Each line contains the values for one data point.
+     *
+     * @param start Byte offset where the range begins
+     * @param end Byte offset where the range ends
+     * @param numInstances Number of instance IDs in the header line
+     * @return Parsed data points
+     * @throws Exception
+     */
+    private ParsedChunk ParseChunk(long start, long end, int numInstances) throws Exception
+    {
+        ParsedChunk parsedChunk = new ParsedChunk();
+
+        FileChunkReader reader = new FileChunkReader(_filePath, start, end);
 
-            for (int j=0; j<rowValues.size(); j++)
+        try
+        {
+            String line;
+            while ((line = ReadNextDataLine(reader)) != null)
             {
-                String value = rowValues.get(j);
+                int delimiterIndex = line.indexOf(_delimiter);
+                String dataPointName = delimiterIndex == -1 ? line : line.substring(0, delimiterIndex);
 
-                if (!value.equals(_missingValueCharacter))
-                    SaveRawDataPoint(dataPointName, instanceIDs.get(j), rowValues.get(j));
+                DataColumn column = new DataColumn(numInstances);
+                int instanceIndex = 0;
+
+                while (delimiterIndex != -1)
+                {
+                    int valueStart = delimiterIndex + _delimiter.length();
+                    delimiterIndex = line.indexOf(_delimiter, valueStart);
+
+                    if (instanceIndex == numInstances)
+                        throw new Exception("A line for " + dataPointName + " in " + _filePath + " has more values than the number of instances.");
+
+                    String value = delimiterIndex == -1 ? line.substring(valueStart) : line.substring(valueStart, delimiterIndex);
+
+                    if (value.length() > 0 && !value.equals(_missingValueCharacter) && !MiscUtilities.IsMissing(value))
+                        column.Set(instanceIndex, value);
+
+                    instanceIndex++;
+                }
+
+                if (instanceIndex < numInstances)
+                    throw new Exception("A line for " + dataPointName + " in " + _filePath + " has fewer values than the number of instances.");
+
+                parsedChunk.DataPointNames.add(dataPointName);
+                parsedChunk.Columns.add(column);
             }
         }
+        finally
+        {
+            reader.Close();
+        }
+
+        return parsedChunk;
     }
 
-    /** Checks to make sure a delimited file has a valid structure before it is parsed.
+    /** Reads the next line that is neither empty nor a comment.
      *
-     * @param fileLines Values in each file line
+     * @param reader File reader
+     * @return Text of line (or null if there are no more lines)
      * @throws Exception
      */
-    private void ValidateFileContents(ArrayList<ArrayList<String>> fileLines) throws Exception
+    private String ReadNextDataLine(FileChunkReader reader) throws Exception
     {
-        if (fileLines.size() <= 1)
-            throw new Exception("The file located at " + _filePath + " has no data.");
+        String line;
+
+        while ((line = reader.ReadLine()) != null)
+            if (!line.equals("") && !line.startsWith(_commentChar))
+                return line;
 
-        for (int i=1; i<fileLines.size(); i++)
-            if (fileLines.get(i).size() != fileLines.get(0).size() && fileLines.get(i).size() != fileLines.get(0).size() + 1)
-                throw new Exception("Line " + i + " (after any comment characters were removed) in " + _filePath + " does not have the same number of values as the number of instances.");
+        return null;
+    }
+
+    /** Splits a line on the delimiter. The delimiter is matched literally (not as a regular expression), and empty values are retained.
+     *
+     * @param line Text of line
+     * @return Values
+     */
+    private ArrayList<String> Split(String line)
+    {
+        ArrayList<String> values = new ArrayList<String>();
+
+        int start = 0;
+        int delimiterIndex;
+        while ((delimiterIndex = line.indexOf(_delimiter, start)) != -1)
+        {
+            values.add(line.substring(start, delimiterIndex));
+            start = delimiterIndex + _delimiter.length();
+        }
+        values.add(line.substring(start));
+
+        return values;
+    }
+
+    /** This class stores the data points that were parsed from one chunk of a file. */
+    private class ParsedChunk
+    {
+        public ArrayList<String> DataPointNames = new ArrayList<String>();
+        public ArrayList<DataColumn> Columns = new ArrayList<DataColumn>();
     }
 }
\ No newline at end of file
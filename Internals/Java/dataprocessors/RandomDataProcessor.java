@@ -22,6 +22,7 @@
 package mlflex.dataprocessors;
 
 import mlflex.core.DataInstanceCollection;
+import mlflex.core.IterationContext;
 import mlflex.core.Singletons;
 import mlflex.helper.ListUtilities;
 import mlflex.helper.MathUtilities;
@@ -61,7 +62,7 @@ public class RandomDataProcessor extends AbstractDataProcessor
         _numDiscreteDataPoints = numDiscreteDataPoints;
         _numContinuousDataPoints = numContinuousDataPoints;
         _description = description;
-        _random = new Random(Singletons.RandomSeed + (long)(_numInstances + _numDiscreteDataPoints + _numContinuousDataPoints + _description.hashCode()));
+        _random = new Random(IterationContext.Current().RandomSeed + (long)(_numInstances + _numDiscreteDataPoints + _numContinuousDataPoints + _description.hashCode()));
     }
 
     @Override
@@ -66,6 +66,18 @@ public class UciMachineLearningDataProcessor extends AbstractDataProcessor
         return _description;
     }
 
+    @Override
+    protected String GetSourceFilePath()
+    {
+        return _filePath;
+    }
+
+    @Override
+    protected String GetParseParameters()
+    {
+        return "id=" + _idIndex + ";class=" + _classIndex + ";delimiter=" + _delimiter;
+    }
+
     @Override
     protected double GetProportionMissingPerInstanceOK()
     {
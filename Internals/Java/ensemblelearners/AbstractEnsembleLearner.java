@@ -44,7 +44,7 @@ public abstract class AbstractEnsembleLearner
      */
     public String GetSaveDirectory(int outerFold)
     {
-        return Settings.ENSEMBLE_PREDICTIONS_DIR + "OuterFold" + outerFold + "/";
+        return IterationContext.Current().EnsemblePredictionsDir + "OuterFold" + outerFold + "/";
     }
 
     /** This method specifies the file path where the ensemblelearners predictions will be saved.
@@ -108,7 +108,7 @@ public class MajorityVoteEnsembleLearner extends AbstractEnsembleLearner
             predictedClass = classes.get(indicesOfMaxValues.get(0));
         else
         {
-            long randomSeed = Singletons.RandomSeed * (long)instanceID.hashCode();
+            long randomSeed = IterationContext.Current().RandomSeed * (long)instanceID.hashCode();
             predictedClass = ListUtilities.PickRandomString(ListUtilities.Subset(classes, indicesOfMaxValues), new Random(randomSeed));
         }
 
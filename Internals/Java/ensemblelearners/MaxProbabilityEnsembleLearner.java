@@ -42,7 +42,7 @@ public class MaxProbabilityEnsembleLearner extends AbstractEnsembleLearner
         ArrayList<Prediction> maxPredictions = GetMaxPredictions(combinedPredictionInfos.GetOuterPredictions(), maxProbability);
 
         // If more than one prediction had the max probability, then randomly pick one as the predicted class
-        long randomSeed = Singletons.RandomSeed * (long)instanceID.hashCode();
+        long randomSeed = IterationContext.Current().RandomSeed * (long)instanceID.hashCode();
         Prediction maxPrediction = (Prediction) ListUtilities.PickRandomObject(maxPredictions, new Random(randomSeed));
         String description = "";
 
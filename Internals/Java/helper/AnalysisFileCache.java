@@ -0,0 +1,364 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.helper;
+
+import mlflex.core.DataInstanceCollection;
+import mlflex.core.Settings;
+import mlflex.core.Singletons;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/** This class keeps track of input files that have been created for external learners so that files with the same contents are only created once. For example, when several classification algorithms are applied to the same fold and features, they can all use the same ARFF files. Files are identified by a hash of the values they contain (the source of the data instances, the instance IDs, the features, the dependent-variable values, and the file format). Each file is reference counted; files that are no longer in use are retained until the cache exceeds ANALYSIS_FILE_CACHE_MB, at which point the least recently used files are deleted.
+ * @author Stephen Piccolo
+ */
+public class AnalysisFileCache
+{
+    /** These represent the types of files that can be cached */
+    public enum Format
+    {
+        ARFF,
+        TAB,
+        TRANSPOSED_TAB,
+        ORANGE,
+        C5
+    }
+
+    /** Entries for files that have been created (or are being created), in order of least recent use */
+    private static final LinkedHashMap<String, Entry> _entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    /** Entries by file path, including entries for files that cannot be cached */
+    private static final HashMap<String, Entry> _pathEntries = new HashMap<String, Entry>();
+    private static long _numCachedBytes = 0;
+
+    /** Gets the path to a file that contains the specified data. If an identical file has already been created, it is reused; otherwise it is created. Each call to this method must be matched by a call to Release.
+     *
+     * @param format File format
+     * @param dataInstances Data instances that will be stored in the file (for the C5 format, these are the training instances)
+     * @param otherInstances Other data instances that are used to determine the options for each data point (for the C5 format, these are the test instances); may be null
+     * @param includeDependentVariable Whether to include dependent-variable values in the file
+     * @param features Features that will be stored in the file
+     * @return Path to the file (for the C5 format, this is the path without the file extension)
+     * @throws Exception
+     */
+    public static String Acquire(Format format, DataInstanceCollection dataInstances, DataInstanceCollection otherInstances, boolean includeDependentVariable, ArrayList<String> features) throws Exception
+    {
+        String key = GetKey(format, dataInstances, otherInstances, includeDependentVariable, features);
+
+        if (key == null)
+        {
+            // The file cannot be reused, so it is created under a unique name and deleted when it is released
+            Entry entry = new Entry(null, MiscUtilities.GetUniqueID(), format);
+            CreateFiles(entry, dataInstances, otherInstances, includeDependentVariable, features);
+            entry.Ready.countDown();
+
+            synchronized (_entries)
+            {
+                _pathEntries.put(entry.FilePath, entry);
+            }
+
+            return entry.FilePath;
+        }
+
+        Entry entry;
+        boolean create = false;
+
+        synchronized (_entries)
+        {
+            entry = _entries.get(key);
+
+            // The file may have been removed (for example, by Vacuum)
+            if (entry != null && entry.IsReady() && entry.RefCount == 0 && !entry.FilesExist())
+            {
+                RemoveEntry(entry);
+                entry = null;
+            }
+
+            if (entry == null)
+            {
+                entry = new Entry(key, "Cache_" + key, format);
+                _entries.put(key, entry);
+                _pathEntries.put(entry.FilePath, entry);
+                create = true;
+            }
+
+            entry.RefCount++;
+        }
+
+        if (create)
+        {
+            try
+            {
+                CreateFiles(entry, dataInstances, otherInstances, includeDependentVariable, features);
+            }
+            catch (Exception ex)
+            {
+                synchronized (_entries)
+                {
+                    entry.Failed = true;
+                    RemoveEntry(entry);
+                }
+
+                throw ex;
+            }
+            finally
+            {
+                entry.Ready.countDown();
+            }
+
+            synchronized (_entries)
+            {
+                _numCachedBytes += entry.NumBytes;
+            }
+        }
+        else
+        {
+            // Another thread may still be creating the file
+            entry.Ready.await();
+
+            if (entry.Failed)
+            {
+                Release(entry.FilePath);
+                throw new Exception("The file " + entry.FilePath + " could not be created.");
+            }
+        }
+
+        return entry.FilePath;
+    }
+
+    /** Indicates that a file that was obtained with Acquire is no longer in use. Files that were not obtained with Acquire are simply deleted.
+     *
+     * @param filePath Path that was returned by Acquire
+     * @throws Exception
+     */
+    public static void Release(String filePath) throws Exception
+    {
+        synchronized (_entries)
+        {
+            Entry entry = _pathEntries.get(filePath);
+            if (entry == null)
+            {
+                FileUtilities.DeleteFile(filePath);
+                return;
+            }
+
+            entry.RefCount--;
+
+            if (entry.Key == null)
+                RemoveEntry(entry);
+            else
+                EvictUnusedEntries(GetMaxBytes());
+        }
+    }
+
+    /** Deletes all files in the cache. This should be called when the temporary data directory is cleaned up, at which point no files should be in use.
+     *
+     * @throws Exception
+     */
+    public static void Clear() throws Exception
+    {
+        synchronized (_entries)
+        {
+            for (Entry entry : new ArrayList<Entry>(_pathEntries.values()))
+                if (entry.IsReady())
+                    RemoveEntry(entry);
+        }
+    }
+
+    private static long GetMaxBytes()
+    {
+        return Settings.ANALYSIS_FILE_CACHE_MB * 1024L * 1024L;
+    }
+
+    private static void EvictUnusedEntries(long maxBytes) throws Exception
+    {
+        Iterator<Entry> iterator = new ArrayList<Entry>(_entries.values()).iterator();
+
+        while (_numCachedBytes > maxBytes && iterator.hasNext())
+        {
+            Entry entry = iterator.next();
+
+            if (entry.RefCount == 0 && entry.IsReady())
+                RemoveEntry(entry);
+        }
+    }
+
+    private static void RemoveEntry(Entry entry) throws Exception
+    {
+        if (entry.Key != null && _entries.get(entry.Key) == entry)
+        {
+            _entries.remove(entry.Key);
+            _numCachedBytes -= entry.NumBytes;
+        }
+
+        _pathEntries.remove(entry.FilePath);
+        entry.DeleteFiles();
+    }
+
+    private static void CreateFiles(Entry entry, DataInstanceCollection dataInstances, DataInstanceCollection otherInstances, boolean includeDependentVariable, ArrayList<String> features) throws Exception
+    {
+        String prefix = entry.FileNamePrefix;
+
+        switch (entry.FileFormat)
+        {
+            case ARFF:
+                new AnalysisFileCreator(Settings.TEMP_DATA_DIR, prefix, dataInstances, otherInstances, includeDependentVariable, features).CreateArffFile();
+                break;
+            case TAB:
+                new AnalysisFileCreator(Settings.TEMP_DATA_DIR, prefix, dataInstances, otherInstances, includeDependentVariable, features).CreateTabDelimitedFile();
+                break;
+            case TRANSPOSED_TAB:
+                new AnalysisFileCreator(Settings.TEMP_DATA_DIR, prefix, dataInstances, otherInstances, includeDependentVariable, features).CreateTransposedTabDelimitedFile(false);
+                break;
+            case ORANGE:
+                new AnalysisFileCreator(Settings.TEMP_DATA_DIR, prefix, dataInstances, otherInstances, includeDependentVariable, features).CreateOrangeFile();
+                break;
+            case C5:
+                new AnalysisFileCreator(Settings.TEMP_DATA_DIR, prefix, dataInstances, dataInstances, includeDependentVariable, features).CreateC5NamesFile();
+                new AnalysisFileCreator(Settings.TEMP_DATA_DIR, prefix, dataInstances, dataInstances, includeDependentVariable, features).CreateC5TrainDataFile();
+                new AnalysisFileCreator(Settings.TEMP_DATA_DIR, prefix, otherInstances, dataInstances, includeDependentVariable, features).CreateC5TestDataFile();
+                break;
+        }
+
+        entry.NumBytes = 0;
+        for (String filePath : entry.GetFilePaths())
+            entry.NumBytes += new File(filePath).length();
+    }
+
+    /** Calculates a key that identifies the contents of a file.
+     *
+     * @return Key (null if the source of the data instances is unknown)
+     * @throws Exception
+     */
+    private static String GetKey(Format format, DataInstanceCollection dataInstances, DataInstanceCollection otherInstances, boolean includeDependentVariable, ArrayList<String> features) throws Exception
+    {
+        if (GetMaxBytes() <= 0 || dataInstances.GetSourceKey() == null || (otherInstances != null && otherInstances.GetSourceKey() == null))
+            return null;
+
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+
+        Update(digest, format.name());
+        Update(digest, String.valueOf(includeDependentVariable));
+        UpdateInstances(digest, dataInstances, includeDependentVariable);
+        if (otherInstances != null)
+            UpdateInstances(digest, otherInstances, includeDependentVariable || format.equals(Format.C5));
+
+        for (String feature : ListUtilities.SortStringList(new ArrayList<String>(features)))
+            Update(digest, feature);
+
+        return String.format("%032x", new BigInteger(1, digest.digest()));
+    }
+
+    private static void UpdateInstances(MessageDigest digest, DataInstanceCollection instances, boolean includeDependentVariable) throws Exception
+    {
+        Update(digest, instances.GetSourceKey());
+
+        for (String instanceID : ListUtilities.SortStringList(instances.GetIDs()))
+        {
+            Update(digest, instanceID);
+
+            if (includeDependentVariable)
+                Update(digest, Singletons.InstanceVault.GetDependentVariableValue(instanceID));
+        }
+
+        if (includeDependentVariable)
+            for (String option : Singletons.InstanceVault.DependentVariableOptions)
+                Update(digest, option);
+    }
+
+    private static void Update(MessageDigest digest, String value) throws Exception
+    {
+        digest.update(String.valueOf(value).getBytes("UTF-8"));
+        digest.update((byte)0);
+    }
+
+    /** This class stores information about a file (or, for the C5 format, a set of files) in the cache.
+     */
+    private static class Entry
+    {
+        public String Key;
+        public String FileNamePrefix;
+        public String FilePath;
+        public Format FileFormat;
+        public int RefCount = 0;
+        public long NumBytes = 0;
+        public volatile boolean Failed = false;
+        public final CountDownLatch Ready = new CountDownLatch(1);
+
+        public Entry(String key, String fileNamePrefix, Format format)
+        {
+            Key = key;
+            FileNamePrefix = fileNamePrefix;
+            FileFormat = format;
+
+            switch (format)
+            {
+                case ARFF:
+                    FilePath = Settings.TEMP_DATA_DIR + fileNamePrefix + AnalysisFileCreator.Extension.ARFF;
+                    break;
+                case TAB:
+                case TRANSPOSED_TAB:
+                    FilePath = Settings.TEMP_DATA_DIR + fileNamePrefix + AnalysisFileCreator.Extension.TAB;
+                    break;
+                case ORANGE:
+                    FilePath = Settings.TEMP_DATA_DIR + fileNamePrefix + AnalysisFileCreator.Extension.ORANGE;
+                    break;
+                default:
+                    FilePath = Settings.TEMP_DATA_DIR + fileNamePrefix;
+                    break;
+            }
+        }
+
+        public boolean IsReady()
+        {
+            return Ready.getCount() == 0;
+        }
+
+        public ArrayList<String> GetFilePaths()
+        {
+            if (FileFormat.equals(Format.C5))
+                return ListUtilities.CreateStringList(FilePath + AnalysisFileCreator.Extension.C5NAMES, FilePath + AnalysisFileCreator.Extension.C5TRAINDATA, FilePath + AnalysisFileCreator.Extension.C5TESTDATA);
+
+            return ListUtilities.CreateStringList(FilePath);
+        }
+
+        public boolean FilesExist()
+        {
+            for (String filePath : GetFilePaths())
+                if (!new File(filePath).exists())
+                    return false;
+
+            return true;
+        }
+
+        public void DeleteFiles() throws Exception
+        {
+            for (String filePath : GetFilePaths())
+                FileUtilities.DeleteFile(filePath);
+        }
+    }
+}
@@ -110,18 +110,14 @@ public class AnalysisFileCreator
         Singletons.Log.Debug("Appending ARFF attributes for independent variables");
         
         for (String dataPointName : dataPointNames)
-        {
-            HashSet<String> uniqueValues = new HashSet<String>(_dataInstances.GetUniqueValues(dataPointName));
-
-            if (_otherInstances != null)
-                uniqueValues.addAll(_otherInstances.GetUniqueValues(dataPointName));
-
-            AppendArffAttribute(new ArrayList<String>(uniqueValues), dataPointName, outFile);
-        }
+            AppendArffAttribute(GetColumnStatistics(dataPointName), dataPointName, outFile);
 
         Singletons.Log.Debug("Appending ARFF attributes for dependent variable");
         if (_includeDependentVariable)
-            AppendArffAttribute(Singletons.InstanceVault.DependentVariableOptions, Singletons.ProcessorVault.DependentVariableDataProcessor.DataPointName, outFile);
+        {
+            ArrayList<String> options = Singletons.InstanceVault.DependentVariableOptions;
+            AppendArffAttribute(new DataColumnStatistics(options, DataTypeUtilities.GetGeneralDataType(options), options.size(), 0, Double.NaN, Double.NaN), Singletons.ProcessorVault.DependentVariableDataProcessor.DataPointName, outFile);
+        }
 
         outFile.write("\n@data");
 
@@ -150,15 +146,33 @@ public class AnalysisFileCreator
         return this;
     }
 
-    private void AppendArffAttribute(ArrayList<String> values, String dataPointName, PrintWriter outFile) throws Exception
+    /** Gets summary statistics for a data point across the data instances and (if specified) the other data instances.
+     *
+     * @param dataPointName Data point name
+     * @return Summary statistics
+     */
+    private DataColumnStatistics GetColumnStatistics(String dataPointName)
+    {
+        DataColumnStatistics statistics = _dataInstances.GetColumnStatistics(dataPointName);
+
+        if (_otherInstances != null)
+            statistics = statistics.Combine(_otherInstances.GetColumnStatistics(dataPointName));
+
+        return statistics;
+    }
+
+    private void AppendArffAttribute(DataColumnStatistics statistics, String dataPointName, PrintWriter outFile) throws Exception
     {
         outFile.write("@attribute " + dataPointName + " ");
 
-        if (DataTypeUtilities.HasOnlyBinary(values))
+        // The unique values are copied because they may be modified below
+        ArrayList<String> values = new ArrayList<String>(statistics.UniqueValues);
+
+        if (statistics.DataType.equals(GeneralDataType.Binary))
             outFile.write("{" + ListUtilities.Join(ListUtilities.SortStringList(values), ",") + "}");
         else
         {
-            if (DataTypeUtilities.HasOnlyNumeric(values))
+            if (statistics.DataType.equals(GeneralDataType.Continuous))
                 outFile.write("real");
             else
             {
@@ -294,10 +308,7 @@ public class AnalysisFileCreator
         ArrayList<String> results = new ArrayList<String>();
 
         for (String dataPointName : dataPointNames)
-        {
-            ArrayList<String> uniqueValues = instances.GetUniqueValues(dataPointName);
-            results.add((DataTypeUtilities.HasOnlyNumeric(uniqueValues) && !DataTypeUtilities.HasOnlyBinary(uniqueValues)) ? "c" : "d");
-        }
+            results.add(instances.GetColumnStatistics(dataPointName).DataType.equals(GeneralDataType.Continuous) ? "c" : "d");
 
         return results;
     }
@@ -316,9 +327,10 @@ public class AnalysisFileCreator
         for (String dataPointName : dataPointNames)
         {
             output.append(dataPointName + ":\t");
-            ArrayList<String> uniqueDataValues = _dataInstances.GetUniqueValues(dataPointName);
+            DataColumnStatistics statistics = _dataInstances.GetColumnStatistics(dataPointName);
+            ArrayList<String> uniqueDataValues = new ArrayList<String>(statistics.UniqueValues);
 
-            if (DataTypeUtilities.HasOnlyNumeric(uniqueDataValues) && !DataTypeUtilities.HasOnlyBinary(uniqueDataValues))
+            if (statistics.DataType.equals(GeneralDataType.Continuous))
                 output.append("continuous");
             else
             {
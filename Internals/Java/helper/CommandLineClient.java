@@ -24,12 +24,11 @@ package mlflex.helper;
 import mlflex.core.Settings;
 import mlflex.core.Singletons;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /** This class is used to execute commands at the command. It contains functionality to invoke commands and retrieve results using a text-file based approach.
  * @author Stephen Piccolo
@@ -37,6 +36,40 @@ import java.util.Map;
 public class CommandLineClient
 {
     public static final String STANDARD_OUT_KEY = "STANDARD_OUT";
+    public static final String EXIT_CODE_KEY = "EXIT_CODE";
+
+    /** Worker pools that have been configured for learner templates (keyed by the command template) */
+    private static final ConcurrentHashMap<String, WorkerPool> _workerPools = new ConcurrentHashMap<String, WorkerPool>();
+
+    /** Indicates that commands created from the specified template should be sent to long-lived worker processes rather than executed in a new process each time.
+     *
+     * @param commandTemplate Command template (with the main directory already specified)
+     * @param workerCommand System command that starts a worker process
+     * @param numWorkers Maximum number of worker processes for this template
+     */
+    public static void RegisterWorkerPool(String commandTemplate, String workerCommand, int numWorkers)
+    {
+        if (_workerPools.isEmpty())
+            Runtime.getRuntime().addShutdownHook(new Thread()
+            {
+                public void run()
+                {
+                    ShutdownWorkerPools();
+                }
+            });
+
+        WorkerPool previous = _workerPools.put(commandTemplate, new WorkerPool(workerCommand, numWorkers));
+        if (previous != null)
+            previous.Shutdown();
+    }
+
+    /** Stops all worker processes that have been started.
+     */
+    public static void ShutdownWorkerPools()
+    {
+        for (WorkerPool workerPool : _workerPools.values())
+            workerPool.Shutdown();
+    }
 
     /** Executes the specified command at the command line
      *
@@ -58,6 +91,53 @@ public class CommandLineClient
      */
     public static HashMap<String, String> RunAnalysis(String commandText, String outputDirectoryPath) throws Exception
     {
+        return RunAnalysis(commandText, outputDirectoryPath, null, null);
+    }
+
+    /** Executes the specified command. If a worker pool has been configured for the template from which the command was created, the command is sent to a worker process; otherwise it is executed at the command line.
+     *
+     * @param commandText System command that will be executed
+     * @param outputDirectoryPath Absolute directory path where any output files will be stored temporarily (may be null)
+     * @param commandTemplate Template from which the command was created
+     * @return A map of keys and values that were returned by the command
+     * @throws Exception
+     */
+    public static HashMap<String, String> RunAnalysis(String commandText, String outputDirectoryPath, String commandTemplate) throws Exception
+    {
+        return RunAnalysis(commandText, outputDirectoryPath, commandTemplate, null);
+    }
+
+    /** Executes the specified command. If a worker pool has been configured for the template from which the command was created, the command is sent to a worker process; otherwise it is executed at the command line. Commands that do not complete within THREAD_TIMEOUT_MINUTES are killed.
+     *
+     * @param commandText System command that will be executed
+     * @param outputDirectoryPath Absolute directory path where any output files will be stored temporarily (may be null)
+     * @param commandTemplate Template from which the command was created (may be null)
+     * @param outputParser Parser that will receive each line of standard output as it is produced (may be null); when a parser is specified, standard output is passed to it rather than being returned
+     * @return A map of keys and values that were returned by the command
+     * @throws Exception
+     */
+    public static HashMap<String, String> RunAnalysis(String commandText, String outputDirectoryPath, String commandTemplate, OutputLineParser outputParser) throws Exception
+    {
+        WorkerPool workerPool = commandTemplate == null ? null : _workerPools.get(commandTemplate);
+
+        if (workerPool != null)
+        {
+            Singletons.Log.Debug("Worker command:");
+            Singletons.Log.Debug(commandText);
+
+            WorkerPool.JobResult result = workerPool.RunJob(ParseCommandArguments(commandText), Settings.THREAD_TIMEOUT_MINUTES);
+
+            // Worker output is only available after the job has finished
+            if (outputParser == null)
+                return SummarizeResults(result.Output, result.Error, result.ExitStatus, outputDirectoryPath);
+
+            if (result.Output.length() > 0)
+                for (String line : result.Output.split("\n"))
+                    outputParser.ParseLine(line);
+
+            return SummarizeResults("", result.Error, result.ExitStatus, outputDirectoryPath);
+        }
+
         Singletons.Log.Debug("System command:");
         Singletons.Log.Debug(commandText);
 
@@ -66,29 +146,88 @@ public class CommandLineClient
         FileUtilities.WriteTextToFile(tempScriptFilePath, commandText);
         new File(tempScriptFilePath).setExecutable(true);
 
-        // Execute the command via the temporary script
-        Process p = Runtime.getRuntime().exec(tempScriptFilePath);
+        // Execute the command via the temporary script, reading the output and error streams concurrently
+        ProcessExecutor.ProcessResult result;
+        try
+        {
+            result = new ProcessExecutor(tempScriptFilePath).SetOutputParser(outputParser).Execute(Settings.THREAD_TIMEOUT_MINUTES);
+        }
+        finally
+        {
+            FileUtilities.DeleteFile(tempScriptFilePath);
+        }
+
+        return SummarizeResults(result.Output, result.Error, result.ExitCode, outputDirectoryPath);
+    }
+
+    /** Splits a command into arguments in the same way that a shell would, respecting single quotes, double quotes, and escape characters.
+     *
+     * @param commandText System command
+     * @return List of arguments
+     * @throws Exception
+     */
+    public static ArrayList<String> ParseCommandArguments(String commandText) throws Exception
+    {
+        ArrayList<String> arguments = new ArrayList<String>();
+        StringBuilder argument = new StringBuilder();
+        boolean inArgument = false;
+        char quote = 0;
+
+        for (int i = 0; i < commandText.length(); i++)
+        {
+            char c = commandText.charAt(i);
 
-        // Read the output and error streams from the process
-        BufferedReader stdInput = new BufferedReader(new InputStreamReader(p.getInputStream()));
-        BufferedReader stdError = new BufferedReader(new InputStreamReader(p.getErrorStream()));
+            if (quote == '\'')
+            {
+                if (c == '\'')
+                    quote = 0;
+                else
+                    argument.append(c);
+            }
+            else if (c == '\\' && i + 1 < commandText.length() && (quote == 0 || "\"\\$`".indexOf(commandText.charAt(i + 1)) > -1))
+            {
+                argument.append(commandText.charAt(++i));
+                inArgument = true;
+            }
+            else if (quote == '"')
+            {
+                if (c == '"')
+                    quote = 0;
+                else
+                    argument.append(c);
+            }
+            else if (c == '"' || c == '\'')
+            {
+                quote = c;
+                inArgument = true;
+            }
+            else if (Character.isWhitespace(c))
+            {
+                if (inArgument)
+                    arguments.add(argument.toString());
+                argument.setLength(0);
+                inArgument = false;
+            }
+            else
+            {
+                argument.append(c);
+                inArgument = true;
+            }
+        }
 
-        StringBuffer output = new StringBuffer();
-        StringBuffer error = new StringBuffer();
+        if (quote != 0)
+            throw new Exception("Unmatched quote in command: " + commandText);
 
-        // Parse the output stream
-        String s;
-        while ((s = stdInput.readLine()) != null)
-            output.append(s + "\n");
+        if (inArgument)
+            arguments.add(argument.toString());
 
-        // Parse the error stream
-        while ((s = stdError.readLine()) != null)
-            error.append(s + "\n");
+        return arguments;
+    }
 
-        // Close the process objects
-        stdInput.close();
-        stdError.close();
-        p.destroy();
+    private static HashMap<String, String> SummarizeResults(String output, String error, int exitCode, String outputDirectoryPath) throws Exception
+    {
+        if (exitCode != 0)
+            error += "Exit code: " + exitCode + "\n";
 
         ArrayList<java.io.File> outputFiles = new ArrayList<java.io.File>();
 
@@ -98,12 +237,12 @@ public class CommandLineClient
 
         // Print the output
         if (output.length() > 0)
-            Singletons.Log.Debug("Command output: " + output.toString());
+            Singletons.Log.Debug("Command output: " + output);
 
         // Print the error, including parameters that had been specified, to aid in troubleshooting
         if (error.length() > 0)
         {
-            Singletons.Log.Debug("Command error: " + error.toString());
+            Singletons.Log.Debug("Command error: " + error);
 
             Singletons.Log.Debug("Output files:");
             for (java.io.File file : outputFiles)
@@ -117,14 +256,13 @@ public class CommandLineClient
         HashMap<String, String> results = new HashMap<String, String>();
         for (java.io.File file : outputFiles)
             results.put(file.getName(), FileUtilities.ReadTextFile(file).trim());
-        results.put(STANDARD_OUT_KEY, output.toString());
+        results.put(STANDARD_OUT_KEY, output);
+        results.put(EXIT_CODE_KEY, String.valueOf(exitCode));
 
         // Clean up
         if (outputDirectoryPath != null)
             FileUtilities.RemoveDirectory(outputDirectoryPath);
 
-        FileUtilities.DeleteFile(tempScriptFilePath);
-
         return results;
     }
 
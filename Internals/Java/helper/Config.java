@@ -22,6 +22,7 @@
 package mlflex.helper;
 
 import mlflex.core.FeatureSelectionAlgorithm;
+import mlflex.core.IterationContext;
 import mlflex.core.Settings;
 import mlflex.core.Singletons;
 import mlflex.dataprocessors.AbstractDataProcessor;
@@ -413,6 +414,47 @@ public class Config
         return instanceIDs;
     }
 
+    /** Gets the maximum proportion of values that may be missing for a data point before it is removed (see DataPointPreFilter).
+     *
+     * @param defaultValue Value to use if none has been specified (the data processor's setting)
+     * @return Maximum proportion of missing values
+     * @throws Exception
+     */
+    public double GetPreFilterMaxProportionMissing(double defaultValue) throws Exception
+    {
+        return Double.parseDouble(GetStringValue("PRE_FILTER_MAX_PROPORTION_MISSING", String.valueOf(defaultValue)));
+    }
+
+    /** Indicates whether data points that have the same value for all data instances should be removed (see DataPointPreFilter).
+     *
+     * @return Whether constant data points should be removed
+     * @throws Exception
+     */
+    public boolean GetPreFilterRemoveConstant() throws Exception
+    {
+        return GetBooleanValue("PRE_FILTER_REMOVE_CONSTANT", "false");
+    }
+
+    /** Gets the minimum number of unique values that a data point must have to be kept (see DataPointPreFilter).
+     *
+     * @return Minimum number of unique values
+     * @throws Exception
+     */
+    public int GetPreFilterMinUniqueValues() throws Exception
+    {
+        return GetIntValue("PRE_FILTER_MIN_UNIQUE_VALUES", "0");
+    }
+
+    /** Gets the maximum number of numeric data points that will be kept for each data processor; those with the highest variance are kept (see DataPointPreFilter).
+     *
+     * @return Maximum number of numeric data points (zero for no limit)
+     * @throws Exception
+     */
+    public int GetPreFilterMaxDataPoints() throws Exception
+    {
+        return GetIntValue("PRE_FILTER_MAX_DATA_POINTS", "0");
+    }
+
     /** Gets the number of feature options that should be used.
      *
      * @param processor Data processor
@@ -472,7 +514,7 @@ public class Config
      */
     public static boolean IsFirstIteration() throws Exception
     {
-        return Singletons.Iteration == 1;
+        return IterationContext.Current().Iteration == 1;
     }
 
     /** Indicates whether ML-Flex is executing its final (and possibly only) iteration.
@@ -482,6 +524,6 @@ public class Config
      */
     public static boolean IsLastIteration() throws Exception
     {
-        return Singletons.Iteration == Singletons.Config.GetNumIterations();
+        return IterationContext.Current().Iteration == Singletons.Config.GetNumIterations();
     }
 }
\ No newline at end of file
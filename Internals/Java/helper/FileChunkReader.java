@@ -0,0 +1,161 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.helper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+/** This helper class reads the lines of a text file that start within a given range of bytes. A large file can be split into ranges so that separate threads can parse it in parallel. A line that crosses the end of a range is read by the range in which it starts.
+ * @author Stephen Piccolo
+ */
+public class FileChunkReader
+{
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private RandomAccessFile _file;
+    private FileChannel _channel;
+    private ByteBuffer _buffer;
+    private ByteArrayOutputStream _lineBytes;
+    private long _position;
+    private long _end;
+
+    /** Constructor
+     *
+     * @param filePath Absolute file path of file to be read
+     * @param start Byte offset where the range begins
+     * @param end Byte offset where the range ends (exclusive)
+     * @throws Exception
+     */
+    public FileChunkReader(String filePath, long start, long end) throws Exception
+    {
+        _file = new RandomAccessFile(filePath, "r");
+        _channel = _file.getChannel();
+        _buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        _buffer.flip();
+        _lineBytes = new ByteArrayOutputStream();
+        _end = end;
+
+        // Unless the range starts at the beginning of a line, the partial line belongs to the previous range
+        if (start > 0)
+        {
+            _channel.position(start - 1);
+            _position = start - 1;
+
+            int b;
+            while ((b = ReadByte()) != -1 && b != '\n')
+                ;
+        }
+        else
+        {
+            _channel.position(0);
+            _position = 0;
+        }
+    }
+
+    /** Splits a file into ranges of roughly equal size.
+     *
+     * @param filePath Absolute file path
+     * @param start Byte offset at which the first range should begin
+     * @param numChunks Maximum number of ranges
+     * @param minChunkBytes Minimum size of each range (in bytes)
+     * @return Start and end offsets of each range
+     */
+    public static ArrayList<long[]> GetChunks(String filePath, long start, int numChunks, long minChunkBytes)
+    {
+        long end = new File(filePath).length();
+        long length = Math.max(end - start, 0);
+
+        numChunks = (int)Math.max(1, Math.min(numChunks, length / Math.max(minChunkBytes, 1)));
+        long chunkSize = (length + numChunks - 1) / numChunks;
+
+        ArrayList<long[]> chunks = new ArrayList<long[]>();
+        for (long chunkStart = start; chunkStart < end; chunkStart += chunkSize)
+            chunks.add(new long[] { chunkStart, Math.min(chunkStart + chunkSize, end) });
+
+        return chunks;
+    }
+
+    /** Reads the next line that starts within the range. Line terminators (\n or \r\n) are removed.
+     *
+     * @return Text of line (or null if there are no more lines in the range)
+     * @throws Exception
+     */
+    public String ReadLine() throws Exception
+    {
+        if (_position >= _end)
+            return null;
+
+        _lineBytes.reset();
+
+        int b;
+        while ((b = ReadByte()) != -1 && b != '\n')
+            _lineBytes.write(b);
+
+        if (b == -1 && _lineBytes.size() == 0)
+            return null;
+
+        String line = _lineBytes.toString("UTF-8");
+
+        if (line.endsWith("\r"))
+            line = line.substring(0, line.length() - 1);
+
+        return line;
+    }
+
+    /** Indicates the byte offset of the next line that will be read.
+     *
+     * @return Byte offset
+     */
+    public long GetPosition()
+    {
+        return _position;
+    }
+
+    /** Closes the file connection.
+     *
+     * @throws Exception
+     */
+    public void Close() throws Exception
+    {
+        _file.close();
+    }
+
+    private int ReadByte() throws Exception
+    {
+        if (!_buffer.hasRemaining())
+        {
+            _buffer.clear();
+            int numRead = _channel.read(_buffer);
+            _buffer.flip();
+
+            if (numRead <= 0)
+                return -1;
+        }
+
+        _position++;
+        return _buffer.get() & 0xff;
+    }
+}
@@ -24,6 +24,7 @@ package mlflex.helper;
 import mlflex.core.Singletons;
 
 import java.io.*;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 
 /** This class provides helper methods for reading, writing, updating, and deleting files.
@@ -42,6 +43,37 @@ public class FileUtilities
         return DateUtilities.DifferenceInMinutes(DateUtilities.GetCurrentDate(), DateUtilities.CreateDate(new File(filePath).lastModified()));
     }
 
+    /** Calculates a hash of the contents of a file. Files with the same contents will have the same hash.
+     *
+     * @param filePath Absolute file path
+     * @return Hexadecimal representation of the MD5 hash
+     * @throws Exception
+     */
+    public static String GetFileContentHash(String filePath) throws Exception
+    {
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+
+        InputStream in = new BufferedInputStream(new FileInputStream(filePath));
+        byte[] buffer = new byte[1024 * 1024];
+        int len;
+
+        try
+        {
+            while ((len = in.read(buffer)) > 0)
+                digest.update(buffer, 0, len);
+        }
+        finally
+        {
+            in.close();
+        }
+
+        StringBuilder hash = new StringBuilder();
+        for (byte b : digest.digest())
+            hash.append(String.format("%02x", b));
+
+        return hash.toString();
+    }
+
     /** Convenience method that appends text to an existing file.
      *
      * @param filePath Absolute file path
@@ -53,6 +85,8 @@ public class FileUtilities
         PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(filePath, true)));
         out.write(text);
         out.close();
+
+        WrittenFiles.Record(filePath);
     }
 
     /** Appends a line to an existing file (incuding a new line character).
@@ -77,6 +111,8 @@ public class FileUtilities
         PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(filePath)));
         out.write(text);
         out.close();
+
+        WrittenFiles.Record(filePath);
     }
 
     /** Writes a new line to a file (including a new line character).
@@ -303,6 +339,8 @@ public class FileUtilities
 
             in.close();
             out.close();
+
+            WrittenFiles.Record(destinationFilePath);
         }
     }
 
@@ -660,8 +698,8 @@ public class FileUtilities
         File fromFile = new File(fromFilePath);
         File toFile = new File(toFilePath);
 
-        if (fromFile.exists())
-            fromFile.renameTo(toFile);
+        if (fromFile.exists() && fromFile.renameTo(toFile))
+            WrittenFiles.Record(toFilePath);
     }
 
     /** Creates a directory. If an error occurs while creating the directory, an exception is not thrown. It is understood that sometimes directories are attempted to be created when another thread is also trying to create it, and this sometimes is not considered problematic.
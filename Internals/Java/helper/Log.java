@@ -21,6 +21,7 @@
 
 package mlflex.helper;
 
+import mlflex.core.IterationContext;
 import mlflex.core.Settings;
 import mlflex.core.Singletons;
 import org.slf4j.Logger;
@@ -39,9 +40,6 @@ public class Log
     private String _machineAddress;
     private int _maxExceptionsPerIteration;
 
-    /** Indicates how many exceptions have been caught so far as the experiment has been executing. */
-    public int NumExceptionsCaught;
-
     // This uses an external library for logging
     private final static Logger logger = org.slf4j.LoggerFactory.getLogger(Log.class);
 
@@ -52,7 +50,6 @@ public class Log
     public Log(int maxExceptionsPerIteration) throws Exception
     {
     	_maxExceptionsPerIteration = maxExceptionsPerIteration;
-        NumExceptionsCaught = 0;
         _machineAddress = MiscUtilities.GetMachineAddress();
     }
 
@@ -177,11 +174,11 @@ public class Log
     {
         Info(GetStackTrace(ex));
 
-        NumExceptionsCaught++;
+        int numExceptionsCaught = IterationContext.Current().IncrementNumExceptionsCaught();
 
-        if (NumExceptionsCaught >= _maxExceptionsPerIteration)
+        if (numExceptionsCaught >= _maxExceptionsPerIteration)
         {
-            Info("More than " + NumExceptionsCaught + " non-fatal exceptions have occurred, so aborting!");
+            Info("More than " + numExceptionsCaught + " non-fatal exceptions have occurred, so aborting!");
             System.exit(0);
         }
      }
@@ -230,8 +227,8 @@ public class Log
         if (Singletons.Experiment != null)
         {
             experiment = Singletons.Experiment.Name;
-            if (Singletons.Iteration > 1)
-                experiment += " (Iteration " + Singletons.Iteration + ")";
+            if (IterationContext.Current().Iteration > 1)
+                experiment += " (Iteration " + IterationContext.Current().Iteration + ")";
             experiment += " | ";
         }
 
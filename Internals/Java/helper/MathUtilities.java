@@ -321,6 +321,18 @@ public class MathUtilities
         return TTest(ListUtilities.ConvertToDoubleArray(list1), ListUtilities.ConvertToDoubleArray(list2));
     }
 
+    /** Calculates the 2-sample t statistic for two lists of numeric values. This is a convenience method for calling into the Apache Commons math library.
+     *
+     * @param list1 First array of values
+     * @param list2 Second array of values
+     * @return T statistic
+     * @throws Exception
+     */
+    public static double TStatistic(ArrayList<Double> list1, ArrayList<Double> list2) throws Exception
+    {
+        return org.apache.commons.math.stat.inference.TestUtils.t(ListUtilities.ConvertToDoubleArray(list1), ListUtilities.ConvertToDoubleArray(list2));
+    }
+
     /** Adds the specified value to each element in the list.
      * @param list List of integer values
      * @param amountToAdd Amount to add to each element
@@ -22,6 +22,7 @@
 package mlflex.helper;
 
 import mlflex.core.DataInstanceCollection;
+import mlflex.core.IterationContext;
 import mlflex.core.Settings;
 import mlflex.core.Singletons;
 
@@ -122,7 +123,7 @@ public class MiscUtilities
      */
     public static void DeleteCoreDirectory(String directoryPath) throws Exception
     {
-        directoryPath = directoryPath.replace("/Iteration" + String.valueOf(Singletons.Iteration), "");
+        directoryPath = directoryPath.replace("/Iteration" + String.valueOf(IterationContext.Current().Iteration), "");
 
         FileUtilities.DeleteAllFilesAndDirectoriesRecursively(directoryPath);
         FileUtilities.DeleteDirectory(directoryPath);
@@ -0,0 +1,326 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.helper;
+
+import mlflex.parallelization.ExecutionSlots;
+import mlflex.parallelization.MemoryAdmission;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/** This class executes an external process asynchronously. The standard output and standard error streams are drained concurrently (so a process that writes a lot to either stream cannot block), output lines can be passed to a streaming parser as they are produced, and processes that exceed a time limit are destroyed along with any processes that they started.
+ * @author Stephen Piccolo
+ */
+public class ProcessExecutor
+{
+    /** Only this many of the last lines of standard error are kept, so a process that writes a lot of diagnostic output does not use a lot of memory */
+    private static final int MAX_ERROR_LINES = 1000;
+
+    private static final ExecutorService _streamService = Executors.newCachedThreadPool(new ThreadFactory()
+    {
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "ProcessExecutorStream");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /** External processes that are currently running, organized by the thread that started them, so they can be destroyed if that thread's task times out. */
+    private static final ConcurrentHashMap<Thread, Set<Process>> _processesByThread = new ConcurrentHashMap<Thread, Set<Process>>();
+
+    private String[] _command;
+    private OutputLineParser _outputParser = null;
+    private Process _process = null;
+    private ExecutionSlots.ChildProcessSlot _slot = null;
+    private Future<String> _output;
+    private Future<String> _error;
+
+    /** Constructor.
+     *
+     * @param command Command and arguments that will be executed
+     */
+    public ProcessExecutor(String... command)
+    {
+        _command = command;
+    }
+
+    /** Registers a parser that will receive each line of standard output as it is produced. The parser is invoked on a separate thread. When a parser is registered, standard output is not stored, so the output of the process result will be empty.
+     *
+     * @param outputParser Streaming parser
+     * @return This instance
+     */
+    public ProcessExecutor SetOutputParser(OutputLineParser outputParser)
+    {
+        _outputParser = outputParser;
+        return this;
+    }
+
+    /** Starts the process and begins draining its output streams. This method returns immediately.
+     *
+     * @return This instance
+     * @throws Exception
+     */
+    public ProcessExecutor Start() throws Exception
+    {
+        _slot = ExecutionSlots.AcquireChildProcessSlot();
+
+        try
+        {
+            _process = new ProcessBuilder(_command).start();
+        }
+        catch (Exception ex)
+        {
+            _slot.Release();
+            throw ex;
+        }
+
+        RegisterChildProcess(_process);
+        _process.getOutputStream().close();
+
+        _output = _streamService.submit(new StreamDrainer(_process.getInputStream(), _outputParser, _outputParser == null ? Integer.MAX_VALUE : 0));
+        _error = _streamService.submit(new StreamDrainer(_process.getErrorStream(), null, MAX_ERROR_LINES));
+
+        return this;
+    }
+
+    /** Waits for the process to finish. If the process does not finish within the time limit, it (and any processes that it started) will be destroyed and an exception will be thrown.
+     *
+     * @param timeoutMinutes Number of minutes to wait (zero or less to wait indefinitely)
+     * @return Result of the process
+     * @throws Exception
+     */
+    public ProcessResult WaitFor(long timeoutMinutes) throws Exception
+    {
+        long deadline = timeoutMinutes > 0 ? System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(timeoutMinutes) : Long.MAX_VALUE;
+
+        try
+        {
+            String output = GetStreamResult(_output, deadline);
+            String error = GetStreamResult(_error, deadline);
+            int exitCode = _process.waitFor();
+
+            return new ProcessResult(exitCode, output, error);
+        }
+        catch (TimeoutException ex)
+        {
+            DestroyProcessTree(_process);
+            throw new Exception("The process did not complete within " + timeoutMinutes + " minutes: " + ListUtilities.Join(ListUtilities.CreateStringList(_command), " "));
+        }
+        catch (InterruptedException ex)
+        {
+            DestroyProcessTree(_process);
+            throw ex;
+        }
+        catch (ExecutionException ex)
+        {
+            // The streaming parser failed, so there is no use in waiting for the process
+            DestroyProcessTree(_process);
+            if (ex.getCause() instanceof Exception)
+                throw (Exception)ex.getCause();
+            throw ex;
+        }
+        finally
+        {
+            UnregisterChildProcess(_process);
+            _slot.Release();
+        }
+    }
+
+    /** Convenience method that starts the process and waits for it to finish.
+     *
+     * @param timeoutMinutes Number of minutes to wait (zero or less to wait indefinitely)
+     * @return Result of the process
+     * @throws Exception
+     */
+    public ProcessResult Execute(long timeoutMinutes) throws Exception
+    {
+        return Start().WaitFor(timeoutMinutes);
+    }
+
+    private static String GetStreamResult(Future<String> stream, long deadline) throws Exception
+    {
+        if (deadline == Long.MAX_VALUE)
+            return stream.get();
+
+        return stream.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    /** Indicates that the current thread has started an external process. If the thread's task times out, the process will be destroyed.
+     *
+     * @param process External process
+     */
+    public static void RegisterChildProcess(Process process)
+    {
+        Set<Process> processes = _processesByThread.get(Thread.currentThread());
+
+        if (processes == null)
+        {
+            processes = Collections.newSetFromMap(new ConcurrentHashMap<Process, Boolean>());
+            _processesByThread.put(Thread.currentThread(), processes);
+        }
+
+        processes.add(process);
+
+        // Memory used by external processes is attributed to the task that started them
+        MemoryAdmission.RecordChildProcess();
+    }
+
+    /** Indicates that an external process that was started by the current thread is no longer running (or is no longer associated with the current thread's task).
+     *
+     * @param process External process
+     */
+    public static void UnregisterChildProcess(Process process)
+    {
+        Set<Process> processes = _processesByThread.get(Thread.currentThread());
+
+        if (processes != null)
+        {
+            processes.remove(process);
+
+            if (processes.isEmpty())
+                _processesByThread.remove(Thread.currentThread());
+        }
+    }
+
+    /** Destroys all external processes (and their descendants) that have been started by a given thread and are still running. This is used when the thread's task times out.
+     *
+     * @param thread Thread that started the processes
+     * @return Number of processes that were destroyed
+     */
+    public static int DestroyProcessesStartedBy(Thread thread)
+    {
+        Set<Process> processes = _processesByThread.remove(thread);
+        if (processes == null)
+            return 0;
+
+        for (Process process : processes)
+            DestroyProcessTree(process);
+
+        return processes.size();
+    }
+
+    /** Destroys a process along with any processes that it started. Descendant processes can only be identified on Java 9 or later, so on earlier versions only the process itself is destroyed.
+     *
+     * @param process Process to destroy
+     */
+    public static void DestroyProcessTree(Process process)
+    {
+        try
+        {
+            Class<?> processHandleClass = Class.forName("java.lang.ProcessHandle");
+            Object processHandle = Process.class.getMethod("toHandle").invoke(process);
+            Object descendants = processHandleClass.getMethod("descendants").invoke(processHandle);
+            Iterator<?> iterator = (Iterator<?>)Class.forName("java.util.stream.BaseStream").getMethod("iterator").invoke(descendants);
+            Method destroyForcibly = processHandleClass.getMethod("destroyForcibly");
+
+            while (iterator.hasNext())
+                destroyForcibly.invoke(iterator.next());
+        }
+        catch (Exception ex)
+        {
+            // Descendant processes cannot be identified on this version of Java
+        }
+
+        process.destroy();
+    }
+
+    /** This class stores the result of a process that has finished.
+     */
+    public static class ProcessResult
+    {
+        public int ExitCode;
+        public String Output;
+        public String Error;
+
+        public ProcessResult(int exitCode, String output, String error)
+        {
+            ExitCode = exitCode;
+            Output = output;
+            Error = error;
+        }
+    }
+
+    /** This class reads a stream until it ends, passing each line to a parser (if one was specified) and keeping up to a maximum number of the last lines.
+     */
+    private static class StreamDrainer implements Callable<String>
+    {
+        private InputStream _stream;
+        private OutputLineParser _parser;
+        private int _maxLines;
+
+        public StreamDrainer(InputStream stream, OutputLineParser parser, int maxLines)
+        {
+            _stream = stream;
+            _parser = parser;
+            _maxLines = maxLines;
+        }
+
+        public String call() throws Exception
+        {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(_stream));
+            ArrayDeque<String> lines = new ArrayDeque<String>();
+
+            try
+            {
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    if (_parser != null)
+                        _parser.ParseLine(line);
+
+                    if (_maxLines == 0)
+                        continue;
+
+                    if (lines.size() == _maxLines)
+                        lines.removeFirst();
+                    lines.addLast(line);
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+
+            StringBuilder text = new StringBuilder();
+            for (String line : lines)
+                text.append(line + "\n");
+
+            return text.toString();
+        }
+    }
+}
@@ -21,6 +21,7 @@
 
 package mlflex.helper;
 
+import mlflex.core.IterationContext;
 import mlflex.core.NameValuePair;
 import mlflex.core.Settings;
 import mlflex.core.Singletons;
@@ -145,7 +146,7 @@ public class ResultsFileUtilities
         ArrayList<String> filePaths = new ArrayList<String>();
 
         for (int iteration : Singletons.Config.GetIterations())
-            filePaths.add(filePathPattern.replace("Iteration" + Singletons.Iteration, "Iteration" + iteration));
+            filePaths.add(filePathPattern.replace("Iteration" + IterationContext.Current().Iteration, "Iteration" + iteration));
 
         return filePaths;
     }
@@ -21,6 +21,7 @@
 
 package mlflex.helper;
 
+import mlflex.core.IterationContext;
 import mlflex.core.Settings;
 import mlflex.core.Singletons;
 import mlflex.parallelization.LockedCallable;
@@ -45,6 +46,9 @@ public class Vacuum
         {
             public Object call() throws Exception
             {
+                // Files that were kept for reuse are deleted below, so the cache must forget them
+                AnalysisFileCache.Clear();
+
                 // Add a task for each temp directory
                 for (final String directoryPath : ListUtilities.CreateStringList(Settings.TEMP_DATA_DIR, Settings.TEMP_RESULTS_DIR))
                 {
@@ -61,7 +65,7 @@ public class Vacuum
         try
         {
             // Can't do this in a LockedCallable object
-            MiscUtilities.DeleteCoreDirectory(Settings.LOCKS_DIR);
+            MiscUtilities.DeleteCoreDirectory(IterationContext.Current().LocksDir);
         }
         catch (Exception ex)
         {
@@ -0,0 +1,344 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.helper;
+
+import mlflex.core.Singletons;
+import mlflex.parallelization.ExecutionSlots;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/** This class manages a set of long-lived worker processes for a learner template. Rather than starting a new interpreter (R, Python, Java) for every task, jobs are sent to an idle worker over its standard input, and the results are read from its standard output. Each job is framed as a header line ("MLFLEX_JOB numArguments") followed by one argument per line. Each result is framed as a header line ("MLFLEX_RESULT exitStatus numOutputLines numErrorLines") followed by the output lines and then the error lines. Workers that crash are restarted, and workers that exceed the job timeout are killed and replaced.
+ * @author Stephen Piccolo
+ */
+public class WorkerPool
+{
+    public static final String JOB_HEADER = "MLFLEX_JOB";
+    public static final String RESULT_HEADER = "MLFLEX_RESULT";
+
+    private static final ScheduledExecutorService _timeoutService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+    {
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "WorkerPoolTimeout");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private String _workerCommand;
+    private int _numWorkers;
+    private int _numStartedWorkers = 0;
+    private LinkedBlockingQueue<Worker> _idleWorkers = new LinkedBlockingQueue<Worker>();
+    private ArrayList<Worker> _allWorkers = new ArrayList<Worker>();
+
+    /** Constructor. Worker processes are started as they are needed.
+     *
+     * @param workerCommand System command that starts a worker process
+     * @param numWorkers Maximum number of worker processes that will run at once
+     */
+    public WorkerPool(String workerCommand, int numWorkers)
+    {
+        _workerCommand = workerCommand;
+        _numWorkers = Math.max(1, numWorkers);
+    }
+
+    /** Sends a job to an idle worker and waits for the result. If the worker crashes while executing the job, it is restarted and the job is attempted once more.
+     *
+     * @param arguments Command-line arguments for the job
+     * @param timeoutMinutes Number of minutes after which the job will be abandoned and the worker killed (zero or less for no limit)
+     * @return Result of the job
+     * @throws Exception
+     */
+    public JobResult RunJob(ArrayList<String> arguments, long timeoutMinutes) throws Exception
+    {
+        for (String argument : arguments)
+            if (argument.contains("\n"))
+                throw new Exception("Arguments sent to worker processes cannot contain line breaks: " + argument);
+
+        // The job counts as an external process while it runs
+        ExecutionSlots.ChildProcessSlot slot = ExecutionSlots.AcquireChildProcessSlot();
+
+        try
+        {
+            for (int attempt = 1; ; attempt++)
+            {
+                Worker worker = AcquireWorker();
+
+                try
+                {
+                    JobResult result = worker.Run(arguments, timeoutMinutes);
+                    _idleWorkers.put(worker);
+                    return result;
+                }
+                catch (WorkerTimeoutException ex)
+                {
+                    RemoveWorker(worker);
+                    throw ex;
+                }
+                catch (Exception ex)
+                {
+                    RemoveWorker(worker);
+
+                    // The worker is also destroyed when the task that is using it times out, in which case the job should not be retried
+                    if (Thread.currentThread().isInterrupted())
+                        throw new Exception("The worker process (" + _workerCommand + ") was stopped because the task that was using it was interrupted. Error output: " + worker.GetErrorOutput(), ex);
+                    if (attempt > 1)
+                        throw new Exception("The worker process (" + _workerCommand + ") failed twice for the same job. Error output: " + worker.GetErrorOutput(), ex);
+
+                    Singletons.Log.Debug("A worker process crashed, so it will be restarted. Error output: " + worker.GetErrorOutput());
+                }
+            }
+        }
+        finally
+        {
+            slot.Release();
+        }
+    }
+
+    /** Stops all worker processes in this pool.
+     */
+    public synchronized void Shutdown()
+    {
+        for (Worker worker : _allWorkers)
+            worker.Stop();
+
+        _allWorkers.clear();
+        _idleWorkers.clear();
+        _numStartedWorkers = 0;
+    }
+
+    private Worker AcquireWorker() throws Exception
+    {
+        while (true)
+        {
+            Worker worker = _idleWorkers.poll();
+            if (worker != null)
+                return worker;
+
+            synchronized (this)
+            {
+                if (_numStartedWorkers < _numWorkers)
+                {
+                    worker = new Worker(_workerCommand);
+                    _numStartedWorkers++;
+                    _allWorkers.add(worker);
+                    return worker;
+                }
+            }
+
+            // Check periodically because a worker may be removed (rather than returned) by another thread
+            worker = _idleWorkers.poll(1, TimeUnit.SECONDS);
+            if (worker != null)
+                return worker;
+        }
+    }
+
+    private synchronized void RemoveWorker(Worker worker)
+    {
+        worker.Stop();
+
+        if (_allWorkers.remove(worker))
+            _numStartedWorkers--;
+    }
+
+    /** This class stores the result of a job that was executed by a worker process.
+     */
+    public static class JobResult
+    {
+        public int ExitStatus;
+        public String Output;
+        public String Error;
+
+        public JobResult(int exitStatus, String output, String error)
+        {
+            ExitStatus = exitStatus;
+            Output = output;
+            Error = error;
+        }
+    }
+
+    /** This exception is thrown when a job does not complete within the time limit.
+     */
+    public static class WorkerTimeoutException extends Exception
+    {
+        private static final long serialVersionUID = 1L;
+
+        public WorkerTimeoutException(String message)
+        {
+            super(message);
+        }
+    }
+
+    /** This class wraps a single worker process.
+     */
+    private static class Worker
+    {
+        /** Only the end of the error output is kept for each job, because some workers write a lot of diagnostic output */
+        private static final int MAX_ERROR_CHARS = 64 * 1024;
+
+        private Process _process;
+        private BufferedWriter _input;
+        private BufferedReader _output;
+        private final StringBuffer _error = new StringBuffer();
+        private volatile boolean _timedOut = false;
+
+        public Worker(String workerCommand) throws Exception
+        {
+            Singletons.Log.Debug("Starting worker process: " + workerCommand);
+
+            _process = new ProcessBuilder("/bin/sh", "-c", "exec " + workerCommand).start();
+            _input = new BufferedWriter(new OutputStreamWriter(_process.getOutputStream(), "UTF-8"));
+            _output = new BufferedReader(new InputStreamReader(_process.getInputStream(), "UTF-8"));
+
+            // The error stream is drained continuously so the worker never blocks on it
+            final BufferedReader errorReader = new BufferedReader(new InputStreamReader(_process.getErrorStream(), "UTF-8"));
+            Thread errorThread = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        String line;
+                        while ((line = errorReader.readLine()) != null)
+                        {
+                            synchronized (_error)
+                            {
+                                _error.append(line + "\n");
+
+                                if (_error.length() > MAX_ERROR_CHARS)
+                                    _error.delete(0, _error.length() - MAX_ERROR_CHARS);
+                            }
+                        }
+                    }
+                    catch (Exception ex)
+                    {
+                        // The process has ended
+                    }
+                }
+            }, "WorkerPoolError");
+            errorThread.setDaemon(true);
+            errorThread.start();
+        }
+
+        public JobResult Run(ArrayList<String> arguments, long timeoutMinutes) throws Exception
+        {
+            // The error output that is reported applies only to this job
+            synchronized (_error)
+            {
+                _error.setLength(0);
+            }
+
+            ScheduledFuture<?> timeout = null;
+            if (timeoutMinutes > 0)
+                timeout = _timeoutService.schedule(new Runnable()
+                {
+                    public void run()
+                    {
+                        _timedOut = true;
+                        _process.destroy();
+                    }
+                }, timeoutMinutes, TimeUnit.MINUTES);
+
+            // If the task that is running this job times out, the worker process will be destroyed
+            ProcessExecutor.RegisterChildProcess(_process);
+
+            try
+            {
+                _input.write(JOB_HEADER + " " + arguments.size() + "\n");
+                for (String argument : arguments)
+                    _input.write(argument + "\n");
+                _input.flush();
+
+                String header = ReadLine();
+                String[] headerItems = header.split(" ");
+                if (headerItems.length != 4 || !headerItems[0].equals(RESULT_HEADER))
+                    throw new Exception("Invalid result header from worker process: " + header);
+
+                String output = ReadLines(Integer.parseInt(headerItems[2]));
+                String error = ReadLines(Integer.parseInt(headerItems[3]));
+
+                return new JobResult(Integer.parseInt(headerItems[1]), output, error);
+            }
+            catch (Exception ex)
+            {
+                if (_timedOut)
+                    throw new WorkerTimeoutException("The worker process did not complete the job within " + timeoutMinutes + " minutes.");
+                throw ex;
+            }
+            finally
+            {
+                ProcessExecutor.UnregisterChildProcess(_process);
+
+                if (timeout != null)
+                    timeout.cancel(false);
+            }
+        }
+
+        public String GetErrorOutput()
+        {
+            synchronized (_error)
+            {
+                return _error.toString();
+            }
+        }
+
+        public void Stop()
+        {
+            try
+            {
+                _input.close();
+            }
+            catch (Exception ex)
+            {
+                // The process has already ended
+            }
+
+            _process.destroy();
+        }
+
+        private String ReadLine() throws Exception
+        {
+            String line = _output.readLine();
+            if (line == null)
+                throw new Exception("The worker process ended unexpectedly.");
+            return line;
+        }
+
+        private String ReadLines(int numLines) throws Exception
+        {
+            StringBuilder lines = new StringBuilder();
+            for (int i = 0; i < numLines; i++)
+                lines.append(ReadLine() + "\n");
+            return lines.toString();
+        }
+    }
+}
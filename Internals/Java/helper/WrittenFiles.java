@@ -0,0 +1,121 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.helper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.concurrent.Callable;
+
+/** This class keeps track of the files that are written while a task is executed, so that only those files need to be sent elsewhere (see RemoteTaskStateStore). Files are recorded by the methods in FileUtilities that write files. Tracking applies to the thread on which it was started and to work that is handed to other threads with Wrap.
+ * @author Stephen Piccolo
+ */
+public class WrittenFiles
+{
+    private static final ThreadLocal<LinkedHashSet<String>> _threadFiles = new ThreadLocal<LinkedHashSet<String>>();
+
+    /** Starts keeping track of the files that are written by the current thread.
+     *
+     * @return The files that were being tracked previously on this thread (null if none); this must be passed to End
+     */
+    public static LinkedHashSet<String> Begin()
+    {
+        LinkedHashSet<String> previous = _threadFiles.get();
+        _threadFiles.set(new LinkedHashSet<String>());
+
+        return previous;
+    }
+
+    /** Stops keeping track of the files that are written by the current thread.
+     *
+     * @param previous Value that was returned by Begin
+     */
+    public static void End(LinkedHashSet<String> previous)
+    {
+        if (previous == null)
+            _threadFiles.remove();
+        else
+            _threadFiles.set(previous);
+    }
+
+    /** Indicates that a file has been written. This has no effect if files are not being tracked on the current thread.
+     *
+     * @param filePath Absolute file path
+     */
+    public static void Record(String filePath)
+    {
+        LinkedHashSet<String> files = _threadFiles.get();
+
+        if (files != null)
+            synchronized (files)
+            {
+                files.add(filePath);
+            }
+    }
+
+    /** Retrieves the files that have been written since tracking was started on the current thread.
+     *
+     * @return Absolute file paths (empty if files are not being tracked)
+     */
+    public static ArrayList<String> Get()
+    {
+        LinkedHashSet<String> files = _threadFiles.get();
+
+        if (files == null)
+            return new ArrayList<String>();
+
+        synchronized (files)
+        {
+            return new ArrayList<String>(files);
+        }
+    }
+
+    /** Creates a task that records the files it writes along with those of the current thread. This should be used when work is handed to other threads.
+     *
+     * @param callable Task to be executed
+     * @return Task that records the files it writes
+     */
+    public static <T> Callable<T> Wrap(final Callable<T> callable)
+    {
+        final LinkedHashSet<String> files = _threadFiles.get();
+
+        if (files == null)
+            return callable;
+
+        return new Callable<T>()
+        {
+            public T call() throws Exception
+            {
+                LinkedHashSet<String> previous = _threadFiles.get();
+                _threadFiles.set(files);
+
+                try
+                {
+                    return callable.call();
+                }
+                finally
+                {
+                    End(previous);
+                }
+            }
+        };
+    }
+}
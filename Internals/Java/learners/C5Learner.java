@@ -40,14 +40,8 @@ public class C5Learner extends AbstractMachineLearner
     @Override
     public ModelPredictions TrainTest(String commandTemplate, ArrayList<String> parameters, DataInstanceCollection trainingData, DataInstanceCollection testData, ArrayList<String> features) throws Exception
     {
-        String uniqueID = MiscUtilities.GetUniqueID();
-
         // Create input files for C5
-        new AnalysisFileCreator(Settings.TEMP_DATA_DIR, uniqueID, trainingData, trainingData, true, features).CreateC5NamesFile();
-        new AnalysisFileCreator(Settings.TEMP_DATA_DIR, uniqueID, trainingData, trainingData, true, features).CreateC5TrainDataFile();
-        new AnalysisFileCreator(Settings.TEMP_DATA_DIR, uniqueID, testData, trainingData, true, features).CreateC5TestDataFile();
-
-        String inputPath = Settings.TEMP_DATA_DIR + uniqueID;
+        String inputPath = AnalysisFileCache.Acquire(AnalysisFileCache.Format.C5, trainingData, testData, true, features);
 
         // Construct command-line arguments
         String command = commandTemplate.replace("{PROGRAM}", parameters.get(0)).replace("{INPUT_PATH}", inputPath);
@@ -60,7 +54,7 @@ public class C5Learner extends AbstractMachineLearner
         HashMap<String, String> results = CommandLineClient.RunAnalysis(command);
 
         // Clean up
-        FileUtilities.DeleteFilesInDirectory(Settings.TEMP_DATA_DIR, uniqueID + ".*");
+        AnalysisFileCache.Release(inputPath);
 
         // Parse the output file lines
         ArrayList<String> outputLines = ListUtilities.CreateStringList(CommandLineClient.GetCommandResult(results, CommandLineClient.STANDARD_OUT_KEY).split("\n"));
@@ -47,10 +47,10 @@ public class GenericArffLearner extends AbstractMachineLearner
         String command = commandTemplate.replace("{INPUT_TRAINING_FILE}", inputFilePath).replace("{OUTPUT_FILE}", outDirectory + outFileName).replace("{PARAMETERS}", "\"" + ListUtilities.Join(algorithmParameters, "\" \"") + "\"");
 
         // Invoke the program at the command line
-        HashMap<String, String> results = CommandLineClient.RunAnalysis(command, outDirectory);
+        HashMap<String, String> results = CommandLineClient.RunAnalysis(command, outDirectory, commandTemplate);
 
-        // Delete the input file
-        FileUtilities.DeleteFile(inputFilePath);
+        // Release the input file
+        AnalysisFileCache.Release(inputFilePath);
 
         // Retrieve the output file text
         String outputFileText = CommandLineClient.GetCommandResult(results, outFileName);
@@ -77,11 +77,11 @@ public class GenericArffLearner extends AbstractMachineLearner
         String command = commandTemplate.replace("{INPUT_TRAINING_FILE}", inputTrainingFilePath).replace("{INPUT_TEST_FILE}", inputTestFilePath).replace("{OUTPUT_FILE}", outDirectory + outFileName).replace("{PARAMETERS}", "\"" + ListUtilities.Join(algorithmParameters, "\" \"") + "\"");
 
         // Invoke the program at the command line
-        HashMap<String, String> results = CommandLineClient.RunAnalysis(command, outDirectory);
+        HashMap<String, String> results = CommandLineClient.RunAnalysis(command, outDirectory, commandTemplate);
 
-        // Delete the input files
-        FileUtilities.DeleteFile(inputTrainingFilePath);
-        FileUtilities.DeleteFile(inputTestFilePath);
+        // Release the input files
+        AnalysisFileCache.Release(inputTrainingFilePath);
+        AnalysisFileCache.Release(inputTestFilePath);
 
         // Retrieve the standard output
         String standardOutput = CommandLineClient.GetCommandResult(results, CommandLineClient.STANDARD_OUT_KEY);
@@ -123,7 +123,7 @@ public class GenericArffLearner extends AbstractMachineLearner
         return new ModelPredictions(standardOutput, new Predictions(predictions));
     }
 
-    /** This method creates an input file in the format that is specific to this learner. It is designed to be extensible to support various input file formats.
+    /** This method creates an input file in the format that is specific to this learner. It is designed to be extensible to support various input file formats. The file is released with AnalysisFileCache.Release, which deletes it if it was not obtained from the cache.
      *
      * @param instances Data instances that will be output to the file
      * @return Path to the saved file
@@ -131,7 +131,7 @@ public class GenericArffLearner extends AbstractMachineLearner
      */
     protected String CreateInputFile(DataInstanceCollection instances, ArrayList<String> features) throws Exception
     {
-        return new AnalysisFileCreator(Settings.TEMP_DATA_DIR, MiscUtilities.GetUniqueID(), instances, null, true, features).CreateArffFile().GetArffFilePath();
+        return AnalysisFileCache.Acquire(AnalysisFileCache.Format.ARFF, instances, null, true, features);
     }
 
     /** Creates an output directory to where results will be stored.
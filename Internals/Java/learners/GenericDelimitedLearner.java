@@ -24,9 +24,7 @@ package mlflex.learners;
 import java.util.ArrayList;
 
 import mlflex.core.DataInstanceCollection;
-import mlflex.core.Settings;
-import mlflex.helper.AnalysisFileCreator;
-import mlflex.helper.MiscUtilities;
+import mlflex.helper.AnalysisFileCache;
 
 /** This class is designed to support interfacing between ML-Flex and any third-party machine-learning software that can handle input files in a tab-delimited format. The user specifies all command-line arguments in the Config/* files. It is also important that the third-party software output the results in a specific (simple) format and in a certain order. Within the ML-Flex distribution is a tutorial that explains more about how to do this.
  */
@@ -35,6 +33,6 @@ public class GenericDelimitedLearner extends GenericArffLearner
     @Override
     protected String CreateInputFile(DataInstanceCollection instances, ArrayList<String> features) throws Exception
     {
-        return new AnalysisFileCreator(Settings.TEMP_DATA_DIR, MiscUtilities.GetUniqueID(), instances, null, true, features).CreateTabDelimitedFile().GetTabDelimitedFilePath();
+        return AnalysisFileCache.Acquire(AnalysisFileCache.Format.TAB, instances, null, true, features);
     }
 }
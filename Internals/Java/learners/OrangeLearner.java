@@ -35,7 +35,7 @@ public class OrangeLearner extends AbstractMachineLearner
     public ArrayList<String> SelectOrRankFeatures(String commandTemplate, ArrayList<String> algorithmParameters, DataInstanceCollection trainData) throws Exception
     {
         // Create a file with the training data that can be used as an input to Orange
-        String dataFilePath = new AnalysisFileCreator(Settings.TEMP_DATA_DIR, "OrangeDataForRanking_" + MiscUtilities.GetUniqueID(), trainData, null, true, trainData.GetDataPointNames()).CreateOrangeFile().GetOrangeFilePath();
+        String dataFilePath = AnalysisFileCache.Acquire(AnalysisFileCache.Format.ORANGE, trainData, null, true, trainData.GetDataPointNames());
 
         // Specify output paths
         String outputDirectoryPath = Settings.TEMP_RESULTS_DIR + MiscUtilities.GetUniqueID() + "/";
@@ -47,13 +47,13 @@ public class OrangeLearner extends AbstractMachineLearner
         String command = commandTemplate.replace("{ALGORITHM}", "\"" + algorithmParameters.get(0) + "\"").replace("{INPUT_TRAINING_FILE}", dataFilePath).replace("{OUTPUT_FILE}", outputDirectoryPath + outputFileName);
 
         // Invoke Orange at the command line
-        HashMap<String, String> results = CommandLineClient.RunAnalysis(command, outputDirectoryPath);
+        HashMap<String, String> results = CommandLineClient.RunAnalysis(command, outputDirectoryPath, commandTemplate);
 
         // Parse the selected features from the output
         ArrayList<String> features = ListUtilities.CreateStringList(CommandLineClient.GetCommandResult(results, outputFileName).split("\n"));
 
         // Delete unnecessary files
-        FileUtilities.DeleteFile(dataFilePath);
+        AnalysisFileCache.Release(dataFilePath);
         FileUtilities.DeleteFile(outputDirectoryPath + outputFileName);
 
         return features;
@@ -63,10 +63,10 @@ public class OrangeLearner extends AbstractMachineLearner
     public ModelPredictions TrainTest(String commandTemplate, ArrayList<String> algorithmParameters, DataInstanceCollection trainData, DataInstanceCollection testData, ArrayList<String> features) throws Exception
     {
         // Create the input file for training data
-        String trainingFilePath = new AnalysisFileCreator(Settings.TEMP_DATA_DIR, "OrangeTrain_" + MiscUtilities.GetUniqueID(), trainData, testData, true, features).CreateOrangeFile().GetOrangeFilePath();
+        String trainingFilePath = AnalysisFileCache.Acquire(AnalysisFileCache.Format.ORANGE, trainData, testData, true, features);
 
         // Create the input file for test data
-        String testFilePath = new AnalysisFileCreator(Settings.TEMP_DATA_DIR, "OrangeTest_" + MiscUtilities.GetUniqueID(), testData, trainData, false, features).CreateOrangeFile().GetOrangeFilePath();
+        String testFilePath = AnalysisFileCache.Acquire(AnalysisFileCache.Format.ORANGE, testData, trainData, false, features);
 
         // Specify file paths
         String outputDirectoryPath = Settings.TEMP_RESULTS_DIR + MiscUtilities.GetUniqueID() + "/";
@@ -79,7 +79,7 @@ public class OrangeLearner extends AbstractMachineLearner
         String command = commandTemplate.replace("{ALGORITHM}", "\"" + algorithmParameters.get(0) + "\"").replace("{INPUT_TRAINING_FILE}", trainingFilePath).replace("{INPUT_TEST_FILE}", testFilePath).replace("{PREDICTIONS_FILE}", outputDirectoryPath + predictionsFileName).replace("{PROBABILITIES_FILE}", outputDirectoryPath + probabilitiesFileName);
 
         // Obtain results that resulted from Orange processing
-        HashMap<String, String> results = CommandLineClient.RunAnalysis(command, outputDirectoryPath);
+        HashMap<String, String> results = CommandLineClient.RunAnalysis(command, outputDirectoryPath, commandTemplate);
 
         // Get raw prediction information
         String predictionText = CommandLineClient.GetCommandResult(results, predictionsFileName);
@@ -108,8 +108,8 @@ public class OrangeLearner extends AbstractMachineLearner
         }
 
         // Clean up
-        FileUtilities.DeleteFile(trainingFilePath);
-        FileUtilities.DeleteFile(testFilePath);
+        AnalysisFileCache.Release(trainingFilePath);
+        AnalysisFileCache.Release(testFilePath);
 
         return new ModelPredictions(CommandLineClient.GetCommandResult(results, CommandLineClient.STANDARD_OUT_KEY), new Predictions(predictions));
     }
@@ -26,7 +26,6 @@ import mlflex.helper.*;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 
 /** This class contains methods for interacting with the R Project software via command-line calls.
  * @author Stephen Piccolo
@@ -45,10 +44,10 @@ public class RLearner extends AbstractMachineLearner
         CheckDataTypes(trainingData, testData);
 
         // Create training data file that will be used as input
-        String trainingFilePath = new AnalysisFileCreator(Settings.TEMP_DATA_DIR, "RTrain_" + MiscUtilities.GetUniqueID(), trainingData, testData, true, features).CreateTransposedTabDelimitedFile(false).GetTransposedTabDelimitedFilePath();
+        String trainingFilePath = AnalysisFileCache.Acquire(AnalysisFileCache.Format.TRANSPOSED_TAB, trainingData, testData, true, features);
 
         // Create test data file that will be used as input
-        String testFilePath = new AnalysisFileCreator(Settings.TEMP_DATA_DIR, "RTest_" + MiscUtilities.GetUniqueID(), testData, trainingData, false, features).CreateTransposedTabDelimitedFile(false).GetTransposedTabDelimitedFilePath();
+        String testFilePath = AnalysisFileCache.Acquire(AnalysisFileCache.Format.TRANSPOSED_TAB, testData, trainingData, false, features);
 
         // Create output directory
         String outputDirectoryPath = Settings.TEMP_RESULTS_DIR + MiscUtilities.GetUniqueID() + "/";
@@ -61,11 +60,11 @@ public class RLearner extends AbstractMachineLearner
         String command = commandTemplate.replace("{ALGORITHM}", algorithmParameters.get(0)).replace("{INPUT_TRAINING_FILE}", trainingFilePath).replace("{INPUT_TEST_FILE}", testFilePath).replace("{OUTPUT_FILE}", outputDirectoryPath + outputFileName);
 
         // Retrieve the results
-        HashMap<String, String> results = CommandLineClient.RunAnalysis(command, outputDirectoryPath);
+        HashMap<String, String> results = CommandLineClient.RunAnalysis(command, outputDirectoryPath, commandTemplate);
 
-        // Remove the input files
-        FileUtilities.DeleteFile(trainingFilePath);
-        FileUtilities.DeleteFile(testFilePath);
+        // Release the input files
+        AnalysisFileCache.Release(trainingFilePath);
+        AnalysisFileCache.Release(testFilePath);
 
         // Parse the output
         String outputText = CommandLineClient.GetCommandResult(results, outputFileName);
@@ -124,10 +123,10 @@ Singletons.Log.Debug(dependentVariableValue);
     {
         for (String dataPointName : trainingData.GetDataPointNames())
         {
-            HashSet<String> uniqueValues = new HashSet<String>(trainingData.GetUniqueValues(dataPointName));
-            uniqueValues.addAll(testData.GetUniqueValues(dataPointName));
+            DataColumnStatistics statistics = trainingData.GetColumnStatistics(dataPointName).Combine(testData.GetColumnStatistics(dataPointName));
+            ArrayList<String> uniqueValues = statistics.UniqueValues;
 
-            if (DataTypeUtilities.GetGeneralDataType(new ArrayList<String>(uniqueValues)).equals(GeneralDataType.Nominal))
+            if (statistics.DataType.equals(GeneralDataType.Nominal))
             {
                 if (uniqueValues.size() == 2)
                 {
@@ -84,7 +84,7 @@ public class RandomMachineLearner extends AbstractMachineLearner
         long randomSeed = 0;
         for (String instanceID : dataInstances.GetIDs())
             randomSeed += (long)instanceID.hashCode();
-        randomSeed += Singletons.RandomSeed;
+        randomSeed += IterationContext.Current().RandomSeed;
 
         return randomSeed;
     }
@@ -0,0 +1,393 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.learners;
+
+import mlflex.core.*;
+import mlflex.helper.ListUtilities;
+import mlflex.parallelization.MultiThreadedTaskHandler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+/** This class ranks features with the ReliefF algorithm (Kononenko, 1994) within the ML-Flex process. It follows the implementation in Weka's ReliefFAttributeEval (without weighting neighbors by distance), so the rankings should be the same as those from Weka, apart from the order of features with the same weight. The parameters are specified as for Weka:
+ *
+ * -M: Number of instances to sample (-1 to use all instances)
+ * -D: Seed for sampling instances
+ * -K: Number of nearest neighbors (hits and misses) to use for each sampled instance
+ *
+ * The distances between all pairs of training instances are calculated once (in parallel) and stored, and then the weights are accumulated in parallel across the sampled instances. The distance matrix requires memory in proportion to the square of the number of training instances; when there are too many instances for the distances to fit in an array, they are calculated as needed instead.
+ * @author Stephen Piccolo
+ */
+public class ReliefFRanker extends AbstractMachineLearner
+{
+    /** The work is divided into this many groups per thread, so that threads that finish early can help with the remaining groups */
+    private static final int NUM_GROUPS_PER_THREAD = 4;
+
+    /** The largest number of distances that will be stored (some JVMs cannot allocate arrays quite as large as Integer.MAX_VALUE) */
+    private static final long MAX_NUM_DISTANCES = Integer.MAX_VALUE - 8;
+
+    @Override
+    public ArrayList<String> SelectOrRankFeatures(String commandTemplate, ArrayList<String> algorithmParameters, DataInstanceCollection trainData) throws Exception
+    {
+        String[] options = ListUtilities.Join(algorithmParameters, " ").trim().split("\\s+");
+        int numSamples = GetOption(options, "-M", -1);
+        int seed = GetOption(options, "-D", 1);
+        final int numNeighbors = GetOption(options, "-K", 10);
+
+        final ArrayList<String> dataPointNames = trainData.GetDataPointNames();
+        final FeatureMatrix matrix = new FeatureMatrix(trainData, dataPointNames);
+        final int numInstances = matrix.Classes.length;
+        final int numClasses = Singletons.InstanceVault.DependentVariableOptions.size();
+
+        // The prior probability of each class is used to weight the misses from each class
+        final double[] classProbabilities = new double[numClasses];
+        for (int classIndex : matrix.Classes)
+            if (classIndex >= 0)
+                classProbabilities[classIndex] += 1.0 / numInstances;
+
+        final double[] distances = GetDistanceMatrix(matrix);
+
+        // Instances are sampled in the same way as in Weka
+        ArrayList<Integer> samples = new ArrayList<Integer>();
+        int numSampled = (numSamples == -1 || numSamples > numInstances) ? numInstances : numSamples;
+        Random random = new Random(seed);
+
+        for (int i = 0; i < numSampled; i++)
+        {
+            int instance = numSampled == numInstances ? i : Math.abs(random.nextInt() % numInstances);
+
+            if (matrix.Classes[instance] >= 0)
+                samples.add(instance);
+        }
+
+        MultiThreadedTaskHandler taskHandler = new MultiThreadedTaskHandler("accumulating ReliefF weights");
+        for (final ArrayList<Integer> group : GetGroups(samples))
+            taskHandler.Add(new Callable<Object>()
+            {
+                public Object call() throws Exception
+                {
+                    double[] groupWeights = new double[matrix.NumFeatures];
+
+                    for (int instance : group)
+                        UpdateWeights(matrix, distances, instance, numNeighbors, classProbabilities, groupWeights);
+
+                    return groupWeights;
+                }
+            });
+
+        final double[] weights = new double[dataPointNames.size()];
+        for (Object groupWeights : taskHandler.Execute())
+            for (int j = 0; j < weights.length; j++)
+                weights[j] += ((double[])groupWeights)[j] / numSampled;
+
+        // Features with the same weight remain in alphabetical order
+        ArrayList<Integer> indices = ListUtilities.CreateIntegerSequenceList(0, dataPointNames.size() - 1);
+        Collections.sort(indices, new Comparator<Integer>()
+        {
+            public int compare(Integer index1, Integer index2)
+            {
+                return Double.compare(weights[index2], weights[index1]);
+            }
+        });
+
+        ArrayList<String> rankedFeatures = new ArrayList<String>();
+        for (int index : indices)
+            rankedFeatures.add(dataPointNames.get(index));
+
+        return rankedFeatures;
+    }
+
+    @Override
+    public ModelPredictions TrainTest(String commandTemplate, ArrayList<String> classificationParameters, DataInstanceCollection trainingData, DataInstanceCollection testData, ArrayList<String> features) throws Exception
+    {
+        throw new Exception("The ReliefF ranker can only be used for ranking features, not for classification.");
+    }
+
+    private static int GetOption(String[] options, String name, int defaultValue)
+    {
+        for (int i = 0; i < options.length - 1; i++)
+            if (options[i].equals(name))
+                return Integer.parseInt(options[i + 1]);
+
+        return defaultValue;
+    }
+
+    /** Divides a list of values into groups so they can be processed in parallel. Values are assigned to groups in rotation, so each group has a similar amount of work when the cost of each value depends on its position.
+     *
+     * @param values Values to divide
+     * @return Groups of values
+     */
+    private static ArrayList<ArrayList<Integer>> GetGroups(ArrayList<Integer> values)
+    {
+        int numGroups = Math.max(1, Math.min(values.size(), Settings.NUM_THREADS * NUM_GROUPS_PER_THREAD));
+
+        ArrayList<ArrayList<Integer>> groups = new ArrayList<ArrayList<Integer>>();
+        for (int i = 0; i < numGroups; i++)
+            groups.add(new ArrayList<Integer>());
+
+        for (int i = 0; i < values.size(); i++)
+            groups.get(i % numGroups).add(values.get(i));
+
+        return groups;
+    }
+
+    /** Calculates the distance between each pair of instances. The distance is the sum of the differences across all features.
+     *
+     * @param matrix Feature values
+     * @return Distances for each pair of instances (see GetDistanceIndex), or null if there are too many pairs to store
+     * @throws Exception
+     */
+    private static double[] GetDistanceMatrix(final FeatureMatrix matrix) throws Exception
+    {
+        final int numInstances = matrix.Classes.length;
+        long numDistances = (long)numInstances * (numInstances - 1) / 2;
+
+        if (numDistances > MAX_NUM_DISTANCES)
+        {
+            Singletons.Log.Debug("The " + numDistances + " ReliefF distances for " + numInstances + " instances are too many to store, so they will be calculated as needed.");
+            return null;
+        }
+
+        final double[] distances = new double[(int)numDistances];
+
+        MultiThreadedTaskHandler taskHandler = new MultiThreadedTaskHandler("calculating ReliefF distances");
+        for (final ArrayList<Integer> group : GetGroups(ListUtilities.CreateIntegerSequenceList(0, numInstances - 1)))
+            taskHandler.Add(new Callable<Object>()
+            {
+                public Object call() throws Exception
+                {
+                    for (int instance1 : group)
+                        for (int instance2 = instance1 + 1; instance2 < numInstances; instance2++)
+                            distances[GetDistanceIndex(numInstances, instance1, instance2)] = GetDistance(matrix, instance1, instance2);
+
+                    return Boolean.TRUE;
+                }
+            });
+        taskHandler.Execute();
+
+        return distances;
+    }
+
+    /** Calculates the distance between two instances as the sum of the differences across all features.
+     *
+     * @param matrix Feature values
+     * @param instance1 Index of one instance
+     * @param instance2 Index of the other instance
+     * @return Distance between the instances
+     */
+    private static double GetDistance(FeatureMatrix matrix, int instance1, int instance2)
+    {
+        double distance = 0;
+        for (int j = 0; j < matrix.NumFeatures; j++)
+            distance += matrix.GetDifference(j, instance1, instance2);
+
+        return distance;
+    }
+
+    /** Indicates where the distance between two instances is stored. Only one distance is stored for each pair of instances.
+     *
+     * @param numInstances Number of instances
+     * @param instance1 Index of one instance
+     * @param instance2 Index of the other instance (must be different from the first)
+     * @return Index in the distance matrix
+     */
+    private static int GetDistanceIndex(int numInstances, int instance1, int instance2)
+    {
+        int i = Math.min(instance1, instance2);
+        int j = Math.max(instance1, instance2);
+
+        return (int)((long)i * (2L * numInstances - i - 1) / 2) + (j - i - 1);
+    }
+
+    /** Finds the nearest neighbors of an instance in each class (the hits and the misses) and updates the feature weights accordingly. Features that differ between the instance and its hits are penalized, and features that differ between the instance and its misses are rewarded.
+     *
+     * @param matrix Feature values
+     * @param distances Distances between instances (null if they should be calculated as needed)
+     * @param instance Index of the sampled instance
+     * @param numNeighbors Number of neighbors to find in each class
+     * @param classProbabilities Prior probability of each class
+     * @param weights Weights to be updated
+     */
+    private static void UpdateWeights(FeatureMatrix matrix, double[] distances, int instance, int numNeighbors, double[] classProbabilities, double[] weights)
+    {
+        int numInstances = matrix.Classes.length;
+        int numClasses = classProbabilities.length;
+
+        // As in Weka, a neighbor replaces the current worst neighbor in its class only if it is strictly closer
+        int[][] neighbors = new int[numClasses][numNeighbors];
+        double[][] neighborDistances = new double[numClasses][numNeighbors];
+        int[] numStored = new int[numClasses];
+        int[] worst = new int[numClasses];
+
+        for (int other = 0; other < numInstances; other++)
+        {
+            int classIndex = matrix.Classes[other];
+            if (other == instance || classIndex < 0)
+                continue;
+
+            double distance = distances == null ? GetDistance(matrix, instance, other) : distances[GetDistanceIndex(numInstances, instance, other)];
+
+            if (numStored[classIndex] < numNeighbors)
+            {
+                neighbors[classIndex][numStored[classIndex]] = other;
+                neighborDistances[classIndex][numStored[classIndex]] = distance;
+                numStored[classIndex]++;
+            }
+            else if (distance < neighborDistances[classIndex][worst[classIndex]])
+            {
+                neighbors[classIndex][worst[classIndex]] = other;
+                neighborDistances[classIndex][worst[classIndex]] = distance;
+            }
+            else
+                continue;
+
+            double worstDistance = -1;
+            for (int k = 0; k < numStored[classIndex]; k++)
+                if (neighborDistances[classIndex][k] > worstDistance)
+                {
+                    worstDistance = neighborDistances[classIndex][k];
+                    worst[classIndex] = k;
+                }
+        }
+
+        int instanceClass = matrix.Classes[instance];
+        double missNormalization = 1.0 - classProbabilities[instanceClass];
+
+        for (int classIndex = 0; classIndex < numClasses; classIndex++)
+            for (int k = 0; k < numStored[classIndex]; k++)
+                for (int j = 0; j < matrix.NumFeatures; j++)
+                {
+                    double difference = matrix.GetDifference(j, instance, neighbors[classIndex][k]) / numStored[classIndex];
+
+                    if (classIndex == instanceClass)
+                        weights[j] -= difference;
+                    else if (numClasses > 2)
+                        weights[j] += (classProbabilities[classIndex] / missNormalization) * difference;
+                    else
+                        weights[j] += difference;
+                }
+    }
+
+    /** This class stores the values of each feature for each training instance as primitives. Numeric values are scaled to the range of each feature, and nominal values are stored as dictionary codes.
+     */
+    private static class FeatureMatrix
+    {
+        public final int NumFeatures;
+        /** Class index of each instance (-1 if unknown) */
+        public final int[] Classes;
+        /** Value of each feature for each instance, indexed by instance and then by feature (NaN if missing) */
+        private final double[][] _values;
+        /** Number of unique values for nominal features (zero for numeric features) */
+        private final int[] _numNominalValues;
+
+        public FeatureMatrix(DataInstanceCollection data, ArrayList<String> dataPointNames) throws Exception
+        {
+            ArrayList<String> instanceIDs = data.GetIDs();
+            int[] rows = data.GetRows(instanceIDs);
+
+            NumFeatures = dataPointNames.size();
+            Classes = new int[instanceIDs.size()];
+            _values = new double[instanceIDs.size()][NumFeatures];
+            _numNominalValues = new int[NumFeatures];
+
+            for (int i = 0; i < Classes.length; i++)
+                Classes[i] = Singletons.InstanceVault.DependentVariableOptions.indexOf(Singletons.InstanceVault.GetDependentVariableValue(instanceIDs.get(i)));
+
+            for (int j = 0; j < NumFeatures; j++)
+            {
+                DataColumn column = data.GetColumn(dataPointNames.get(j));
+
+                if (column == null)
+                {
+                    for (int i = 0; i < rows.length; i++)
+                        _values[i][j] = Double.NaN;
+                }
+                else if (column.IsNumeric())
+                {
+                    double min = Double.NaN, max = Double.NaN;
+
+                    for (int i = 0; i < rows.length; i++)
+                    {
+                        double value = column.GetNumeric(rows[i]);
+                        _values[i][j] = value;
+
+                        if (!Double.isNaN(value))
+                        {
+                            min = Double.isNaN(min) ? value : Math.min(min, value);
+                            max = Double.isNaN(max) ? value : Math.max(max, value);
+                        }
+                    }
+
+                    // Features with only one value do not contribute to distances
+                    for (int i = 0; i < rows.length; i++)
+                        if (!Double.isNaN(_values[i][j]))
+                            _values[i][j] = (Double.isNaN(min) || max - min < 1e-6) ? 0 : (_values[i][j] - min) / (max - min);
+                }
+                else
+                {
+                    _numNominalValues[j] = data.GetUniqueValues(dataPointNames.get(j)).size();
+
+                    for (int i = 0; i < rows.length; i++)
+                    {
+                        int code = column.GetCode(rows[i]);
+                        _values[i][j] = code < 0 ? Double.NaN : code;
+                    }
+                }
+            }
+        }
+
+        /** Calculates the difference between two instances for a feature, in the same way as Weka.
+         *
+         * @param feature Feature index
+         * @param instance1 Index of the first instance
+         * @param instance2 Index of the second instance
+         * @return Difference between zero and one
+         */
+        public double GetDifference(int feature, int instance1, int instance2)
+        {
+            double value1 = _values[instance1][feature];
+            double value2 = _values[instance2][feature];
+
+            if (_numNominalValues[feature] > 0)
+            {
+                if (Double.isNaN(value1) || Double.isNaN(value2))
+                    return 1.0 - (1.0 / _numNominalValues[feature]);
+
+                return value1 == value2 ? 0 : 1;
+            }
+
+            if (Double.isNaN(value1) && Double.isNaN(value2))
+                return 1;
+
+            if (Double.isNaN(value1) || Double.isNaN(value2))
+            {
+                double difference = Double.isNaN(value1) ? value2 : value1;
+                return difference < 0.5 ? 1.0 - difference : difference;
+            }
+
+            return Math.abs(value1 - value2);
+        }
+    }
+}
@@ -0,0 +1,468 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.learners;
+
+import mlflex.core.*;
+import mlflex.helper.ListUtilities;
+import mlflex.helper.MathUtilities;
+import mlflex.parallelization.MultiThreadedTaskHandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+
+/** This class ranks features within the ML-Flex process, according to a univariate measure of how well each feature alone distinguishes the classes. It does not invoke any third-party software, so it avoids the overhead of writing input files and starting a separate process for each ranking, and the features are scored in parallel. The measure is specified as the first algorithm parameter:
+ *
+ * info_gain: Information gain with respect to the class (as in Weka's InfoGainAttributeEval)
+ * chi_squared: Chi-squared statistic with respect to the class (as in Weka's ChiSquaredAttributeEval)
+ * t_test: Two-sample t-test (only for experiments with two classes; smaller p-values are ranked higher, and non-numeric features are ranked last)
+ *
+ * As in Weka, numeric features are discretized using the supervised method of Fayyad and Irani before information gain or chi-squared values are calculated, and instances with a missing value are distributed across the feature values in proportion to how often each value occurs. Missing values are ignored by the t-test.
+ * @author Stephen Piccolo
+ */
+public class UnivariateRanker extends AbstractMachineLearner
+{
+    /** The features are divided into this many groups per thread, so that threads that finish early can help with the remaining groups */
+    private static final int NUM_GROUPS_PER_THREAD = 4;
+
+    @Override
+    public ArrayList<String> SelectOrRankFeatures(String commandTemplate, ArrayList<String> algorithmParameters, DataInstanceCollection trainData) throws Exception
+    {
+        if (algorithmParameters.size() == 0)
+            throw new Exception("The measure by which features should be ranked must be specified (info_gain, chi_squared, or t_test).");
+
+        final String measure = algorithmParameters.get(0).trim().toLowerCase();
+        if (!measure.equals("info_gain") && !measure.equals("chi_squared") && !measure.equals("t_test"))
+            throw new Exception("Invalid measure for ranking features: " + algorithmParameters.get(0) + ".");
+
+        final int numClasses = Singletons.InstanceVault.DependentVariableOptions.size();
+        if (measure.equals("t_test") && numClasses != 2)
+            throw new Exception("A t-test can only be used to rank features when there are two classes, but there are " + numClasses + ".");
+
+        ArrayList<String> instanceIDs = trainData.GetIDs();
+        final int[] rows = trainData.GetRows(instanceIDs);
+        final int[] classes = new int[instanceIDs.size()];
+        for (int i = 0; i < classes.length; i++)
+            classes[i] = Singletons.InstanceVault.DependentVariableOptions.indexOf(Singletons.InstanceVault.GetDependentVariableValue(instanceIDs.get(i)));
+
+        final ArrayList<String> dataPointNames = trainData.GetDataPointNames();
+        final DataInstanceCollection data = trainData;
+        final double[] scores = new double[dataPointNames.size()];
+
+        // Each group of features is scored on the shared work-stealing pool
+        int groupSize = Math.max(1, (int)Math.ceil((double)dataPointNames.size() / (Settings.NUM_THREADS * NUM_GROUPS_PER_THREAD)));
+        MultiThreadedTaskHandler taskHandler = new MultiThreadedTaskHandler("ranking features by " + measure);
+
+        for (int groupStart = 0; groupStart < dataPointNames.size(); groupStart += groupSize)
+        {
+            final int start = groupStart;
+            final int end = Math.min(groupStart + groupSize, dataPointNames.size());
+
+            taskHandler.Add(new Callable<Object>()
+            {
+                public Object call() throws Exception
+                {
+                    for (int i = start; i < end; i++)
+                        scores[i] = GetScore(measure, data.GetColumn(dataPointNames.get(i)), rows, classes, numClasses);
+
+                    return Boolean.TRUE;
+                }
+            });
+        }
+
+        taskHandler.Execute();
+
+        // Features with the same score remain in alphabetical order
+        ArrayList<Integer> indices = ListUtilities.CreateIntegerSequenceList(0, dataPointNames.size() - 1);
+        Collections.sort(indices, new Comparator<Integer>()
+        {
+            public int compare(Integer index1, Integer index2)
+            {
+                return Double.compare(scores[index2], scores[index1]);
+            }
+        });
+
+        ArrayList<String> rankedFeatures = new ArrayList<String>();
+        for (int index : indices)
+            rankedFeatures.add(dataPointNames.get(index));
+
+        return rankedFeatures;
+    }
+
+    @Override
+    public ModelPredictions TrainTest(String commandTemplate, ArrayList<String> classificationParameters, DataInstanceCollection trainingData, DataInstanceCollection testData, ArrayList<String> features) throws Exception
+    {
+        throw new Exception("The univariate ranker can only be used for ranking features, not for classification.");
+    }
+
+    /** Calculates the score for a single feature. Higher scores indicate more relevant features.
+     *
+     * @param measure Name of the measure
+     * @param column Values for the feature (may be null if there are no values)
+     * @param rows Row index of each training instance within the column
+     * @param classes Class index of each training instance
+     * @param numClasses Number of classes
+     * @return Score (negative infinity if the feature cannot be scored)
+     * @throws Exception
+     */
+    private static double GetScore(String measure, DataColumn column, int[] rows, int[] classes, int numClasses) throws Exception
+    {
+        if (column == null)
+            return Double.NEGATIVE_INFINITY;
+
+        double score;
+
+        if (measure.equals("t_test"))
+            score = GetTTestScore(column, rows, classes);
+        else
+        {
+            double[][] counts = GetContingencyTable(column, rows, classes, numClasses);
+            score = measure.equals("info_gain") ? GetInfoGain(counts) : GetChiSquared(counts);
+        }
+
+        return Double.isNaN(score) ? Double.NEGATIVE_INFINITY : score;
+    }
+
+    /** Calculates a score for a feature based on a t-test. The score is the negative logarithm of the p-value, so very small p-values can still be distinguished from each other. When the p-value is too small to be represented, the magnitude of the t statistic is used to order the features.
+     *
+     * @param column Values for the feature
+     * @param rows Row index of each training instance within the column
+     * @param classes Class index of each training instance
+     * @return Score (NaN if the feature cannot be scored)
+     * @throws Exception
+     */
+    private static double GetTTestScore(DataColumn column, int[] rows, int[] classes) throws Exception
+    {
+        if (!column.IsNumeric())
+            return Double.NaN;
+
+        ArrayList<Double> values1 = new ArrayList<Double>();
+        ArrayList<Double> values2 = new ArrayList<Double>();
+
+        for (int i = 0; i < rows.length; i++)
+        {
+            if (classes[i] < 0)
+                continue;
+
+            double value = column.GetNumeric(rows[i]);
+
+            if (!Double.isNaN(value))
+                (classes[i] == 0 ? values1 : values2).add(value);
+        }
+
+        if (values1.size() < 2 || values2.size() < 2)
+            return Double.NaN;
+
+        double pValue = MathUtilities.TTest(values1, values2);
+
+        if (pValue > 0)
+            return -Math.log(pValue);
+
+        return -Math.log(Double.MIN_VALUE) + Math.abs(MathUtilities.TStatistic(values1, values2));
+    }
+
+    /** Counts the number of instances that have each combination of feature value and class. Numeric features are discretized first. Instances with a missing value are distributed across the feature values (see DistributeMissingCounts).
+     *
+     * @param column Values for the feature
+     * @param rows Row index of each training instance within the column
+     * @param classes Class index of each training instance
+     * @param numClasses Number of classes
+     * @return Counts, indexed by feature value and then by class
+     */
+    private static double[][] GetContingencyTable(DataColumn column, int[] rows, int[] classes, int numClasses)
+    {
+        if (!column.IsNumeric())
+        {
+            double[][] counts = new double[column.GetDictionary().size()][numClasses];
+            double[] missingCounts = new double[numClasses];
+
+            for (int i = 0; i < rows.length; i++)
+            {
+                if (classes[i] < 0)
+                    continue;
+
+                int code = column.GetCode(rows[i]);
+
+                if (code >= 0)
+                    counts[code][classes[i]]++;
+                else
+                    missingCounts[classes[i]]++;
+            }
+
+            return DistributeMissingCounts(counts, missingCounts);
+        }
+
+        // Sort the values that are not missing, along with their classes
+        int numValues = 0;
+        double[] values = new double[rows.length];
+        int[] valueClasses = new int[rows.length];
+        double[] missingCounts = new double[numClasses];
+
+        for (int i = 0; i < rows.length; i++)
+        {
+            if (classes[i] < 0)
+                continue;
+
+            double value = column.GetNumeric(rows[i]);
+
+            if (Double.isNaN(value))
+                missingCounts[classes[i]]++;
+            else
+            {
+                values[numValues] = value;
+                valueClasses[numValues] = classes[i];
+                numValues++;
+            }
+        }
+
+        Integer[] order = new Integer[numValues];
+        for (int i = 0; i < numValues; i++)
+            order[i] = i;
+
+        final double[] unsortedValues = values;
+        Arrays.sort(order, new Comparator<Integer>()
+        {
+            public int compare(Integer index1, Integer index2)
+            {
+                return Double.compare(unsortedValues[index1], unsortedValues[index2]);
+            }
+        });
+
+        double[] sortedValues = new double[numValues];
+        int[] sortedClasses = new int[numValues];
+        for (int i = 0; i < numValues; i++)
+        {
+            sortedValues[i] = values[order[i]];
+            sortedClasses[i] = valueClasses[order[i]];
+        }
+
+        ArrayList<Double> cutPoints = new ArrayList<Double>();
+        AddCutPoints(sortedValues, sortedClasses, 0, numValues, numClasses, cutPoints);
+        Collections.sort(cutPoints);
+
+        double[][] counts = new double[cutPoints.size() + 1][numClasses];
+        int bin = 0;
+
+        for (int i = 0; i < numValues; i++)
+        {
+            while (bin < cutPoints.size() && sortedValues[i] > cutPoints.get(bin))
+                bin++;
+
+            counts[bin][sortedClasses[i]]++;
+        }
+
+        return DistributeMissingCounts(counts, missingCounts);
+    }
+
+    /** Distributes the instances that have a missing value for a feature across the feature values, in proportion to the number of instances that have each value. This is how Weka's InfoGainAttributeEval and ChiSquaredAttributeEval handle missing values by default.
+     *
+     * @param counts Counts of instances with a value, indexed by feature value and then by class (this array is modified)
+     * @param missingCounts Counts of instances with a missing value, indexed by class
+     * @return Counts, indexed by feature value and then by class
+     */
+    private static double[][] DistributeMissingCounts(double[][] counts, double[] missingCounts)
+    {
+        double[] valueTotals = new double[counts.length];
+        double total = 0;
+
+        for (int i = 0; i < counts.length; i++)
+        {
+            for (double count : counts[i])
+                valueTotals[i] += count;
+
+            total += valueTotals[i];
+        }
+
+        if (total == 0)
+            return counts;
+
+        for (int i = 0; i < counts.length; i++)
+            for (int j = 0; j < missingCounts.length; j++)
+                counts[i][j] += (valueTotals[i] / total) * missingCounts[j];
+
+        return counts;
+    }
+
+    /** Identifies cut points for discretizing a range of sorted values, using the minimum description length criterion of Fayyad and Irani (1993). This follows the implementation in Weka's supervised Discretize filter.
+     *
+     * @param values Sorted values
+     * @param classes Class index for each value
+     * @param first Index of the first value in the range
+     * @param last Index after the last value in the range
+     * @param numClasses Number of classes
+     * @param cutPoints List to which cut points are added
+     */
+    private static void AddCutPoints(double[] values, int[] classes, int first, int last, int numClasses, ArrayList<Double> cutPoints)
+    {
+        if (last - first < 2)
+            return;
+
+        double[][] counts = new double[2][numClasses];
+        for (int i = first; i < last; i++)
+            counts[1][classes[i]]++;
+
+        double[] priorCounts = counts[1].clone();
+        double priorEntropy = GetEntropy(priorCounts);
+        double numInstances = last - first;
+
+        double bestEntropy = priorEntropy;
+        double[][] bestCounts = null;
+        int bestIndex = -1;
+        int numCutPoints = 0;
+
+        for (int i = first; i < last - 1; i++)
+        {
+            counts[0][classes[i]]++;
+            counts[1][classes[i]]--;
+
+            if (values[i] < values[i + 1])
+            {
+                double entropy = GetConditionalEntropy(counts);
+
+                if (entropy < bestEntropy)
+                {
+                    bestEntropy = entropy;
+                    bestCounts = new double[][] { counts[0].clone(), counts[1].clone() };
+                    bestIndex = i;
+                }
+
+                numCutPoints++;
+            }
+        }
+
+        if (bestIndex < 0 || priorEntropy - bestEntropy <= 0)
+            return;
+
+        // Only accept the cut point if the information that it provides outweighs the cost of encoding it
+        int numPriorClasses = GetNumNonZero(priorCounts);
+        int numLeftClasses = GetNumNonZero(bestCounts[0]);
+        int numRightClasses = GetNumNonZero(bestCounts[1]);
+        double delta = MathUtilities.Log2(Math.pow(3, numPriorClasses) - 2) - (numPriorClasses * priorEntropy - numLeftClasses * GetEntropy(bestCounts[0]) - numRightClasses * GetEntropy(bestCounts[1]));
+
+        if (priorEntropy - bestEntropy <= (MathUtilities.Log2(numCutPoints) + delta) / numInstances)
+            return;
+
+        cutPoints.add((values[bestIndex] + values[bestIndex + 1]) / 2);
+        AddCutPoints(values, classes, first, bestIndex + 1, numClasses, cutPoints);
+        AddCutPoints(values, classes, bestIndex + 1, last, numClasses, cutPoints);
+    }
+
+    /** Calculates the information gain of a feature, which is the entropy of the class minus the entropy of the class given the feature value.
+     *
+     * @param counts Counts, indexed by feature value and then by class
+     * @return Information gain
+     */
+    private static double GetInfoGain(double[][] counts)
+    {
+        double[] classCounts = new double[counts.length == 0 ? 0 : counts[0].length];
+        for (double[] valueCounts : counts)
+            for (int j = 0; j < valueCounts.length; j++)
+                classCounts[j] += valueCounts[j];
+
+        return GetEntropy(classCounts) - GetConditionalEntropy(counts);
+    }
+
+    /** Calculates the chi-squared statistic for the association between a feature and the class.
+     *
+     * @param counts Counts, indexed by feature value and then by class
+     * @return Chi-squared statistic
+     */
+    private static double GetChiSquared(double[][] counts)
+    {
+        if (counts.length == 0)
+            return 0;
+
+        double[] valueTotals = new double[counts.length];
+        double[] classTotals = new double[counts[0].length];
+        double total = 0;
+
+        for (int i = 0; i < counts.length; i++)
+            for (int j = 0; j < classTotals.length; j++)
+            {
+                valueTotals[i] += counts[i][j];
+                classTotals[j] += counts[i][j];
+                total += counts[i][j];
+            }
+
+        double chiSquared = 0;
+
+        for (int i = 0; i < counts.length; i++)
+            for (int j = 0; j < classTotals.length; j++)
+            {
+                double expected = valueTotals[i] * classTotals[j] / total;
+
+                if (expected > 0)
+                    chiSquared += Math.pow(counts[i][j] - expected, 2) / expected;
+            }
+
+        return chiSquared;
+    }
+
+    private static double GetEntropy(double[] counts)
+    {
+        double total = 0;
+        for (double count : counts)
+            total += count;
+
+        double entropy = 0;
+        for (double count : counts)
+            if (count > 0)
+                entropy -= (count / total) * MathUtilities.Log2(count / total);
+
+        return entropy;
+    }
+
+    /** Calculates the entropy of the class given the feature value, weighted by the number of instances with each feature value.
+     *
+     * @param counts Counts, indexed by feature value and then by class
+     * @return Conditional entropy
+     */
+    private static double GetConditionalEntropy(double[][] counts)
+    {
+        double total = 0;
+        double entropy = 0;
+
+        for (double[] valueCounts : counts)
+        {
+            double valueTotal = 0;
+            for (double count : valueCounts)
+                valueTotal += count;
+
+            entropy += valueTotal * GetEntropy(valueCounts);
+            total += valueTotal;
+        }
+
+        return total == 0 ? 0 : entropy / total;
+    }
+
+    private static int GetNumNonZero(double[] counts)
+    {
+        int numNonZero = 0;
+        for (double count : counts)
+            if (count > 0)
+                numNonZero++;
+
+        return numNonZero;
+    }
+}
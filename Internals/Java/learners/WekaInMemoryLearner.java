@@ -19,247 +19,206 @@
 // You should have received a copy of the GNU General Public License
 // along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
 
-//package mlflex;
-//
-//import weka.attributeSelection.ASEvaluation;
-//import weka.attributeSelection.ASSearch;
-//import weka.attributeSelection.AttributeSelection;
-//import weka.attributeSelection.Ranker;
-//import weka.classifiers.Classifier;
-//import weka.classifiers.evaluation.NominalPrediction;
-//import weka.classifiers.evaluation.ThresholdCurve;
-//import weka.core.Attribute;
-//import weka.core.FastVector;
-//import weka.core.Instance;
-//import weka.core.Instances;
-//import weka.core.converters.ArffSaver;
-//
-//import java.util.ArrayList;
-//import java.util.HashSet;
-//
-///** This class interfaces directly with the application programming interface of the Weka machine-learning software package. The Weka JAR file is packaged with ML-Flex, so this learner should work out of the box. However, Java can get bogged down when you use this on large data sets, so it is often better to use the WekaLearner.
-//* @author Stephen Piccolo
-//*/
-////public class WekaInMemoryLearner extends AbstractMachineLearner
-//public class WekaInMemoryLearner
-//{
-//    @Override
-//    protected ArrayList<String> SelectOrRankFeatures(ArrayList<String> algorithmParameters, DataInstanceCollection trainData) throws Exception
-//    {
-//        ArrayList<String> dataPointNames = Lists.SortStringList(trainData.GetDataPointNames());
-//
-//        FastVector attVector = GetAttributeVector(dependentVariableInstances, dataPointNames, trainData);
-//        Instances instances = GetInstances(dependentVariableInstances, attVector, trainData);
-//
-//        AttributeSelection attsel = new AttributeSelection();
-//        ASEvaluation eval = GetAttributeEvaluator(algorithmParameters);
-//        ASSearch search = GetSearchMethod(algorithmParameters);
-//        attsel.setEvaluator(eval);
-//        attsel.setSearch(search);
-//
-//        boolean isRanker = algorithmParameters.get(2).equals(Ranker.class.getName());
-//
-//        if (isRanker)
-//            attsel.setRanking(true);
-//
-//        attsel.SelectAttributes(instances);
-//
-//        ArrayList<String> features = new ArrayList<String>();
-//
-//        if (isRanker)
-//        {
-//            for (double[] rank : attsel.rankedAttributes())
-//                features.add(instances.attribute((int)rank[0]).name());
-//        }
-//        else
-//        {
-//            for (int i : attsel.selectedAttributes())
-//                features.add(instances.attribute(i).name());
-//        }
-//
-//        instances = null;
-//
-//        return features;
-//    }
-//
-//    @Override
-//    protected ModelPredictions TrainTest(ArrayList<String> classificationParameters, DataInstanceCollection trainData, DataInstanceCollection testData) throws Exception
-//    {
-//        ArrayList<String> dataPointNames = Lists.SortStringList(trainData.GetDataPointNames());
-//        FastVector attVector = GetAttributeVector(dependentVariableInstances, dataPointNames, trainData, testData);
-//
-//        Instances wekaTrainingInstances = GetInstances(dependentVariableInstances, attVector, trainData);
-//        Instances wekaTestInstances = GetInstances(dependentVariableInstances, attVector, testData);
-//
-//        ArrayList<String> dependentVariableClasses = Utilities.ProcessorVault.DependentVariableDataProcessor.GetUniqueDependentVariableValues();
-//
-//        Classifier classifier = GetClassifier(classificationParameters);
-//        classifier.buildClassifier(wekaTrainingInstances);
-//
-//        Predictions predictions = new Predictions();
-//
-//        for (DataValues testInstance : testData)
-//        {
-//            String dependentVariableValue = dependentVariableInstances.Get(testInstance.GetID()).GetDataPointValue(0);
-//
-//            // This is the default before the prediction is made
-//            Prediction prediction = new Prediction(testInstance.GetID(), dependentVariableValue, Lists.PickRandomValue(dependentVariableClasses), Lists.CreateDoubleList(0.5, dependentVariableClasses.size()));
-//
-//            if (!testInstance.HasOnlyMissingValues())
-//            {
-//                Instance wekaTestInstance = GetInstance(wekaTestInstances, attVector, testInstance, null);
-//
-//                double clsLabel = classifier.classifyInstance(wekaTestInstance);
-//                String predictedClass = wekaTestInstance.classAttribute().value((int)clsLabel);
-//
-//                double[] probabilities = classifier.distributionForInstance(wekaTestInstance);
-//                ArrayList<Double> classProbabilities = Lists.CreateDoubleList(probabilities);
-//
-//                prediction = new Prediction(testInstance.GetID(), dependentVariableValue, predictedClass, classProbabilities);
-//            }
-//
-//            predictions.Add(prediction);
-//        }
-//
-//        classifier = null;
-//
-//        return new ModelPredictions("", predictions);
-//    }
-//
-//    /** Creates Weka instances from ML-Flex collections.
-//     *
-//     *
-//     * @param dependentVariableInstances Dependent variable data instances
-//     * @param attVector Vector of Weka attributes
-//     * @param instances ML-Flex collection of instances
-//     * @return Weka instances
-//     * @throws Exception
-//     */
-//    public static Instances GetInstances(DataInstanceCollection dependentVariableInstances, FastVector attVector, DataInstanceCollection instances) throws Exception
-//    {
-//        Instances wekaInstances = new Instances("DataSet", attVector, instances.Size());
-//
-//        if (dependentVariableInstances != null)
-//            wekaInstances.setClass((Attribute)attVector.elementAt(attVector.size()-1));
-//
-//        for (DataValues instance : instances)
-//            wekaInstances.add(GetInstance(wekaInstances,attVector, instance, dependentVariableInstances));
-//
-//        return wekaInstances;
-//    }
-//
-//    private static Instance GetInstance(Instances wekaInstances, FastVector attVector, DataValues dataInstance, DataInstanceCollection dependentVariableInstances) throws Exception
-//    {
-//        Instance wekaInstance = new Instance(attVector.size());
-//        wekaInstance.setDataset(wekaInstances);
-//
-//        for (int i=0; i<attVector.size()-1; i++)
-//        {
-//            Attribute attribute = (Attribute)attVector.elementAt(i);
-//            String dataPointValue = dataInstance.GetDataPointValue(attribute.name());
-//
-//            SetAttributeValue(wekaInstance, attribute, dataPointValue);
-//        }
-//
-//        if (dependentVariableInstances != null)
-//            SetAttributeValue(wekaInstance, (Attribute)attVector.elementAt(attVector.size() - 1), dependentVariableInstances.Get(dataInstance.GetID()).GetDataPointValue(Utilities.ProcessorVault.DependentVariableDataProcessor.GetDependentVariableDataPointName()));
-//
-//        return wekaInstance;
-//    }
-//
-//    private static void SetAttributeValue(Instance wekaInstance, Attribute attribute, String value)
-//    {
-//        try
-//        {
-//            if (value.equals(Settings.MISSING_VALUE_STRING))
-//            {
-//                wekaInstance.setMissing(attribute);
-//            }
-//            else
-//            {
-//                if (attribute.isNominal())
-//                {
-//                    wekaInstance.setValue(attribute, value);
-//                }
-//                else
-//                {
-//                    wekaInstance.setValue(attribute, Double.parseDouble(value));
-//                }
-//            }
-//        }
-//        catch (Exception ex)
-//        {
-//            Utilities.Log.Debug("Data point name: " + attribute.name());
-//            Utilities.Log.Debug("Data point value:");
-//            Utilities.Log.Debug(value);
-//            Utilities.Log.Debug("Is double: " + DataTypes.IsDouble(value));
-//            Utilities.Log.Debug("Is binary: " + DataTypes.IsBinary(value));
-//            Utilities.Log.Debug("Is integer: " + DataTypes.IsInteger(value));
-//            Utilities.Log.ExceptionFatal(ex);
-//        }
-//    }
-//
-//    private static FastVector GetAttributeOptions(ArrayList<String> values)
-//    {
-//        FastVector options = new FastVector();
-//            for (String value : new HashSet<String>(values))
-//                if (!value.equals(Settings.MISSING_VALUE_STRING))
-//                    options.addElement(value);
-//
-//        return options;
-//    }
-//
-//    private static Classifier GetClassifier(ArrayList<String> algorithmParameters) throws Exception
-//    {
-//        return Classifier.forName(algorithmParameters.get(0), algorithmParameters.get(1).split(" "));
-//    }
-//
-//    private static ASEvaluation GetAttributeEvaluator(ArrayList<String> algorithmParameters) throws Exception
-//    {
-//        return ASEvaluation.forName(algorithmParameters.get(0), algorithmParameters.get(1).split(" "));
-//    }
-//
-//    private ASSearch GetSearchMethod(ArrayList<String> algorithmParameters) throws Exception
-//    {
-//        return ASSearch.forName(algorithmParameters.get(2), algorithmParameters.get(3).split(" "));
-//    }
-//
-//    private FastVector GetAttributeVector(DataInstanceCollection dependentVariableInstances, ArrayList<String> dataPointNames, DataInstanceCollection ... collections) throws Exception
-//    {
-//        FastVector attVector = new FastVector();
-//
-//        for (String dataPointName : dataPointNames)
-//        {
-//            HashSet<String> uniqueValues = new HashSet<String>();
-//
-//            for (DataInstanceCollection collection : collections)
-//                uniqueValues.addAll(collection.GetDataPointValues(dataPointName).GetAllValues());
-//
-//            ArrayList<String> uniqueValuesList = new ArrayList<String>(uniqueValues);
-//
-//            if (DataTypes.HasOnlyBinary(uniqueValuesList))
-//                attVector.addElement(new Attribute(dataPointName, GetAttributeOptions(uniqueValuesList)));
-//            else
-//            {
-//                if (DataTypes.HasOnlyNumeric(uniqueValuesList))
-//                    attVector.addElement(new Attribute(dataPointName));
-//                else
-//                    attVector.addElement(new Attribute(dataPointName, GetAttributeOptions(uniqueValuesList)));
-//            }
-//        }
-//
-//        if (dependentVariableInstances != null)
-//            attVector.addElement(new Attribute(Utilities.ProcessorVault.DependentVariableDataProcessor.GetDependentVariableDataPointName(), GetAttributeOptions(Utilities.ProcessorVault.DependentVariableDataProcessor.GetUniqueDependentVariableValues())));
-//
-//        return attVector;
-//    }
-//
-//    private void SaveWekaInstances(Instances instances, String filePath) throws Exception
-//    {
-//        ArffSaver saver = new ArffSaver();
-//        saver.setInstances(instances);
-//        saver.setFile(new java.io.File(filePath));
-//        saver.writeBatch();
-//
-//    }
-//}
\ No newline at end of file
+package mlflex.learners;
+
+import mlflex.core.*;
+import mlflex.helper.*;
+import weka.attributeSelection.ASEvaluation;
+import weka.attributeSelection.ASSearch;
+import weka.attributeSelection.AttributeSelection;
+import weka.attributeSelection.BestFirst;
+import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.FastVector;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.util.ArrayList;
+
+/** This class interfaces directly with the application programming interface of the Weka machine-learning software package. Rather than writing ARFF files and invoking Weka in a separate process (as WekaLearner does), it builds Weka data instances in memory and trains models within the ML-Flex process. This avoids the overhead of starting a new Java process for each task, which can be substantial for small data sets. The algorithm parameters are specified in the same way as for WekaLearner, and the results should be the same. Weka (and any libraries that it uses, such as LibSVM) must be on the ML-Flex class path.
+ * @author Stephen Piccolo
+ */
+public class WekaInMemoryLearner extends AbstractMachineLearner
+{
+    /** Weka reports class probabilities with this many decimal places, so the same precision is used here */
+    private static final int PROBABILITY_DECIMAL_PLACES = 3;
+
+    @Override
+    public ArrayList<String> SelectOrRankFeatures(String commandTemplate, ArrayList<String> algorithmParameters, DataInstanceCollection trainData) throws Exception
+    {
+        ArrayList<String> dataPointNames = ListUtilities.SortStringList(trainData.GetDataPointNames());
+        Instances instances = GetInstances(trainData, null, dataPointNames, GetAttributes(trainData, null, dataPointNames));
+
+        // The options are specified in the same way as for the Weka command line
+        String[] options = Utils.splitOptions(algorithmParameters.get(0));
+        String evaluatorClassName = options[0];
+        options[0] = "";
+
+        String searchSpecification = Utils.getOption('s', options);
+        ASSearch search = new BestFirst();
+        if (searchSpecification.length() > 0)
+        {
+            String[] searchOptions = Utils.splitOptions(searchSpecification);
+            String searchClassName = searchOptions[0];
+            searchOptions[0] = "";
+            search = ASSearch.forName(searchClassName, searchOptions);
+        }
+
+        AttributeSelection attributeSelection = new AttributeSelection();
+        attributeSelection.setEvaluator(ASEvaluation.forName(evaluatorClassName, options));
+        attributeSelection.setSearch(search);
+        attributeSelection.SelectAttributes(instances);
+
+        // As in the output of the Weka command line, the class attribute is appended to the selected attributes
+        ArrayList<String> selectedAttributes = new ArrayList<String>();
+        for (int index : attributeSelection.selectedAttributes())
+            if (index != instances.classIndex())
+                selectedAttributes.add(dataPointNames.get(index));
+
+        if (selectedAttributes.size() == 0)
+            throw new Exception("Weka found no selected attributes. Algorithm: " + algorithmParameters.get(0) + ".");
+
+        return selectedAttributes;
+    }
+
+    @Override
+    public ModelPredictions TrainTest(String commandTemplate, ArrayList<String> algorithmParameters, DataInstanceCollection trainData, DataInstanceCollection testData, ArrayList<String> features) throws Exception
+    {
+        Singletons.Log.Debug("Create Weka instances for training and test data");
+        ArrayList<String> dataPointNames = ListUtilities.SortStringList(ListUtilities.Intersect(features, trainData.GetDataPointNames()));
+        FastVector attributes = GetAttributes(trainData, testData, dataPointNames);
+
+        Instances trainInstances = GetInstances(trainData, testData, dataPointNames, attributes);
+        Instances testInstances = GetInstances(testData, trainData, dataPointNames, attributes);
+
+        Singletons.Log.Debug("Train the classifier");
+        String[] options = Utils.splitOptions(algorithmParameters.get(0));
+        String classifierClassName = options[0];
+        options[0] = "";
+
+        Classifier classifier = Classifier.forName(classifierClassName, options);
+        classifier.buildClassifier(trainInstances);
+
+        Singletons.Log.Debug("Make predictions for test instances");
+        // The test instances are in sorted order, as they are when Weka is invoked at the command line
+        ArrayList<String> testInstanceIDs = ListUtilities.SortStringList(testData.GetIDs());
+        ArrayList<Prediction> predictions = new ArrayList<Prediction>();
+
+        for (int i = 0; i < testInstances.numInstances(); i++)
+        {
+            // As at the command line, the actual class is hidden from the classifier
+            Instance testInstance = (Instance)testInstances.instance(i).copy();
+            testInstance.setDataset(testInstances);
+            testInstance.setClassMissing();
+
+            double predictedValue = classifier.classifyInstance(testInstance);
+            double[] distribution = classifier.distributionForInstance(testInstance);
+
+            // Some classifiers return a missing value when they cannot make a prediction; the most probable class is used instead (if there is one)
+            if (Instance.isMissingValue(predictedValue))
+            {
+                if (Utils.sum(distribution) <= 0)
+                    throw new Exception("Weka did not make a prediction for test instance " + testInstanceIDs.get(i) + ". Algorithm: " + algorithmParameters.get(0) + ".");
+
+                predictedValue = Utils.maxIndex(distribution);
+            }
+
+            int predictedClassIndex = (int)predictedValue;
+
+            ArrayList<Double> probabilities = new ArrayList<Double>();
+            for (double probability : distribution)
+                probabilities.add(MathUtilities.Round(probability, PROBABILITY_DECIMAL_PLACES));
+
+            String testInstanceID = testInstanceIDs.get(i);
+            predictions.add(new Prediction(testInstanceID, Singletons.InstanceVault.GetDependentVariableValue(testInstanceID), Singletons.InstanceVault.DependentVariableOptions.get(predictedClassIndex), probabilities));
+        }
+
+        return new ModelPredictions(classifier.toString(), new Predictions(predictions));
+    }
+
+    /** Creates Weka attributes for the specified data points, plus the dependent variable. The attributes are defined in the same way as they are in ARFF files created by AnalysisFileCreator.
+     *
+     * @param instances Data instances
+     * @param otherInstances Other data instances whose values should be considered when determining the options for each attribute (may be null)
+     * @param dataPointNames Sorted data point names
+     * @return Vector of Weka attributes
+     * @throws Exception
+     */
+    private static FastVector GetAttributes(DataInstanceCollection instances, DataInstanceCollection otherInstances, ArrayList<String> dataPointNames) throws Exception
+    {
+        FastVector attributes = new FastVector(dataPointNames.size() + 1);
+
+        for (String dataPointName : dataPointNames)
+        {
+            DataColumnStatistics statistics = instances.GetColumnStatistics(dataPointName);
+            if (otherInstances != null)
+                statistics = statistics.Combine(otherInstances.GetColumnStatistics(dataPointName));
+
+            if (statistics.DataType.equals(GeneralDataType.Continuous))
+                attributes.addElement(new Attribute(dataPointName));
+            else
+                attributes.addElement(new Attribute(dataPointName, GetAttributeOptions(statistics.UniqueValues)));
+        }
+
+        attributes.addElement(new Attribute(Singletons.ProcessorVault.DependentVariableDataProcessor.DataPointName, GetAttributeOptions(Singletons.InstanceVault.DependentVariableOptions)));
+
+        return attributes;
+    }
+
+    private static FastVector GetAttributeOptions(ArrayList<String> values)
+    {
+        FastVector options = new FastVector(values.size());
+
+        for (String value : ListUtilities.SortStringList(AnalysisFileCreator.FormatOutputValues(new ArrayList<String>(values))))
+            options.addElement(value);
+
+        return options;
+    }
+
+    /** Creates Weka instances from an ML-Flex collection. The instances are in order of their (sorted) IDs, and the dependent variable is the class attribute.
+     *
+     * @param instances Data instances
+     * @param otherInstances Other data instances that were used to define the attributes (may be null)
+     * @param dataPointNames Sorted data point names
+     * @param attributes Weka attributes
+     * @return Weka instances
+     * @throws Exception
+     */
+    private static Instances GetInstances(DataInstanceCollection instances, DataInstanceCollection otherInstances, ArrayList<String> dataPointNames, FastVector attributes) throws Exception
+    {
+        ArrayList<String> instanceIDs = ListUtilities.SortStringList(instances.GetIDs());
+
+        Instances wekaInstances = new Instances("thedata", attributes, instanceIDs.size());
+        wekaInstances.setClassIndex(attributes.size() - 1);
+
+        for (String instanceID : instanceIDs)
+        {
+            double[] values = new double[attributes.size()];
+
+            for (int i = 0; i < dataPointNames.size(); i++)
+                values[i] = GetAttributeValue((Attribute)attributes.elementAt(i), instances.GetDataPointValue(instanceID, dataPointNames.get(i)));
+
+            values[attributes.size() - 1] = GetAttributeValue(wekaInstances.classAttribute(), Singletons.InstanceVault.GetDependentVariableValue(instanceID));
+
+            wekaInstances.add(new Instance(1.0, values));
+        }
+
+        return wekaInstances;
+    }
+
+    private static double GetAttributeValue(Attribute attribute, String value) throws Exception
+    {
+        if (MiscUtilities.IsMissing(value))
+            return Instance.missingValue();
+
+        if (attribute.isNumeric())
+            return Double.parseDouble(value);
+
+        int index = attribute.indexOfValue(AnalysisFileCreator.FormatOutputValue(value));
+        if (index == -1)
+            throw new Exception("The value " + value + " is not a valid option for the " + attribute.name() + " attribute.");
+
+        return index;
+    }
+}
@@ -43,49 +43,56 @@ public class WekaLearner extends AbstractMachineLearner
     public ArrayList<String> SelectOrRankFeatures(String commandTemplate, ArrayList<String> algorithmParameters, DataInstanceCollection trainData) throws Exception
     {
         // Create an ARFF file with the training data
-        String arffFilePath = new AnalysisFileCreator(Settings.TEMP_DATA_DIR, MiscUtilities.GetUniqueID(), trainData, null, true, trainData.GetDataPointNames()).CreateArffFile().GetArffFilePath();
+        String arffFilePath = AnalysisFileCache.Acquire(AnalysisFileCache.Format.ARFF, trainData, null, true, trainData.GetDataPointNames());
 
         // Replace token to indicate path to input file
         String command = commandTemplate.replace("{INPUT_TRAINING_FILE}", arffFilePath);
         command = command.replace("{ALGORITHM}", algorithmParameters.get(0));
 
-        // Invoke Weka at the command line
-        HashMap<String, String> results = CommandLineClient.RunAnalysis(command);
-
-        // Delete the ARFF file
-        FileUtilities.DeleteFile(arffFilePath);
-
-        // Retrieve the output
-        String output = CommandLineClient.GetCommandResult(results, CommandLineClient.STANDARD_OUT_KEY);
-        ArrayList<String> outputLines = ListUtilities.CreateStringList(output.split("\n"));
+        final ArrayList<String> dataPointNames = ListUtilities.SortStringList(trainData.GetDataPointNames());
+        final ArrayList<String> selectedAttributes = new ArrayList<String>();
 
-        ArrayList<String> dataPointNames = ListUtilities.SortStringList(trainData.GetDataPointNames());
-
-        // Parse through the Weka formatted output data
-        for (String line : outputLines)
+        // Parse through the Weka formatted output data as it is produced
+        OutputLineParser selectedAttributesParser = new OutputLineParser()
         {
-            if (line.startsWith("Selected attributes:"))
+            public void ParseLine(String line) throws Exception
             {
-                String rawSelectedAttributes = line.replace("Selected attributes: ", "");
-                rawSelectedAttributes = rawSelectedAttributes.substring(0, rawSelectedAttributes.indexOf(":") - 1);
-                ArrayList<Integer> selectedAttributeIndices = ListUtilities.CreateIntegerList(ListUtilities.CreateStringList(rawSelectedAttributes.split(",")));
-                ArrayList<String> selectedAttributes = ListUtilities.Get(dataPointNames, MathUtilities.Add(selectedAttributeIndices, -1));
+                if (line.startsWith("Selected attributes:") && selectedAttributes.size() == 0)
+                {
+                    String rawSelectedAttributes = line.replace("Selected attributes: ", "");
+                    rawSelectedAttributes = rawSelectedAttributes.substring(0, rawSelectedAttributes.indexOf(":") - 1);
+                    ArrayList<Integer> selectedAttributeIndices = ListUtilities.CreateIntegerList(ListUtilities.CreateStringList(rawSelectedAttributes.split(",")));
+                    selectedAttributes.addAll(ListUtilities.Get(dataPointNames, MathUtilities.Add(selectedAttributeIndices, -1)));
+                }
+            }
+        };
 
-                return selectedAttributes;
-             }
+        // Invoke Weka at the command line
+        HashMap<String, String> results;
+        try
+        {
+            results = CommandLineClient.RunAnalysis(command, null, commandTemplate, selectedAttributesParser);
         }
+        finally
+        {
+            // Release the ARFF file
+            AnalysisFileCache.Release(arffFilePath);
+        }
+
+        if (selectedAttributes.size() > 0)
+            return selectedAttributes;
 
-        throw new Exception("Weka found no selected attributes. Command: " + command + ". Output: " + output);
+        throw new Exception("Weka found no selected attributes. Command: " + command + ". Exit code: " + CommandLineClient.GetCommandResult(results, CommandLineClient.EXIT_CODE_KEY));
     }
 
     @Override
     public ModelPredictions TrainTest(String commandTemplate, ArrayList<String> algorithmParameters, DataInstanceCollection trainData, DataInstanceCollection testData, ArrayList<String> features) throws Exception
     {
         Singletons.Log.Debug("Create ARFF file for training data");
-        String trainingArffFilePath = new AnalysisFileCreator(Settings.TEMP_DATA_DIR, MiscUtilities.GetUniqueID(), trainData, testData, true, features).CreateArffFile().GetArffFilePath();
+        String trainingArffFilePath = AnalysisFileCache.Acquire(AnalysisFileCache.Format.ARFF, trainData, testData, true, features);
 
         Singletons.Log.Debug("Create ARFF file for test data");
-        String testArffFilePath = new AnalysisFileCreator(Settings.TEMP_DATA_DIR, MiscUtilities.GetUniqueID(), testData, trainData, true, features).CreateArffFile().GetArffFilePath();
+        String testArffFilePath = AnalysisFileCache.Acquire(AnalysisFileCache.Format.ARFF, testData, trainData, true, features);
 
         Singletons.Log.Debug("Replace tokens to indicate paths to input files");
         String command = commandTemplate.replace("{INPUT_TRAINING_FILE}", trainingArffFilePath);
@@ -101,64 +108,75 @@ public class WekaLearner extends AbstractMachineLearner
         }
         command = command.replace("{ALGORITHM}", classifier) + additionalParameters;
 
-        try
-        {
-        	Singletons.Log.Debug("Invoke Weka at the command line");
-            HashMap<String, String> results = CommandLineClient.RunAnalysis(command);
-
-            Singletons.Log.Debug("Delete ARFF files");
-            FileUtilities.DeleteFile(trainingArffFilePath);
-            FileUtilities.DeleteFile(testArffFilePath);
-
-            Singletons.Log.Debug("Retrieve output");
-            String output = CommandLineClient.GetCommandResult(results, CommandLineClient.STANDARD_OUT_KEY);
+        Singletons.Log.Debug("Sort the test instance IDs because they will be returned from Weka in sorted order");
+        final ArrayList<String> testInstanceIDs = ListUtilities.SortStringList(testData.GetIDs());
+        final ArrayList<Prediction> predictions = new ArrayList<Prediction>();
+        final StringBuilder output = new StringBuilder();
 
-            ArrayList<String> rawOutputLines = ListUtilities.CreateStringList(output.split("\n"));
-            ArrayList<String> outputLines = new ArrayList<String>();
-
-            Singletons.Log.Debug("Build predictions by parsing through output");
-            ArrayList<Prediction> predictions = new ArrayList<Prediction>();
-
-            Singletons.Log.Debug("Remove header lines");
-            for (String line : rawOutputLines)
-                if ((outputLines.size() > 0 || line.contains("inst#     actual  predicted error distribution")) && line.length() > 0)
-                    outputLines.add(line);
-            outputLines.remove(0);
-
-            Singletons.Log.Debug("Sort the test instance IDs because they will be returned from Weka in sorted order");
-            ArrayList<String> testInstanceIDs = ListUtilities.SortStringList(testData.GetIDs());
+        Singletons.Log.Debug("Build predictions by parsing through output as it is produced");
+        OutputLineParser predictionParser = new OutputLineParser()
+        {
+            private boolean _pastHeader = false;
 
-            Singletons.Log.Debug("Parse through the Weka custom output");
-            for (int i=0; i<outputLines.size(); i++)
+            public void ParseLine(String line) throws Exception
             {
-                ArrayList<String> lineItems = ListUtilities.CreateStringList(outputLines.get(i).trim().split("\\s+"));
-
-                String rawProbabilities = lineItems.get(lineItems.size() - 1);
-                ArrayList<String> rawProbabilitiesList = ListUtilities.CreateStringList(rawProbabilities.split(","));
+                // The output is kept because it serves as the description of the model
+                output.append(line + "\n");
 
-                int predictedClassIndex = -1;
-                for (int j=0; j<rawProbabilitiesList.size(); j++)
-                    if (rawProbabilitiesList.get(j).startsWith("*"))
-                        predictedClassIndex = j;
-
-                rawProbabilitiesList.set(predictedClassIndex, rawProbabilitiesList.get(predictedClassIndex).substring(1));
-
-                ArrayList<Double> probabilities = ListUtilities.CreateDoubleList(rawProbabilitiesList);
-                String predictedClass = Singletons.InstanceVault.DependentVariableOptions.get(predictedClassIndex);
-
-                String testInstanceID = testInstanceIDs.get(i);
-                predictions.add(new Prediction(testInstanceID, Singletons.InstanceVault.GetDependentVariableValue(testInstanceID), predictedClass, probabilities));
+                if (!_pastHeader)
+                    _pastHeader = line.contains("inst#     actual  predicted error distribution");
+                else if (line.length() > 0)
+                    predictions.add(ParsePrediction(line, testInstanceIDs.get(predictions.size())));
             }
+        };
 
-            return new ModelPredictions(output, new Predictions(predictions));
+        try
+        {
+        	Singletons.Log.Debug("Invoke Weka at the command line");
+            CommandLineClient.RunAnalysis(command, null, commandTemplate, predictionParser);
+
+            return new ModelPredictions(output.toString().trim(), new Predictions(predictions));
         }
         catch (Exception ex)
         {
             Singletons.Log.Debug("An error occurred while attempting to perform training and Action. Below is the output of Weka:");
             throw ex;
         }
+        finally
+        {
+            Singletons.Log.Debug("Release ARFF files");
+            AnalysisFileCache.Release(trainingArffFilePath);
+            AnalysisFileCache.Release(testArffFilePath);
+        }
     }
-    
+
+    /** Parses a line of the Weka custom output (produced with the -p 0 -distribution options) into a prediction.
+     *
+     * @param line Line of Weka output
+     * @param testInstanceID ID of the test instance that corresponds with the line
+     * @return Prediction
+     * @throws Exception
+     */
+    private static Prediction ParsePrediction(String line, String testInstanceID) throws Exception
+    {
+        ArrayList<String> lineItems = ListUtilities.CreateStringList(line.trim().split("\\s+"));
+
+        String rawProbabilities = lineItems.get(lineItems.size() - 1);
+        ArrayList<String> rawProbabilitiesList = ListUtilities.CreateStringList(rawProbabilities.split(","));
+
+        int predictedClassIndex = -1;
+        for (int j=0; j<rawProbabilitiesList.size(); j++)
+            if (rawProbabilitiesList.get(j).startsWith("*"))
+                predictedClassIndex = j;
+
+        rawProbabilitiesList.set(predictedClassIndex, rawProbabilitiesList.get(predictedClassIndex).substring(1));
+
+        ArrayList<Double> probabilities = ListUtilities.CreateDoubleList(rawProbabilitiesList);
+        String predictedClass = Singletons.InstanceVault.DependentVariableOptions.get(predictedClassIndex);
+
+        return new Prediction(testInstanceID, Singletons.InstanceVault.GetDependentVariableValue(testInstanceID), predictedClass, probabilities);
+    }
+
     /** Creates a custom object that can use the Weka library to calculate many of the performance metrics.
     *
     * @param predictions List of predictions that have been made
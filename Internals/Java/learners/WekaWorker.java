@@ -0,0 +1,147 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.learners;
+
+import mlflex.helper.WorkerPool;
+import weka.attributeSelection.ASEvaluation;
+import weka.attributeSelection.AttributeSelection;
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/** This class is the entry point for long-lived Weka worker processes (see mlflex.helper.WorkerPool). Each job contains the same arguments that would be used to invoke Weka at the command line; the first argument that refers to a Weka class is the classifier or attribute evaluator, and the remaining arguments are its options. This makes it possible to use the same learner templates, with or without worker processes.
+ * @author Stephen Piccolo
+ */
+public class WekaWorker
+{
+    /** Reads jobs from standard input until it is closed.
+     *
+     * @param args Not used
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception
+    {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"));
+
+        // Anything that Weka prints is captured so it does not interfere with the protocol
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+
+        String header;
+        while ((header = in.readLine()) != null)
+        {
+            String[] headerItems = header.split(" ");
+            if (headerItems.length != 2 || !headerItems[0].equals(WorkerPool.JOB_HEADER))
+            {
+                WriteResult(out, 1, "", "Invalid job header: " + header);
+                continue;
+            }
+
+            ArrayList<String> arguments = new ArrayList<String>();
+            for (int i = 0; i < Integer.parseInt(headerItems[1]); i++)
+                arguments.add(in.readLine());
+
+            ByteArrayOutputStream capturedOutput = new ByteArrayOutputStream();
+            ByteArrayOutputStream capturedError = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(capturedOutput, true, "UTF-8"));
+            System.setErr(new PrintStream(capturedError, true, "UTF-8"));
+
+            int exitStatus = 0;
+            String output = "";
+
+            try
+            {
+                output = RunJob(arguments);
+            }
+            catch (Throwable ex)
+            {
+                StringWriter stackTrace = new StringWriter();
+                ex.printStackTrace(new PrintWriter(stackTrace));
+                System.err.print(stackTrace.toString());
+                exitStatus = 1;
+            }
+            finally
+            {
+                System.setOut(originalOut);
+                System.setErr(originalErr);
+            }
+
+            WriteResult(out, exitStatus, capturedOutput.toString("UTF-8") + output, capturedError.toString("UTF-8"));
+        }
+    }
+
+    private static String RunJob(ArrayList<String> arguments) throws Exception
+    {
+        int classIndex = 0;
+        while (classIndex < arguments.size() && !arguments.get(classIndex).startsWith("weka."))
+            classIndex++;
+
+        if (classIndex == arguments.size())
+            throw new Exception("No Weka class was specified in the job arguments: " + arguments);
+
+        Object algorithm = Class.forName(arguments.get(classIndex)).getDeclaredConstructor().newInstance();
+        String[] options = arguments.subList(classIndex + 1, arguments.size()).toArray(new String[0]);
+
+        if (algorithm instanceof ASEvaluation)
+            return AttributeSelection.SelectAttributes((ASEvaluation)algorithm, options) + "\n";
+
+        if (algorithm instanceof Classifier)
+            return Evaluation.evaluateModel((Classifier)algorithm, options) + "\n";
+
+        throw new Exception(arguments.get(classIndex) + " is not a Weka classifier or attribute evaluator.");
+    }
+
+    private static void WriteResult(BufferedWriter out, int exitStatus, String output, String error) throws Exception
+    {
+        ArrayList<String> outputLines = SplitLines(output);
+        ArrayList<String> errorLines = SplitLines(error);
+
+        out.write(WorkerPool.RESULT_HEADER + " " + exitStatus + " " + outputLines.size() + " " + errorLines.size() + "\n");
+        for (String line : outputLines)
+            out.write(line + "\n");
+        for (String line : errorLines)
+            out.write(line + "\n");
+        out.flush();
+    }
+
+    private static ArrayList<String> SplitLines(String text)
+    {
+        if (text.length() == 0)
+            return new ArrayList<String>();
+
+        if (text.endsWith("\n"))
+            text = text.substring(0, text.length() - 1);
+
+        return new ArrayList<String>(Arrays.asList(text.replace("\r", "").split("\n", -1)));
+    }
+}
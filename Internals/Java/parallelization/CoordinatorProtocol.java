@@ -0,0 +1,319 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.parallelization;
+
+import mlflex.core.Settings;
+import mlflex.helper.FileUtilities;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+
+/** This class contains definitions and helper methods that are shared by the coordinator (see TaskCoordinator) and by workers (see RemoteTaskStateStore). Each request is sent over a new TCP connection: the request name and its arguments are written, the response is read, and the connection is closed. File paths are sent relative to the main directory, so the coordinator and workers do not need to use the same directory structure (or a shared file system).
+ *
+ * Each request begins with a secret that is shared by the coordinator and workers (see COORDINATOR_SECRET_FILE), and the coordinator rejects requests that do not include it. The secret is sent without encryption, so the coordinator should only be made available on trusted networks.
+ */
+class CoordinatorProtocol
+{
+    static final String IS_DONE = "IS_DONE";
+    static final String CLAIM = "CLAIM";
+    static final String COMPLETE = "COMPLETE";
+    static final String RELEASE = "RELEASE";
+    static final String AWAIT = "AWAIT";
+    static final String HEARTBEAT = "HEARTBEAT";
+    static final String SYNCHRONIZE = "SYNCHRONIZE";
+    static final String LEAVE = "LEAVE";
+
+    /** How often workers indicate to the coordinator that they are still running. */
+    static final long HEARTBEAT_SECONDS = 10;
+    /** How long the coordinator waits after the last heartbeat from a worker before the worker is considered lost and its tasks are handed out again. */
+    static final long WORKER_LOST_SECONDS = HEARTBEAT_SECONDS * 3;
+
+    private static final int CONNECT_TIMEOUT_MILLISECONDS = 10000;
+    private static final String TEMP_FILE_EXTENSION = ".transfer";
+
+    private static String _secret = null;
+
+    /** Retrieves the secret that is shared by the coordinator and workers. The coordinator creates a random secret if the file does not exist; this file must then be copied to each worker.
+     *
+     * @param createIfMissing Whether to create the secret if the file does not exist (for the coordinator)
+     * @return Secret
+     * @throws Exception
+     */
+    static synchronized String GetSecret(boolean createIfMissing) throws Exception
+    {
+        if (_secret != null)
+            return _secret;
+
+        File file = new File(Settings.COORDINATOR_SECRET_FILE);
+
+        if (!file.exists())
+        {
+            if (!createIfMissing)
+                throw new Exception("The file " + Settings.COORDINATOR_SECRET_FILE + ", which contains the secret that is shared with the coordinator, does not exist. Copy it from the coordinator, or specify its location with COORDINATOR_SECRET_FILE.");
+
+            FileUtilities.CreateFileDirectoryIfNotExists(Settings.COORDINATOR_SECRET_FILE);
+            FileUtilities.WriteTextToFile(Settings.COORDINATOR_SECRET_FILE, new BigInteger(256, new SecureRandom()).toString(16));
+
+            // Only the owner of the file should be able to read the secret
+            file.setReadable(false, false);
+            file.setReadable(true, true);
+            file.setWritable(false, false);
+            file.setWritable(true, true);
+        }
+
+        _secret = FileUtilities.ReadTextFile(Settings.COORDINATOR_SECRET_FILE).trim();
+        if (_secret.length() == 0)
+            throw new Exception("The file " + Settings.COORDINATOR_SECRET_FILE + " does not contain a secret.");
+
+        return _secret;
+    }
+
+    /** Begins a request to the coordinator by sending the shared secret and the name of the request. Any arguments are written to the stream that is returned.
+     *
+     * @param socket Connection to the coordinator
+     * @param request Request name
+     * @return Stream to which arguments can be written
+     * @throws Exception
+     */
+    static DataOutputStream StartRequest(Socket socket, String request) throws Exception
+    {
+        DataOutputStream out = GetOutputStream(socket);
+        out.writeUTF(GetSecret(false));
+        out.writeUTF(request);
+
+        return out;
+    }
+
+    /** Reads the shared secret at the beginning of a request and verifies that it matches.
+     *
+     * @param in Stream
+     * @return Whether the secret matches
+     * @throws Exception
+     */
+    static boolean IsAuthenticated(DataInputStream in) throws Exception
+    {
+        // The comparison takes the same amount of time regardless of how much of the secret matches
+        return MessageDigest.isEqual(in.readUTF().getBytes("UTF-8"), GetSecret(true).getBytes("UTF-8"));
+    }
+
+    /** Opens a connection to the coordinator that has been specified at the command line (COORDINATOR_HOST and COORDINATOR_PORT).
+     *
+     * @return Connection
+     * @throws Exception
+     */
+    static Socket Connect() throws Exception
+    {
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress(Settings.COORDINATOR_HOST, Settings.COORDINATOR_PORT), CONNECT_TIMEOUT_MILLISECONDS);
+
+        return socket;
+    }
+
+    static DataOutputStream GetOutputStream(Socket socket) throws Exception
+    {
+        return new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    static DataInputStream GetInputStream(Socket socket) throws Exception
+    {
+        return new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    }
+
+    /** Identifies the directories whose files are copied between the coordinator and workers: selected features, predictions, and output files. Files in other directories (for example, processed data, temporary files, and task states) are not copied.
+     *
+     * @return Absolute directory paths
+     */
+    static ArrayList<String> GetSynchronizedDirectories()
+    {
+        ArrayList<String> directories = new ArrayList<String>();
+        directories.add(Settings.INTERNALS_DIR + "SelectedFeatures/");
+        directories.add(Settings.INTERNALS_DIR + "Predictions/");
+        directories.add(Settings.INTERNALS_DIR + "EnsemblePredictions/");
+        directories.add(Settings.MAIN_DIR + "Output/");
+
+        return directories;
+    }
+
+    /** Converts an absolute path (within the main directory) to a relative path.
+     *
+     * @param absolutePath Absolute path
+     * @return Path relative to the main directory
+     * @throws Exception
+     */
+    static String ToRelativePath(String absolutePath) throws Exception
+    {
+        if (!absolutePath.startsWith(Settings.MAIN_DIR))
+            throw new Exception("The path " + absolutePath + " is not within " + Settings.MAIN_DIR + ".");
+
+        return absolutePath.substring(Settings.MAIN_DIR.length());
+    }
+
+    /** Converts a relative path that was received from another process to an absolute path. Paths that would refer to a location outside the main directory are rejected.
+     *
+     * @param relativePath Path relative to the main directory
+     * @return Absolute path
+     * @throws Exception
+     */
+    static String ToAbsolutePath(String relativePath) throws Exception
+    {
+        if (relativePath.startsWith("/") || relativePath.startsWith("\\") || relativePath.contains(".."))
+            throw new Exception("Invalid relative path: " + relativePath);
+
+        return Settings.MAIN_DIR + relativePath;
+    }
+
+    /** Lists the files in the synchronized directories.
+     *
+     * @return Files
+     */
+    static ArrayList<File> GetSynchronizedFiles()
+    {
+        ArrayList<File> files = new ArrayList<File>();
+
+        for (String directory : GetSynchronizedDirectories())
+            AddFilesRecursively(new File(directory), files);
+
+        return files;
+    }
+
+    private static void AddFilesRecursively(File directory, ArrayList<File> files)
+    {
+        File[] children = directory.listFiles();
+        if (children == null)
+            return;
+
+        for (File child : children)
+        {
+            if (child.isDirectory())
+                AddFilesRecursively(child, files);
+            else if (!child.getName().endsWith(TEMP_FILE_EXTENSION))
+                files.add(child);
+        }
+    }
+
+    /** Writes a file to a stream, identified by its path relative to the main directory.
+     *
+     * @param out Stream
+     * @param relativePath Path relative to the main directory
+     * @throws Exception
+     */
+    static void WriteFile(DataOutputStream out, String relativePath) throws Exception
+    {
+        byte[] bytes = null;
+
+        try
+        {
+            bytes = ReadBytes(new File(ToAbsolutePath(relativePath)));
+        }
+        catch (FileNotFoundException ex)
+        {
+            // The file has been deleted, so it is not copied
+        }
+
+        out.writeUTF(relativePath);
+        out.writeInt(bytes == null ? -1 : bytes.length);
+        if (bytes != null)
+            out.write(bytes);
+    }
+
+    /** Reads a file from a stream and saves it. The file is first saved under a temporary name and then renamed, so other threads never see a partially saved file. Files outside the synchronized directories are not saved.
+     *
+     * @param in Stream
+     * @return Path of the file relative to the main directory (null if the file was not saved)
+     * @throws Exception
+     */
+    static String ReadFile(DataInputStream in) throws Exception
+    {
+        String relativePath = in.readUTF();
+        int length = in.readInt();
+
+        if (length < 0)
+            return null;
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+
+        String filePath = ToAbsolutePath(relativePath);
+        if (!IsSynchronized(filePath))
+            throw new Exception("Files cannot be copied to " + relativePath + ".");
+
+        FileUtilities.CreateFileDirectoryIfNotExists(filePath);
+
+        File tempFile = new File(filePath + TEMP_FILE_EXTENSION);
+        FileOutputStream out = new FileOutputStream(tempFile);
+        try
+        {
+            out.write(bytes);
+        }
+        finally
+        {
+            out.close();
+        }
+
+        File file = new File(filePath);
+        if (!tempFile.renameTo(file))
+        {
+            // Some platforms cannot rename over an existing file
+            file.delete();
+            if (!tempFile.renameTo(file))
+                throw new Exception("Could not save " + filePath + ".");
+        }
+
+        return relativePath;
+    }
+
+    static boolean IsSynchronized(String filePath)
+    {
+        for (String directory : GetSynchronizedDirectories())
+            if (filePath.startsWith(directory))
+                return true;
+
+        return false;
+    }
+
+    private static byte[] ReadBytes(File file) throws Exception
+    {
+        // The length is not determined in advance because the file may be changing
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputStream in = new FileInputStream(file);
+
+        try
+        {
+            byte[] buffer = new byte[65536];
+            int length;
+
+            while ((length = in.read(buffer)) > 0)
+                bytes.write(buffer, 0, length);
+        }
+        finally
+        {
+            in.close();
+        }
+
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,193 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.parallelization;
+
+import mlflex.core.Settings;
+import mlflex.core.Singletons;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/** This class supports an execution mode (VIRTUAL_THREADS=true) in which more locked tasks are in progress at once than there are threads specified at the command line. Most tasks spend much of their time waiting for external processes, during which they do not use the processor within this process. In this mode, locked tasks are executed on virtual threads (when the version of Java supports them), and two limits are applied instead: at most NUM_THREADS tasks compute within this process at once (a task gives up its compute slot while it waits for an external process), and at most MAX_CHILD_PROCESSES external processes run at once. When this mode is not used, the methods in this class have no effect, because the number of threads already limits both.
+ */
+public class ExecutionSlots
+{
+    private static Semaphore _computeSlots = null;
+    private static Semaphore _childProcessSlots = null;
+    /** Whether the current thread holds a compute slot. */
+    private static final ThreadLocal<Boolean> _holdsComputeSlot = new ThreadLocal<Boolean>();
+
+    /** Indicates whether locked tasks are executed in virtual-thread mode.
+     *
+     * @return Whether the mode is used
+     */
+    public static boolean IsEnabled()
+    {
+        return Settings.VIRTUAL_THREADS;
+    }
+
+    /** Indicates how many locked tasks may be in progress at once. In virtual-thread mode, this allows all compute slots and all child-process slots to be in use at the same time.
+     *
+     * @return Number of locked tasks
+     */
+    public static int GetNumLockedTasks()
+    {
+        if (!IsEnabled())
+            return Settings.NUM_THREADS;
+
+        return Settings.NUM_THREADS + Settings.MAX_CHILD_PROCESSES;
+    }
+
+    /** Creates threads for executing locked tasks. Virtual threads are used if the version of Java supports them (Java 21 or later); otherwise daemon platform threads are used.
+     *
+     * @return Thread factory
+     */
+    public static ThreadFactory CreateLockedTaskThreadFactory()
+    {
+        if (IsEnabled())
+        {
+            try
+            {
+                // Reflection is used so that this code can be compiled and executed on versions of Java that do not support virtual threads
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "LockedTask-", 0L);
+
+                return (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+            }
+            catch (Exception ex)
+            {
+                Singletons.Log.Info("Virtual threads are not supported by this version of Java, so platform threads will be used for " + GetNumLockedTasks() + " locked tasks at a time.");
+                Singletons.Log.Debug(ex);
+            }
+        }
+
+        return new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                // Idle threads should not keep the process alive
+                Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /** Waits until the current thread may compute within this process. Each call must be followed by a call to ReleaseComputeSlot.
+     *
+     * @throws Exception
+     */
+    public static void AcquireComputeSlot() throws Exception
+    {
+        if (!IsEnabled())
+            return;
+
+        GetComputeSlots().acquire();
+        _holdsComputeSlot.set(Boolean.TRUE);
+    }
+
+    /** Indicates that the current thread is no longer computing. This has no effect if the thread does not hold a compute slot (for example, because it was interrupted while waiting to get it back after an external process finished). */
+    public static void ReleaseComputeSlot()
+    {
+        if (!Boolean.TRUE.equals(_holdsComputeSlot.get()))
+            return;
+
+        _holdsComputeSlot.remove();
+        GetComputeSlots().release();
+    }
+
+    /** Waits until an external process may be started (or a job sent to a worker process) on behalf of the current thread. While the thread waits for the slot and for the external process, its compute slot (if it has one) is made available to other tasks.
+     *
+     * @return Slot, which must be released when the external process has finished
+     * @throws Exception
+     */
+    public static ChildProcessSlot AcquireChildProcessSlot() throws Exception
+    {
+        if (!IsEnabled())
+            return new ChildProcessSlot(false, false);
+
+        boolean gaveUpComputeSlot = Boolean.TRUE.equals(_holdsComputeSlot.get());
+        ReleaseComputeSlot();
+
+        // If the thread is interrupted while waiting, the task is being cancelled, so it does not need the compute slot back
+        GetChildProcessSlots().acquire();
+
+        return new ChildProcessSlot(true, gaveUpComputeSlot);
+    }
+
+    private static synchronized Semaphore GetComputeSlots()
+    {
+        if (_computeSlots == null)
+            _computeSlots = new Semaphore(Settings.NUM_THREADS, true);
+
+        return _computeSlots;
+    }
+
+    private static synchronized Semaphore GetChildProcessSlots()
+    {
+        if (_childProcessSlots == null)
+            _childProcessSlots = new Semaphore(Settings.MAX_CHILD_PROCESSES, true);
+
+        return _childProcessSlots;
+    }
+
+    /** This class represents permission to run an external process. */
+    public static class ChildProcessSlot
+    {
+        private boolean _holdsSlot;
+        private boolean _reacquireComputeSlot;
+
+        private ChildProcessSlot(boolean holdsSlot, boolean reacquireComputeSlot)
+        {
+            _holdsSlot = holdsSlot;
+            _reacquireComputeSlot = reacquireComputeSlot;
+        }
+
+        /** Indicates that the external process has finished, and waits to get back the compute slot that was given up (if any). Calling this method more than once has no effect.
+         */
+        public void Release()
+        {
+            if (_holdsSlot)
+            {
+                _holdsSlot = false;
+                GetChildProcessSlots().release();
+            }
+
+            if (_reacquireComputeSlot)
+            {
+                _reacquireComputeSlot = false;
+
+                try
+                {
+                    AcquireComputeSlot();
+                }
+                catch (Exception ex)
+                {
+                    // The task is being cancelled, so it does not need the compute slot back
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.parallelization;
+
+import mlflex.core.IterationContext;
+import mlflex.core.Settings;
+import mlflex.core.Singletons;
+import mlflex.helper.FileUtilities;
+
+import java.io.File;
+
+/** This class stores the state of each task in two small files: a lock file (in the locks directory) indicates that a thread is executing the task, and a status file (in the status directory) indicates whether the task is pending or has been completed. Stale files are identified by their modification times. This was the original mechanism for sharing tasks across compute nodes; it remains available for compatibility.
+ */
+public class FileTaskStateStore implements TaskStateStore
+{
+    /** This value is stored in a status file when the task has been completed. */
+    public static final String DONE_STATUS = "DONE";
+
+    private final TaskStateChangeMonitor _monitor = new TaskStateChangeMonitor();
+
+    public boolean IsDone(String taskKey) throws Exception
+    {
+        String statusFilePath = GetStatusFilePath(taskKey);
+        return FileUtilities.FileExists(statusFilePath) && ReadStatus(statusFilePath).equals(DONE_STATUS);
+    }
+
+    public boolean Claim(String taskKey) throws Exception
+    {
+        String statusFilePath = GetStatusFilePath(taskKey);
+        String lockFilePath = GetLockFilePath(taskKey);
+
+        if (FileUtilities.FileExists(statusFilePath))
+        {
+            Singletons.Log.Debug("Status file exists at " + statusFilePath);
+
+            // See if the task is indicated as already being completed
+            if (ReadStatus(statusFilePath).equals(DONE_STATUS))
+            {
+                Singletons.Log.Debug("Status is " + DONE_STATUS + " for " + statusFilePath);
+                return false;
+            }
+
+            Singletons.Log.Debug("Status is PENDING for " + statusFilePath);
+
+            // See if the status file is stale
+            if (FileUtilities.GetFileAgeMinutes(statusFilePath) > (double)Settings.THREAD_TIMEOUT_MINUTES)
+            {
+                Singletons.Log.Debug("PENDING status file is stale at " + statusFilePath + ", so attempting to delete it");
+
+                // Delete the status file if it is stale
+                if (FileUtilities.DeleteFile(statusFilePath))
+                    Singletons.Log.Debug("Stale PENDING status file at " + statusFilePath + " was deleted");
+                else
+                    Singletons.Log.Debug("Stale PENDING status file at " + statusFilePath + " could not be deleted");
+            }
+
+            // Another thread is probably processing this task, so watch for its status file to change
+            _monitor.Watch(new File(statusFilePath).getParent());
+
+            return false;
+        }
+
+        Singletons.Log.Debug("No status file exists at " + statusFilePath);
+
+        if (!ShouldCreateLockFile(lockFilePath)) // Guard clause, indicating whether lock file should be created
+        {
+            _monitor.Watch(new File(lockFilePath).getParent());
+            return false;
+        }
+
+        // Attempting to create a lock file
+        if (!FileUtilities.CreateEmptyFile(lockFilePath))
+            return false;
+
+        Singletons.Log.Debug("Lock file was created at " + lockFilePath);
+
+        try
+        {
+            Singletons.Log.Debug("Attempting to create PENDING status file at " + statusFilePath);
+            if (FileUtilities.CreateEmptyFile(statusFilePath))
+            {
+                Singletons.Log.Debug("Created PENDING status file at " + statusFilePath);
+                return true;
+            }
+
+            Singletons.Log.Debug("PENDING status could not be set because file already exists at " + statusFilePath);
+        }
+        catch (Exception ex)
+        {
+            Singletons.Log.Debug("Exception occurred when attempting to set PENDING status on file at " + statusFilePath);
+            Singletons.Log.Debug(ex);
+        }
+
+        DeleteFile(lockFilePath, "active lock");
+        return false;
+    }
+
+    public void Complete(String taskKey) throws Exception
+    {
+        String statusFilePath = GetStatusFilePath(taskKey);
+
+        // Create a status file indicating the command was successful
+        Singletons.Log.Debug("Attempting to set " + DONE_STATUS + " status on " + statusFilePath);
+        FileUtilities.AppendTextToFile(statusFilePath, DONE_STATUS);
+        Singletons.Log.Debug(DONE_STATUS + " status set on " + statusFilePath);
+
+        // Remove the lock file because it is no longer necessary
+        DeleteFile(GetLockFilePath(taskKey), "active lock");
+        _monitor.Signal();
+    }
+
+    public void Release(String taskKey) throws Exception
+    {
+        DeleteFile(GetLockFilePath(taskKey), "active lock");
+        DeleteFile(GetStatusFilePath(taskKey), "active status");
+        _monitor.Signal();
+    }
+
+    public boolean AwaitChange(long timeoutMillis) throws Exception
+    {
+        return _monitor.Await(timeoutMillis);
+    }
+
+    private String GetStatusFilePath(String taskKey)
+    {
+        return IterationContext.Current().StatusDir + taskKey;
+    }
+
+    private String GetLockFilePath(String taskKey)
+    {
+        return IterationContext.Current().LocksDir + taskKey;
+    }
+
+    /** Reads the status from a status file.
+     *
+     * @param statusFilePath Path to the status file
+     * @return Status value
+     */
+    private String ReadStatus(String statusFilePath)
+    {
+        String status = "";
+
+        try
+        {
+            status = FileUtilities.ReadScalarFromFile(statusFilePath);
+        }
+        catch (Exception ex)
+        {
+            Singletons.Log.Debug("Error reading status file at " + statusFilePath);
+            Singletons.Log.Debug(ex);
+        }
+
+        return status;
+    }
+
+    /** This method contains the logic to indicate whether a lock file can be created for this task. If so, then it should be processed. This logic is based on whether other threads are processing it and whether existing lock files are stale, etc.
+     *
+     * @param lockFilePath Path to the lock file
+     * @return Whether the task should be executed
+     * @throws Exception
+     */
+    private boolean ShouldCreateLockFile(String lockFilePath) throws Exception
+    {
+        if (!FileUtilities.FileExists(lockFilePath))
+        {
+            Singletons.Log.Debug("No lock file was found at " + lockFilePath);
+            return true;
+        }
+
+        if (FileUtilities.GetFileAgeMinutes(lockFilePath) <= (double) Settings.THREAD_TIMEOUT_MINUTES) // The lock file is not stale, so another thread is probably actively processing it
+        {
+            Singletons.Log.Debug("Lock file was found at " + lockFilePath + " and is not stale.");
+            return false;
+        }
+
+        if (FileUtilities.DeleteFile(lockFilePath))
+        {
+            Singletons.Log.Debug("Stale lock file was found at " + lockFilePath + " and was deleted.");
+            return true; // The stale lock file was successfully deleted
+        }
+
+        Singletons.Log.Debug("A stale lock file at " + lockFilePath + " could not be deleted.");
+        return false; // The lock file is stale but can't be deleted for whatever reason, so delay execution of task
+    }
+
+    private void DeleteFile(String filePath, String description)
+    {
+        Singletons.Log.Debug("Deleting " + description + " file at " + filePath);
+        FileUtilities.DeleteFile(filePath);
+        Singletons.Log.Debug("Deleted " + description + " file at " + filePath);
+    }
+}
@@ -0,0 +1,251 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.parallelization;
+
+import mlflex.core.Settings;
+import mlflex.core.Singletons;
+import mlflex.helper.FileUtilities;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileLock;
+import java.util.HashMap;
+import java.util.UUID;
+
+/** This class stores the state of all tasks for an iteration in a single append-only journal file within the status directory, rather than in two files per task. Each operation (claim, complete, or release) appends one line to the journal while holding an exclusive lock on it, so the operations are atomic across threads and compute nodes. A claim is a lease that expires after THREAD_TIMEOUT_MINUTES, after which another thread may claim the task. Each process keeps the state in memory and reads only the lines that have been appended since it last read the journal.
+ */
+public class JournalTaskStateStore implements TaskStateStore
+{
+    /** Name of the journal file within the status directory. */
+    public static final String JOURNAL_FILE_NAME = "Task_Journal.txt";
+
+    private static final String CLAIM = "CLAIM";
+    private static final String DONE = "DONE";
+    private static final String RELEASE = "RELEASE";
+
+    /** Identifies claims that were made by this process. */
+    private static final String OWNER = ManagementFactory.getRuntimeMXBean().getName().replace("\t", "_") + "_" + UUID.randomUUID().toString().substring(0, 8);
+
+    private static HashMap<String, JournalTaskStateStore> _stores = new HashMap<String, JournalTaskStateStore>();
+
+    private final String _journalFilePath;
+    private final TaskStateChangeMonitor _monitor = new TaskStateChangeMonitor();
+    private final HashMap<String, TaskState> _states = new HashMap<String, TaskState>();
+    private long _offset = 0;
+
+    /** Retrieves the store whose journal is located in the specified directory. There is one store per journal within a process.
+     *
+     * @param directoryPath Path to the directory where the journal is stored
+     * @return Store object
+     */
+    public static synchronized JournalTaskStateStore Get(String directoryPath)
+    {
+        String journalFilePath = directoryPath + JOURNAL_FILE_NAME;
+
+        if (!_stores.containsKey(journalFilePath))
+            _stores.put(journalFilePath, new JournalTaskStateStore(journalFilePath));
+
+        return _stores.get(journalFilePath);
+    }
+
+    private JournalTaskStateStore(String journalFilePath)
+    {
+        _journalFilePath = journalFilePath;
+
+        String directoryPath = new File(journalFilePath).getParent();
+        FileUtilities.CreateDirectoryNoFatalError(directoryPath);
+        _monitor.Watch(directoryPath);
+    }
+
+    public synchronized boolean IsDone(String taskKey) throws Exception
+    {
+        // Completed tasks never become incomplete, so there is no need to read the journal again
+        if (IsDoneInMemory(taskKey))
+            return true;
+
+        Transact(null, null);
+
+        return IsDoneInMemory(taskKey);
+    }
+
+    public synchronized boolean Claim(String taskKey) throws Exception
+    {
+        return Transact(taskKey, CLAIM);
+    }
+
+    public synchronized void Complete(String taskKey) throws Exception
+    {
+        Transact(taskKey, DONE);
+        _monitor.Signal();
+    }
+
+    public synchronized void Release(String taskKey) throws Exception
+    {
+        Transact(taskKey, RELEASE);
+        _monitor.Signal();
+    }
+
+    public boolean AwaitChange(long timeoutMillis) throws Exception
+    {
+        return _monitor.Await(timeoutMillis);
+    }
+
+    private boolean IsDoneInMemory(String taskKey)
+    {
+        TaskState state = _states.get(taskKey);
+        return state != null && state.IsDone;
+    }
+
+    /** Locks the journal, reads any lines that have been appended by other threads or processes, and then (optionally) appends a line for the specified operation.
+     *
+     * @param taskKey Relative status path of the task (null if no operation should be appended)
+     * @param operation Operation to be appended (null if none)
+     * @return Whether the operation was appended; a claim is not appended if the task is completed or has an unexpired lease
+     * @throws Exception
+     */
+    private boolean Transact(String taskKey, String operation) throws Exception
+    {
+        RandomAccessFile journal = new RandomAccessFile(_journalFilePath, "rw");
+
+        try
+        {
+            FileLock lock = journal.getChannel().lock();
+
+            try
+            {
+                ReadNewLines(journal);
+
+                if (operation == null)
+                    return false;
+
+                long now = System.currentTimeMillis();
+
+                if (operation.equals(CLAIM))
+                {
+                    TaskState state = _states.get(taskKey);
+
+                    if (state != null && (state.IsDone || (state.Owner != null && state.LeaseExpiration > now)))
+                    {
+                        Singletons.Log.Debug("Task " + taskKey + " could not be claimed because it is " + (state.IsDone ? "complete." : "claimed by " + state.Owner + "."));
+                        return false;
+                    }
+                }
+
+                String line = operation + "\t" + taskKey + "\t" + OWNER + "\t" + (now + Settings.THREAD_TIMEOUT_MINUTES * 60000L);
+
+                // If a process failed while writing a line, start a new line so the incomplete one is ignored
+                String prefix = _offset < journal.length() ? "\n" : "";
+
+                journal.seek(journal.length());
+                journal.write((prefix + line + "\n").getBytes("UTF-8"));
+                journal.getChannel().force(false);
+                _offset = journal.length();
+
+                Apply(line);
+                Singletons.Log.Debug("Appended to task journal: " + line);
+
+                return true;
+            }
+            finally
+            {
+                lock.release();
+            }
+        }
+        finally
+        {
+            journal.close();
+        }
+    }
+
+    /** Reads lines that have been appended to the journal since it was last read and applies them to the in-memory state.
+     *
+     * @param journal Journal file, which must be locked by the caller
+     * @throws Exception
+     */
+    private void ReadNewLines(RandomAccessFile journal) throws Exception
+    {
+        long length = journal.length();
+
+        // The journal has been deleted or replaced (for example, when the experiment was reset)
+        if (length < _offset)
+        {
+            _states.clear();
+            _offset = 0;
+        }
+
+        if (length == _offset)
+            return;
+
+        byte[] bytes = new byte[(int)(length - _offset)];
+        journal.seek(_offset);
+        journal.readFully(bytes);
+
+        int start = 0;
+        for (int i = 0; i < bytes.length; i++)
+            if (bytes[i] == '\n')
+            {
+                Apply(new String(bytes, start, i - start, "UTF-8"));
+                start = i + 1;
+            }
+
+        // An incomplete line would only be present if a process failed while writing it
+        _offset += start;
+    }
+
+    private void Apply(String line)
+    {
+        String[] items = line.split("\t");
+        if (items.length < 4)
+            return;
+
+        TaskState state = _states.get(items[1]);
+        if (state == null)
+        {
+            state = new TaskState();
+            _states.put(items[1], state);
+        }
+
+        if (items[0].equals(CLAIM))
+        {
+            state.Owner = items[2];
+            state.LeaseExpiration = Long.parseLong(items[3]);
+        }
+        else if (items[0].equals(DONE))
+        {
+            state.IsDone = true;
+            state.Owner = null;
+        }
+        else if (items[0].equals(RELEASE) && items[2].equals(state.Owner))
+        {
+            state.Owner = null;
+        }
+    }
+
+    /** The state of a single task, as recorded in the journal. */
+    private static class TaskState
+    {
+        boolean IsDone = false;
+        String Owner = null;
+        long LeaseExpiration = 0;
+    }
+}
@@ -21,27 +21,40 @@
 
 package mlflex.parallelization;
 
+import mlflex.core.IterationContext;
 import mlflex.core.Settings;
 import mlflex.core.Singletons;
-import mlflex.helper.FileUtilities;
+import mlflex.helper.WrittenFiles;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.concurrent.Callable;
 
 /** This class encapsulates objects necessary to run tasks in parallel across multiple compute nodes. It contains logic for saving/deleting lock files and for handling errors that may occur. It also contains logic to check whether a status file has been created, which would indicate that this task has already been completed.
  */
 public class LockedCallable implements Callable<Object>
 {
-    public static final String DONE_STATUS = "DONE";
+    private static final FileTaskStateStore FILE_TASK_STATE_STORE = new FileTaskStateStore();
+    /** Indicates whether the task that is executing on the current thread did not do its usual work (see SkipWallTime), so its wall time should not be recorded. */
+    private static final ThreadLocal<Boolean> _skipWallTime = new ThreadLocal<Boolean>();
 
-    /** This is the path to the status file that indicates whether this task has been completed previously. */
+    /** This is the path to the status file that indicates whether this task has been completed previously. It also uniquely identifies the task. */
     public String StatusFilePath;
-    /** This is the path to the lock file. */
-    private String _lockFilePath;
+    /** This is the relative status path, which identifies this task within the task-state store. */
+    private String _taskKey;
     /** This is what will be output to log files indicating status. */
     private String _logDescription;
     /** This is the callable that will actually be executed after locking has occurred. */
     private Callable<Object> _callable;
+    /** These are the status file paths of tasks that must be completed before this task can be executed. */
+    private ArrayList<String> _dependencies = new ArrayList<String>();
+    /** This describes the work that this task performs, for estimating how long it will take (null if unknown). */
+    private String _costKey = null;
+    /** This is a heuristic size of the work, used when there is no history for the cost key. */
+    private double _costSize = 0;
 
     /** Constructor that accepts the objects that are necessary to support the function of this class. Thisi particular constructor is intended to be used when the task being executed is a simple one that doesn't need a complex status file or lock file. The same value is used for the status file, lock file, and lock description.
      * @param simpleDescription Simple description of the task that will be executed
@@ -59,12 +72,98 @@ public class LockedCallable implements Callable<Object>
      */
     public LockedCallable(String statusRelativeFilePath, String logDescription, Callable<Object> callable)
     {
-        StatusFilePath = Settings.STATUS_DIR + statusRelativeFilePath.replace(" ", "_");
-        _lockFilePath = Settings.LOCKS_DIR + statusRelativeFilePath.replace(" ", "_");
+        _taskKey = statusRelativeFilePath.replace(" ", "_");
+        StatusFilePath = IterationContext.Current().StatusDir + _taskKey;
         _logDescription = logDescription;
         _callable = callable;
     }
 
+    /** Indicates that this task cannot be executed until the tasks with the specified (relative) status file paths have been completed.
+     *
+     * @param statusRelativeFilePaths Relative paths to the status files of the prerequisite tasks
+     * @return The current instance of this object for convenience
+     */
+    public LockedCallable DependsOn(String... statusRelativeFilePaths)
+    {
+        for (String statusRelativeFilePath : statusRelativeFilePaths)
+            _dependencies.add(IterationContext.Current().StatusDir + statusRelativeFilePath.replace(" ", "_"));
+
+        return this;
+    }
+
+    /** Indicates that this task cannot be executed until the specified tasks have been completed.
+     *
+     * @param callables Prerequisite tasks
+     * @return The current instance of this object for convenience
+     */
+    public LockedCallable DependsOn(ArrayList<LockedCallable> callables)
+    {
+        for (LockedCallable callable : callables)
+            _dependencies.add(callable.StatusFilePath);
+
+        return this;
+    }
+
+    /** Indicates the status file paths of tasks that must be completed before this task can be executed.
+     *
+     * @return Status file paths of prerequisite tasks
+     */
+    public ArrayList<String> GetDependencies()
+    {
+        return _dependencies;
+    }
+
+    /** Describes the work that this task performs so that its duration and memory usage can be estimated and recorded. Tasks that are expected to take longest are started first, and tasks are delayed if not enough memory is available to execute them (see MemoryAdmission).
+     *
+     * @param costKey Key that describes the work (see TaskCostHistory.GetCostKey)
+     * @param size Heuristic size of the work (for example, number of training instances multiplied by number of features)
+     * @return The current instance of this object for convenience
+     */
+    public LockedCallable SetCost(String costKey, double size)
+    {
+        _costKey = costKey;
+        _costSize = size;
+
+        return this;
+    }
+
+    /** Estimates how long this task will take to execute, based on previous executions of similar tasks.
+     *
+     * @return Expected number of seconds (zero if the work has not been described)
+     * @throws Exception
+     */
+    public double GetExpectedCost() throws Exception
+    {
+        if (_costKey == null)
+            return 0;
+
+        return TaskCostHistory.GetExpectedSeconds(_costKey, _costSize);
+    }
+
+    /** Sorts tasks so that those that are expected to take longest come first.
+     *
+     * @param callables Tasks to be sorted
+     * @return Sorted tasks
+     * @throws Exception
+     */
+    public static ArrayList<LockedCallable> SortByExpectedCost(ArrayList<LockedCallable> callables) throws Exception
+    {
+        final HashMap<LockedCallable, Double> costs = new HashMap<LockedCallable, Double>();
+        for (LockedCallable callable : callables)
+            costs.put(callable, callable.GetExpectedCost());
+
+        ArrayList<LockedCallable> sorted = new ArrayList<LockedCallable>(callables);
+        Collections.sort(sorted, new Comparator<LockedCallable>()
+        {
+            public int compare(LockedCallable callable1, LockedCallable callable2)
+            {
+                return costs.get(callable2).compareTo(costs.get(callable1));
+            }
+        });
+
+        return sorted;
+    }
+
     /** This is a convenience method that accepts an array of LockedCallable objects and converts it into a list.
      *
      * @param callables Array of callable arguments
@@ -79,192 +178,151 @@ public class LockedCallable implements Callable<Object>
         return callableList;
     }
 
-    /** This method attempts to create a lock file that will indicate to other threads or compute nodes that the _callable task is being executed. If the file cannot be created (most likely because the task is already being executed by another thread/node, then nothing will happen.
+    /** Retrieves the object that keeps track of which tasks have been completed and which are being executed. By default, this is a journal that is shared by all tasks in an iteration; if TASK_STATE_STORE=Files is specified at the command line, a lock file and a status file are used for each task. When the experiment is executed with ACTION=Coordinate or ACTION=Work, task states are kept by the coordinator (see TaskCoordinator).
      *
-     * @return Result of callable
+     * @return Task-state store
      * @throws Exception
      */
-    public Object call() throws Exception
+    public static TaskStateStore GetTaskStateStore() throws Exception
     {
-        // If this task has already been completed, then indicate success
-        if (FileUtilities.FileExists(StatusFilePath))
-        {
-            Singletons.Log.Debug("Status file exists at " + StatusFilePath);
+        if (Settings.TASK_STATE_STORE != null && Settings.TASK_STATE_STORE.equalsIgnoreCase("Files"))
+            return FILE_TASK_STATE_STORE;
 
-            // See if the task is indicated as already being completed
-            if (ReadStatus().equals(DONE_STATUS))
-            {
-                Singletons.Log.Debug("Status is " + DONE_STATUS + " for " + StatusFilePath);
-                return Boolean.TRUE;
-            }
-            else
-            {
-                Singletons.Log.Debug("Status is PENDING for " + StatusFilePath);
+        if (Settings.TASK_STATE_STORE != null && Settings.TASK_STATE_STORE.equalsIgnoreCase("Coordinator"))
+            return TaskCoordinator.GetLocalStore(IterationContext.Current().StatusDir);
 
-                // See if the status file is stale
-                if (FileUtilities.GetFileAgeMinutes(StatusFilePath) > (double)Settings.THREAD_TIMEOUT_MINUTES)
-                {
-                    Singletons.Log.Debug("PENDING status file is stale at " + StatusFilePath + ", so attempting to delete it");
+        if (Settings.TASK_STATE_STORE != null && Settings.TASK_STATE_STORE.equalsIgnoreCase("Remote"))
+            return RemoteTaskStateStore.Get(IterationContext.Current().StatusDir);
 
-                    // Delete the status file if it is stale
-                    if (FileUtilities.DeleteFile(StatusFilePath))
-                        Singletons.Log.Debug("Stale PENDING status file at " + StatusFilePath + " was deleted");
-                    else
-                        Singletons.Log.Debug("Stale PENDING status file at " + StatusFilePath + " could not be deleted");
+        return JournalTaskStateStore.Get(IterationContext.Current().StatusDir);
+    }
 
-                    return Boolean.FALSE;
-                }
+    /** This method attempts to claim this task, which indicates to other threads or compute nodes that the _callable task is being executed. If the task cannot be claimed (most likely because the task is already being executed by another thread/node), then nothing will happen.
+     *
+     * @return Result of callable
+     * @throws Exception
+     */
+    public Object call() throws Exception
+    {
+        TaskStateStore store = GetTaskStateStore();
 
-                return Boolean.FALSE;
-            }
+        // If this task has already been completed, then indicate success
+        if (store.IsDone(_taskKey))
+        {
+            Singletons.Log.Debug("Status is complete for " + _taskKey);
+            return Boolean.TRUE;
         }
 
-        Singletons.Log.Debug("No status file exists at " + StatusFilePath);
+        // Wait until enough memory is available to execute this task
+        MemoryAdmission.Reservation reservation = MemoryAdmission.Reserve(_costKey, _costSize, _logDescription);
+        boolean isClaimed = false;
 
-        if (!ShouldCreateLockFile()) // Guard clause, indicating whether lock file should be created
+        try
+        {
+            isClaimed = store.Claim(_taskKey);
+        }
+        finally
+        {
+            if (!isClaimed)
+                MemoryAdmission.Release(reservation);
+        }
+
+        if (!isClaimed)
             return Boolean.FALSE;
 
-        // Attempting to create a lock file
-        if (FileUtilities.CreateEmptyFile(_lockFilePath))
+        // The files that this task writes are recorded so they can be sent to the coordinator (see RemoteTaskStateStore)
+        LinkedHashSet<String> previousWrittenFiles = WrittenFiles.Begin();
+        Boolean previousSkipWallTime = _skipWallTime.get();
+        _skipWallTime.set(Boolean.FALSE);
+
+        try
         {
-            Singletons.Log.Debug("Lock file was created at " + _lockFilePath);
+            Singletons.Log.Info("Attempt: " + _logDescription);
+            TimeoutThreadPoolExecutor.SetTaskDescription(_logDescription);
+
+            // In virtual-thread mode, only a limited number of tasks may compute at once
+            ExecutionSlots.AcquireComputeSlot();
 
+            // Try to invoke the command
+            long startTime = System.currentTimeMillis();
+            boolean isSuccessful;
             try
             {
-                Singletons.Log.Debug("Attempting to create PENDING status file at " + StatusFilePath);
-                if (FileUtilities.CreateEmptyFile(StatusFilePath))
-                {
-                    Singletons.Log.Debug("Created PENDING status file at " + StatusFilePath);
-                }
-                else
-                {
-                    Singletons.Log.Debug("PENDING status could not be set because file already exists at " + StatusFilePath);
-                    DeleteActiveLockFile();
-                    return Boolean.FALSE;
-                }
+                isSuccessful = _callable.call().equals(Boolean.TRUE);
             }
-            catch (Exception ex)
+            finally
             {
-                Singletons.Log.Debug("Exception occurred when attempting to set PENDING status on file at " + StatusFilePath);
-                Singletons.Log.Debug(ex);
-                DeleteActiveLockFile();
-                return Boolean.FALSE;
+                ExecutionSlots.ReleaseComputeSlot();
             }
 
-            try
+            if (isSuccessful)
             {
-               Singletons.Log.Info("Attempt: " + _logDescription);
-
-                // Try to invoke the command
-                if (_callable.call().equals(Boolean.TRUE))
-                {
-                    // Try to create a status file indicating the command was successful
-                    Singletons.Log.Debug("Attempting to set " + DONE_STATUS + " status on " + StatusFilePath);
-                    FileUtilities.AppendTextToFile(StatusFilePath, DONE_STATUS);
-                    Singletons.Log.Debug(DONE_STATUS + " status set on " + StatusFilePath);
-                    Singletons.Log.Info("Success: " + _logDescription);
-                    // Remove the lock file because it is no longer necessary
-                    DeleteActiveLockFile();
-                    return Boolean.TRUE;
-                }
-                else
-                {
-                    // The task was not processed successfully for whatever reason, so need to retry
-                    Singletons.Log.Debug("Retry required: " + _logDescription);
-                    FileUtilities.DeleteFile(StatusFilePath);
-                    DeleteActiveLockFile();
-                    DeleteActiveStatusFile();
-                    return Boolean.FALSE;
-                }
+                // Indicate the command was successful
+                store.Complete(_taskKey);
+                Singletons.Log.Info("Success: " + _logDescription);
+
+                RecordWallTime(startTime);
+                return Boolean.TRUE;
             }
-            catch (Exception ex)
+            else
             {
-                // Remove the lock file and shutdown hook because they are no longer necessary
-                Singletons.Log.Debug("Exception occurred: " + _logDescription);
-                Singletons.Log.Debug(ex);
-                DeleteActiveLockFile();
-                DeleteActiveStatusFile();
-                throw ex;
+                // The task was not processed successfully for whatever reason, so need to retry
+                Singletons.Log.Debug("Retry required: " + _logDescription);
+                store.Release(_taskKey);
+                return Boolean.FALSE;
             }
         }
-
-        return Boolean.FALSE;
+        catch (Exception ex)
+        {
+            // Release the claim because it is no longer necessary
+            Singletons.Log.Debug("Exception occurred: " + _logDescription);
+            Singletons.Log.Debug(ex);
+            store.Release(_taskKey);
+            throw ex;
+        }
+        finally
+        {
+            _skipWallTime.set(previousSkipWallTime);
+            WrittenFiles.End(previousWrittenFiles);
+            MemoryAdmission.Release(reservation);
+        }
     }
 
-    /** Checks for a status file and reads the status from a file to see what the status is.
+    /** Records how long this task took to execute so that future executions of similar tasks can be scheduled appropriately. Failure to record the time does not affect the task.
      *
-     * @return Status value
-     * @throws Exception
+     * @param startTime Time (in milliseconds) when the task was started
      */
-    public String ReadStatus() throws Exception
+    private void RecordWallTime(long startTime)
     {
-        String status = "";
+        if (_costKey == null || _skipWallTime.get().equals(Boolean.TRUE))
+            return;
 
         try
         {
-            status = FileUtilities.ReadScalarFromFile(StatusFilePath);
+            TaskCostHistory.Record(_costKey, _costSize, (System.currentTimeMillis() - startTime) / 1000.0);
         }
         catch (Exception ex)
         {
-            Singletons.Log.Debug("Error reading status file at " + StatusFilePath);
+            Singletons.Log.Debug("Wall time could not be recorded for " + _logDescription);
             Singletons.Log.Debug(ex);
         }
-
-        return status;
     }
 
-    /** Indicates whether this task is already completed
-     *
-     * @return Whether this task is already completed
-     * @throws Exception
+    /** Indicates that the task executing on the current thread did not do its usual work (for example, because its result was reused from the ResultCache), so its wall time is not representative and should not be recorded.
      */
-    public boolean IsDone() throws Exception
+    public static void SkipWallTime()
     {
-        return FileUtilities.FileExists(StatusFilePath) && ReadStatus().equals(LockedCallable.DONE_STATUS);
+        if (_skipWallTime.get() != null)
+            _skipWallTime.set(Boolean.TRUE);
     }
 
-    /** This method contains the logic to indicate whether a lock file can be created for this task. If so, then it should be processed. This logic is based on whether other threads are processing it and whether existing lock files are stale, etc.
+    /** Indicates whether this task is already completed
      *
-     * @return Whether the task should be executed
+     * @return Whether this task is already completed
      * @throws Exception
      */
-    private Boolean ShouldCreateLockFile() throws Exception
-    {
-        if (!FileUtilities.FileExists(_lockFilePath))
-        {
-            Singletons.Log.Debug("No lock file was found at " + _lockFilePath);
-            return Boolean.TRUE;
-        }
-
-        if (FileUtilities.GetFileAgeMinutes(_lockFilePath) <= (double) Settings.THREAD_TIMEOUT_MINUTES) // The lock file is not stale, so another thread is probably actively processing it
-        {
-            Singletons.Log.Debug("Lock file was found at " + _lockFilePath + " and is not stale.");
-            return Boolean.FALSE;
-        }
-
-        if (FileUtilities.DeleteFile(_lockFilePath))
-        {
-            Singletons.Log.Debug("Stale lock file was found at " + _lockFilePath + " and was deleted.");
-            return Boolean.TRUE; // The stale lock file was successfully deleted
-        }
-
-        Singletons.Log.Debug("A stale lock file at " + _lockFilePath + " could not be deleted.");
-        return Boolean.FALSE; // The lock file is stale but can't be deleted for whatever reason, so delay execution of task
-    }
-
-    /** Deletes a lock file that was created by this instance. */
-    private void DeleteActiveLockFile()
-    {
-        Singletons.Log.Debug("Deleting active lock file at " + _lockFilePath);
-        FileUtilities.DeleteFile(_lockFilePath);
-        Singletons.Log.Debug("Deleted active lock file at " + _lockFilePath);
-    }
-
-    /** Deletes a status file that was created by this instance. */
-    private void DeleteActiveStatusFile()
+    public boolean IsDone() throws Exception
     {
-        Singletons.Log.Debug("Deleting status file at " + StatusFilePath);
-        FileUtilities.DeleteFile(StatusFilePath);
-        Singletons.Log.Debug("Deleted status file at " + StatusFilePath);
+        return GetTaskStateStore().IsDone(_taskKey);
     }
 }
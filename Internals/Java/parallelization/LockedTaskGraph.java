@@ -0,0 +1,266 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.parallelization;
+
+import mlflex.core.IterationContext;
+import mlflex.core.Singletons;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.PriorityQueue;
+import java.util.concurrent.*;
+
+/** This class executes "locked" tasks whose prerequisites have been declared via LockedCallable.DependsOn. Rather than waiting for all tasks in one phase of an experiment to finish before starting the next phase, each task is released for execution as soon as the tasks it depends on have been completed. Status files are still used to indicate which tasks have been completed, so an interrupted experiment can be resumed (and tasks can be shared across compute nodes) as before.
+ */
+public class LockedTaskGraph
+{
+    private String _description;
+    private LinkedHashMap<String, LockedCallable> _tasks = new LinkedHashMap<String, LockedCallable>();
+
+    /** Constructor
+     *
+     * @param description A description of the tasks that will be executed
+     */
+    public LockedTaskGraph(String description)
+    {
+        _description = description;
+    }
+
+    /** This method can be used to add tasks that need to be executed. Tasks are identified by their status file paths, so dependencies can refer to them.
+     *
+     * @param lockedCallables Tasks to be executed
+     * @return The current instance of this object for convenience
+     */
+    public LockedTaskGraph Add(ArrayList<LockedCallable> lockedCallables)
+    {
+        for (LockedCallable callable : lockedCallables)
+            _tasks.put(callable.StatusFilePath, callable);
+
+        return this;
+    }
+
+    /** Executes all tasks in the graph across the number of threads that has been specified at the command line. A task is submitted once each of its dependencies has completed successfully; dependencies that are not part of this graph are assumed to have been satisfied previously. Among the tasks that are ready, those with the longest expected path to the end of the graph (based on the expected duration of each task) are submitted first, and only as many tasks are submitted as there are threads, so that long-running tasks do not end up at the tail. Tasks that do not complete successfully (for example, because another compute node is processing them) are retried after other threads or nodes have changed the state of a task, or after a pause.
+     *
+     * @throws Exception
+     */
+    public void Execute() throws Exception
+    {
+        if (_tasks.size() == 0)
+            return;
+
+        Singletons.Log.Debug("Attempting to share execution of " + _tasks.size() + " dependent tasks across " + ExecutionSlots.GetNumLockedTasks() + " threads for " + _description + ".");
+
+        // Determine which tasks depend on each task, and how many prerequisites each task is waiting for
+        HashMap<String, ArrayList<LockedCallable>> dependents = new HashMap<String, ArrayList<LockedCallable>>();
+        HashMap<String, Integer> numWaiting = new HashMap<String, Integer>();
+
+        for (LockedCallable callable : _tasks.values())
+        {
+            HashSet<String> dependencies = GetDependenciesInGraph(callable);
+            numWaiting.put(callable.StatusFilePath, dependencies.size());
+
+            for (String dependency : dependencies)
+            {
+                if (!dependents.containsKey(dependency))
+                    dependents.put(dependency, new ArrayList<LockedCallable>());
+                dependents.get(dependency).add(callable);
+            }
+        }
+
+        final HashMap<String, Double> priorities = GetPriorities(dependents);
+        final HashMap<String, Integer> order = new HashMap<String, Integer>();
+        for (String key : _tasks.keySet())
+            order.put(key, order.size());
+
+        // Ready tasks with the highest priority come first; ties are broken by the order in which tasks were added
+        PriorityQueue<LockedCallable> ready = new PriorityQueue<LockedCallable>(_tasks.size(), new Comparator<LockedCallable>()
+        {
+            public int compare(LockedCallable callable1, LockedCallable callable2)
+            {
+                int result = priorities.get(callable2.StatusFilePath).compareTo(priorities.get(callable1.StatusFilePath));
+                return result != 0 ? result : order.get(callable1.StatusFilePath).compareTo(order.get(callable2.StatusFilePath));
+            }
+        });
+
+        for (LockedCallable callable : _tasks.values())
+            if (numWaiting.get(callable.StatusFilePath) == 0)
+                ready.add(callable);
+
+        HashMap<Future<Object>, LockedCallable> running = new HashMap<Future<Object>, LockedCallable>();
+        ArrayList<LockedCallable> deferred = new ArrayList<LockedCallable>();
+        int numCompleted = 0;
+
+        CompletionService<Object> completionService = new ExecutorCompletionService<Object>(MultiThreadedTaskHandler.GetLockedTaskPool());
+
+        while (numCompleted < _tasks.size())
+        {
+            // Keep each thread busy with the highest-priority tasks whose prerequisites have been completed
+            while (running.size() < ExecutionSlots.GetNumLockedTasks() && ready.size() > 0)
+            {
+                LockedCallable callable = ready.poll();
+                running.put(completionService.submit(IterationContext.Wrap(callable)), callable);
+            }
+
+            if (running.size() == 0)
+            {
+                if (deferred.size() == 0)
+                    throw new Exception("The remaining tasks for " + _description + " cannot be executed because their dependencies are circular.");
+
+                // Nothing else can be done right now, so wait for other threads or nodes before retrying the tasks that did not succeed
+                MultiThreadedTaskHandler.WaitForTaskStateChange(_description);
+
+                ready.addAll(deferred);
+                deferred.clear();
+
+                continue;
+            }
+
+            // Wait for the next task to finish
+            Future<Object> future = completionService.take();
+            LockedCallable callable = running.remove(future);
+
+            try
+            {
+                if (Boolean.TRUE.equals(future.get()))
+                {
+                    numCompleted++;
+
+                    // Release the tasks that were waiting only for this one
+                    if (dependents.containsKey(callable.StatusFilePath))
+                        for (LockedCallable dependent : dependents.get(callable.StatusFilePath))
+                        {
+                            int remaining = numWaiting.get(dependent.StatusFilePath) - 1;
+                            numWaiting.put(dependent.StatusFilePath, remaining);
+
+                            if (remaining == 0)
+                                ready.add(dependent);
+                        }
+                }
+                else
+                    deferred.add(callable);
+            }
+            catch (ExecutionException ex)
+            {
+                // If an exception occurred, log it and try again later
+                Singletons.Log.Exception(ex.getCause() == null ? ex : ex.getCause());
+                deferred.add(callable);
+            }
+            catch (CancellationException ex)
+            {
+                // The task timed out, so try again later
+                deferred.add(callable);
+            }
+        }
+    }
+
+    /** Identifies the prerequisites of a task that are part of this graph.
+     *
+     * @param callable Task
+     * @return Status file paths of the prerequisites
+     */
+    private HashSet<String> GetDependenciesInGraph(LockedCallable callable)
+    {
+        HashSet<String> dependencies = new HashSet<String>();
+
+        for (String dependency : callable.GetDependencies())
+            if (_tasks.containsKey(dependency) && !dependency.equals(callable.StatusFilePath))
+                dependencies.add(dependency);
+
+        return dependencies;
+    }
+
+    /** Calculates the priority of each task, which is its expected duration plus the largest priority among the tasks that depend on it (i.e., the expected length of the longest path from the task to the end of the graph).
+     *
+     * @param dependents Tasks that depend on each task
+     * @return Priority of each task
+     * @throws Exception
+     */
+    private HashMap<String, Double> GetPriorities(HashMap<String, ArrayList<LockedCallable>> dependents) throws Exception
+    {
+        HashMap<String, Double> priorities = new HashMap<String, Double>();
+
+        // Each task is visited after all of its dependents, so the priorities can be calculated without recursion
+        for (LockedCallable callable : GetReverseTopologicalOrder(dependents))
+        {
+            double maxDependentPriority = 0;
+
+            if (dependents.containsKey(callable.StatusFilePath))
+                for (LockedCallable dependent : dependents.get(callable.StatusFilePath))
+                    if (priorities.containsKey(dependent.StatusFilePath))
+                        maxDependentPriority = Math.max(maxDependentPriority, priorities.get(dependent.StatusFilePath));
+
+            priorities.put(callable.StatusFilePath, callable.GetExpectedCost() + maxDependentPriority);
+        }
+
+        // Tasks in circular dependencies cannot be ordered, but they still need a priority
+        for (String key : _tasks.keySet())
+            if (!priorities.containsKey(key))
+                priorities.put(key, 0.0);
+
+        return priorities;
+    }
+
+    /** Orders the tasks so that each task comes after all of the tasks that depend on it.
+     *
+     * @param dependents Tasks that depend on each task
+     * @return Ordered tasks
+     */
+    private ArrayList<LockedCallable> GetReverseTopologicalOrder(HashMap<String, ArrayList<LockedCallable>> dependents)
+    {
+        // Start with tasks that no other tasks depend on
+        HashMap<String, Integer> numUnorderedDependents = new HashMap<String, Integer>();
+        LinkedList<LockedCallable> available = new LinkedList<LockedCallable>();
+
+        for (LockedCallable callable : _tasks.values())
+        {
+            int numDependents = dependents.containsKey(callable.StatusFilePath) ? dependents.get(callable.StatusFilePath).size() : 0;
+            numUnorderedDependents.put(callable.StatusFilePath, numDependents);
+
+            if (numDependents == 0)
+                available.add(callable);
+        }
+
+        ArrayList<LockedCallable> ordered = new ArrayList<LockedCallable>();
+
+        while (available.size() > 0)
+        {
+            LockedCallable callable = available.removeFirst();
+            ordered.add(callable);
+
+            // A prerequisite can be ordered once all of the tasks that depend on it have been ordered
+            for (String dependency : GetDependenciesInGraph(callable))
+            {
+                int remaining = numUnorderedDependents.get(dependency) - 1;
+                numUnorderedDependents.put(dependency, remaining);
+
+                if (remaining == 0)
+                    available.add(_tasks.get(dependency));
+            }
+        }
+
+        return ordered;
+    }
+}
@@ -0,0 +1,318 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.parallelization;
+
+import mlflex.core.Settings;
+import mlflex.core.Singletons;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/** This class limits how many memory-intensive tasks are executed at the same time. Before a task is executed, the memory it will use is estimated and reserved; if the reservation would exceed the memory that is available, the task waits until other tasks have released their reservations, rather than running out of memory. At least one task is always admitted, so tasks larger than the budget are executed one at a time.
+ *
+ * Two budgets are tracked: a fraction of the maximum heap size of this process (minus what was already in use when tasks started) and a budget for external processes (CHILD_PROCESS_MEMORY_MB at the command line; by default, the physical memory that is not reserved for the heap). Each task's footprint is estimated from the size of its work (number of training instances multiplied by number of features). The number of heap bytes per unit of size is learned for each type of task by monitoring heap usage after garbage collections that occur while tasks are executing (so garbage that has not been collected is not counted); tasks that have been observed to start external processes also reserve memory for those processes. Admission can be turned off with MEMORY_ADMISSION=false at the command line.
+ */
+public class MemoryAdmission
+{
+    /** Fraction of the maximum heap size that may be reserved by tasks. */
+    private static final double HEAP_FRACTION = 0.8;
+    /** Estimated heap bytes per unit of size, before any tasks have been observed. */
+    private static final double DEFAULT_HEAP_BYTES_PER_UNIT = 256;
+    /** Estimated bytes per unit of size for an external process, which reads the data from a file. */
+    private static final double CHILD_PROCESS_BYTES_PER_UNIT = 64;
+    /** Estimated memory used by an external process regardless of the size of the data (for example, to start a Java virtual machine). */
+    private static final long CHILD_PROCESS_OVERHEAD_BYTES = 64L * 1024 * 1024;
+    /** How often heap usage is checked while tasks are executing. */
+    private static final long SAMPLE_MILLISECONDS = 250;
+
+    private static final Object _lock = new Object();
+    private static final ArrayList<Reservation> _reservations = new ArrayList<Reservation>();
+    private static final HashMap<String, Double> _heapBytesPerUnit = new HashMap<String, Double>();
+    private static final HashSet<String> _costKeysWithChildProcesses = new HashSet<String>();
+    private static long _reservedHeapBytes = 0;
+    private static long _reservedChildProcessBytes = 0;
+    private static long _baselineHeapBytes = 0;
+    private static Thread _monitor = null;
+    /** The reservation for the task that is executing on each thread */
+    private static final ThreadLocal<Reservation> _currentReservation = new ThreadLocal<Reservation>();
+
+    /** Memory that has been reserved for a task. */
+    public static class Reservation
+    {
+        private final String _costKey;
+        private final double _size;
+        private final long _heapBytes;
+        private final long _childProcessBytes;
+        private final long _numCollections = GetNumCollections();
+        private double _peakHeapBytesPerUnit = 0;
+        private boolean _isReleased = false;
+        private volatile boolean _startedChildProcess = false;
+
+        private Reservation(String costKey, double size, long heapBytes, long childProcessBytes)
+        {
+            _costKey = costKey;
+            _size = size;
+            _heapBytes = heapBytes;
+            _childProcessBytes = childProcessBytes;
+        }
+    }
+
+    /** Reserves the memory that a task is expected to use. If not enough memory is available, this method waits until other tasks have released their reservations.
+     *
+     * @param costKey Key that describes the task (see TaskCostHistory.GetCostKey); if null, no memory is reserved
+     * @param size Heuristic size of the task (for example, number of training instances multiplied by number of features)
+     * @param description Description of the task
+     * @return Reservation, which must be released when the task is finished (null if no memory was reserved)
+     * @throws Exception
+     */
+    public static Reservation Reserve(String costKey, double size, String description) throws Exception
+    {
+        if (!Settings.MEMORY_ADMISSION || costKey == null || size <= 0)
+            return null;
+
+        synchronized (_lock)
+        {
+            // Heap that is in use when no tasks are executing is not available to tasks
+            if (_reservations.size() == 0)
+                _baselineHeapBytes = GetLiveHeapBytes();
+
+            Reservation reservation = new Reservation(costKey, size, (long)(size * GetHeapBytesPerUnit(costKey)), _costKeysWithChildProcesses.contains(costKey) ? CHILD_PROCESS_OVERHEAD_BYTES + (long)(size * CHILD_PROCESS_BYTES_PER_UNIT) : 0);
+
+            if (_reservations.size() > 0 && !Fits(reservation))
+            {
+                Singletons.Log.Debug("Waiting for memory to become available: " + description + " (estimated " + ToMegabytes(reservation._heapBytes) + " MB of heap and " + ToMegabytes(reservation._childProcessBytes) + " MB for external processes).");
+
+                while (_reservations.size() > 0 && !Fits(reservation))
+                    _lock.wait();
+            }
+
+            _reservations.add(reservation);
+            _reservedHeapBytes += reservation._heapBytes;
+            _reservedChildProcessBytes += reservation._childProcessBytes;
+
+            StartMonitor();
+
+            _currentReservation.set(reservation);
+            return reservation;
+        }
+    }
+
+    /** Releases memory that was reserved for a task, so other tasks can be executed. What was observed about the task's memory usage is used to estimate the memory usage of similar tasks.
+     *
+     * @param reservation Reservation (may be null)
+     */
+    public static void Release(Reservation reservation)
+    {
+        if (reservation == null)
+            return;
+
+        if (_currentReservation.get() == reservation)
+            _currentReservation.remove();
+
+        synchronized (_lock)
+        {
+            if (reservation._isReleased)
+                return;
+
+            reservation._isReleased = true;
+            _reservations.remove(reservation);
+            _reservedHeapBytes -= reservation._heapBytes;
+            _reservedChildProcessBytes -= reservation._childProcessBytes;
+
+            if (reservation._peakHeapBytesPerUnit > 0)
+            {
+                Double previous = _heapBytesPerUnit.get(reservation._costKey);
+                _heapBytesPerUnit.put(reservation._costKey, previous == null ? reservation._peakHeapBytesPerUnit : (previous + reservation._peakHeapBytesPerUnit) / 2);
+            }
+
+            if (reservation._startedChildProcess)
+                _costKeysWithChildProcesses.add(reservation._costKey);
+
+            _lock.notifyAll();
+        }
+    }
+
+    /** Indicates that the task that is executing on the current thread has started an external process (or sent a job to a worker process), so similar tasks will also reserve memory for external processes.
+     */
+    public static void RecordChildProcess()
+    {
+        Reservation reservation = _currentReservation.get();
+
+        if (reservation != null)
+            reservation._startedChildProcess = true;
+    }
+
+    private static boolean Fits(Reservation reservation)
+    {
+        return _reservedHeapBytes + reservation._heapBytes <= GetHeapBudgetBytes() && _reservedChildProcessBytes + reservation._childProcessBytes <= GetChildProcessBudgetBytes();
+    }
+
+    private static double GetHeapBytesPerUnit(String costKey)
+    {
+        if (_heapBytesPerUnit.containsKey(costKey))
+            return _heapBytesPerUnit.get(costKey);
+
+        // Tasks of a type that has not been observed are assumed to be similar to the average of those that have
+        if (_heapBytesPerUnit.size() == 0)
+            return DEFAULT_HEAP_BYTES_PER_UNIT;
+
+        double sum = 0;
+        for (double bytesPerUnit : _heapBytesPerUnit.values())
+            sum += bytesPerUnit;
+
+        return sum / _heapBytesPerUnit.size();
+    }
+
+    private static long GetHeapBudgetBytes()
+    {
+        return Math.max(0, (long)(Runtime.getRuntime().maxMemory() * HEAP_FRACTION) - _baselineHeapBytes);
+    }
+
+    private static long GetChildProcessBudgetBytes()
+    {
+        if (Settings.CHILD_PROCESS_MEMORY_MB >= 0)
+            return Settings.CHILD_PROCESS_MEMORY_MB * 1024 * 1024;
+
+        try
+        {
+            // The name of this method depends on the version of Java, so it is called via reflection
+            Class<?> beanClass = Class.forName("com.sun.management.OperatingSystemMXBean");
+            Method method;
+            try
+            {
+                method = beanClass.getMethod("getTotalMemorySize");
+            }
+            catch (NoSuchMethodException ex)
+            {
+                method = beanClass.getMethod("getTotalPhysicalMemorySize");
+            }
+
+            long physicalMemoryBytes = (Long)method.invoke(ManagementFactory.getOperatingSystemMXBean());
+            return Math.max(0, physicalMemoryBytes - Runtime.getRuntime().maxMemory());
+        }
+        catch (Throwable ex)
+        {
+            // The amount of physical memory cannot be determined on this platform
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /** Indicates how much heap was in use after the most recent garbage collection of each memory pool, which excludes garbage that had not yet been collected. For pools that do not report this, the current usage is used.
+     *
+     * @return Number of bytes
+     */
+    private static long GetLiveHeapBytes()
+    {
+        long bytes = 0;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (pool.getType() != MemoryType.HEAP)
+                continue;
+
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage == null)
+                usage = pool.getUsage();
+
+            bytes += usage.getUsed();
+        }
+
+        return bytes;
+    }
+
+    /** Indicates how many garbage collections have occurred since this process started.
+     *
+     * @return Number of garbage collections
+     */
+    private static long GetNumCollections()
+    {
+        long numCollections = 0;
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+            numCollections += Math.max(0, collector.getCollectionCount());
+
+        return numCollections;
+    }
+
+    private static long ToMegabytes(long bytes)
+    {
+        return bytes / 1024 / 1024;
+    }
+
+    /** Starts a thread that monitors heap usage while tasks are executing. For each task, the largest number of heap bytes in use after a garbage collection (beyond what was in use before tasks started) per unit of size across all executing tasks is recorded. Only collections that occur after a task has started are considered for that task. */
+    private static void StartMonitor()
+    {
+        if (_monitor != null)
+            return;
+
+        _monitor = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    while (true)
+                    {
+                        synchronized (_lock)
+                        {
+                            while (_reservations.size() == 0)
+                                _lock.wait();
+                        }
+
+                        Thread.sleep(SAMPLE_MILLISECONDS);
+
+                        synchronized (_lock)
+                        {
+                            double totalSize = 0;
+                            for (Reservation reservation : _reservations)
+                                totalSize += reservation._size;
+
+                            if (totalSize == 0)
+                                continue;
+
+                            long numCollections = GetNumCollections();
+                            double heapBytesPerUnit = Math.max(0, GetLiveHeapBytes() - _baselineHeapBytes) / totalSize;
+
+                            for (Reservation reservation : _reservations)
+                                if (numCollections > reservation._numCollections)
+                                    reservation._peakHeapBytesPerUnit = Math.max(reservation._peakHeapBytesPerUnit, heapBytesPerUnit);
+                        }
+                    }
+                }
+                catch (InterruptedException ex)
+                {
+                    Singletons.Log.Debug("Memory monitor was interrupted.");
+                }
+            }
+        }, "MemoryMonitor");
+
+        _monitor.setDaemon(true);
+        _monitor.start();
+    }
+}
@@ -21,24 +21,30 @@
 
 package mlflex.parallelization;
 
+import mlflex.core.IterationContext;
 import mlflex.core.Settings;
 import mlflex.core.Singletons;
-import mlflex.helper.FileUtilities;
-import mlflex.helper.ListUtilities;
-import mlflex.helper.MiscUtilities;
+import mlflex.helper.WrittenFiles;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /** This class encapsulates logic for executing computational tasks across one or more threads.
  */
 public class MultiThreadedTaskHandler
 {
-    private LinkedList<Callable<Object>> _callables;
+    private ArrayList<Callable<Object>> _callables;
     private String _description;
     private int _numThreads;
 
+    /** This work-stealing pool is shared by all instances of this class within the process, so nested calls do not create additional threads. */
+    private static ForkJoinPool _sharedPool = null;
+
+    /** This pool executes locked tasks for all instances of this class within the process, so tasks from iterations that are executed at the same time do not use more threads than have been specified. */
+    private static TimeoutThreadPoolExecutor _lockedTaskPool = null;
+
     /** This default constructor initializes the class. It uses the number of threads that has been specified at the command line.
     */
     public MultiThreadedTaskHandler(String description)
@@ -52,7 +58,7 @@ public class MultiThreadedTaskHandler
      */
     public MultiThreadedTaskHandler(String description, int numThreads)
     {
-        _callables = new LinkedList<Callable<Object>>();
+        _callables = new ArrayList<Callable<Object>>();
         _description = description;
         _numThreads = numThreads;
     }
@@ -77,36 +83,74 @@ public class MultiThreadedTaskHandler
         return this;
     }
 
-    /** Executes multiple callable objects in a multithreaded fashion
+    /** Retrieves the work-stealing pool that is shared across the process. It is created the first time it is needed and uses the number of threads that has been specified at the command line.
+     *
+     * @return Shared pool
+     */
+    public static synchronized ForkJoinPool GetSharedPool()
+    {
+        if (_sharedPool == null)
+            _sharedPool = new ForkJoinPool(Settings.NUM_THREADS);
+
+        return _sharedPool;
+    }
+
+    /** Retrieves the pool that executes locked tasks. Any task that executes longer than the timeout period that has been specified at the command line is interrupted, because locked tasks may invoke external software and therefore may hang. The pool is created the first time it is needed and uses the number of threads that has been specified at the command line (or, in virtual-thread mode, enough threads to keep external processes busy; see ExecutionSlots).
+     *
+     * @return Pool for locked tasks
+     */
+    static synchronized ExecutorService GetLockedTaskPool()
+    {
+        if (_lockedTaskPool == null)
+        {
+            _lockedTaskPool = new TimeoutThreadPoolExecutor(ExecutionSlots.GetNumLockedTasks());
+            _lockedTaskPool.setThreadFactory(ExecutionSlots.CreateLockedTaskThreadFactory());
+        }
+
+        return _lockedTaskPool;
+    }
+
+    /** Executes multiple callable objects in a multithreaded fashion. The tasks are executed on a work-stealing pool that is shared across the process. When this method is called from a task that is already executing on that pool, the tasks are forked into the pool, and the calling thread helps execute them while it waits, so nested parallelism does not increase the number of threads. No more than the number of threads specified for this object are executed at once; whenever a task finishes, the next one is started. If any task does not complete within THREAD_TIMEOUT_MINUTES of when it started, the tasks that have not started are cancelled and an exception is thrown.
      *
-     * @return Objects that are returned from each _callable object
+     * @return Objects that are returned from each _callable object (in the order the callable objects were added)
      * @throws Exception
      */
-    public ArrayList Execute() throws Exception
+    public ArrayList<Object> Execute() throws Exception
     {
+        ArrayList<Object> results = new ArrayList<Object>();
+
         if (_callables == null || _callables.size() == 0)
-            return new ArrayList();
+            return results;
+
+        // There is no benefit to scheduling the tasks if only one thread should be used
+        if (_numThreads == 1)
+        {
+            for (Callable<Object> callable : _callables)
+            {
+                Object result = callable.call();
+
+                if (result != null)
+                    results.add(result);
+            }
 
-        Singletons.Log.Debug("Attempting to share execution across " + _numThreads + " threads for " + _description + ".");
+            return results;
+        }
 
-        // Initialize the service
-        //ExecutorService service = Executors.newFixedThreadPool(_numThreads);
-        ExecutorService service = new TimeoutThreadPoolExecutor(_numThreads);
+        ForkJoinPool pool = GetSharedPool();
+        boolean isNested = ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool;
 
-        try
-        {
-            ArrayList<Future<Object>> futures = new ArrayList<Future<Object>>();
+        Singletons.Log.Debug("Attempting to share execution across " + pool.getParallelism() + " shared threads for " + _description + (isNested ? " (nested)." : "."));
 
-            // Submit each task to a queue to be executed
-            for (Callable<Object> callable : _callables)
-                futures.add(service.submit(callable));
+        TaskBatch batch = new TaskBatch(pool);
 
-            ArrayList results = new ArrayList();
+        try
+        {
+            batch.Start(Math.max(1, _numThreads));
 
             // Parse through the results of the execution
-            for (Future<Object> future : futures)
+            for (int i = 0; i < batch.Tasks.size(); i++)
             {
-                Object result = future.get();
+                Object result = batch.GetResult(i);
 
                 if (result != null)
                     results.add(result);
@@ -114,18 +158,139 @@ public class MultiThreadedTaskHandler
 
             return results;
         }
-        catch (Exception ex)
+        finally
         {
-            throw ex;
+            // If an error occurred, tasks that have not started yet should not be executed
+            batch.Cancel();
         }
-        finally
+    }
+
+    /** This class executes the tasks for one call to Execute. Each task records when it started, so it can be timed out individually, and starts the next task when it finishes.
+     */
+    private class TaskBatch
+    {
+        public final ArrayList<ForkJoinTask<Object>> Tasks = new ArrayList<ForkJoinTask<Object>>();
+
+        private final ForkJoinPool _pool;
+        private final AtomicLongArray _startTimes;
+        private final AtomicInteger _nextIndex = new AtomicInteger(0);
+        private volatile boolean _isCancelled = false;
+
+        public TaskBatch(ForkJoinPool pool)
+        {
+            _pool = pool;
+            _startTimes = new AtomicLongArray(_callables.size());
+
+            for (int i = 0; i < _callables.size(); i++)
+            {
+                final int index = i;
+
+                // Each task is executed in the context of the iteration that created it, and the files it writes are attributed to the task that created it
+                final Callable<Object> callable = IterationContext.Wrap(WrittenFiles.Wrap(_callables.get(i)));
+
+                Tasks.add(ForkJoinTask.adapt(new Callable<Object>()
+                {
+                    public Object call() throws Exception
+                    {
+                        _startTimes.set(index, System.currentTimeMillis());
+
+                        try
+                        {
+                            return callable.call();
+                        }
+                        finally
+                        {
+                            StartNext();
+                        }
+                    }
+                }));
+            }
+        }
+
+        /** Starts the specified number of tasks (or all tasks, if there are fewer).
+         *
+         * @param numTasks Number of tasks to start
+         */
+        public void Start(int numTasks)
+        {
+            for (int i = 0; i < numTasks; i++)
+                StartNext();
+        }
+
+        /** Waits for a task to complete and retrieves its result.
+         *
+         * @param index Index of the task
+         * @return Result of the task
+         * @throws Exception
+         */
+        public Object GetResult(int index) throws Exception
+        {
+            ForkJoinTask<Object> task = Tasks.get(index);
+
+            while (true)
+            {
+                try
+                {
+                    return task.get(GetMillisUntilTimeout(), TimeUnit.MILLISECONDS);
+                }
+                catch (TimeoutException ex)
+                {
+                    if (GetMillisUntilTimeout() <= 0)
+                    {
+                        Singletons.Log.Info("Timeout after " + Settings.THREAD_TIMEOUT_MINUTES + " minutes: " + _description + ".");
+                        throw new Exception("A task for " + _description + " did not complete within " + Settings.THREAD_TIMEOUT_MINUTES + " minutes.", ex);
+                    }
+                }
+            }
+        }
+
+        /** Prevents tasks that have not started from being executed.
+         */
+        public void Cancel()
+        {
+            _isCancelled = true;
+
+            for (ForkJoinTask<Object> task : Tasks)
+                task.cancel(false);
+        }
+
+        private void StartNext()
+        {
+            if (_isCancelled)
+                return;
+
+            int index = _nextIndex.getAndIncrement();
+            if (index >= Tasks.size())
+                return;
+
+            // Tasks that are started by a thread of the shared pool are forked so that thread will execute them if no other thread does
+            if (ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == _pool)
+                Tasks.get(index).fork();
+            else
+                _pool.execute(Tasks.get(index));
+        }
+
+        /** Indicates how long it will be until the task that has been executing longest times out.
+         *
+         * @return Number of milliseconds (one second if no task is executing)
+         */
+        private long GetMillisUntilTimeout()
         {
-            // Very important to shut down the service
-            service.shutdown();
+            long timeoutMillis = Settings.THREAD_TIMEOUT_MINUTES * 60000L;
+            long earliestStartTime = Long.MAX_VALUE;
+
+            for (int i = 0; i < Tasks.size(); i++)
+                if (_startTimes.get(i) > 0 && !Tasks.get(i).isDone())
+                    earliestStartTime = Math.min(earliestStartTime, _startTimes.get(i));
+
+            if (earliestStartTime == Long.MAX_VALUE)
+                return 1000;
+
+            return Math.max(0, earliestStartTime + timeoutMillis - System.currentTimeMillis());
         }
     }
 
-    /** Executes a series of tasks that are "locked" such that only one thread should execute each. These are locked across multiple compute nodes as well.
+    /** Executes a series of tasks that are "locked" such that only one thread should execute each. These are locked across multiple compute nodes as well. Tasks that are expected to take longest are executed first. Tasks that are not completed (for example, because another compute node is processing them) are executed again after another thread or node has changed the state of a task, or after a pause, until all have been completed.
      *
      * @param description Name of the series of tasks that will be executed
      * @param lockedCallables Tasks that will be executed
@@ -133,37 +298,71 @@ public class MultiThreadedTaskHandler
      */
     public static void ExecuteLockTasks(String description, ArrayList<LockedCallable> lockedCallables) throws Exception
     {
-        MultiThreadedTaskHandler taskHandler = new MultiThreadedTaskHandler(description);
+        // Tasks that are expected to take longest are started first, so they do not delay completion of the series
+        ArrayList<LockedCallable> pending = ExecuteAndGetPending(description, LockedCallable.SortByExpectedCost(lockedCallables));
 
-        // Prepare the tasks to be executed
-        for (LockedCallable callable : lockedCallables)
+        while (pending.size() > 0)
         {
-            FileUtilities.CreateFileDirectoryIfNotExists(callable.StatusFilePath);
-            taskHandler.Add(callable);
+            WaitForTaskStateChange(description);
+            pending = ExecuteAndGetPending(description, pending);
         }
+    }
 
-        try
+    /** Executes locked tasks on the pool that is shared by all locked tasks in the process.
+     *
+     * @param description Name of the series of tasks that will be executed
+     * @param lockedCallables Tasks that will be executed
+     * @return Tasks that were not completed
+     * @throws Exception
+     */
+    private static ArrayList<LockedCallable> ExecuteAndGetPending(String description, ArrayList<LockedCallable> lockedCallables) throws Exception
+    {
+        Singletons.Log.Debug("Attempting to share execution of " + lockedCallables.size() + " tasks across " + ExecutionSlots.GetNumLockedTasks() + " threads for " + description + ".");
+
+        ExecutorService service = GetLockedTaskPool();
+        ArrayList<Future<Object>> futures = new ArrayList<Future<Object>>();
+
+        // Submit each task to a queue to be executed in the context of the current iteration
+        for (LockedCallable callable : lockedCallables)
+            futures.add(service.submit(IterationContext.Wrap(callable)));
+
+        ArrayList<LockedCallable> pending = new ArrayList<LockedCallable>();
+
+        for (int i = 0; i < futures.size(); i++)
         {
-            // See if any of the tasks returned a false value and if so, pause then retry
-            if (ListUtilities.AnyFalse(ListUtilities.CreateBooleanList(taskHandler.Execute())))
+            try
             {
-                Pause(description);
-                ExecuteLockTasks(description, lockedCallables);
+                if (!Boolean.TRUE.equals(futures.get(i).get()))
+                    pending.add(lockedCallables.get(i));
+            }
+            catch (ExecutionException ex)
+            {
+                // If an exception occurred, log it and try again later
+                Singletons.Log.Exception(ex.getCause() == null ? ex : ex.getCause());
+                pending.add(lockedCallables.get(i));
+            }
+            catch (CancellationException ex)
+            {
+                // The task timed out, so try again later
+                pending.add(lockedCallables.get(i));
             }
         }
-        catch (Exception ex)
-        {
-            // If an exception occurred, log it, pause, then try again
-            Singletons.Log.Exception(ex);
-            Pause(description);
-            ExecuteLockTasks(description, lockedCallables);
-        }
+
+        return pending;
     }
 
-    private static void Pause(String description) throws Exception
+    /** Waits until another thread or compute node has changed the state of a task (for example, by completing it) or until PAUSE_SECONDS have elapsed, whichever occurs first.
+     *
+     * @param description Name of the series of tasks that are waiting
+     * @throws Exception
+     */
+    static void WaitForTaskStateChange(String description) throws Exception
     {
-        Singletons.Log.Debug("Pausing for " + Settings.PAUSE_SECONDS + " seconds: " + description + ". Other threads may be processing these tasks.");
-        MiscUtilities.Sleep(Settings.PAUSE_SECONDS * 1000);
-        Singletons.Log.Debug("Done with pause: " + description + ".");
+        Singletons.Log.Debug("Waiting up to " + Settings.PAUSE_SECONDS + " seconds for task states to change: " + description + ". Other threads may be processing these tasks.");
+
+        if (LockedCallable.GetTaskStateStore().AwaitChange(Settings.PAUSE_SECONDS * 1000))
+            Singletons.Log.Debug("Task states changed: " + description + ".");
+        else
+            Singletons.Log.Debug("Done with pause: " + description + ".");
     }
 }
@@ -0,0 +1,291 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.parallelization;
+
+import mlflex.core.Settings;
+import mlflex.core.Singletons;
+import mlflex.helper.WrittenFiles;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.UUID;
+
+/** This class is used when an experiment is executed with ACTION=Work. Rather than keeping track of task states itself, it asks the coordinator (see TaskCoordinator) which tasks have been completed and claims tasks from the coordinator. Before a task that has been claimed is executed (and after a task is found to have been completed elsewhere), files that other workers have produced are copied from the coordinator. When a task has been completed, the files that the task has written (see WrittenFiles) are sent to the coordinator. A background thread sends heartbeats so the coordinator knows this worker is still running.
+ */
+public class RemoteTaskStateStore implements TaskStateStore
+{
+    private static final String WORKER_ID = ManagementFactory.getRuntimeMXBean().getName() + "_" + UUID.randomUUID().toString().substring(0, 8);
+
+    private static final HashMap<String, RemoteTaskStateStore> _stores = new HashMap<String, RemoteTaskStateStore>();
+    private static String _coordinatorSessionID = "";
+    private static int _fileVersion = 0;
+    private static Thread _heartbeatThread = null;
+
+    private final String _statusDirectory;
+    private final HashSet<String> _doneTaskKeys = new HashSet<String>();
+
+    /** Retrieves the store for the specified status directory.
+     *
+     * @param statusDirectoryPath Absolute path to the status directory of the iteration
+     * @return Task-state store
+     * @throws Exception
+     */
+    public static synchronized RemoteTaskStateStore Get(String statusDirectoryPath) throws Exception
+    {
+        if (_heartbeatThread == null)
+        {
+            // Fail right away if the secret that is shared with the coordinator is not available
+            CoordinatorProtocol.GetSecret(false);
+            StartHeartbeats();
+        }
+
+        if (!_stores.containsKey(statusDirectoryPath))
+            _stores.put(statusDirectoryPath, new RemoteTaskStateStore(CoordinatorProtocol.ToRelativePath(statusDirectoryPath)));
+
+        return _stores.get(statusDirectoryPath);
+    }
+
+    private RemoteTaskStateStore(String statusDirectory)
+    {
+        _statusDirectory = statusDirectory;
+    }
+
+    public boolean IsDone(String taskKey) throws Exception
+    {
+        synchronized (_doneTaskKeys)
+        {
+            if (_doneTaskKeys.contains(taskKey))
+                return true;
+        }
+
+        if (!Request(CoordinatorProtocol.IS_DONE, _statusDirectory, taskKey))
+            return false;
+
+        // The files that were produced by the task are needed by the tasks that depend on it
+        SynchronizeFiles();
+
+        synchronized (_doneTaskKeys)
+        {
+            _doneTaskKeys.add(taskKey);
+        }
+
+        return true;
+    }
+
+    public boolean Claim(String taskKey) throws Exception
+    {
+        if (!Request(CoordinatorProtocol.CLAIM, WORKER_ID, _statusDirectory, taskKey))
+            return false;
+
+        // Make sure files produced by the tasks that this one depends on are available
+        SynchronizeFiles();
+
+        return true;
+    }
+
+    public void Complete(String taskKey) throws Exception
+    {
+        Socket socket = CoordinatorProtocol.Connect();
+
+        try
+        {
+            DataOutputStream out = CoordinatorProtocol.StartRequest(socket, CoordinatorProtocol.COMPLETE);
+            out.writeUTF(WORKER_ID);
+            out.writeUTF(_statusDirectory);
+            out.writeUTF(taskKey);
+
+            ArrayList<String> relativePaths = GetWrittenFiles();
+            out.writeInt(relativePaths.size());
+            for (String relativePath : relativePaths)
+                CoordinatorProtocol.WriteFile(out, relativePath);
+            out.flush();
+
+            if (!CoordinatorProtocol.GetInputStream(socket).readBoolean())
+                throw new Exception("The coordinator did not accept the completion of " + taskKey + " because this worker no longer holds a claim on it.");
+        }
+        finally
+        {
+            socket.close();
+        }
+
+        synchronized (_doneTaskKeys)
+        {
+            _doneTaskKeys.add(taskKey);
+        }
+    }
+
+    public void Release(String taskKey) throws Exception
+    {
+        Request(CoordinatorProtocol.RELEASE, WORKER_ID, _statusDirectory, taskKey);
+    }
+
+    public boolean AwaitChange(long timeoutMillis) throws Exception
+    {
+        Socket socket = CoordinatorProtocol.Connect();
+
+        try
+        {
+            DataOutputStream out = CoordinatorProtocol.StartRequest(socket, CoordinatorProtocol.AWAIT);
+            out.writeUTF(_statusDirectory);
+            out.writeLong(timeoutMillis);
+            out.flush();
+
+            return CoordinatorProtocol.GetInputStream(socket).readBoolean();
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    /** Indicates to the coordinator that this worker has finished, so the coordinator does not wait for it any longer.
+     *
+     * @throws Exception
+     */
+    public static synchronized void Leave() throws Exception
+    {
+        if (_heartbeatThread == null)
+            return;
+
+        _heartbeatThread.interrupt();
+        _heartbeatThread = null;
+
+        Request(CoordinatorProtocol.LEAVE, WORKER_ID);
+    }
+
+    /** Sends a request to the coordinator that consists of text arguments and has a yes/no response.
+     *
+     * @param request Request name
+     * @param arguments Arguments
+     * @return Response
+     * @throws Exception
+     */
+    private static boolean Request(String request, String... arguments) throws Exception
+    {
+        Socket socket = CoordinatorProtocol.Connect();
+
+        try
+        {
+            DataOutputStream out = CoordinatorProtocol.StartRequest(socket, request);
+            for (String argument : arguments)
+                out.writeUTF(argument);
+            out.flush();
+
+            return CoordinatorProtocol.GetInputStream(socket).readBoolean();
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    /** Copies files from the coordinator that have been received by the coordinator since the last time this method was called.
+     *
+     * @throws Exception
+     */
+    private static synchronized void SynchronizeFiles() throws Exception
+    {
+        Socket socket = CoordinatorProtocol.Connect();
+
+        try
+        {
+            DataOutputStream out = CoordinatorProtocol.StartRequest(socket, CoordinatorProtocol.SYNCHRONIZE);
+            out.writeUTF(_coordinatorSessionID);
+            out.writeInt(_fileVersion);
+            out.flush();
+
+            DataInputStream in = CoordinatorProtocol.GetInputStream(socket);
+            String sessionID = in.readUTF();
+            int version = in.readInt();
+            int numFiles = in.readInt();
+
+            for (int i = 0; i < numFiles; i++)
+                CoordinatorProtocol.ReadFile(in);
+
+            _coordinatorSessionID = sessionID;
+            _fileVersion = version;
+
+            if (numFiles > 0)
+                Singletons.Log.Debug("Received " + numFiles + " files from the coordinator.");
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    /** Identifies files in the synchronized directories that have been written by the task that is being completed on the current thread (see LockedCallable). Files written by other tasks, including those that are executing at the same time, are not included.
+     *
+     * @return Paths relative to the main directory
+     * @throws Exception
+     */
+    private static ArrayList<String> GetWrittenFiles() throws Exception
+    {
+        ArrayList<String> relativePaths = new ArrayList<String>();
+
+        for (String filePath : WrittenFiles.Get())
+            if (filePath.startsWith(Settings.MAIN_DIR) && CoordinatorProtocol.IsSynchronized(filePath) && new File(filePath).exists())
+                relativePaths.add(CoordinatorProtocol.ToRelativePath(filePath));
+
+        return relativePaths;
+    }
+
+    private static void StartHeartbeats()
+    {
+        _heartbeatThread = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                while (true)
+                {
+                    try
+                    {
+                        Request(CoordinatorProtocol.HEARTBEAT, WORKER_ID);
+                    }
+                    catch (Exception ex)
+                    {
+                        Singletons.Log.Debug("A heartbeat could not be sent to the coordinator.");
+                        Singletons.Log.Debug(ex);
+                    }
+
+                    try
+                    {
+                        Thread.sleep(CoordinatorProtocol.HEARTBEAT_SECONDS * 1000);
+                    }
+                    catch (InterruptedException ex)
+                    {
+                        return;
+                    }
+                }
+            }
+        }, "WorkerHeartbeat");
+
+        _heartbeatThread.setDaemon(true);
+        _heartbeatThread.start();
+    }
+}
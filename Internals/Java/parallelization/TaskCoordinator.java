@@ -0,0 +1,406 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.parallelization;
+
+import mlflex.core.Settings;
+import mlflex.core.Singletons;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/** This class is used when an experiment is executed with ACTION=Coordinate. The coordinator builds the same tasks as any other process, but rather than executing them, it hands them out to worker processes (ACTION=Work) over TCP. A worker claims a task, receives the files it needs (selected features, predictions, and output files that other workers have produced), executes the task, and sends back the files it has produced. The coordinator keeps the state of each task in its journal (see JournalTaskStateStore), so the coordinator and workers do not need to share a file system.
+ *
+ * Each claim is a lease that is held as long as the worker sends heartbeats. If a worker stops sending heartbeats (for example, because it has crashed or the network has failed), its claims are released so the tasks can be handed out to other workers.
+ */
+public class TaskCoordinator
+{
+    private static final HashMap<String, TaskStateStore> _localStores = new HashMap<String, TaskStateStore>();
+    /** Workers that hold claims on tasks, organized by status directory and task key. */
+    private static final HashMap<String, String> _leases = new HashMap<String, String>();
+    /** When each worker was last heard from. */
+    private static final HashMap<String, Long> _heartbeats = new HashMap<String, Long>();
+    /** Files that have been received from workers (or that existed when the coordinator started), in the order they were received. Workers use the position in this list to request only files that are new to them. */
+    private static final ArrayList<String> _fileVersions = new ArrayList<String>();
+    private static final String SESSION_ID = UUID.randomUUID().toString();
+
+    /** Starts accepting requests from workers.
+     *
+     * @param bindAddress Address of the network interface on which requests are accepted
+     * @param port Port on which requests are accepted
+     * @throws Exception
+     */
+    public static void Start(String bindAddress, int port) throws Exception
+    {
+        // Make sure the secret exists before any worker connects
+        CoordinatorProtocol.GetSecret(true);
+
+        // Files that exist already (for example, from a previous execution of this experiment) are made available to workers
+        synchronized (TaskCoordinator.class)
+        {
+            for (File file : CoordinatorProtocol.GetSynchronizedFiles())
+                _fileVersions.add(CoordinatorProtocol.ToRelativePath(file.getAbsolutePath()));
+        }
+
+        final ServerSocket serverSocket = new ServerSocket(port, 0, InetAddress.getByName(bindAddress));
+        final ExecutorService requestService = Executors.newCachedThreadPool(new DaemonThreadFactory("CoordinatorRequest"));
+
+        Thread acceptThread = new DaemonThreadFactory("CoordinatorAccept").newThread(new Runnable()
+        {
+            public void run()
+            {
+                while (true)
+                {
+                    try
+                    {
+                        final Socket socket = serverSocket.accept();
+
+                        requestService.execute(new Runnable()
+                        {
+                            public void run()
+                            {
+                                HandleRequest(socket);
+                            }
+                        });
+                    }
+                    catch (Exception ex)
+                    {
+                        Singletons.Log.Debug(ex);
+                    }
+                }
+            }
+        });
+        acceptThread.start();
+
+        Thread leaseThread = new DaemonThreadFactory("CoordinatorLeases").newThread(new Runnable()
+        {
+            public void run()
+            {
+                while (true)
+                {
+                    try
+                    {
+                        Thread.sleep(CoordinatorProtocol.HEARTBEAT_SECONDS * 1000);
+                        ReleaseLeasesOfLostWorkers();
+                    }
+                    catch (Exception ex)
+                    {
+                        Singletons.Log.Debug(ex);
+                    }
+                }
+            }
+        });
+        leaseThread.start();
+
+        Singletons.Log.Info("Coordinating workers on " + bindAddress + ", port " + port + ". Workers must use the secret in " + Settings.COORDINATOR_SECRET_FILE + ".");
+    }
+
+    /** Retrieves the task-state store that the coordinator itself uses. The coordinator never claims tasks, so it waits for workers to complete them.
+     *
+     * @param statusDirectoryPath Absolute path to the status directory of the iteration
+     * @return Task-state store
+     */
+    public static synchronized TaskStateStore GetLocalStore(String statusDirectoryPath)
+    {
+        if (!_localStores.containsKey(statusDirectoryPath))
+        {
+            final JournalTaskStateStore journal = JournalTaskStateStore.Get(statusDirectoryPath);
+
+            _localStores.put(statusDirectoryPath, new TaskStateStore()
+            {
+                public boolean IsDone(String taskKey) throws Exception
+                {
+                    return journal.IsDone(taskKey);
+                }
+
+                public boolean Claim(String taskKey) throws Exception
+                {
+                    // Tasks are executed by workers
+                    return false;
+                }
+
+                public void Complete(String taskKey) throws Exception
+                {
+                    journal.Complete(taskKey);
+                }
+
+                public void Release(String taskKey) throws Exception
+                {
+                    journal.Release(taskKey);
+                }
+
+                public boolean AwaitChange(long timeoutMillis) throws Exception
+                {
+                    return journal.AwaitChange(timeoutMillis);
+                }
+            });
+        }
+
+        return _localStores.get(statusDirectoryPath);
+    }
+
+    private static void HandleRequest(Socket socket)
+    {
+        try
+        {
+            DataInputStream in = CoordinatorProtocol.GetInputStream(socket);
+            DataOutputStream out = CoordinatorProtocol.GetOutputStream(socket);
+
+            if (!CoordinatorProtocol.IsAuthenticated(in))
+            {
+                Singletons.Log.Info("A request from " + socket.getInetAddress() + " was rejected because it did not include the shared secret.");
+                return;
+            }
+
+            String request = in.readUTF();
+
+            if (request.equals(CoordinatorProtocol.HEARTBEAT))
+            {
+                RecordHeartbeat(in.readUTF());
+                out.writeBoolean(true);
+            }
+            else if (request.equals(CoordinatorProtocol.LEAVE))
+            {
+                RemoveWorker(in.readUTF());
+                out.writeBoolean(true);
+            }
+            else if (request.equals(CoordinatorProtocol.IS_DONE))
+            {
+                out.writeBoolean(GetJournal(in.readUTF()).IsDone(in.readUTF()));
+            }
+            else if (request.equals(CoordinatorProtocol.CLAIM))
+            {
+                out.writeBoolean(Claim(in.readUTF(), in.readUTF(), in.readUTF()));
+            }
+            else if (request.equals(CoordinatorProtocol.COMPLETE))
+            {
+                String workerID = in.readUTF();
+                String statusDirectory = in.readUTF();
+                String taskKey = in.readUTF();
+
+                // Only the worker that holds the claim on the task may complete it (or send files for it)
+                if (!HoldsLease(workerID, statusDirectory, taskKey))
+                {
+                    Singletons.Log.Info("Worker " + workerID + " attempted to complete " + taskKey + " without holding a claim on it.");
+                    out.writeBoolean(false);
+                    out.flush();
+                    return;
+                }
+
+                // The files are saved before the task is marked as complete, so they are available to any process that sees that it is complete
+                ArrayList<String> relativePaths = new ArrayList<String>();
+                int numFiles = in.readInt();
+                for (int i = 0; i < numFiles; i++)
+                {
+                    String relativePath = CoordinatorProtocol.ReadFile(in);
+                    if (relativePath != null)
+                        relativePaths.add(relativePath);
+                }
+
+                out.writeBoolean(Complete(workerID, statusDirectory, taskKey, relativePaths));
+            }
+            else if (request.equals(CoordinatorProtocol.RELEASE))
+            {
+                Release(in.readUTF(), in.readUTF(), in.readUTF());
+                out.writeBoolean(true);
+            }
+            else if (request.equals(CoordinatorProtocol.AWAIT))
+            {
+                String statusDirectory = in.readUTF();
+                out.writeBoolean(GetJournal(statusDirectory).AwaitChange(in.readLong()));
+            }
+            else if (request.equals(CoordinatorProtocol.SYNCHRONIZE))
+            {
+                String sessionID = in.readUTF();
+                int version = in.readInt();
+
+                // If the coordinator has been restarted, the worker needs all files
+                if (!sessionID.equals(SESSION_ID))
+                    version = 0;
+
+                LinkedHashSet<String> relativePaths = new LinkedHashSet<String>();
+                int currentVersion;
+
+                synchronized (TaskCoordinator.class)
+                {
+                    currentVersion = _fileVersions.size();
+                    relativePaths.addAll(_fileVersions.subList(Math.min(version, currentVersion), currentVersion));
+                }
+
+                out.writeUTF(SESSION_ID);
+                out.writeInt(currentVersion);
+                out.writeInt(relativePaths.size());
+                for (String relativePath : relativePaths)
+                    CoordinatorProtocol.WriteFile(out, relativePath);
+            }
+            else
+                throw new Exception("Invalid request: " + request);
+
+            out.flush();
+        }
+        catch (Exception ex)
+        {
+            Singletons.Log.Debug("A request from a worker could not be processed.");
+            Singletons.Log.Debug(ex);
+        }
+        finally
+        {
+            try
+            {
+                socket.close();
+            }
+            catch (Exception ex)
+            {
+                Singletons.Log.Debug(ex);
+            }
+        }
+    }
+
+    /** Waits until all workers that have connected have either indicated that they are finished or have been lost. Workers that are still running may need to retrieve files from the coordinator after the coordinator itself has finished the experiment.
+     *
+     * @throws Exception
+     */
+    public static synchronized void AwaitWorkers() throws Exception
+    {
+        if (_heartbeats.size() > 0)
+            Singletons.Log.Info("Waiting for " + _heartbeats.size() + " worker(s) to finish.");
+
+        while (_heartbeats.size() > 0)
+            TaskCoordinator.class.wait(CoordinatorProtocol.HEARTBEAT_SECONDS * 1000);
+    }
+
+    private static JournalTaskStateStore GetJournal(String relativeStatusDirectory) throws Exception
+    {
+        return JournalTaskStateStore.Get(CoordinatorProtocol.ToAbsolutePath(relativeStatusDirectory));
+    }
+
+    private static synchronized void RecordHeartbeat(String workerID)
+    {
+        if (!_heartbeats.containsKey(workerID))
+            Singletons.Log.Info("Worker " + workerID + " has connected.");
+
+        _heartbeats.put(workerID, System.currentTimeMillis());
+    }
+
+    private static synchronized void RemoveWorker(String workerID)
+    {
+        if (_heartbeats.remove(workerID) != null)
+            Singletons.Log.Info("Worker " + workerID + " has finished.");
+
+        TaskCoordinator.class.notifyAll();
+    }
+
+    private static synchronized boolean Claim(String workerID, String statusDirectory, String taskKey) throws Exception
+    {
+        RecordHeartbeat(workerID);
+
+        if (!GetJournal(statusDirectory).Claim(taskKey))
+            return false;
+
+        _leases.put(statusDirectory + "\t" + taskKey, workerID);
+        return true;
+    }
+
+    private static synchronized boolean HoldsLease(String workerID, String statusDirectory, String taskKey)
+    {
+        return workerID.equals(_leases.get(statusDirectory + "\t" + taskKey));
+    }
+
+    private static synchronized boolean Complete(String workerID, String statusDirectory, String taskKey, ArrayList<String> relativePaths) throws Exception
+    {
+        RecordHeartbeat(workerID);
+
+        // The claim may have been released while the files were being received (for example, if the worker was considered lost)
+        if (!HoldsLease(workerID, statusDirectory, taskKey))
+            return false;
+
+        _fileVersions.addAll(relativePaths);
+        _leases.remove(statusDirectory + "\t" + taskKey);
+
+        GetJournal(statusDirectory).Complete(taskKey);
+        return true;
+    }
+
+    private static synchronized void Release(String workerID, String statusDirectory, String taskKey) throws Exception
+    {
+        RecordHeartbeat(workerID);
+
+        // The task may have been handed out to another worker after this worker was considered lost
+        if (workerID.equals(_leases.get(statusDirectory + "\t" + taskKey)))
+        {
+            _leases.remove(statusDirectory + "\t" + taskKey);
+            GetJournal(statusDirectory).Release(taskKey);
+        }
+    }
+
+    private static synchronized void ReleaseLeasesOfLostWorkers() throws Exception
+    {
+        long lostTime = System.currentTimeMillis() - CoordinatorProtocol.WORKER_LOST_SECONDS * 1000;
+
+        for (String workerID : new ArrayList<String>(_heartbeats.keySet()))
+        {
+            if (_heartbeats.get(workerID) >= lostTime)
+                continue;
+
+            Singletons.Log.Info("Worker " + workerID + " has not been heard from in " + CoordinatorProtocol.WORKER_LOST_SECONDS + " seconds, so its tasks will be handed out again.");
+            _heartbeats.remove(workerID);
+
+            for (String lease : new ArrayList<String>(_leases.keySet()))
+                if (_leases.get(lease).equals(workerID))
+                {
+                    String[] items = lease.split("\t");
+                    _leases.remove(lease);
+                    GetJournal(items[0]).Release(items[1]);
+                }
+        }
+
+        TaskCoordinator.class.notifyAll();
+    }
+
+    /** Creates daemon threads, so the coordinator does not keep the process alive after the experiment has been completed. */
+    private static class DaemonThreadFactory implements ThreadFactory
+    {
+        private final String _name;
+
+        DaemonThreadFactory(String name)
+        {
+            _name = name;
+        }
+
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, _name);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
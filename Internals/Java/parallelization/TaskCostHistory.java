@@ -0,0 +1,140 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.parallelization;
+
+import mlflex.core.Settings;
+import mlflex.core.Singletons;
+import mlflex.helper.FileUtilities;
+
+import java.util.HashMap;
+
+/** This class keeps a persistent history of how long (wall time) tasks have taken to execute, so that tasks that are expected to take longest can be started first. Tasks are identified by a cost key that describes the work (for example, learner, algorithm, data processor, number of features, and number of training instances). When a task has no history, its duration is estimated from a size heuristic (such as the number of training instances multiplied by the number of features), scaled by the average number of seconds per unit of size across all recorded tasks. The history is stored in a file that is shared by all experiments and compute nodes.
+ */
+public class TaskCostHistory
+{
+    /** Name of the file (within the internals directory) where the history is stored. */
+    public static final String HISTORY_FILE_NAME = "Task_Wall_Times.txt";
+
+    private static HashMap<String, double[]> _history = null;
+    private static double _sumSeconds = 0;
+    private static double _sumSize = 0;
+
+    /** Formulates a cost key from the values that describe a task.
+     *
+     * @param values Values that describe the task
+     * @return Cost key
+     */
+    public static String GetCostKey(Object... values)
+    {
+        StringBuilder key = new StringBuilder();
+
+        for (Object value : values)
+        {
+            if (key.length() > 0)
+                key.append("|");
+            key.append(String.valueOf(value).replace("\t", " "));
+        }
+
+        return key.toString();
+    }
+
+    /** Estimates how long a task will take to execute.
+     *
+     * @param costKey Key that describes the task
+     * @param size Heuristic size of the task, used when there is no history for the key
+     * @return Expected number of seconds (or a relative value if no tasks have been recorded)
+     * @throws Exception
+     */
+    public static synchronized double GetExpectedSeconds(String costKey, double size) throws Exception
+    {
+        Load();
+
+        double[] history = _history.get(costKey);
+        if (history != null)
+            return history[0] / history[1];
+
+        return size * (_sumSize > 0 ? _sumSeconds / _sumSize : 1.0);
+    }
+
+    /** Records how long a task took to execute.
+     *
+     * @param costKey Key that describes the task
+     * @param size Heuristic size of the task
+     * @param seconds Number of seconds the task took
+     * @throws Exception
+     */
+    public static synchronized void Record(String costKey, double size, double seconds) throws Exception
+    {
+        Load();
+        Add(costKey, size, seconds);
+
+        FileUtilities.AppendLineToFile(GetHistoryFilePath(), costKey + "\t" + size + "\t" + seconds);
+    }
+
+    private static void Load() throws Exception
+    {
+        if (_history != null)
+            return;
+
+        _history = new HashMap<String, double[]>();
+
+        if (!FileUtilities.FileExists(GetHistoryFilePath()))
+            return;
+
+        for (String line : FileUtilities.ReadLinesFromFile(GetHistoryFilePath()))
+        {
+            String[] items = line.split("\t");
+
+            try
+            {
+                Add(items[0], Double.parseDouble(items[1]), Double.parseDouble(items[2]));
+            }
+            catch (Exception ex)
+            {
+                // Lines may be incomplete if another process was writing when this file was read
+                Singletons.Log.Debug("Invalid line in task history: " + line);
+            }
+        }
+    }
+
+    private static void Add(String costKey, double size, double seconds)
+    {
+        double[] history = _history.get(costKey);
+
+        if (history == null)
+        {
+            history = new double[2];
+            _history.put(costKey, history);
+        }
+
+        history[0] += seconds;
+        history[1]++;
+
+        _sumSeconds += seconds;
+        _sumSize += size;
+    }
+
+    private static String GetHistoryFilePath()
+    {
+        return Settings.INTERNALS_DIR + HISTORY_FILE_NAME;
+    }
+}
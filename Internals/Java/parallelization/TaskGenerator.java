@@ -51,7 +51,7 @@ public class TaskGenerator
             public Object call() throws Exception
             {
                 // The default seed is the current iteration number
-                String randomSeed = String.valueOf(Singletons.Iteration);
+                String randomSeed = String.valueOf(IterationContext.Current().Iteration);
 
                 // See if a config value has been specified explicitly
                 String configValue = Singletons.Config.GetRandomSeed();
@@ -85,7 +85,7 @@ public class TaskGenerator
         ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
 
         // Add a task for each directory
-        for (final String directoryPath : ListUtilities.CreateStringList(Settings.FEATURE_SELECTION_DIR, Settings.PREDICTIONS_DIR, Settings.ENSEMBLE_PREDICTIONS_DIR, Settings.OUTPUT_DIR, Settings.STATUS_DIR, Settings.DATA_DIR, Settings.TEMP_DATA_DIR, Settings.TEMP_RESULTS_DIR, Settings.LOCKS_DIR))
+        for (final String directoryPath : ListUtilities.CreateStringList(IterationContext.Current().FeatureSelectionDir, IterationContext.Current().PredictionsDir, IterationContext.Current().EnsemblePredictionsDir, Settings.OUTPUT_DIR, IterationContext.Current().StatusDir, Settings.DATA_DIR, Settings.TEMP_DATA_DIR, Settings.TEMP_RESULTS_DIR, IterationContext.Current().LocksDir))
         {
             tasks.add(new Callable<Object>()
             {
@@ -142,6 +142,26 @@ public class TaskGenerator
         return callables;
     }
 
+    /** Constructs tasks for saving description files that are specific to the current iteration.
+     *
+     * @return Executable tasks
+     */
+    public static ArrayList<LockedCallable> GetSaveIterationDescriptionFilesTasks() throws Exception
+    {
+        ArrayList<LockedCallable> callables = new ArrayList<LockedCallable>();
+
+        callables.add(new LockedCallable("Description/Save iteration description files", new Callable<Object>()
+        {
+            public Object call() throws Exception
+            {
+                new DescriptionFileSaver().SaveIterationDescriptionFiles();
+                return Boolean.TRUE;
+            }
+        }));
+
+        return callables;
+    }
+
     /** Constructs tasks for saving statistics for each data processor.
      *
      * @return Executable tasks
@@ -214,7 +234,7 @@ public class TaskGenerator
         return callables;
     }
 
-    /** Constructs tasks for making ensemble predictions.
+    /** Constructs tasks for making ensemble predictions. The task for each outer cross-validation fold depends on the tasks that make predictions for that fold.
      *
      * @param modelSelectors List of model selectors that contain information about processing the tasks.
      * @param evaluateInner Whether to evaluate inner cross-validation folds
@@ -226,7 +246,7 @@ public class TaskGenerator
 
         for (final Integer outerFold : Singletons.InstanceVault.GetCrossValidationAssignments().GetAllFoldNumbers())
         {
-            callables.add(new LockedCallable("EnsemblePredictions_OuterFold" + outerFold, "Make ensemble predictions for outer fold " + outerFold, new Callable<Object>()
+            callables.add(new LockedCallable(GetMakeEnsemblePredictionsStatusFilePath(outerFold), "Make ensemble predictions for outer fold " + outerFold, new Callable<Object>()
             {
                 public Object call() throws Exception
                 {
@@ -243,13 +263,42 @@ public class TaskGenerator
 
                     return Boolean.TRUE;
                 }
-            }));
+            }).DependsOn(GetMakePredictionsTasks(modelSelectors, evaluateInner, outerFold)));
         }
 
         return callables;
     }
 
-    /** Constructs tasks for saving feature selection results.
+    /** Indicates the relative path to the status file for the task that makes ensemble predictions for a given outer cross-validation fold.
+     *
+     * @param outerFold Number of outer cross-validation fold
+     * @return Relative status file path
+     */
+    private static String GetMakeEnsemblePredictionsStatusFilePath(int outerFold)
+    {
+        return "EnsemblePredictions_OuterFold" + outerFold;
+    }
+
+    /** Constructs tasks for making predictions via classification for a given outer cross-validation fold.
+     *
+     * @param modelSelectors List of model selectors that contain information about processing the tasks.
+     * @param evaluateInner Whether to evaluate inner cross-validation folds
+     * @param outerFold Number of outer cross-validation fold
+     * @return Executable tasks
+     */
+    private static ArrayList<LockedCallable> GetMakePredictionsTasks(ArrayList<ModelSelector> modelSelectors, boolean evaluateInner, int outerFold) throws Exception
+    {
+        ArrayList<LockedCallable> callables = new ArrayList<LockedCallable>();
+
+        for (ModelSelector selector : modelSelectors)
+            for (PredictionEvaluator evaluator : selector.PredictionEvaluators)
+                if (evaluator.OuterFold == outerFold)
+                    callables.addAll(evaluator.GetPredictionTasks(evaluateInner, true));
+
+        return callables;
+    }
+
+    /** Constructs tasks for saving feature selection results. Each task depends on the tasks that select features for the outer cross-validation folds.
      *
      * @return Executable tasks
      */
@@ -264,19 +313,26 @@ public class TaskGenerator
         for (final AbstractDataProcessor processor : Singletons.ProcessorVault.IndependentVariableDataProcessors)
             for (final FeatureSelectionAlgorithm fsAlgorithm : Singletons.Config.GetFeatureSelectionAlgorithms(processor))
                 if (FeatureSelectionEvaluator.NeedToSelectFeatures(processor, fsAlgorithm))
-                    callables.add(new LockedCallable("FeatureSelectionResults/SaveMeanFeatureRanks/" + processor.GetDescription() + "/" + fsAlgorithm, "Save mean feature ranks for " + processor.GetDescription() + " " + fsAlgorithm.Key, new Callable<Object>()
+                {
+                    LockedCallable callable = new LockedCallable("FeatureSelectionResults/SaveMeanFeatureRanks/" + processor.GetDescription() + "/" + fsAlgorithm, "Save mean feature ranks for " + processor.GetDescription() + " " + fsAlgorithm.Key, new Callable<Object>()
                     {
                         public Object call() throws Exception
                         {
                             new FeatureSelectionResultsSaver(processor, fsAlgorithm).SaveMeanFeatureRanksFile();
                             return Boolean.TRUE;
                         }
-                    }));
+                    });
+
+                    for (int outerFold : Singletons.InstanceVault.GetCrossValidationAssignments().GetFoldsWithTestData(processor))
+                        callable.DependsOn(new FeatureSelectionEvaluator(processor, fsAlgorithm, outerFold).GetOuterStatusFilePath());
+
+                    callables.add(callable);
+                }
 
         return callables;
     }
 
-    /** Constructs tasks for saving classification results.
+    /** Constructs tasks for saving classification results. Each task depends on the tasks that make predictions for the corresponding model selector.
      *
      * @param modelSelectors List of model selectors that contain information about processing the tasks.
      * @param evaluateInner Whether to evaluate inner cross-validation folds
@@ -288,20 +344,25 @@ public class TaskGenerator
 
         for (final ModelSelector modelSelector : modelSelectors)
         {
-            callables.add(new LockedCallable("ClassificationResults/" + modelSelector.GetDescription(), "Save classification results for " + modelSelector.GetDescription(), new Callable<Object>()
+            LockedCallable callable = new LockedCallable("ClassificationResults/" + modelSelector.GetDescription(), "Save classification results for " + modelSelector.GetDescription(), new Callable<Object>()
             {
                 public Object call() throws Exception
                 {
                     new ClassificationResultsSaver(modelSelector,  evaluateInner).SaveClassificationResults();
                     return Boolean.TRUE;
                 }
-            }));
+            });
+
+            for (PredictionEvaluator evaluator : modelSelector.PredictionEvaluators)
+                callable.DependsOn(evaluator.GetPredictionTasks(evaluateInner, true));
+
+            callables.add(callable);
         }
 
         return callables;
     }
 
-    /** Constructs tasks for saving ensemble classification results.
+    /** Constructs tasks for saving ensemble classification results. Each task depends on the ensemble-prediction tasks for all outer cross-validation folds.
      *
      * @return Executable tasks
      */
@@ -311,14 +372,19 @@ public class TaskGenerator
 
         for (final AbstractEnsembleLearner ensemblePredictor : AbstractEnsembleLearner.GetAllEnsembleLearners())
         {
-            callables.add(new LockedCallable("EnsembleResults/" + ensemblePredictor.GetDescription(), "Save ensemble results " + ensemblePredictor.GetFormattedDescription(), new Callable<Object>()
+            LockedCallable callable = new LockedCallable("EnsembleResults/" + ensemblePredictor.GetDescription(), "Save ensemble results " + ensemblePredictor.GetFormattedDescription(), new Callable<Object>()
             {
                 public Object call() throws Exception
                 {
                     ClassificationResultsSaver.SaveEnsembleResults(ensemblePredictor.GetEnsemblePredictions(), ensemblePredictor.GetResultsFilePaths(true));
                     return Boolean.TRUE;
                 }
-            }));
+            });
+
+            for (Integer outerFold : Singletons.InstanceVault.GetCrossValidationAssignments().GetAllFoldNumbers())
+                callable.DependsOn(GetMakeEnsemblePredictionsStatusFilePath(outerFold));
+
+            callables.add(callable);
         }
 
         return callables;
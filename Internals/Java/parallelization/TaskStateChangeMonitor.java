@@ -0,0 +1,117 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.parallelization;
+
+import mlflex.core.Singletons;
+
+import java.nio.file.*;
+import java.util.HashSet;
+
+/** This class notifies threads that are waiting for tasks to be completed (or released) by other threads or compute nodes. Changes made within this process are signaled directly. Changes made by other processes are detected by watching the directories where task states are stored; however, changes made on other compute nodes to a shared (e.g., NFS) file system may not be reported by the operating system, so waiting threads should always specify a timeout.
+ */
+public class TaskStateChangeMonitor
+{
+    private long _numChanges = 0;
+    private WatchService _watchService = null;
+    private final HashSet<String> _watchedDirectories = new HashSet<String>();
+
+    /** Indicates that the state of a task has changed. */
+    public synchronized void Signal()
+    {
+        _numChanges++;
+        notifyAll();
+    }
+
+    /** Blocks until a change has been signaled or until the timeout elapses.
+     *
+     * @param timeoutMillis Maximum number of milliseconds to wait
+     * @return Whether a change was signaled
+     * @throws Exception
+     */
+    public synchronized boolean Await(long timeoutMillis) throws Exception
+    {
+        long numChanges = _numChanges;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        for (long remaining = timeoutMillis; _numChanges == numChanges && remaining > 0; remaining = deadline - System.currentTimeMillis())
+            wait(remaining);
+
+        return _numChanges != numChanges;
+    }
+
+    /** Begins watching a directory so that any files that are created, modified, or deleted within it (for example, by another process) will be signaled as changes. Subdirectories are not watched.
+     *
+     * @param directoryPath Path to the directory
+     */
+    public synchronized void Watch(String directoryPath)
+    {
+        if (_watchedDirectories.contains(directoryPath))
+            return;
+
+        try
+        {
+            if (_watchService == null)
+            {
+                _watchService = FileSystems.getDefault().newWatchService();
+
+                Thread watchThread = new Thread(new Runnable()
+                {
+                    public void run()
+                    {
+                        WatchEvents();
+                    }
+                }, "TaskStateChangeMonitor");
+                watchThread.setDaemon(true);
+                watchThread.start();
+            }
+
+            Paths.get(directoryPath).register(_watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            _watchedDirectories.add(directoryPath);
+        }
+        catch (Exception ex)
+        {
+            // Without a watch, changes made by other processes will be detected when the wait times out
+            Singletons.Log.Debug("Could not watch " + directoryPath + " for task state changes.");
+            Singletons.Log.Debug(ex);
+        }
+    }
+
+    private void WatchEvents()
+    {
+        try
+        {
+            while (true)
+            {
+                WatchKey key = _watchService.take();
+                key.pollEvents();
+                key.reset();
+
+                Signal();
+            }
+        }
+        catch (Exception ex)
+        {
+            Singletons.Log.Debug("Stopped watching for task state changes.");
+            Singletons.Log.Debug(ex);
+        }
+    }
+}
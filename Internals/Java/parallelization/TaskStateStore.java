@@ -0,0 +1,65 @@
+// THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+// 
+// --------------------------------------------------------------------------
+// 
+// Copyright 2016 Stephen Piccolo
+// 
+// This file is part of ML-Flex.
+// 
+// ML-Flex is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// any later version.
+// 
+// ML-Flex is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+package mlflex.parallelization;
+
+/** Classes that implement this interface keep track of which "locked" tasks have been completed and which are currently being executed by a thread (on this or another compute node). Tasks are identified by their relative status path.
+ */
+public interface TaskStateStore
+{
+    /** Indicates whether a task has been completed.
+     *
+     * @param taskKey Relative status path of the task
+     * @return Whether the task has been completed
+     * @throws Exception
+     */
+    boolean IsDone(String taskKey) throws Exception;
+
+    /** Attempts to claim a task so that it will be executed only by the current thread. The claim expires if the task is not completed or released within THREAD_TIMEOUT_MINUTES.
+     *
+     * @param taskKey Relative status path of the task
+     * @return Whether the task was claimed; false if it has been completed or is claimed by another thread
+     * @throws Exception
+     */
+    boolean Claim(String taskKey) throws Exception;
+
+    /** Indicates that a task that was claimed by the current thread has been completed successfully.
+     *
+     * @param taskKey Relative status path of the task
+     * @throws Exception
+     */
+    void Complete(String taskKey) throws Exception;
+
+    /** Releases the claim on a task that was not completed successfully, so it can be attempted again.
+     *
+     * @param taskKey Relative status path of the task
+     * @throws Exception
+     */
+    void Release(String taskKey) throws Exception;
+
+    /** Blocks until the state of a task may have been changed by another thread or process, or until the timeout elapses. Changes made on other compute nodes may only be detected when the timeout elapses.
+     *
+     * @param timeoutMillis Maximum number of milliseconds to wait
+     * @return Whether a change was detected
+     * @throws Exception
+     */
+    boolean AwaitChange(long timeoutMillis) throws Exception;
+}
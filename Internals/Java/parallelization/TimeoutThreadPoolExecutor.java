@@ -21,18 +21,36 @@
 
 package mlflex.parallelization;
 
+import mlflex.core.IterationContext;
 import mlflex.core.Settings;
 import mlflex.core.Singletons;
+import mlflex.helper.FileUtilities;
+import mlflex.helper.MiscUtilities;
+import mlflex.helper.ProcessExecutor;
 
-import java.util.HashMap;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Date;
 import java.util.concurrent.*;
 
-/** This class is used to monitor threads that are executed in parallel. If a thread executes longer than a configurable timeout period, execution is terminated. */
+/** This class is used to monitor threads that are executed in parallel. If a thread executes longer than a configurable timeout period, execution is terminated: the task is cancelled (which interrupts the thread), and any external processes that the thread started are destroyed. A single scheduler thread is shared by all instances of this class. Each timeout is recorded in the Task_Timeouts.txt file in the output directory.
+ */
 public class TimeoutThreadPoolExecutor extends ThreadPoolExecutor
 {
-    private final HashMap<String, Timer> _timerMap = new HashMap<String, Timer>();
+    private static final ScheduledExecutorService _timeoutService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+    {
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "TaskTimeout");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /** Descriptions of the tasks that are currently being executed, so that timeouts can be reported in a meaningful way. */
+    private static final ConcurrentHashMap<Thread, String> _taskDescriptions = new ConcurrentHashMap<Thread, String>();
+    /** Iterations of the tasks that are currently being executed. */
+    private static final ConcurrentHashMap<Thread, Integer> _taskIterations = new ConcurrentHashMap<Thread, Integer>();
+
+    private final ConcurrentHashMap<Runnable, ScheduledFuture<?>> _timeoutMap = new ConcurrentHashMap<Runnable, ScheduledFuture<?>>();
 
     /** Constructor
      *
@@ -43,17 +61,23 @@ public class TimeoutThreadPoolExecutor extends ThreadPoolExecutor
         super(numberThreads, numberThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
     }
 
+    /** Indicates what task the current thread is executing (and for which iteration). This description is used when a timeout is reported.
+     *
+     * @param description Description of the task
+     */
+    public static void SetTaskDescription(String description)
+    {
+        _taskDescriptions.put(Thread.currentThread(), description);
+        _taskIterations.put(Thread.currentThread(), IterationContext.Current().Iteration);
+    }
+
     @Override
     protected void beforeExecute(final Thread thread, final Runnable runnable)
     {
         super.beforeExecute(thread, runnable);
 
         // Start the timing and set the timeout period
-        Timer timer = new Timer(true);
-        timer.schedule(new TimeOutTask(thread), Settings.THREAD_TIMEOUT_MINUTES * 60000L);
-
-        // Store the timer in a global variable so it can be accessed later
-        _timerMap.put(runnable.toString(), timer);
+        _timeoutMap.put(runnable, _timeoutService.schedule(new TimeOutTask(thread, runnable), Settings.THREAD_TIMEOUT_MINUTES, TimeUnit.MINUTES));
     }
 
     @Override
@@ -61,39 +85,80 @@ public class TimeoutThreadPoolExecutor extends ThreadPoolExecutor
     {
         try
         {
-            // Cancel the timer if it is still there
-            if (_timerMap.containsKey(runnable.toString()))
-                _timerMap.get(runnable.toString()).cancel();
+            // Cancel the timeout if it is still there
+            ScheduledFuture<?> timeout = _timeoutMap.remove(runnable);
+            if (timeout != null)
+                timeout.cancel(false);
+
+            _taskDescriptions.remove(Thread.currentThread());
+            _taskIterations.remove(Thread.currentThread());
         }
-        catch (Exception ex)
+        finally
         {
-            Singletons.Log.Debug("Error occurred when attempting to cancel timed-out thread.");
-            Singletons.Log.Debug(ex);
+            super.afterExecute(runnable, throwable);
         }
-        finally
+    }
+
+    /** Records a timeout in the log and in a file that summarizes all timeouts for the experiment.
+     *
+     * @param description Description of the task that timed out
+     * @param iteration Iteration of the task that timed out
+     * @param numProcessesDestroyed Number of external processes that were destroyed
+     */
+    private static void RecordTimeout(String description, Integer iteration, int numProcessesDestroyed)
+    {
+        Singletons.Log.Info("Timeout after " + Settings.THREAD_TIMEOUT_MINUTES + " minutes: " + description + ". " + numProcessesDestroyed + " external process(es) were destroyed.");
+
+        try
         {
-            // Clean up
-            if (_timerMap.containsKey(runnable.toString()))
-                _timerMap.remove(runnable.toString());
+            String filePath = Settings.OUTPUT_DIR + "Task_Timeouts.txt";
 
-            super.afterExecute(runnable, throwable);
+            synchronized (_timeoutService)
+            {
+                if (!FileUtilities.FileExists(filePath))
+                    FileUtilities.AppendLineToFile(filePath, "Time\tMachine\tIteration\tTask\tTimeoutMinutes\tNumProcessesDestroyed");
+
+                FileUtilities.AppendLineToFile(filePath, new Date() + "\t" + MiscUtilities.GetMachineAddress() + "\t" + iteration + "\t" + description + "\t" + Settings.THREAD_TIMEOUT_MINUTES + "\t" + numProcessesDestroyed);
+            }
+        }
+        catch (Exception ex)
+        {
+            Singletons.Log.Debug("The timeout could not be recorded.");
+            Singletons.Log.Debug(ex);
         }
     }
 
-    /** A simple task that enables tasks to be interrupted. */
-    private class TimeOutTask extends TimerTask
+    /** A simple task that terminates a task that has timed out. */
+    private class TimeOutTask implements Runnable
     {
-        Thread _thread;
+        private final Thread _thread;
+        private final Runnable _runnable;
 
-        TimeOutTask(Thread thread)
+        TimeOutTask(Thread thread, Runnable runnable)
         {
             _thread = thread;
+            _runnable = runnable;
         }
 
         public void run()
         {
-            if(_thread!= null && _thread.isAlive())
+            // The task has already finished
+            if (!_timeoutMap.containsKey(_runnable))
+                return;
+
+            String description = _taskDescriptions.get(_thread);
+            if (description == null)
+                description = _thread.getName();
+
+            // Destroy external processes first so the thread is not left waiting on them
+            int numProcessesDestroyed = ProcessExecutor.DestroyProcessesStartedBy(_thread);
+
+            if (_runnable instanceof Future)
+                ((Future)_runnable).cancel(true);
+            else if (_thread.isAlive())
                 _thread.interrupt();
+
+            RecordTimeout(description, _taskIterations.get(_thread), numProcessesDestroyed);
         }
     }
 }
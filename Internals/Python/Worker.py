@@ -0,0 +1,89 @@
+# THIS SOURCE CODE IS SUPPLIED "AS IS" WITHOUT WARRANTY OF ANY KIND, AND ITS AUTHOR AND THE JOURNAL OF MACHINE LEARNING RESEARCH (JMLR) AND JMLR'S PUBLISHERS AND DISTRIBUTORS, DISCLAIM ANY AND ALL WARRANTIES, INCLUDING BUT NOT LIMITED TO ANY IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE, AND ANY WARRANTIES OR NON INFRINGEMENT. THE USER ASSUMES ALL LIABILITY AND RESPONSIBILITY FOR USE OF THIS SOURCE CODE, AND NEITHER THE AUTHOR NOR JMLR, NOR JMLR'S PUBLISHERS AND DISTRIBUTORS, WILL BE LIABLE FOR DAMAGES OF ANY KIND RESULTING FROM ITS USE. Without lim- iting the generality of the foregoing, neither the author, nor JMLR, nor JMLR's publishers and distributors, warrant that the Source Code will be error-free, will operate without interruption, or will meet the needs of the user.
+# 
+# --------------------------------------------------------------------------
+# 
+# Copyright 2016 Stephen Piccolo
+# 
+# This file is part of ML-Flex.
+# 
+# ML-Flex is free software: you can redistribute it and/or modify
+# it under the terms of the GNU General Public License as published by
+# the Free Software Foundation, either version 3 of the License, or
+# any later version.
+# 
+# ML-Flex is distributed in the hope that it will be useful,
+# but WITHOUT ANY WARRANTY; without even the implied warranty of
+# MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+# GNU General Public License for more details.
+# 
+# You should have received a copy of the GNU General Public License
+# along with ML-Flex. If not, see <http://www.gnu.org/licenses/>.
+
+# This script is the entry point for long-lived Python worker processes (see mlflex.helper.WorkerPool).
+# Each job contains the same arguments that would be used to invoke a Python script at the command line.
+# The first argument that ends with ".py" is the script; it and the remaining arguments become sys.argv.
+
+import sys, runpy, traceback
+
+try:
+    from StringIO import StringIO
+except ImportError:
+    from io import StringIO
+
+protocolIn = sys.stdin
+protocolOut = sys.stdout
+
+def writeResult(exitStatus, output, error):
+    outputLines = output.splitlines()
+    errorLines = error.splitlines()
+
+    protocolOut.write("MLFLEX_RESULT %d %d %d\n" % (exitStatus, len(outputLines), len(errorLines)))
+    for line in outputLines + errorLines:
+        protocolOut.write(line + "\n")
+    protocolOut.flush()
+
+def runJob(arguments):
+    scriptIndices = [i for i in range(len(arguments)) if arguments[i].endswith(".py")]
+    if len(scriptIndices) == 0:
+        raise Exception("No Python script was specified in the job arguments: " + str(arguments))
+
+    sys.argv = arguments[scriptIndices[0]:]
+    runpy.run_path(sys.argv[0], run_name="__main__")
+
+while True:
+    header = protocolIn.readline()
+    if not header:
+        break
+
+    headerItems = header.split()
+    if len(headerItems) != 2 or headerItems[0] != "MLFLEX_JOB":
+        writeResult(1, "", "Invalid job header: " + header.strip())
+        continue
+
+    arguments = [protocolIn.readline().rstrip("\r\n") for i in range(int(headerItems[1]))]
+
+    # Anything that the script prints is captured so it does not interfere with the protocol
+    output = StringIO()
+    error = StringIO()
+    sys.stdout = output
+    sys.stderr = error
+    exitStatus = 0
+
+    try:
+        runJob(arguments)
+    except SystemExit as ex:
+        if ex.code is None:
+            exitStatus = 0
+        elif isinstance(ex.code, int):
+            exitStatus = ex.code
+        else:
+            sys.stderr.write(str(ex.code) + "\n")
+            exitStatus = 1
+    except BaseException:
+        traceback.print_exc()
+        exitStatus = 1
+    finally:
+        sys.stdout = protocolOut
+        sys.stderr = sys.__stderr__
+
+    writeResult(exitStatus, output.getvalue(), error.getvalue())